@@ -0,0 +1,65 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, so they can be compared between releases. Accepts the regular
+ * JMH command line options, eg. a benchmark regex or {@code -rff other.json}.
+ * <p>
+ * Benchmarks that use a native library are stubbed when it is not available on this host. The {@code libc},
+ * {@code pixman} and {@code xkbcommon} parameters of each result tell which natives it used, unless they are set on
+ * the command line, eg. {@code -p pixman=stub}.
+ */
+public class Benchmarks {
+
+    private static final String RESULT_FILE = "westford-benchmarks.json";
+
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+        if (!commandLineOptions.getResultFormat()
+                               .hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLineOptions.getResult()
+                               .hasValue()) {
+            options.result(RESULT_FILE);
+        }
+
+        for (final String library : new String[]{Natives.LIBC,
+                                                 Natives.PIXMAN,
+                                                 Natives.XKBCOMMON}) {
+            if (!commandLineOptions.getParameter(library)
+                                   .hasValue()) {
+                options.param(library,
+                              Natives.available(library));
+            }
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.benchmarks;
+
+import org.freedesktop.jaccall.Pointer;
+import org.westford.nativ.glibc.Libc;
+import org.westford.nativ.glibc.Libc_Symbols;
+import org.westford.nativ.libpixman1.Libpixman1;
+import org.westford.nativ.libpixman1.Libpixman1_Symbols;
+import org.westford.nativ.libxkbcommon.Libxkbcommon;
+import org.westford.nativ.libxkbcommon.Libxkbcommon_Symbols;
+
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Native libraries used by the benchmarks. A library is linked for real where it's available on the host and stubbed
+ * otherwise, so the java side of a benchmark can still be measured.
+ * <p>
+ * Which one a benchmark uses is chosen by a JMH parameter named after the library, with value {@link #REAL} or
+ * {@link #STUB}. {@link Benchmarks} sets it to what is available, so every result in the result file is labeled with
+ * the natives it used. Results of stubbed and real runs are not comparable.
+ */
+public final class Natives {
+
+    public static final String LIBC      = "libc";
+    public static final String PIXMAN    = "pixman";
+    public static final String XKBCOMMON = "xkbcommon";
+
+    public static final String REAL = "real";
+    public static final String STUB = "stub";
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    private static Libc         libc;
+    private static Libpixman1   libpixman1;
+    private static Libxkbcommon libxkbcommon;
+
+    private Natives() {
+    }
+
+    /**
+     * @param library one of {@link #LIBC}, {@link #PIXMAN} or {@link #XKBCOMMON}.
+     *
+     * @return {@link #REAL} if the library can be linked on this host, {@link #STUB} otherwise.
+     */
+    public static String available(final String library) {
+        try {
+            switch (library) {
+                case LIBC:
+                    libc(REAL);
+                    break;
+                case PIXMAN:
+                    libpixman1(REAL);
+                    break;
+                case XKBCOMMON:
+                    libxkbcommon(REAL);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown native library " + library);
+            }
+            return REAL;
+        }
+        catch (final IllegalStateException e) {
+            LOGGER.warning(e.getMessage() + " Benchmarks that use it are stubbed.");
+            return STUB;
+        }
+    }
+
+    public static synchronized Libc libc(final String natives) {
+        if (STUB.equals(natives)) {
+            return stubLibc();
+        }
+        if (libc == null) {
+            libc = link(LIBC,
+                        () -> {
+                            new Libc_Symbols().link();
+                            return new Libc();
+                        });
+        }
+        return libc;
+    }
+
+    public static synchronized Libpixman1 libpixman1(final String natives) {
+        if (STUB.equals(natives)) {
+            return mock(Libpixman1.class);
+        }
+        if (libpixman1 == null) {
+            libpixman1 = link(PIXMAN,
+                              () -> {
+                                  new Libpixman1_Symbols().link();
+                                  return new Libpixman1();
+                              });
+        }
+        return libpixman1;
+    }
+
+    public static synchronized Libxkbcommon libxkbcommon(final String natives) {
+        if (STUB.equals(natives)) {
+            return mock(Libxkbcommon.class);
+        }
+        if (libxkbcommon == null) {
+            libxkbcommon = link(XKBCOMMON,
+                                () -> {
+                                    new Libxkbcommon_Symbols().link();
+                                    return new Libxkbcommon();
+                                });
+        }
+        return libxkbcommon;
+    }
+
+    /**
+     * @throws IllegalStateException if the library is not available. A real run is never silently stubbed, the
+     *                               benchmark that asked for it fails in its setup instead.
+     */
+    private static <T> T link(final String name,
+                              final Supplier<T> library) {
+        try {
+            final T linked = library.get();
+            LOGGER.info("Using native " + name);
+            return linked;
+        }
+        catch (final LinkageError e) {
+            throw new IllegalStateException("Native " + name + " not available.",
+                                            e);
+        }
+    }
+
+    /**
+     * A libc stub that behaves like a pipe that always has a new job byte available, as used by the job executor.
+     */
+    private static Libc stubLibc() {
+        final Libc stub = mock(Libc.class);
+        doAnswer(invocation -> {
+            final long buffer = (Long) invocation.getArguments()[1];
+            Pointer.wrap(Byte.class,
+                         buffer)
+                   .write((byte) 1);
+            return 1L;
+        }).when(stub)
+          .read(anyInt(),
+                anyLong(),
+                anyInt());
+        return stub;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import org.freedesktop.wayland.server.WlBufferResource;
+import org.freedesktop.wayland.server.WlSurfaceResource;
+import org.westford.compositor.protocol.WlSurface;
+
+import javax.annotation.Nonnull;
+import java.util.Optional;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Creates real surfaces backed by stubbed wayland resources. Stubs are created as stub only mocks so they don't record
+ * invocations, but each call on a stub still adds a small constant overhead.
+ */
+final class BenchmarkSurfaces {
+
+    private BenchmarkSurfaces() {
+    }
+
+    @Nonnull
+    static Surface surface(@Nonnull final Point position,
+                           final int width,
+                           final int height) {
+        final Buffer buffer = mock(Buffer.class,
+                                   withSettings().stubOnly());
+        when(buffer.getWidth()).thenReturn(width);
+        when(buffer.getHeight()).thenReturn(height);
+        final Renderer renderer = mock(Renderer.class,
+                                       withSettings().stubOnly());
+        when(renderer.queryBuffer(any())).thenReturn(buffer);
+
+        final Surface surface = new Surface(mock(FiniteRegionFactory.class,
+                                                 withSettings().stubOnly()),
+                                            mock(Compositor.class,
+                                                 withSettings().stubOnly()),
+                                            renderer);
+        surface.apply(surface.getState()
+                             .toBuilder()
+                             .buffer(Optional.of(mock(WlBufferResource.class,
+                                                      withSettings().stubOnly())))
+                             .build());
+        surface.setPosition(position);
+        return surface;
+    }
+
+    @Nonnull
+    static WlSurfaceResource wlSurfaceResource(@Nonnull final Surface surface) {
+        final WlSurface wlSurface = mock(WlSurface.class,
+                                         withSettings().stubOnly());
+        when(wlSurface.getSurface()).thenReturn(surface);
+        final WlSurfaceResource wlSurfaceResource = mock(WlSurfaceResource.class,
+                                                         withSettings().stubOnly());
+        when(wlSurfaceResource.getImplementation()).thenReturn(wlSurface);
+        return wlSurfaceResource;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.westford.benchmarks.Natives;
+import org.westford.nativ.libpixman1.Libpixman1;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Region operations on a region made of a grid of disjoint rectangles. Uses the real pixman library when available.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class FiniteRegionBenchmark {
+
+    @Param({"1",
+            "16",
+            "256"})
+    public int rectangles;
+    @Param(Natives.REAL)
+    public String pixman;
+
+    private Libpixman1          libpixman1;
+    private FiniteRegionFactory finiteRegionFactory;
+    private FiniteRegion        region;
+    private FiniteRegion        other;
+    private FiniteRegion        target;
+    private Point               inside;
+    private Rectangle           damage;
+
+    @Setup
+    public void setUp() {
+        this.libpixman1 = Natives.libpixman1(this.pixman);
+        this.finiteRegionFactory = mock(FiniteRegionFactory.class);
+        this.region = grid(0);
+        this.other = grid(5);
+        this.inside = Point.create(1,
+                                   1);
+        this.damage = Rectangle.create(0,
+                                       0,
+                                       64,
+                                       64);
+
+        //union is idempotent, so after the first invocation every union does the same amount of work.
+        this.target = new FiniteRegion(this.libpixman1,
+                                       this.finiteRegionFactory);
+        this.target.add(this.region);
+    }
+
+    private FiniteRegion grid(final int offset) {
+        final FiniteRegion finiteRegion = new FiniteRegion(this.libpixman1,
+                                                           this.finiteRegionFactory);
+        final int columns = (int) Math.ceil(Math.sqrt(this.rectangles));
+        for (int i = 0; i < this.rectangles; i++) {
+            finiteRegion.add(Rectangle.create(offset + (i % columns) * 20,
+                                              offset + (i / columns) * 20,
+                                              10,
+                                              10));
+        }
+        return finiteRegion;
+    }
+
+    @Benchmark
+    public FiniteRegion union() {
+        this.target.add(this.other);
+        return this.target;
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return this.region.contains(this.inside);
+    }
+
+    @Benchmark
+    public List<Rectangle> asList() {
+        return this.region.asList();
+    }
+
+    /**
+     * Short lived region like the damage of a single commit, its native storage is recycled through the pool.
+     */
+    @Benchmark
+    public void createClose() {
+        try (FiniteRegion finiteRegion = new FiniteRegion(this.libpixman1,
+                                                          this.finiteRegionFactory)) {
+            finiteRegion.add(this.damage);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import org.freedesktop.jaccall.Pointer;
+import org.freedesktop.wayland.server.Display;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.westford.benchmarks.Natives;
+import org.westford.nativ.glibc.Libc;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Throughput of submitting jobs and handling them on the event thread. Uses a real pipe when libc is available.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class JobExecutorBenchmark {
+
+    //stay well below the pipe buffer size so submitting never blocks.
+    private static final int JOBS = 256;
+
+    @Param(Natives.REAL)
+    public String libc;
+
+    private Libc        nativeLibc;
+    private int         pipeR;
+    private int         pipeWR;
+    private JobExecutor jobExecutor;
+    private Runnable    job;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        this.nativeLibc = Natives.libc(this.libc);
+        final Pointer<Integer> pipeFds = Pointer.nref(0,
+                                                      0);
+        this.nativeLibc.pipe(pipeFds.address);
+        this.pipeR = pipeFds.dref(0);
+        this.pipeWR = pipeFds.dref(1);
+
+        this.jobExecutor = new JobExecutor(mock(Display.class,
+                                                RETURNS_DEEP_STUBS),
+                                           this.pipeR,
+                                           this.pipeWR,
+                                           this.nativeLibc);
+        this.jobExecutor.start();
+        this.job = () -> blackhole.consume(this);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.nativeLibc.close(this.pipeR);
+        this.nativeLibc.close(this.pipeWR);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(JOBS)
+    public void submitAndHandle() {
+        for (int i = 0; i < JOBS; i++) {
+            this.jobExecutor.submit(this.job);
+        }
+        this.jobExecutor.handle(this.pipeR,
+                                0);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import org.freedesktop.wayland.server.Display;
+import org.freedesktop.wayland.server.WlKeyboardResource;
+import org.freedesktop.wayland.shared.WlKeyboardKeyState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.westford.benchmarks.Natives;
+import org.westford.nativ.NativeFileFactory;
+import org.westford.nativ.libxkbcommon.Libxkbcommon;
+import org.westford.nativ.linux.InputEventCodes;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * A key press followed by a release, without a focused surface. Uses a real xkb keymap when xkbcommon is available.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyboardDeviceBenchmark {
+
+    @Param(Natives.REAL)
+    public String xkbcommon;
+    @Param(Natives.REAL)
+    public String libc;
+
+    private KeyboardDevice          keyboardDevice;
+    private Set<WlKeyboardResource> wlKeyboardResources;
+    private int                     time;
+
+    @Setup
+    public void setUp() {
+        final Libxkbcommon libxkbcommon = Natives.libxkbcommon(this.xkbcommon);
+        final Xkb          xkb;
+        if (Natives.STUB.equals(this.xkbcommon)) {
+            xkb = new Xkb(libxkbcommon,
+                          0L,
+                          0L,
+                          0L);
+        }
+        else {
+            //default rules, model, layout, variant & options
+            final long context = libxkbcommon.xkb_context_new(Libxkbcommon.XKB_CONTEXT_NO_FLAGS);
+            final long keymap = libxkbcommon.xkb_keymap_new_from_names(context,
+                                                                       0L,
+                                                                       Libxkbcommon.XKB_KEYMAP_COMPILE_NO_FLAGS);
+            xkb = new Xkb(libxkbcommon,
+                          context,
+                          libxkbcommon.xkb_state_new(keymap),
+                          keymap);
+        }
+
+        this.keyboardDevice = new KeyboardDevice(mock(Display.class),
+                                                 mock(NativeFileFactory.class),
+                                                 Natives.libc(this.libc),
+                                                 libxkbcommon,
+                                                 xkb);
+        this.wlKeyboardResources = Collections.emptySet();
+    }
+
+    @Benchmark
+    public void key() {
+        this.keyboardDevice.key(this.wlKeyboardResources,
+                                this.time++,
+                                InputEventCodes.KEY_A,
+                                WlKeyboardKeyState.PRESSED);
+        this.keyboardDevice.key(this.wlKeyboardResources,
+                                this.time++,
+                                InputEventCodes.KEY_A,
+                                WlKeyboardKeyState.RELEASED);
+    }
+}
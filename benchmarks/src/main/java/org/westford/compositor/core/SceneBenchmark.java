@@ -0,0 +1,83 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import org.freedesktop.wayland.server.WlSurfaceResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Picks surfaces in a stack of overlapping surfaces. The bottom surface is the only one under the picked point, so the
+ * whole stack is visited.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SceneBenchmark {
+
+    @Param({"10",
+            "100",
+            "1000"})
+    public int surfaces;
+
+    private Scene scene;
+    private Point bottomOnly;
+
+    @Setup
+    public void setUp() {
+        this.scene = new Scene(new InfiniteRegion(mock(FiniteRegionFactory.class)));
+
+        //bottom surface covers the origin, all others are stacked above it, next to the origin.
+        this.scene.getSurfacesStack()
+                  .add(BenchmarkSurfaces.wlSurfaceResource(BenchmarkSurfaces.surface(Point.create(0,
+                                                                                                  0),
+                                                                                     100,
+                                                                                     100)));
+        for (int i = 1; i < this.surfaces; i++) {
+            this.scene.getSurfacesStack()
+                      .add(BenchmarkSurfaces.wlSurfaceResource(BenchmarkSurfaces.surface(Point.create(200 + i,
+                                                                                                      200 + i),
+                                                                                         640,
+                                                                                         480)));
+        }
+        this.bottomOnly = Point.create(50,
+                                       50);
+    }
+
+    @Benchmark
+    public Optional<WlSurfaceResource> pickSurface() {
+        return this.scene.pickSurface(this.bottomOnly);
+    }
+}
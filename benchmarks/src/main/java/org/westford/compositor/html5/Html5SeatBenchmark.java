@@ -0,0 +1,79 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.html5;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.westford.compositor.protocol.WlSeat;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Parsing of html5 client input messages. The seat is stubbed, so this measures message parsing and dispatching only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class Html5SeatBenchmark {
+
+    @Param({"pm",
+            "pd",
+            "kd"})
+    public String type;
+
+    private Html5Seat html5Seat;
+    private String    message;
+
+    @Setup
+    public void setUp() {
+        this.html5Seat = new Html5Seat(mock(WlSeat.class,
+                                            withSettings().stubOnly()
+                                                          .defaultAnswer(RETURNS_DEEP_STUBS)));
+        switch (this.type) {
+            case "pm":
+                this.message = "pmx1234y567t1480000000123";
+                break;
+            case "pd":
+                this.message = "pd0t1480000000123";
+                break;
+            default:
+                this.message = "kd30t1480000000123";
+        }
+    }
+
+    @Benchmark
+    public void handle() {
+        this.html5Seat.handle(this.message);
+    }
+}
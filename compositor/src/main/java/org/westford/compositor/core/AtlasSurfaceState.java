@@ -0,0 +1,69 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.Optional;
+
+/**
+ * Render state of a small shm surface that lives in a slot of a shared texture atlas instead of having a texture of
+ * its own.
+ */
+@AutoValue
+public abstract class AtlasSurfaceState implements SurfaceRenderState {
+
+    public static AtlasSurfaceState create(@Nonnegative final int pitch,
+                                           @Nonnegative final int height,
+                                           final int shaderProgram,
+                                           final int glFormat,
+                                           final int glPixelType,
+                                           @Nonnull final Rectangle slot) {
+        return new AutoValue_AtlasSurfaceState(pitch,
+                                               height,
+                                               shaderProgram,
+                                               glFormat,
+                                               glPixelType,
+                                               slot);
+    }
+
+    @Nonnegative
+    public abstract int getPitch();
+
+    @Nonnegative
+    public abstract int getHeight();
+
+    public abstract int getShaderProgram();
+
+    public abstract int getGlFormat();
+
+    public abstract int getGlPixelType();
+
+    /**
+     * @return the area of the atlas that is reserved for this surface. It can be larger than the surface.
+     */
+    @Nonnull
+    public abstract Rectangle getSlot();
+
+    @Override
+    public Optional<SurfaceRenderState> accept(final SurfaceRenderStateVisitor surfaceRenderStateVisitor) {
+        return surfaceRenderStateVisitor.visit(this);
+    }
+}
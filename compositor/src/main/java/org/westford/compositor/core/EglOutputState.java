@@ -21,18 +21,26 @@ import com.google.auto.value.AutoValue;
 import org.westford.compositor.core.calc.Mat4;
 
 import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
 
 @AutoValue
 public abstract class EglOutputState {
 
     public static Builder builder() {
-        return new AutoValue_EglOutputState.Builder();
+        return new AutoValue_EglOutputState.Builder().damageHistory(Collections.emptyList());
     }
-    //TODO damage
 
     @Nonnull
     public abstract Mat4 getGlTransform();
 
+    /**
+     * @return the bounding box of the damage of the most recently swapped frames, newest first. Used to find what to
+     * repaint in a back buffer that still holds an older frame.
+     */
+    @Nonnull
+    public abstract List<Rectangle> getDamageHistory();
+
     public abstract Builder toBuilder();
 
     @AutoValue.Builder
@@ -40,6 +48,8 @@ public abstract class EglOutputState {
 
         Builder glTransform(Mat4 glTransform);
 
+        Builder damageHistory(List<Rectangle> damageHistory);
+
         EglOutputState build();
     }
 }
@@ -20,6 +20,7 @@ package org.westford.compositor.core;
 import com.google.auto.factory.AutoFactory;
 import com.google.auto.factory.Provided;
 import org.freedesktop.jaccall.Pointer;
+import org.westford.nativ.ScratchArena;
 import org.westford.nativ.libpixman1.Libpixman1;
 import org.westford.nativ.libpixman1.pixman_box32;
 import org.westford.nativ.libpixman1.pixman_region32;
@@ -29,23 +30,26 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
-import static org.freedesktop.jaccall.Pointer.malloc;
-
+/**
+ * A region backed by a native pixman region. The native storage comes from the {@link FiniteRegionPool} and must be
+ * given back by closing the region once it is no longer used.
+ */
 @AutoFactory(className = "FiniteRegionFactory",
              allowSubclasses = true)
 public class FiniteRegion implements Region {
 
     private final Libpixman1               libpixman1;
     private final FiniteRegionFactory      finiteRegionFactory;
-    private final Pointer<pixman_region32> pixman_region32Pointer;
+    private final FiniteRegionPool.Tracker tracker;
+
+    private boolean closed;
 
     public FiniteRegion(@Provided final Libpixman1 libpixman1,
                         @Provided final FiniteRegionFactory finiteRegionFactory) {
         this.libpixman1 = libpixman1;
         this.finiteRegionFactory = finiteRegionFactory;
-        this.pixman_region32Pointer = malloc(pixman_region32.SIZE,
-                                             pixman_region32.class);
-        this.libpixman1.pixman_region32_init(this.pixman_region32Pointer.address);
+        this.tracker = FiniteRegionPool.INSTANCE.acquire(this,
+                                                         libpixman1);
     }
 
     @Override
@@ -56,12 +60,17 @@ public class FiniteRegion implements Region {
     @Nonnull
     @Override
     public List<Rectangle> asList() {
-        //int pointer
-        final Pointer<Integer> n_rects = Pointer.nref(0);
-        final Pointer<pixman_box32> pixman_box32_array = Pointer.wrap(pixman_box32.class,
-                                                                      this.libpixman1.pixman_region32_rectangles(this.pixman_region32Pointer.address,
-                                                                                                                 n_rects.address));
-        final int             size  = n_rects.dref();
+        final ScratchArena          arena = ScratchArena.get();
+        final Pointer<pixman_box32> pixman_box32_array;
+        final int                   size;
+        try (ScratchArena.Scope scope = arena.scope()) {
+            //int pointer
+            final Pointer<Integer> n_rects = arena.nref(0);
+            pixman_box32_array = Pointer.wrap(pixman_box32.class,
+                                              this.libpixman1.pixman_region32_rectangles(getPixmanRegion32().address,
+                                                                                         n_rects.address));
+            size = n_rects.dref();
+        }
         final List<Rectangle> boxes = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
             final pixman_box32 pixman_box32 = pixman_box32_array.dref(i);
@@ -96,20 +105,23 @@ public class FiniteRegion implements Region {
     }
 
     public void add(@Nonnull final FiniteRegion region) {
-        this.libpixman1.pixman_region32_union(this.pixman_region32Pointer.address,
-                                              this.pixman_region32Pointer.address,
+        this.libpixman1.pixman_region32_union(getPixmanRegion32().address,
+                                              getPixmanRegion32().address,
                                               region.getPixmanRegion32().address);
     }
 
     @Nonnull
     public Pointer<pixman_region32> getPixmanRegion32() {
-        return this.pixman_region32Pointer;
+        if (this.closed) {
+            throw new IllegalStateException("Region is closed.");
+        }
+        return this.tracker.getPixmanRegion32();
     }
 
     @Override
     public void add(@Nonnull final Rectangle rectangle) {
-        this.libpixman1.pixman_region32_union_rect(this.pixman_region32Pointer.address,
-                                                   this.pixman_region32Pointer.address,
+        this.libpixman1.pixman_region32_union_rect(getPixmanRegion32().address,
+                                                   getPixmanRegion32().address,
                                                    rectangle.getX(),
                                                    rectangle.getY(),
                                                    rectangle.getWidth(),
@@ -118,20 +130,25 @@ public class FiniteRegion implements Region {
 
     @Override
     public void subtract(@Nonnull final Rectangle rectangle) {
-        final Pointer<pixman_region32> delta_pixman_region32 = Pointer.ref(new pixman_region32());
-        this.libpixman1.pixman_region32_init_rect(delta_pixman_region32.address,
-                                                  rectangle.getX(),
-                                                  rectangle.getY(),
-                                                  rectangle.getWidth(),
-                                                  rectangle.getHeight());
-        this.libpixman1.pixman_region32_subtract(this.pixman_region32Pointer.address,
-                                                 this.pixman_region32Pointer.address,
-                                                 delta_pixman_region32.address);
+        final ScratchArena arena = ScratchArena.get();
+        try (ScratchArena.Scope scope = arena.scope()) {
+            final Pointer<pixman_region32> delta_pixman_region32 = arena.allocate(pixman_region32.SIZE,
+                                                                                  pixman_region32.class);
+            this.libpixman1.pixman_region32_init_rect(delta_pixman_region32.address,
+                                                      rectangle.getX(),
+                                                      rectangle.getY(),
+                                                      rectangle.getWidth(),
+                                                      rectangle.getHeight());
+            this.libpixman1.pixman_region32_subtract(getPixmanRegion32().address,
+                                                     getPixmanRegion32().address,
+                                                     delta_pixman_region32.address);
+            this.libpixman1.pixman_region32_fini(delta_pixman_region32.address);
+        }
     }
 
     @Override
     public boolean contains(@Nonnull final Point point) {
-        return this.libpixman1.pixman_region32_contains_point(this.pixman_region32Pointer.address,
+        return this.libpixman1.pixman_region32_contains_point(getPixmanRegion32().address,
                                                               point.getX(),
                                                               point.getY(),
                                                               0L) != 0;
@@ -140,28 +157,25 @@ public class FiniteRegion implements Region {
     @Override
     public boolean contains(@Nonnull final Rectangle clipping,
                             @Nonnull final Point point) {
-        //fast path
-        if (clipping.getWidth() == 0 && clipping.getHeight() == 0) {
+        //a point is inside the clipped region if it is inside both the clipping and the region, no need to modify or
+        //copy the region.
+        final int x = point.getX();
+        final int y = point.getY();
+        if (x < clipping.getX() ||
+            y < clipping.getY() ||
+            x >= clipping.getX() + clipping.getWidth() ||
+            y >= clipping.getY() + clipping.getHeight()) {
             return false;
         }
-        this.libpixman1.pixman_region32_intersect_rect(this.pixman_region32Pointer.address,
-                                                       this.pixman_region32Pointer.address,
-                                                       clipping.getX(),
-                                                       clipping.getY(),
-                                                       clipping.getWidth(),
-                                                       clipping.getHeight());
-        return this.libpixman1.pixman_region32_contains_point(this.pixman_region32Pointer.address,
-                                                              point.getX(),
-                                                              point.getY(),
-                                                              0L) != 0;
+        return contains(point);
     }
 
     @Override
     public Region intersect(@Nonnull final Rectangle rectangle) {
         final FiniteRegion region = this.finiteRegionFactory.create();
 
-        this.libpixman1.pixman_region32_intersect_rect(region.pixman_region32Pointer.address,
-                                                       this.pixman_region32Pointer.address,
+        this.libpixman1.pixman_region32_intersect_rect(region.getPixmanRegion32().address,
+                                                       getPixmanRegion32().address,
                                                        rectangle.getX(),
                                                        rectangle.getY(),
                                                        rectangle.getWidth(),
@@ -170,19 +184,27 @@ public class FiniteRegion implements Region {
         return region;
     }
 
+    /**
+     * Give back the native storage of this region. The region can not be used afterwards. Closing a region more than
+     * once has no effect.
+     */
     @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        this.pixman_region32Pointer.close();
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        FiniteRegionPool.INSTANCE.release(this.tracker,
+                                          this.libpixman1);
     }
 
     public void remove(final FiniteRegion region) {
-        this.libpixman1.pixman_region32_subtract(this.pixman_region32Pointer.address,
-                                                 this.pixman_region32Pointer.address,
+        this.libpixman1.pixman_region32_subtract(getPixmanRegion32().address,
+                                                 getPixmanRegion32().address,
                                                  region.getPixmanRegion32().address);
     }
 
     public void clear() {
-        this.libpixman1.pixman_region32_clear(this.pixman_region32Pointer.address);
+        this.libpixman1.pixman_region32_clear(getPixmanRegion32().address);
     }
 }
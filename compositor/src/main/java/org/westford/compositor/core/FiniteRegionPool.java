@@ -0,0 +1,210 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import org.freedesktop.jaccall.Pointer;
+import org.westford.nativ.libpixman1.Libpixman1;
+import org.westford.nativ.libpixman1.pixman_region32;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.freedesktop.jaccall.Pointer.malloc;
+
+/**
+ * Recycles the native pixman_region32 storage of {@link FiniteRegion}s, so regions that are created and closed at a
+ * high rate, like per commit damage, don't malloc and free each time.
+ * <p/>
+ * As a safety net, regions that are garbage collected without being closed are reclaimed the next time a region is
+ * created, on the creating thread, and logged as leaks. Set {@code westford.region.debug} to also log where leaked
+ * regions were created. Statistics are available as the JMX MBean {@code org.westford:type=FiniteRegionPool}.
+ */
+public final class FiniteRegionPool implements FiniteRegionPoolMBean {
+
+    static final FiniteRegionPool INSTANCE = new FiniteRegionPool();
+
+    private static final Logger  LOGGER     = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+    private static final boolean DEBUG      = Boolean.getBoolean("westford.region.debug");
+    private static final int     MAX_POOLED = 1024;
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(INSTANCE,
+                                            new ObjectName("org.westford:type=FiniteRegionPool"));
+        }
+        catch (final JMException e) {
+            LOGGER.log(Level.WARNING,
+                       "Failed to register finite region pool MBean.",
+                       e);
+        }
+    }
+
+    private final Deque<Pointer<pixman_region32>> pooled    = new ArrayDeque<>();
+    private final ReferenceQueue<FiniteRegion>    leakQueue = new ReferenceQueue<>();
+    /*
+     * keeps the trackers of live regions reachable until their region is closed or collected.
+     */
+    private final Set<Tracker>                    trackers  = new HashSet<>();
+
+    private long allocated;
+    private long leaked;
+
+    private FiniteRegionPool() {
+    }
+
+    /**
+     * Take initialized native region storage for a new region.
+     *
+     * @param region     the region that will own the storage.
+     * @param libpixman1 pixman.
+     *
+     * @return a tracker that holds the native region.
+     */
+    @Nonnull
+    synchronized Tracker acquire(@Nonnull final FiniteRegion region,
+                                 @Nonnull final Libpixman1 libpixman1) {
+        reclaimLeaks(libpixman1);
+
+        Pointer<pixman_region32> pixman_region32Pointer = this.pooled.poll();
+        if (pixman_region32Pointer == null) {
+            pixman_region32Pointer = malloc(pixman_region32.SIZE,
+                                            pixman_region32.class);
+            this.allocated++;
+        }
+        libpixman1.pixman_region32_init(pixman_region32Pointer.address);
+
+        final Tracker tracker = new Tracker(region,
+                                            this.leakQueue,
+                                            pixman_region32Pointer,
+                                            DEBUG ? Arrays.toString(new Throwable().getStackTrace()) : null);
+        this.trackers.add(tracker);
+        return tracker;
+    }
+
+    /**
+     * Give back the native storage of a closed region.
+     *
+     * @param tracker    the tracker returned when the region was created.
+     * @param libpixman1 pixman.
+     */
+    synchronized void release(@Nonnull final Tracker tracker,
+                              @Nonnull final Libpixman1 libpixman1) {
+        if (this.trackers.remove(tracker)) {
+            tracker.clear();
+            recycle(tracker.pixman_region32Pointer,
+                    libpixman1);
+        }
+    }
+
+    private void recycle(final Pointer<pixman_region32> pixman_region32Pointer,
+                         final Libpixman1 libpixman1) {
+        //frees any rectangle data pixman allocated for the region
+        libpixman1.pixman_region32_fini(pixman_region32Pointer.address);
+        if (this.pooled.size() < MAX_POOLED) {
+            this.pooled.push(pixman_region32Pointer);
+        }
+        else {
+            pixman_region32Pointer.close();
+        }
+    }
+
+    private void reclaimLeaks(final Libpixman1 libpixman1) {
+        int          count = 0;
+        Reference<?> reference;
+        while ((reference = this.leakQueue.poll()) != null) {
+            final Tracker tracker = (Tracker) reference;
+            if (this.trackers.remove(tracker)) {
+                count++;
+                recycle(tracker.pixman_region32Pointer,
+                        libpixman1);
+                if (tracker.creationSite != null) {
+                    LOGGER.warning("Leaked region created at " + tracker.creationSite);
+                }
+            }
+        }
+
+        if (count > 0) {
+            this.leaked += count;
+            LOGGER.warning(String.format("Reclaimed %d region(s) that were not closed, %d in total.",
+                                         count,
+                                         this.leaked));
+        }
+    }
+
+    @Override
+    public synchronized long getLive() {
+        return this.trackers.size();
+    }
+
+    @Override
+    public synchronized long getPooled() {
+        return this.pooled.size();
+    }
+
+    @Override
+    public synchronized long getAllocated() {
+        return this.allocated;
+    }
+
+    @Override
+    public synchronized long getLeaked() {
+        return this.leaked;
+    }
+
+    @Override
+    public synchronized long getNativeBytes() {
+        return (long) (this.trackers.size() + this.pooled.size()) * pixman_region32.SIZE;
+    }
+
+    static final class Tracker extends PhantomReference<FiniteRegion> {
+
+        @Nonnull
+        private final Pointer<pixman_region32> pixman_region32Pointer;
+        @Nullable
+        private final String                   creationSite;
+
+        private Tracker(@Nonnull final FiniteRegion region,
+                        @Nonnull final ReferenceQueue<FiniteRegion> leakQueue,
+                        @Nonnull final Pointer<pixman_region32> pixman_region32Pointer,
+                        @Nullable final String creationSite) {
+            super(region,
+                  leakQueue);
+            this.pixman_region32Pointer = pixman_region32Pointer;
+            this.creationSite = creationSite;
+        }
+
+        @Nonnull
+        Pointer<pixman_region32> getPixmanRegion32() {
+            return this.pixman_region32Pointer;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+/**
+ * JMX view of the native storage used by {@link FiniteRegion}s.
+ */
+public interface FiniteRegionPoolMBean {
+
+    /**
+     * @return the number of regions that are not closed yet.
+     */
+    long getLive();
+
+    /**
+     * @return the number of recycled native regions waiting to be reused.
+     */
+    long getPooled();
+
+    /**
+     * @return the number of native regions that were malloc'ed since startup.
+     */
+    long getAllocated();
+
+    /**
+     * @return the number of regions that were garbage collected without being closed.
+     */
+    long getLeaked();
+
+    /**
+     * @return the bytes of native region headers held by live and pooled regions. Rectangle data allocated by pixman
+     * itself is not included.
+     */
+    long getNativeBytes();
+}
@@ -0,0 +1,256 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+
+/**
+ * Frame timings of a single output. Renderers and outputs record into it from the thread they run on, it can be read
+ * from any thread.
+ */
+public class FrameStats implements FrameStatsMBean {
+
+    @Nonnull
+    private final String    outputName;
+    private final Histogram renderCpu      = new Histogram();
+    private final Histogram gpu            = new Histogram();
+    private final Histogram swap           = new Histogram();
+    private final Histogram pageFlip       = new Histogram();
+    private final Histogram refresh        = new Histogram();
+    private final Histogram surfacesDrawn  = new Histogram();
+    private final Histogram textureUploads = new Histogram();
+    private final Histogram gpuCalls       = new Histogram();
+    private final AtomicLong missedDeadlines = new AtomicLong();
+
+    FrameStats(@Nonnull final String outputName) {
+        this.outputName = outputName;
+    }
+
+    /**
+     * Record a rendered frame.
+     *
+     * @param renderCpuNanos cpu time spent preparing and issuing the frame, excluding the swap.
+     * @param swapNanos      time spent swapping the frame.
+     * @param surfacesDrawn  the number of surfaces drawn.
+     * @param textureBytes   the number of texture bytes uploaded for this frame.
+     * @param gpuCalls       the number of draw calls, texture uploads and swaps issued for this frame.
+     */
+    public void recordFrame(@Nonnegative final long renderCpuNanos,
+                            @Nonnegative final long swapNanos,
+                            @Nonnegative final int surfacesDrawn,
+                            @Nonnegative final long textureBytes,
+                            @Nonnegative final int gpuCalls) {
+        this.renderCpu.record(TimeUnit.NANOSECONDS.toMicros(renderCpuNanos));
+        this.swap.record(TimeUnit.NANOSECONDS.toMicros(swapNanos));
+        this.surfacesDrawn.record(surfacesDrawn);
+        this.textureUploads.record(textureBytes);
+        this.gpuCalls.record(gpuCalls);
+    }
+
+    public void recordGpu(@Nonnegative final long gpuNanos) {
+        this.gpu.record(TimeUnit.NANOSECONDS.toMicros(gpuNanos));
+    }
+
+    public void recordPageFlip(@Nonnegative final long pageFlipNanos) {
+        this.pageFlip.record(TimeUnit.NANOSECONDS.toMicros(pageFlipNanos));
+    }
+
+    /**
+     * Record the time between the vblanks of 2 consecutive frames.
+     *
+     * @param refreshNanos time since the vblank of the previous frame.
+     */
+    public void recordRefresh(@Nonnegative final long refreshNanos) {
+        this.refresh.record(TimeUnit.NANOSECONDS.toMicros(refreshNanos));
+    }
+
+    /**
+     * Record a frame that was shown at least one vblank later than predicted.
+     */
+    public void recordMissedDeadline() {
+        this.missedDeadlines.incrementAndGet();
+    }
+
+    @Override
+    public String getOutputName() {
+        return this.outputName;
+    }
+
+    @Override
+    public long getFrames() {
+        return this.renderCpu.getCount();
+    }
+
+    @Override
+    public long getRenderCpuMeanMicros() {
+        return this.renderCpu.getMean();
+    }
+
+    @Override
+    public long getRenderCpuP99Micros() {
+        return this.renderCpu.getPercentile(99);
+    }
+
+    @Override
+    public long getRenderCpuMaxMicros() {
+        return this.renderCpu.getMax();
+    }
+
+    @Override
+    public long getGpuMeanMicros() {
+        return this.gpu.getMean();
+    }
+
+    @Override
+    public long getGpuP99Micros() {
+        return this.gpu.getPercentile(99);
+    }
+
+    @Override
+    public long getGpuMaxMicros() {
+        return this.gpu.getMax();
+    }
+
+    @Override
+    public long getSwapMeanMicros() {
+        return this.swap.getMean();
+    }
+
+    @Override
+    public long getSwapP99Micros() {
+        return this.swap.getPercentile(99);
+    }
+
+    @Override
+    public long getSwapMaxMicros() {
+        return this.swap.getMax();
+    }
+
+    @Override
+    public long getPageFlipMeanMicros() {
+        return this.pageFlip.getMean();
+    }
+
+    @Override
+    public long getPageFlipP99Micros() {
+        return this.pageFlip.getPercentile(99);
+    }
+
+    @Override
+    public long getPageFlipMaxMicros() {
+        return this.pageFlip.getMax();
+    }
+
+    @Override
+    public long getRefreshMeanMicros() {
+        return this.refresh.getMean();
+    }
+
+    @Override
+    public long getRefreshMaxMicros() {
+        return this.refresh.getMax();
+    }
+
+    @Override
+    public double getEffectiveRefreshRate() {
+        final long refreshMean = getRefreshMeanMicros();
+        return refreshMean == 0L ? 0.0 : TimeUnit.SECONDS.toMicros(1) / (double) refreshMean;
+    }
+
+    @Override
+    public long getMissedDeadlines() {
+        return this.missedDeadlines.get();
+    }
+
+    @Override
+    public long getSurfacesDrawnMean() {
+        return this.surfacesDrawn.getMean();
+    }
+
+    @Override
+    public long getSurfacesDrawnMax() {
+        return this.surfacesDrawn.getMax();
+    }
+
+    @Override
+    public long getTextureBytesUploaded() {
+        return this.textureUploads.getSum();
+    }
+
+    @Override
+    public long getTextureBytesUploadedMax() {
+        return this.textureUploads.getMax();
+    }
+
+    @Override
+    public long getGpuCallsMean() {
+        return this.gpuCalls.getMean();
+    }
+
+    @Override
+    public long getGpuCallsMax() {
+        return this.gpuCalls.getMax();
+    }
+
+    @Override
+    public void reset() {
+        this.renderCpu.reset();
+        this.gpu.reset();
+        this.swap.reset();
+        this.pageFlip.reset();
+        this.refresh.reset();
+        this.surfacesDrawn.reset();
+        this.textureUploads.reset();
+        this.gpuCalls.reset();
+        this.missedDeadlines.set(0L);
+    }
+
+    @Override
+    public String toString() {
+        return format("%s: %d frames, cpu avg/p99/max %d/%d/%dus, gpu avg/p99/max %d/%d/%dus, swap avg/p99/max %d/%d/%dus, page flip avg/p99/max %d/%d/%dus, refresh %.1fHz avg/max %d/%dus, %d missed deadlines, surfaces avg/max %d/%d, texture upload total/max %d/%d bytes, gpu calls avg/max %d/%d",
+                      this.outputName,
+                      getFrames(),
+                      getRenderCpuMeanMicros(),
+                      getRenderCpuP99Micros(),
+                      getRenderCpuMaxMicros(),
+                      getGpuMeanMicros(),
+                      getGpuP99Micros(),
+                      getGpuMaxMicros(),
+                      getSwapMeanMicros(),
+                      getSwapP99Micros(),
+                      getSwapMaxMicros(),
+                      getPageFlipMeanMicros(),
+                      getPageFlipP99Micros(),
+                      getPageFlipMaxMicros(),
+                      getEffectiveRefreshRate(),
+                      getRefreshMeanMicros(),
+                      getRefreshMaxMicros(),
+                      getMissedDeadlines(),
+                      getSurfacesDrawnMean(),
+                      getSurfacesDrawnMax(),
+                      getTextureBytesUploaded(),
+                      getTextureBytesUploadedMax(),
+                      getGpuCallsMean(),
+                      getGpuCallsMax());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+/**
+ * JMX view of the frame timings of a single output. All times are in microseconds.
+ */
+public interface FrameStatsMBean {
+
+    String getOutputName();
+
+    long getFrames();
+
+    long getRenderCpuMeanMicros();
+
+    long getRenderCpuP99Micros();
+
+    long getRenderCpuMaxMicros();
+
+    /**
+     * @return the mean gpu time, or 0 if GL_EXT_disjoint_timer_query is not available.
+     */
+    long getGpuMeanMicros();
+
+    long getGpuP99Micros();
+
+    long getGpuMaxMicros();
+
+    long getSwapMeanMicros();
+
+    long getSwapP99Micros();
+
+    long getSwapMaxMicros();
+
+    /**
+     * @return the mean time between requesting a page flip and it being completed, or 0 if the output does not
+     * report page flips.
+     */
+    long getPageFlipMeanMicros();
+
+    long getPageFlipP99Micros();
+
+    long getPageFlipMaxMicros();
+
+    /**
+     * @return the mean time between the vblanks of consecutive frames, or 0 if the output does not report page flips.
+     */
+    long getRefreshMeanMicros();
+
+    long getRefreshMaxMicros();
+
+    /**
+     * @return the rate at which new frames were shown, in Hz. Lower than the refresh rate of the mode when frames are
+     * skipped, or when the output refreshes at a variable rate.
+     */
+    double getEffectiveRefreshRate();
+
+    /**
+     * @return the number of frames that were shown at least one vblank later than predicted, or 0 if the output does
+     * not report page flips.
+     */
+    long getMissedDeadlines();
+
+    long getSurfacesDrawnMean();
+
+    long getSurfacesDrawnMax();
+
+    long getTextureBytesUploaded();
+
+    long getTextureBytesUploadedMax();
+
+    /**
+     * @return the mean number of gpu calls of a frame: draw calls, texture uploads and the swap.
+     */
+    long getGpuCallsMean();
+
+    long getGpuCallsMax();
+
+    void reset();
+}
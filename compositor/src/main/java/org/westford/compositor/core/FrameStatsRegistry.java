@@ -0,0 +1,109 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import org.freedesktop.wayland.server.Display;
+import org.freedesktop.wayland.server.EventSource;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the {@link FrameStats} of every output. Each {@link FrameStats} is registered as a JMX MBean named
+ * {@code org.westford:type=FrameStats,output=<output name>} and a summary is logged periodically at {@link Level#FINE}.
+ */
+@Singleton
+public class FrameStatsRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    private static final int REPORT_INTERVAL = (int) TimeUnit.SECONDS.toMillis(10);
+
+    @Nonnull
+    private final Display                 display;
+    @Nonnull
+    private final Map<String, FrameStats> frameStats  = new ConcurrentHashMap<>();
+    @Nonnull
+    private       Optional<EventSource>   reportTimer = Optional.empty();
+
+    @Inject
+    FrameStatsRegistry(@Nonnull final Display display) {
+        this.display = display;
+    }
+
+    /**
+     * Get the frame stats of an output, creating and registering them if needed. Must be called from the compositor
+     * thread.
+     *
+     * @param output the output.
+     *
+     * @return the frame stats of the output.
+     */
+    @Nonnull
+    public FrameStats get(@Nonnull final Output output) {
+        return this.frameStats.computeIfAbsent(output.getName(),
+                                               this::create);
+    }
+
+    @Nonnull
+    public Map<String, FrameStats> getAll() {
+        return this.frameStats;
+    }
+
+    private FrameStats create(@Nonnull final String outputName) {
+        final FrameStats frameStats = new FrameStats(outputName);
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(frameStats,
+                                            new ObjectName("org.westford:type=FrameStats,output=" + ObjectName.quote(outputName)));
+        }
+        catch (final JMException e) {
+            LOGGER.log(Level.WARNING,
+                       "Failed to register frame stats MBean for output " + outputName,
+                       e);
+        }
+
+        if (!this.reportTimer.isPresent()) {
+            final EventSource reportTimer = this.display.getEventLoop()
+                                                        .addTimer(this::report);
+            reportTimer.updateTimer(REPORT_INTERVAL);
+            this.reportTimer = Optional.of(reportTimer);
+        }
+
+        return frameStats;
+    }
+
+    private int report() {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            this.frameStats.values()
+                           .forEach(frameStats -> LOGGER.fine(frameStats.toString()));
+        }
+        this.reportTimer.ifPresent(eventSource -> eventSource.updateTimer(REPORT_INTERVAL));
+        return 0;
+    }
+}
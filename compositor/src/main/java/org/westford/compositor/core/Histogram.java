@@ -0,0 +1,114 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import javax.annotation.Nonnegative;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non negative values using power of 2 buckets. Values can be recorded from any thread while
+ * being read from another, eg. the compositor thread recording and a JMX client reading.
+ * <p>
+ * Percentiles are approximate: they return the upper bound of the bucket that contains the requested percentile.
+ */
+public class Histogram {
+
+    private static final int BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong      count   = new AtomicLong();
+    private final AtomicLong      sum     = new AtomicLong();
+    private final AtomicLong      max     = new AtomicLong();
+
+    public void record(@Nonnegative final long value) {
+        final long v = Math.max(0L,
+                                value);
+        //bucket i holds values in [2^(i-1), 2^i - 1], bucket 0 holds 0.
+        this.buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(v));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(v);
+        long currentMax;
+        while (v > (currentMax = this.max.get()) && !this.max.compareAndSet(currentMax,
+                                                                            v)) {
+            //retry
+        }
+    }
+
+    @Nonnegative
+    public long getCount() {
+        return this.count.get();
+    }
+
+    @Nonnegative
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    @Nonnegative
+    public long getMax() {
+        return this.max.get();
+    }
+
+    @Nonnegative
+    public long getMean() {
+        final long count = this.count.get();
+        return count == 0L ? 0L : this.sum.get() / count;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100.
+     *
+     * @return the upper bound of the bucket containing the given percentile, or 0 if nothing was recorded.
+     */
+    @Nonnegative
+    public long getPercentile(final double percentile) {
+        final long count = this.count.get();
+        if (count == 0L) {
+            return 0L;
+        }
+
+        final long rank = (long) Math.ceil(count * Math.min(100.0,
+                                                             Math.max(0.0,
+                                                                      percentile)) / 100.0);
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) {
+                //never report more than we've actually seen.
+                return Math.min(upperBound(i),
+                                this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    private static long upperBound(final int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1L;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i,
+                             0L);
+        }
+        this.count.set(0L);
+        this.sum.set(0L);
+        this.max.set(0L);
+    }
+}
@@ -64,9 +64,10 @@ public class InfiniteRegion implements Region {
     @Override
     public boolean contains(@Nonnull final Rectangle clipping,
                             @Nonnull final Point point) {
-        final FiniteRegion finiteRegion = this.finiteRegionFactory.create();
-        finiteRegion.add(clipping);
-        return finiteRegion.contains(point);
+        try (FiniteRegion finiteRegion = this.finiteRegionFactory.create()) {
+            finiteRegion.add(clipping);
+            return finiteRegion.contains(point);
+        }
     }
 
     @Override
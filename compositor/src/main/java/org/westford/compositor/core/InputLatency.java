@@ -0,0 +1,106 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.lang.String.format;
+
+/**
+ * Keeps track of the time between an input event being generated and it being delivered to clients. A summary is
+ * logged periodically at {@link Level#FINE}. Must only be used from the compositor thread.
+ */
+public class InputLatency {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    @Nonnull
+    private final String name;
+
+    private long count;
+    private long totalMicros;
+    private long maxMicros;
+    private long lastReport = System.nanoTime();
+
+    public InputLatency(@Nonnull final String name) {
+        this.name = name;
+    }
+
+    /**
+     * The current time in microseconds, using the same clock (CLOCK_MONOTONIC) as kernel input event timestamps.
+     *
+     * @return the current time in microseconds.
+     */
+    public static long nowMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime());
+    }
+
+    /**
+     * Record the delivery of an input event.
+     *
+     * @param eventMicros the time the event was generated or read, as returned by {@link #nowMicros()}.
+     */
+    public void delivered(final long eventMicros) {
+        final long now     = System.nanoTime();
+        final long latency = Math.max(0,
+                                      TimeUnit.NANOSECONDS.toMicros(now) - eventMicros);
+        this.count++;
+        this.totalMicros += latency;
+        this.maxMicros = Math.max(this.maxMicros,
+                                  latency);
+
+        if (now - this.lastReport >= REPORT_INTERVAL) {
+            report();
+            this.lastReport = now;
+        }
+    }
+
+    private void report() {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(format("%s input latency: %d events, avg %d us, max %d us",
+                               this.name,
+                               this.count,
+                               getAverageMicros(),
+                               this.maxMicros));
+        }
+        this.count = 0;
+        this.totalMicros = 0;
+        this.maxMicros = 0;
+    }
+
+    @Nonnegative
+    public long getAverageMicros() {
+        return this.count == 0 ? 0 : this.totalMicros / this.count;
+    }
+
+    @Nonnegative
+    public long getMaxMicros() {
+        return this.maxMicros;
+    }
+
+    @Nonnegative
+    public long getCount() {
+        return this.count;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import org.freedesktop.jaccall.Pointer;
+import org.freedesktop.wayland.server.Display;
+import org.freedesktop.wayland.server.EventLoop;
+import org.freedesktop.wayland.server.EventSource;
+import org.freedesktop.wayland.server.jaccall.WaylandServerCore;
+import org.westford.Slot;
+import org.westford.nativ.glibc.Libc;
+
+import javax.annotation.Nonnull;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hands off input events from a single input thread to the compositor thread without locking.
+ * <p/>
+ * Events are written into a preallocated ring of reusable slots. The input thread claims a slot, fills it in and
+ * publishes it. The compositor thread is woken up through an eventfd and hands each published slot to the consumer
+ * before the slot is reused. The ring supports exactly one producer thread and one consumer thread.
+ *
+ * @param <T> the type of slot.
+ */
+public class InputQueue<T> implements EventLoop.FileDescriptorEventHandler {
+
+    @Nonnull
+    private final Pointer<Long> wakeupBuffer = Pointer.nref(1L);
+    @Nonnull
+    private final Pointer<Long> readBuffer   = Pointer.nref(0L);
+
+    @Nonnull
+    private final AtomicLong    head          = new AtomicLong();
+    @Nonnull
+    private final AtomicLong    tail          = new AtomicLong();
+    @Nonnull
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    @Nonnull
+    private final Display  display;
+    @Nonnull
+    private final Libc     libc;
+    @Nonnull
+    private final Object[] slots;
+    private final int      mask;
+    @Nonnull
+    private final Slot<T>  consumer;
+
+    private int eventFd = -1;
+    @Nonnull
+    private Optional<EventSource> eventSource = Optional.empty();
+
+    /**
+     * @param display     the display whose event loop will consume the events.
+     * @param libc        libc
+     * @param capacity    the number of slots, must be a power of 2.
+     * @param slotFactory creates the reusable slots.
+     * @param consumer    handles published slots on the compositor thread.
+     */
+    public InputQueue(@Nonnull final Display display,
+                      @Nonnull final Libc libc,
+                      final int capacity,
+                      @Nonnull final Supplier<T> slotFactory,
+                      @Nonnull final Slot<T> consumer) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2, got " + capacity);
+        }
+
+        this.display = display;
+        this.libc = libc;
+        this.consumer = consumer;
+        this.mask = capacity - 1;
+        this.slots = new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            this.slots[i] = slotFactory.get();
+        }
+    }
+
+    /**
+     * Start consuming events on the compositor thread.
+     */
+    public void start() {
+        if (this.eventSource.isPresent()) {
+            throw new IllegalStateException("Input queue already started.");
+        }
+
+        this.eventFd = this.libc.eventfd(0,
+                                         Libc.EFD_CLOEXEC | Libc.EFD_NONBLOCK);
+        if (this.eventFd < 0) {
+            throw new RuntimeException("eventfd() failed: " + this.libc.getErrno());
+        }
+        this.eventSource = Optional.of(this.display.getEventLoop()
+                                                   .addFileDescriptor(this.eventFd,
+                                                                      WaylandServerCore.WL_EVENT_READABLE,
+                                                                      this));
+    }
+
+    /**
+     * Stop consuming events. Events that were already published are handled first. The producer thread must be
+     * stopped before calling this method.
+     */
+    public void stop() {
+        this.eventSource.ifPresent(eventSource -> {
+            drain();
+            eventSource.remove();
+            this.libc.close(this.eventFd);
+            this.eventFd = -1;
+            this.eventSource = Optional.empty();
+        });
+    }
+
+    /**
+     * Claim the next free slot. Must only be called from the producer thread. If the ring is full, this method
+     * waits until the compositor thread has consumed a slot.
+     *
+     * @return a slot to be filled in, followed by a call to {@link #publish()}.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public T claim() {
+        final long tail = this.tail.get();
+        while (tail - this.head.get() >= this.slots.length) {
+            //compositor thread is lagging behind, wait for it to catch up.
+            Thread.yield();
+        }
+        return (T) this.slots[(int) (tail & this.mask)];
+    }
+
+    /**
+     * Publish the last claimed slot. Must only be called from the producer thread.
+     */
+    public void publish() {
+        this.tail.incrementAndGet();
+        if (this.wakeupPending.compareAndSet(false,
+                                             true)) {
+            this.libc.write(this.eventFd,
+                            this.wakeupBuffer.address,
+                            Long.BYTES);
+        }
+    }
+
+    @Override
+    public int handle(final int fd,
+                      final int mask) {
+        this.libc.read(this.eventFd,
+                       this.readBuffer.address,
+                       Long.BYTES);
+        //clear the wakeup before draining, so events published while we drain will trigger a new wakeup.
+        this.wakeupPending.set(false);
+        drain();
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        long       head = this.head.get();
+        final long tail = this.tail.get();
+        while (head < tail) {
+            this.consumer.handle((T) this.slots[(int) (head & this.mask)]);
+            head++;
+            //release the slot so it can be reused by the producer.
+            this.head.set(head);
+        }
+    }
+}
@@ -108,6 +108,10 @@ public class JobExecutor implements EventLoop.FileDescriptorEventHandler {
     @Override
     public int handle(final int fd,
                       final int mask) {
+        if (Trace.ENABLED) {
+            Trace.begin("jobs");
+        }
+
         final LinkedList<Runnable> jobs = commit();
         while (this.eventSource.isPresent()) {
             if (!(handleNextEvent(jobs))) {
@@ -115,6 +119,9 @@ public class JobExecutor implements EventLoop.FileDescriptorEventHandler {
             }
         }
 
+        if (Trace.ENABLED) {
+            Trace.end("jobs");
+        }
         return 0;
     }
 
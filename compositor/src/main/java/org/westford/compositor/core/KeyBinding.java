@@ -18,12 +18,9 @@
 package org.westford.compositor.core;
 
 import com.google.auto.factory.AutoFactory;
-import org.freedesktop.wayland.shared.WlKeyboardKeyState;
-import org.westford.Slot;
-import org.westford.compositor.core.events.Key;
 
 import javax.annotation.Nonnull;
-import java.util.Optional;
+import java.util.BitSet;
 import java.util.Set;
 
 @AutoFactory(allowSubclasses = true,
@@ -32,54 +29,41 @@ public class KeyBinding {
 
     @Nonnull
     private final KeyboardDevice keyboardDevice;
-    private final Set<Integer>   keys;
+    @Nonnull
+    private final BitSet         keys;
+    @Nonnull
     private final Runnable       binding;
-    private       Optional<Integer> triggerKey = Optional.empty();
-    private final Slot<Key>         handleKey  = this::handleKey;
 
     KeyBinding(@Nonnull final KeyboardDevice keyboardDevice,
-               final Set<Integer> keys,
-               final Runnable binding) {
+               @Nonnull final Set<Integer> keys,
+               @Nonnull final Runnable binding) {
         this.keyboardDevice = keyboardDevice;
-        this.keys = keys;
+        this.keys = new BitSet();
+        keys.forEach(this.keys::set);
         this.binding = binding;
     }
 
-    //TODO unit test enable/disable & consummation of key events
-
     public void enable() {
-        this.keyboardDevice.getKeySignal()
-                           .connect(this.handleKey);
+        this.keyboardDevice.addKeyBinding(this);
     }
 
     public void disable() {
-        this.keyboardDevice.getKeySignal()
-                           .disconnect(this.handleKey);
+        this.keyboardDevice.removeKeyBinding(this);
     }
 
-    private void handleKey(final Key event) {
-        final WlKeyboardKeyState keyState = event.getKeyState();
-        if (keyState == WlKeyboardKeyState.RELEASED) {
-            //the trigger key is released, the hide it from the client.
-            this.triggerKey.ifPresent(key -> {
-                if (key == event.getKey()) {
-                    this.keyboardDevice.consumeNextKeyEvent();
-                    this.triggerKey = Optional.empty();
-                }
-            });
-        }
-        else {
-            //make sure pressed keys match without any additional keys being pressed.
-            if (this.keyboardDevice.getPressedKeys()
-                                   .size() == this.keys.size() &&
-                this.keyboardDevice.getPressedKeys()
-                                   .containsAll(this.keys)) {
-                //Store the latest key that triggered the binding. This is needed because we must suppress the release of this key as well
-                this.triggerKey = Optional.of(event.getKey());
-                //this will consume the press of the latest key that fulfills the required keys needed for the binding.
-                this.keyboardDevice.consumeNextKeyEvent();
-                this.binding.run();
-            }
-        }
+    /**
+     * The exact set of keys that triggers this binding. Each set bit is the linux input event code of a
+     * key, as found in {@link org.westford.nativ.linux.InputEventCodes}, not the xkb keycode (which is offset by 8).
+     *
+     * @return the binding keys. Must not be modified.
+     */
+    @Nonnull
+    BitSet getKeys() {
+        return this.keys;
+    }
+
+    @Nonnull
+    Runnable getBinding() {
+        return this.binding;
     }
 }
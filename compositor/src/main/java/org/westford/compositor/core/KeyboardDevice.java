@@ -19,7 +19,6 @@ package org.westford.compositor.core;
 
 import com.google.auto.factory.AutoFactory;
 import com.google.auto.factory.Provided;
-import org.freedesktop.jaccall.Pointer;
 import org.freedesktop.wayland.server.Client;
 import org.freedesktop.wayland.server.DestroyListener;
 import org.freedesktop.wayland.server.Display;
@@ -33,18 +32,24 @@ import org.westford.compositor.core.events.Key;
 import org.westford.compositor.core.events.KeyboardFocus;
 import org.westford.compositor.core.events.KeyboardFocusGained;
 import org.westford.compositor.core.events.KeyboardFocusLost;
+import org.westford.compositor.protocol.ClientResourceSet;
 import org.westford.compositor.protocol.WlSurface;
 import org.westford.nativ.NativeFileFactory;
+import org.westford.nativ.ScratchArena;
 import org.westford.nativ.glibc.Libc;
 import org.westford.nativ.libxkbcommon.Libxkbcommon;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static org.westford.nativ.libxkbcommon.Libxkbcommon.XKB_KEY_DOWN;
 import static org.westford.nativ.libxkbcommon.Libxkbcommon.XKB_KEY_UP;
@@ -71,8 +76,22 @@ public class KeyboardDevice {
 
     @Nonnull
     private final Libxkbcommon libxkbcommon;
+    /**
+     * Pressed keys, indexed by their linux input event code. This is the xkb keycode minus 8.
+     */
+    @Nonnull
+    private final BitSet                  pressedKeys        = new BitSet();
+    /**
+     * Enabled key bindings, indexed by the exact set of keys that triggers them. Bindings that share the same keys are
+     * all triggered, in the order they were enabled.
+     */
+    @Nonnull
+    private final Map<BitSet, List<KeyBinding>> keyBindings  = new HashMap<>();
+    /**
+     * Keys that triggered a key binding and whose release should be hidden from clients.
+     */
     @Nonnull
-    private final Set<Integer> pressedKeys = new HashSet<>();
+    private final BitSet                  bindingTriggerKeys = new BitSet();
     @Nonnull
     private Xkb xkb;
     @Nonnull
@@ -114,18 +133,20 @@ public class KeyboardDevice {
 
         int        stateComponentMask = 0;
         final long xkbState           = getXkb().getState();
-        final int  evdevKey           = key + 8;
+        final int  xkbKeycode         = key + 8;
         if (wlKeyboardKeyState.equals(WlKeyboardKeyState.PRESSED)) {
-            if (getPressedKeys().add(key)) {
+            if (!this.pressedKeys.get(key)) {
+                this.pressedKeys.set(key);
                 stateComponentMask = this.libxkbcommon.xkb_state_update_key(xkbState,
-                                                                            evdevKey,
+                                                                            xkbKeycode,
                                                                             XKB_KEY_DOWN);
             }
         }
         else {
-            if (getPressedKeys().remove(key)) {
+            if (this.pressedKeys.get(key)) {
+                this.pressedKeys.clear(key);
                 stateComponentMask = this.libxkbcommon.xkb_state_update_key(xkbState,
-                                                                            evdevKey,
+                                                                            xkbKeycode,
                                                                             XKB_KEY_UP);
             }
         }
@@ -134,6 +155,11 @@ public class KeyboardDevice {
                                        key,
                                        wlKeyboardKeyState));
 
+        if (!this.keyBindings.isEmpty()) {
+            handleKeyBindings(key,
+                              wlKeyboardKeyState);
+        }
+
         if (this.consumeNextKeyEvent) {
             this.consumeNextKeyEvent = false;
         }
@@ -153,22 +179,77 @@ public class KeyboardDevice {
         return this.xkb;
     }
 
+    /**
+     * The currently pressed keys. Each set bit is the linux input event code of a pressed key,
+     * as found in {@link org.westford.nativ.linux.InputEventCodes}, not the xkb keycode (which is offset by 8).
+     *
+     * @return the pressed keys, as a live view.
+     */
     @Nonnull
-    public Set<Integer> getPressedKeys() {
+    public BitSet getPressedKeys() {
         return this.pressedKeys;
     }
 
+    private void handleKeyBindings(final int key,
+                                   @Nonnull final WlKeyboardKeyState wlKeyboardKeyState) {
+        if (wlKeyboardKeyState == WlKeyboardKeyState.RELEASED) {
+            //the trigger key is released, hide it from the client.
+            if (this.bindingTriggerKeys.get(key)) {
+                this.bindingTriggerKeys.clear(key);
+                consumeNextKeyEvent();
+            }
+        }
+        else {
+            //a binding only matches if exactly its keys are pressed, without any additional keys.
+            final List<KeyBinding> keyBindings = this.keyBindings.get(this.pressedKeys);
+            if (keyBindings != null) {
+                //Store the latest key that triggered the binding. This is needed because we must suppress the release of this key as well
+                this.bindingTriggerKeys.set(key);
+                //this will consume the press of the latest key that fulfills the required keys needed for the binding.
+                consumeNextKeyEvent();
+                //a binding can disable itself or others when it runs.
+                new ArrayList<>(keyBindings).forEach(keyBinding -> keyBinding.getBinding()
+                                                                             .run());
+            }
+        }
+    }
+
+    void addKeyBinding(@Nonnull final KeyBinding keyBinding) {
+        final List<KeyBinding> keyBindings = this.keyBindings.computeIfAbsent(keyBinding.getKeys(),
+                                                                              keys -> new ArrayList<>());
+        if (!keyBindings.contains(keyBinding)) {
+            keyBindings.add(keyBinding);
+        }
+    }
+
+    void removeKeyBinding(@Nonnull final KeyBinding keyBinding) {
+        final List<KeyBinding> keyBindings = this.keyBindings.get(keyBinding.getKeys());
+        if (keyBindings != null) {
+            keyBindings.remove(keyBinding);
+            if (keyBindings.isEmpty()) {
+                this.keyBindings.remove(keyBinding.getKeys());
+            }
+        }
+    }
+
     private void doKey(final Set<WlKeyboardResource> wlKeyboardResources,
                        final int time,
                        final int key,
                        final WlKeyboardKeyState wlKeyboardKeyState) {
-        getFocus().ifPresent(wlSurfaceResource ->
-                                     match(wlKeyboardResources,
-                                           wlSurfaceResource).forEach(wlKeyboardResource ->
-                                                                              wlKeyboardResource.key(nextKeyboardSerial(),
-                                                                                                     time,
-                                                                                                     key,
-                                                                                                     wlKeyboardKeyState.value)));
+        getFocus().ifPresent(wlSurfaceResource -> {
+            final WlSurface wlSurface = (WlSurface) wlSurfaceResource.getImplementation();
+            //iterate the (small) set of focused keyboard resources directly instead of creating a matching set for every key.
+            wlSurface.getSurface()
+                     .getKeyboardFocuses()
+                     .forEach(wlKeyboardResource -> {
+                         if (wlKeyboardResources.contains(wlKeyboardResource)) {
+                             wlKeyboardResource.key(nextKeyboardSerial(),
+                                                    time,
+                                                    key,
+                                                    wlKeyboardKeyState.value);
+                         }
+                     });
+        });
     }
 
     private void handleStateComponentMask(@Nonnull final Set<WlKeyboardResource> wlKeyboardResources,
@@ -248,13 +329,6 @@ public class KeyboardDevice {
         }
     }
 
-    private int[] toIntArray(final Set<Integer> set) {
-        final int[] ret = new int[set.size()];
-        int         i   = 0;
-        for (final Integer e : set) { ret[i++] = e; }
-        return ret;
-    }
-
     private void updateFocus(@Nonnull final Set<WlKeyboardResource> wlKeyboardResources,
                              final Optional<WlSurfaceResource> oldFocus,
                              final Optional<WlSurfaceResource> newFocus) {
@@ -268,8 +342,8 @@ public class KeyboardDevice {
             final WlSurface wlSurface = (WlSurface) oldFocusResource.getImplementation();
             final Surface   surface   = wlSurface.getSurface();
 
-            final Set<WlKeyboardResource> clientKeyboardResources = filter(wlKeyboardResources,
-                                                                           oldFocusResource.getClient());
+            final Set<WlKeyboardResource> clientKeyboardResources = new HashSet<>(filter(wlKeyboardResources,
+                                                                                         oldFocusResource.getClient()));
             surface.getKeyboardFocuses()
                    .removeAll(clientKeyboardResources);
             surface.getKeyboardFocusLostSignal()
@@ -289,33 +363,31 @@ public class KeyboardDevice {
             final WlSurface wlSurface = (WlSurface) newFocusResource.getImplementation();
             final Surface   surface   = wlSurface.getSurface();
 
-            final Set<WlKeyboardResource> clientKeyboardResources = filter(wlKeyboardResources,
-                                                                           newFocusResource.getClient());
+            final Set<WlKeyboardResource> clientKeyboardResources = new HashSet<>(filter(wlKeyboardResources,
+                                                                                         newFocusResource.getClient()));
             surface.getKeyboardFocuses()
                    .addAll(clientKeyboardResources);
             surface.getKeyboardFocusGainedSignal()
                    .emit(KeyboardFocusGained.create(clientKeyboardResources));
 
+            //the pressed keys are the same for every resource, so we only need to marshall them once.
+            final ByteBuffer keys = ByteBuffer.allocateDirect(Integer.BYTES * this.pressedKeys.cardinality());
+            keys.asIntBuffer()
+                .put(this.pressedKeys.stream()
+                                     .toArray());
             match(wlKeyboardResources,
-                  newFocusResource).forEach(newFocusKeyboardResource -> {
-                final ByteBuffer keys = ByteBuffer.allocateDirect(Integer.BYTES * this.pressedKeys.size());
-                keys.asIntBuffer()
-                    .put(toIntArray(getPressedKeys()));
-                newFocusKeyboardResource.enter(nextKeyboardSerial(),
-                                               newFocusResource,
-                                               keys);
-            });
+                  newFocusResource).forEach(newFocusKeyboardResource ->
+                                                    newFocusKeyboardResource.enter(nextKeyboardSerial(),
+                                                                                   newFocusResource,
+                                                                                   keys));
         });
     }
 
 
     private Set<WlKeyboardResource> filter(final Set<WlKeyboardResource> wlKeyboardResources,
                                            final Client client) {
-        //filter out keyboard resources that do not belong to the given client.
-        return wlKeyboardResources.stream()
-                                  .filter(wlKeyboardResource -> wlKeyboardResource.getClient()
-                                                                                  .equals(client))
-                                  .collect(Collectors.toSet());
+        return ClientResourceSet.filter(wlKeyboardResources,
+                                        client);
     }
 
     public void emitKeymap(@Nonnull final Set<WlKeyboardResource> wlKeyboardResources) {
@@ -343,8 +415,11 @@ public class KeyboardDevice {
             throw new Error("MAP_FAILED: " + this.libc.getErrno());
         }
 
-        this.libc.strcpy(keymapArea,
-                         Pointer.nref(nativeKeyMapping).address);
+        final ScratchArena arena = ScratchArena.get();
+        try (ScratchArena.Scope scope = arena.scope()) {
+            this.libc.strcpy(keymapArea,
+                             arena.nref(nativeKeyMapping).address);
+        }
 
         if (this.keymapFd >= 0) {
             this.libc.close(this.keymapFd);
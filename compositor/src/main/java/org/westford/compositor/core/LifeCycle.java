@@ -32,11 +32,14 @@ public class LifeCycle {
     private final Display          display;
     @Nonnull
     private final JobExecutor      jobExecutor;
+    @Nonnull
+    private final RenderThread     renderThread;
 
     @Inject
     LifeCycle(@Nonnull final LifeCycleSignals lifeCycleSignals,
               @Nonnull final Display display,
               @Nonnull final JobExecutor jobExecutor,
+              @Nonnull final RenderThread renderThread,
               @Nonnull final WlCompositor wlCompositor,
               @Nonnull final WlDataDeviceManager wlDataDeviceManager,
               @Nonnull final WlShell wlShell,
@@ -44,6 +47,7 @@ public class LifeCycle {
         this.lifeCycleSignals = lifeCycleSignals;
         this.display = display;
         this.jobExecutor = jobExecutor;
+        this.renderThread = renderThread;
         this.wlCompositor = wlCompositor;
         this.wlDataDeviceManager = wlDataDeviceManager;
         this.wlShell = wlShell;
@@ -52,6 +56,9 @@ public class LifeCycle {
 
     public void start() {
         this.jobExecutor.start();
+        if (RenderThread.ENABLED) {
+            this.renderThread.start();
+        }
         this.display.initShm();
         this.display.addSocket("wayland-0");
         this.lifeCycleSignals.getStartSignal()
@@ -64,6 +71,7 @@ public class LifeCycle {
     public void stop() {
         //FIXME let globals listen for stop signal and cleanup themself, this way we don't have to split this class
         //into LifeCycle (this class) and LifeCycleSignals (which we do to avoid cyclic dependencies).
+        this.renderThread.stop();
         this.wlCompositor.destroy();
         this.wlDataDeviceManager.destroy();
         this.wlShell.destroy();
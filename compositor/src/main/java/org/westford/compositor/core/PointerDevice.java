@@ -22,6 +22,8 @@ import com.google.auto.factory.Provided;
 import org.freedesktop.wayland.server.Client;
 import org.freedesktop.wayland.server.DestroyListener;
 import org.freedesktop.wayland.server.Display;
+import org.freedesktop.wayland.server.EventLoop;
+import org.freedesktop.wayland.server.EventSource;
 import org.freedesktop.wayland.server.WlPointerResource;
 import org.freedesktop.wayland.server.WlSurfaceResource;
 import org.freedesktop.wayland.shared.WlPointerAxis;
@@ -35,22 +37,30 @@ import org.westford.compositor.core.events.Button;
 import org.westford.compositor.core.events.PointerFocus;
 import org.westford.compositor.core.events.PointerGrab;
 import org.westford.compositor.core.events.PointerMotion;
+import org.westford.compositor.protocol.ClientResourceSet;
 import org.westford.compositor.protocol.WlSurface;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @AutoFactory(allowSubclasses = true,
              className = "PrivatePointerDeviceFactory")
 public class PointerDevice implements Role {
 
+    /**
+     * Whether queued motion is coalesced by default. Disable with {@code -Dwestford.pointer.coalesce=false} to deliver
+     * every raw motion event of a high rate pointer device.
+     */
+    private static final boolean MOTION_COALESCING = Boolean.parseBoolean(System.getProperty("westford.pointer.coalesce",
+                                                                                             "true"));
+
     @Nonnull
     private final Signal<PointerMotion, Slot<PointerMotion>> motionSignal       = new Signal<>();
     @Nonnull
@@ -61,7 +71,7 @@ public class PointerDevice implements Role {
     private final Signal<PointerFocus, Slot<PointerFocus>>   pointerFocusSignal = new Signal<>();
 
     @Nonnull
-    private final Set<Integer>                   pressedButtons = new HashSet<>();
+    private final BitSet                         pressedButtons = new BitSet();
     @Nonnull
     private final Map<WlPointerResource, Cursor> cursors        = new HashMap<>();
     @Nonnull
@@ -79,6 +89,8 @@ public class PointerDevice implements Role {
     @Nonnull
     private final FiniteRegion  clampRegion;
     @Nonnull
+    private final EventLoop.IdleHandler deliverQueuedMotion = this::deliverQueuedMotion;
+    @Nonnull
     private Point                       position             = Point.ZERO;
     @Nonnull
     private Optional<Cursor>            activeCursor         = Optional.empty();
@@ -98,6 +110,16 @@ public class PointerDevice implements Role {
     @Nonnegative
     private int buttonsPressed;
 
+    private boolean motionCoalescing = MOTION_COALESCING;
+    private boolean motionQueued;
+    private int     queuedMotionTime;
+    @Nonnull
+    private Point                  queuedPosition        = Point.ZERO;
+    @Nonnull
+    private Set<WlPointerResource> queuedMotionResources = Collections.emptySet();
+    @Nonnull
+    private Optional<EventSource>  queuedMotionSource    = Optional.empty();
+
     @Inject
     PointerDevice(@Provided @Nonnull final Geo geo,
                   @Provided @Nonnull final Display display,
@@ -118,6 +140,8 @@ public class PointerDevice implements Role {
     //TODO unit test
     public void axisSource(@Nonnull final Set<WlPointerResource> wlPointerResources,
                            final WlPointerAxisSource wlPointerAxisSource) {
+        //make sure clients see the pointer at the right position before anything else happens.
+        flushMotion();
         getFocus().ifPresent(wlSurfaceResource -> filter(wlPointerResources,
                                                          wlSurfaceResource.getClient()).forEach(wlPointerResource -> {
             if (wlPointerResource.getVersion() > 4) {
@@ -134,11 +158,8 @@ public class PointerDevice implements Role {
 
     private Set<WlPointerResource> filter(final Set<WlPointerResource> wlPointerResources,
                                           final Client client) {
-        //filter out pointer resources that do not belong to the given client.
-        return wlPointerResources.stream()
-                                 .filter(wlPointerResource -> wlPointerResource.getClient()
-                                                                               .equals(client))
-                                 .collect(Collectors.toSet());
+        return ClientResourceSet.filter(wlPointerResources,
+                                        client);
     }
 
     //TODO unit test
@@ -156,6 +177,8 @@ public class PointerDevice implements Role {
     public void axisStop(@Nonnull final Set<WlPointerResource> wlPointerResources,
                          final WlPointerAxis wlPointerAxis,
                          final int time) {
+        //make sure clients see the pointer at the right position before anything else happens.
+        flushMotion();
         getFocus().ifPresent(wlSurfaceResource -> reportAxisStop(wlPointerResources,
                                                                  wlSurfaceResource,
                                                                  wlPointerAxis,
@@ -182,6 +205,8 @@ public class PointerDevice implements Role {
                              final int time,
                              final int discrete,
                              final float value) {
+        //make sure clients see the pointer at the right position before anything else happens.
+        flushMotion();
         getFocus().ifPresent(wlSurfaceResource -> filter(wlPointerResources,
                                                          wlSurfaceResource.getClient()).forEach(wlPointerResource -> {
 
@@ -218,6 +243,8 @@ public class PointerDevice implements Role {
                                final int time,
                                final WlPointerAxis wlPointerAxis,
                                final float value) {
+        //make sure clients see the pointer at the right position before anything else happens.
+        flushMotion();
         getFocus().ifPresent(wlSurfaceResource -> filter(wlPointerResources,
                                                          wlSurfaceResource.getClient()).forEach(wlPointerResource -> axisOrStop(wlPointerResource,
                                                                                                                                 time,
@@ -237,6 +264,8 @@ public class PointerDevice implements Role {
                        final int time,
                        final int x,
                        final int y) {
+        //this motion supersedes any queued motion.
+        cancelQueuedMotion();
 
         clamp(wlPointerResources,
               Point.create(x,
@@ -251,6 +280,104 @@ public class PointerDevice implements Role {
                                                     getPosition()));
     }
 
+    /**
+     * Queue a move of this pointer to a new absolute position. Queued motion is coalesced until the event loop becomes
+     * idle, after which a single motion event followed by a frame event is delivered to the client of the focused
+     * surface. This avoids flooding clients and the renderer when using high rate pointer devices.
+     * <p/>
+     * If motion coalescing is disabled, the motion and frame event are delivered immediately.
+     *
+     * @param wlPointerResources a set of pointer resources that will be used to find the client.
+     * @param x                  new absolute X
+     * @param y                  new absolute Y
+     *
+     * @see #setMotionCoalescing(boolean)
+     * @see #getQueuedPosition()
+     */
+    public void queueMotion(@Nonnull final Set<WlPointerResource> wlPointerResources,
+                            final int time,
+                            final int x,
+                            final int y) {
+        if (!this.motionCoalescing) {
+            motion(wlPointerResources,
+                   time,
+                   x,
+                   y);
+            frame(wlPointerResources);
+            return;
+        }
+
+        //clamp every step so relative motion accumulates the same way as when it would be delivered immediately.
+        this.queuedPosition = this.geo.clamp(getQueuedPosition(),
+                                             Point.create(x,
+                                                          y),
+                                             this.clampRegion);
+        this.queuedMotionTime = time;
+        this.queuedMotionResources = wlPointerResources;
+
+        if (!this.motionQueued) {
+            this.motionQueued = true;
+            this.queuedMotionSource = Optional.of(this.display.getEventLoop()
+                                                              .addIdle(this.deliverQueuedMotion));
+        }
+    }
+
+    private void deliverQueuedMotion() {
+        //the event loop removes an idle source once it's dispatched.
+        this.queuedMotionSource = Optional.empty();
+        flushMotion();
+    }
+
+    private void cancelQueuedMotion() {
+        this.motionQueued = false;
+        this.queuedMotionSource.ifPresent(EventSource::remove);
+        this.queuedMotionSource = Optional.empty();
+    }
+
+    /**
+     * Deliver any queued motion immediately.
+     */
+    public void flushMotion() {
+        if (this.motionQueued) {
+            cancelQueuedMotion();
+            final Set<WlPointerResource> wlPointerResources = this.queuedMotionResources;
+            this.queuedMotionResources = Collections.emptySet();
+            motion(wlPointerResources,
+                   this.queuedMotionTime,
+                   this.queuedPosition.getX(),
+                   this.queuedPosition.getY());
+            frame(wlPointerResources);
+        }
+    }
+
+    /**
+     * The position this pointer will have once all queued motion is delivered. Relative pointer devices should
+     * use this position as the base for their next motion.
+     *
+     * @return the queued position, or the current position if no motion is queued.
+     */
+    @Nonnull
+    public Point getQueuedPosition() {
+        return this.motionQueued ? this.queuedPosition : getPosition();
+    }
+
+    /**
+     * Enable or disable coalescing of queued motion. Coalescing is enabled unless
+     * {@code -Dwestford.pointer.coalesce=false} is set.
+     *
+     * @param motionCoalescing true to coalesce motion until the event loop is idle.
+     */
+    public void setMotionCoalescing(final boolean motionCoalescing) {
+        this.motionCoalescing = motionCoalescing;
+        if (!motionCoalescing) {
+            flushMotion();
+        }
+    }
+
+    public boolean isMotionCoalescing() {
+        return this.motionCoalescing;
+    }
+
     public void calculateFocus(@Nonnull final Set<WlPointerResource> wlPointerResources) {
         final Optional<WlSurfaceResource> oldFocus = getFocus();
         final Optional<WlSurfaceResource> newFocus = this.scene.pickSurface(getPosition());
@@ -318,11 +445,13 @@ public class PointerDevice implements Role {
                        final int time,
                        @Nonnegative final int button,
                        @Nonnull final WlPointerButtonState wlPointerButtonState) {
+        //make sure clients see the pointer at the right position before anything else happens.
+        flushMotion();
         if (wlPointerButtonState == WlPointerButtonState.PRESSED) {
-            this.pressedButtons.add(button);
+            this.pressedButtons.set(button);
         }
         else {
-            this.pressedButtons.remove(button);
+            this.pressedButtons.clear(button);
         }
         doButton(wlPointerResources,
                  time,
@@ -462,7 +591,7 @@ public class PointerDevice implements Role {
     }
 
     public boolean isButtonPressed(@Nonnegative final int button) {
-        return this.pressedButtons.contains(button);
+        return this.pressedButtons.get(button);
     }
 
     /**
@@ -101,6 +101,60 @@ public abstract class Rectangle {
 
     public abstract int getY();
 
+    public boolean isEmpty() {
+        return getWidth() == 0 || getHeight() == 0;
+    }
+
+    /**
+     * @param other the rectangle to combine with.
+     *
+     * @return the smallest rectangle that contains both rectangles. Empty rectangles are ignored.
+     */
+    @Nonnull
+    public Rectangle union(@Nonnull final Rectangle other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+
+        final int x = Math.min(getX(),
+                               other.getX());
+        final int y = Math.min(getY(),
+                               other.getY());
+        return create(x,
+                      y,
+                      Math.max(getX() + getWidth(),
+                               other.getX() + other.getWidth()) - x,
+                      Math.max(getY() + getHeight(),
+                               other.getY() + other.getHeight()) - y);
+    }
+
+    /**
+     * @param other the rectangle to clip with.
+     *
+     * @return the area covered by both rectangles, or {@link #ZERO} if they don't overlap.
+     */
+    @Nonnull
+    public Rectangle intersection(@Nonnull final Rectangle other) {
+        final int x = Math.max(getX(),
+                               other.getX());
+        final int y = Math.max(getY(),
+                               other.getY());
+        final int width = Math.min(getX() + getWidth(),
+                                   other.getX() + other.getWidth()) - x;
+        final int height = Math.min(getY() + getHeight(),
+                                    other.getY() + other.getHeight()) - y;
+        if (width <= 0 || height <= 0) {
+            return ZERO;
+        }
+        return create(x,
+                      y,
+                      width,
+                      height);
+    }
+
     public abstract Builder toBuilder();
 
     @AutoValue.Builder
@@ -21,7 +21,7 @@ package org.westford.compositor.core;
 import javax.annotation.Nonnull;
 import java.util.List;
 
-public interface Region {
+public interface Region extends AutoCloseable {
 
     @Nonnull
     List<Rectangle> asList();
@@ -36,5 +36,11 @@ public interface Region {
                      @Nonnull Point point);
 
     Region intersect(@Nonnull Rectangle rectangle);
+
+    /**
+     * Release any native resources held by this region. Regions without native resources ignore this.
+     */
+    @Override
+    default void close() {}
 }
 
@@ -20,6 +20,7 @@ package org.westford.compositor.core;
 import org.westford.compositor.protocol.WlOutput;
 
 import javax.annotation.Nonnull;
+import java.util.function.LongConsumer;
 
 /**
  * A {@link RenderPlatform} specific drawing output for a {@link Renderer}.
@@ -39,10 +40,45 @@ public interface RenderOutput {
     @Nonnull
     WlOutput getWlOutput();
 
+    /**
+     * Called by the @{@link Renderer} of this {@code RenderOutput} before it draws a new frame.
+     * <p>
+     * A connector implementation that can show the buffer of the topmost view as is, like a fullscreen client buffer
+     * that is scanned out directly, can do so here instead of having the renderer draw the frame. Nothing is swapped
+     * for such a frame, so {@link #renderEndAfterSwap()} is not called.
+     * </p>
+     *
+     * @param sceneSnapshot all views that should be shown, bottom to top.
+     * @param replaced      to run once the buffer of the topmost view is no longer on screen.
+     *
+     * @return true if the buffer of the topmost view is shown and the renderer should not draw this frame.
+     */
+    default boolean scanout(@Nonnull final SceneSnapshot sceneSnapshot,
+                            @Nonnull final Runnable replaced) {
+        return false;
+    }
+
+    /**
+     * Called by the @{@link Renderer} of this {@code RenderOutput} before it draws a new frame.
+     * <p>
+     * A connector implementation that can show views without the renderer, like on hardware layers, can take them out
+     * of the snapshot here.
+     * </p>
+     *
+     * @param sceneSnapshot all views that should be shown, bottom to top.
+     *
+     * @return the views that still need to be drawn by the renderer.
+     */
+    @Nonnull
+    default SceneSnapshot assignPlanes(@Nonnull final SceneSnapshot sceneSnapshot) {
+        return sceneSnapshot;
+    }
+
     /**
      * Called by the @{@link Renderer} of this {@code RenderOutput} when it starts to draw to it's back buffer.
      * <p>
-     * A connector implementation can use this hook to perform any pre drawing actions.
+     * A connector implementation can use this hook to perform any pre drawing actions. This is called on the
+     * {@link RenderThread} once it is started, so it must not touch compositor state.
      * </p>
      */
     default void renderBegin() {}
@@ -50,7 +86,8 @@ public interface RenderOutput {
     /**
      * Called by the @{@link Renderer} of this {@code RenderOutput} when it has finished drawing to it's back buffer.
      * <p>
-     * A connector implementation can use this hook to perform any post back buffer drawing actions.
+     * A connector implementation can use this hook to perform any post back buffer drawing actions. Like
+     * {@link #renderBegin()}, this is called on the {@link RenderThread} once it is started.
      * </p>
      */
     default void renderEndBeforeSwap() {}
@@ -63,6 +100,20 @@ public interface RenderOutput {
      */
     default void renderEndAfterSwap() {}
 
+    /**
+     * Called by the @{@link Renderer} of this {@code RenderOutput} after {@link #renderEndAfterSwap()} or a successful
+     * {@link #scanout(SceneSnapshot, Runnable)}, with what needs to happen once the new frame is visible.
+     * <p>
+     * By default this happens right away. A connector implementation that knows when a frame is presented can delay
+     * it until then and pass the actual presentation time.
+     * </p>
+     *
+     * @param presented receives the {@link System#nanoTime()} at which the frame was presented.
+     */
+    default void whenPresented(@Nonnull final LongConsumer presented) {
+        presented.accept(System.nanoTime());
+    }
+
     /**
      * Disables any pending and future rendering for this connector.
      */
@@ -0,0 +1,131 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single thread, shared by all outputs, that draws and swaps frames so the compositor thread can keep handling client
+ * requests in the meantime. Rendering happens on the compositor thread until this thread is started.
+ * <p/>
+ * Render jobs only get immutable data that was prepared on the compositor thread. Any result of a render job that
+ * affects clients or surfaces must be handed back to the compositor thread, see {@link JobExecutor}.
+ */
+@Singleton
+public class RenderThread {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /**
+     * Whether the compositor starts the render thread. Enable with {@code -Dwestford.render.thread=true}.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("westford.render.thread");
+
+    @Nonnull
+    private static final Runnable STOP = () -> {};
+
+    @Nonnull
+    private final BlockingQueue<Runnable> jobs = new LinkedBlockingQueue<>();
+    @Nonnull
+    private Optional<Thread> thread = Optional.empty();
+
+    @Inject
+    RenderThread() {
+    }
+
+    /**
+     * Start rendering on a dedicated thread. Must be called before the first frame is rendered.
+     */
+    public void start() {
+        if (this.thread.isPresent()) {
+            throw new IllegalStateException("Render thread already started.");
+        }
+
+        final Thread thread = new Thread(this::run,
+                                         "westford-render");
+        thread.setDaemon(true);
+        thread.start();
+        this.thread = Optional.of(thread);
+    }
+
+    /**
+     * Stop the render thread after all pending render jobs are done.
+     */
+    public void stop() {
+        this.thread.ifPresent(thread -> {
+            this.jobs.add(STOP);
+            try {
+                thread.join();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+            this.thread = Optional.empty();
+        });
+    }
+
+    public boolean isStarted() {
+        return this.thread.isPresent();
+    }
+
+    /**
+     * Run a job on the render thread, or immediately if the render thread is not started.
+     *
+     * @param job the job to run.
+     */
+    public void submit(@Nonnull final Runnable job) {
+        if (isStarted()) {
+            this.jobs.add(job);
+        }
+        else {
+            job.run();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            final Runnable job;
+            try {
+                job = this.jobs.take();
+            }
+            catch (final InterruptedException e) {
+                return;
+            }
+            if (job == STOP) {
+                return;
+            }
+
+            try {
+                job.run();
+            }
+            catch (final RuntimeException e) {
+                LOGGER.log(Level.SEVERE,
+                           "Render job failed.",
+                           e);
+            }
+        }
+    }
+}
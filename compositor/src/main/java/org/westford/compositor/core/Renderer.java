@@ -41,4 +41,14 @@ public interface Renderer {
 
     @Nonnull
     Buffer queryBuffer(@Nonnull WlBufferResource wlBufferResource);
+
+    /**
+     * Signal the client that a buffer is no longer used by its surface. A renderer that still reads the buffer in a
+     * frame that is being drawn, or still shows it, eg. by scanning it out, can postpone the release until it is done.
+     *
+     * @param wlBufferResource the buffer to release.
+     */
+    default void release(@Nonnull final WlBufferResource wlBufferResource) {
+        wlBufferResource.release();
+    }
 }
@@ -20,11 +20,21 @@ package org.westford.compositor.core;
 import org.freedesktop.wayland.server.WlSurfaceResource;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Collections;
 
 public interface Role {
     default void beforeCommit(@Nonnull final WlSurfaceResource wlSurfaceResource) {}
 
     default void afterDestroy(@Nonnull final WlSurfaceResource wlSurfaceResource) {}
 
+    /**
+     * @return surface states the role holds on to besides the surface's own current and pending state.
+     */
+    @Nonnull
+    default Collection<SurfaceState> getRetainedStates() {
+        return Collections.emptyList();
+    }
+
     //TODO let role decide what should happen after a commit(?)
 }
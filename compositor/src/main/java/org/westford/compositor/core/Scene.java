@@ -17,6 +17,7 @@
  */
 package org.westford.compositor.core;
 
+import org.freedesktop.wayland.server.WlBufferResource;
 import org.freedesktop.wayland.server.WlSurfaceRequests;
 import org.freedesktop.wayland.server.WlSurfaceResource;
 import org.westford.compositor.protocol.WlSurface;
@@ -24,9 +25,12 @@ import org.westford.compositor.protocol.WlSurface;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -126,4 +130,48 @@ public class Scene {
     public LinkedList<WlSurfaceResource> getSurfacesStack() {
         return this.surfacesStack;
     }
+
+    /**
+     * Take an immutable snapshot of all visible surfaces, in the order they should be drawn.
+     *
+     * @param renderer the renderer that will draw the snapshot, used to resolve the committed buffers.
+     *
+     * @return a new snapshot.
+     */
+    @Nonnull
+    public SceneSnapshot snapshot(@Nonnull final Renderer renderer) {
+        final List<SurfaceView> surfaceViews = new ArrayList<>(this.surfacesStack.size());
+        this.surfacesStack.forEach(wlSurfaceResource -> snapshot(renderer,
+                                                                 surfaceViews,
+                                                                 wlSurfaceResource));
+        return SceneSnapshot.create(Collections.unmodifiableList(surfaceViews));
+    }
+
+    private void snapshot(@Nonnull final Renderer renderer,
+                          @Nonnull final List<SurfaceView> surfaceViews,
+                          @Nonnull final WlSurfaceResource wlSurfaceResource) {
+        final Surface                    surface      = ((WlSurface) wlSurfaceResource.getImplementation()).getSurface();
+        final SurfaceState               surfaceState = surface.getState();
+        final Optional<WlBufferResource> buffer       = surfaceState.getBuffer();
+        //don't bother with subsurfaces if the parent doesn't have a buffer.
+        if (!buffer.isPresent()) {
+            return;
+        }
+
+        surfaceViews.add(SurfaceView.create(wlSurfaceResource,
+                                            surface,
+                                            surfaceState,
+                                            renderer.queryBuffer(buffer.get()),
+                                            surface.getTransform(),
+                                            surfaceState.getOpaqueRegion()
+                                                        .map(region -> Collections.unmodifiableList(new ArrayList<>(region.asList())))
+                                                        .orElse(Collections.emptyList())));
+        getSubsurfaceStack(wlSurfaceResource).forEach(subsurface -> {
+            if (subsurface != wlSurfaceResource) {
+                snapshot(renderer,
+                         surfaceViews,
+                         subsurface);
+            }
+        });
+    }
 }
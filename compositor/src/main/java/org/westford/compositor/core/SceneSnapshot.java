@@ -0,0 +1,41 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * An immutable copy of the surfaces to draw in a frame, in draw order. A snapshot is taken on the compositor thread,
+ * and stays valid while clients keep committing new state.
+ */
+@AutoValue
+public abstract class SceneSnapshot {
+
+    public static SceneSnapshot create(@Nonnull final List<SurfaceView> surfaceViews) {
+        return new AutoValue_SceneSnapshot(surfaceViews);
+    }
+
+    /**
+     * @return all surfaces to draw, bottom to top.
+     */
+    @Nonnull
+    public abstract List<SurfaceView> getSurfaceViews();
+}
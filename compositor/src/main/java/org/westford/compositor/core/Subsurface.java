@@ -25,6 +25,8 @@ import org.westford.Slot;
 import org.westford.compositor.protocol.WlSurface;
 
 import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedList;
 
 @AutoFactory(allowSubclasses = true,
@@ -114,6 +116,13 @@ public class Subsurface implements Role {
         return this.surfaceState;
     }
 
+    @Nonnull
+    @Override
+    public Collection<SurfaceState> getRetainedStates() {
+        return Arrays.asList(this.surfaceState,
+                             this.cachedSurfaceState);
+    }
+
     public void apply(final SurfaceState surfaceState) {
         if (isInert()) {
             return;
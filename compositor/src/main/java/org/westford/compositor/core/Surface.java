@@ -35,7 +35,9 @@ import org.westford.compositor.protocol.WlRegion;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -45,6 +47,11 @@ import java.util.Set;
              allowSubclasses = true)
 public class Surface {
 
+    /**
+     * Number of commits for which damage is remembered. Outputs that fell further behind repaint the whole surface.
+     */
+    private static final int DAMAGE_HISTORY = 8;
+
     /*
      * Signals
      */
@@ -67,6 +74,11 @@ public class Surface {
     private final List<WlCallbackResource>  callbacks                    = new LinkedList<>();
     @Nonnull
     private final Set<WlKeyboardResource>   keyboardFocuses              = new HashSet<>();
+    /*
+     * native regions created by this surface, closed as soon as no state refers to them anymore.
+     */
+    @Nonnull
+    private final Set<Region>               ownedRegions                 = Collections.newSetFromMap(new IdentityHashMap<>());
     /*
      * pending state
      */
@@ -92,6 +104,11 @@ public class Surface {
     private Mat4      inverseTransform = Transforms.NORMAL;
     @Nonnull
     private Rectangle size             = Rectangle.ZERO;
+    /*
+     * bounding box of the damage of the last committed states, newest first.
+     */
+    @Nonnull
+    private final LinkedList<CommittedDamage> damageHistory = new LinkedList<>();
 
     /*
      * render state
@@ -123,6 +140,8 @@ public class Surface {
     @Nonnull
     public Surface markDestroyed() {
         this.destroyed = true;
+        this.ownedRegions.forEach(Region::close);
+        this.ownedRegions.clear();
         return this;
     }
 
@@ -131,7 +150,7 @@ public class Surface {
 
         final Region damageRegion = this.pendingState.build()
                                                      .getDamage()
-                                                     .orElseGet(this.finiteRegionFactory::create);
+                                                     .orElseGet(this::createRegion);
         damageRegion.add(damage);
         this.pendingState.damage(Optional.of(damageRegion));
         return this;
@@ -178,12 +197,17 @@ public class Surface {
 
     @Nonnull
     public Surface commit() {
+        if (Trace.ENABLED) {
+            Trace.instant("client commit",
+                          "surface",
+                          System.identityHashCode(this));
+        }
+
         final Optional<WlBufferResource> buffer = getState().getBuffer();
         if (buffer.isPresent()) {
             //signal client that the previous buffer can be reused as we will now use the
             //newly attached buffer.
-            buffer.get()
-                  .release();
+            this.renderer.release(buffer.get());
         }
 
         //flush states
@@ -196,11 +220,107 @@ public class Surface {
 
     public void apply(final SurfaceState surfaceState) {
         setState(surfaceState);
+        updateDamageHistory(surfaceState);
         updateTransform();
         updateSize();
         this.compositor.requestRender();
 
         getApplySurfaceStateSignal().emit(getState());
+        releaseRegions();
+    }
+
+    private void updateDamageHistory(@Nonnull final SurfaceState surfaceState) {
+        //the damage region itself can be closed once the state is replaced, so only keep its bounds.
+        Rectangle damage = Rectangle.ZERO;
+        for (final Rectangle rectangle : surfaceState.getDamage()
+                                                     .map(Region::asList)
+                                                     .orElse(Collections.emptyList())) {
+            damage = damage.union(rectangle);
+        }
+
+        this.damageHistory.addFirst(new CommittedDamage(surfaceState,
+                                                        damage));
+        if (this.damageHistory.size() > DAMAGE_HISTORY) {
+            this.damageHistory.removeLast();
+        }
+    }
+
+    /**
+     * Combine the damage of all commits that came after the given state. This allows a renderer to find what changed
+     * since it last drew this surface, even if the client committed multiple times in between.
+     *
+     * @param since a state that was committed by this surface.
+     *
+     * @return the bounding box of the damage in surface coordinates, or nothing if the given state is too old to know.
+     */
+    @Nonnull
+    public Optional<Rectangle> getDamageSince(@Nonnull final SurfaceState since) {
+        Rectangle damage = Rectangle.ZERO;
+        for (final CommittedDamage committedDamage : this.damageHistory) {
+            if (committedDamage.state == since) {
+                return Optional.of(damage);
+            }
+            damage = damage.union(committedDamage.damage);
+        }
+        return Optional.empty();
+    }
+
+    @Nonnull
+    private FiniteRegion createRegion() {
+        final FiniteRegion region = this.finiteRegionFactory.create();
+        this.ownedRegions.add(region);
+        return region;
+    }
+
+    /**
+     * The client may destroy a region right after setting it, so keep our own copy.
+     */
+    @Nonnull
+    private Region copyRegion(@Nonnull final Region region) {
+        if (region instanceof FiniteRegion) {
+            final FiniteRegion copy = createRegion();
+            copy.add((FiniteRegion) region);
+            return copy;
+        }
+        //infinite and null regions are immutable
+        return region;
+    }
+
+    /**
+     * Close the regions created by this surface that are not used by the pending state, the current state or a state
+     * retained by our role.
+     */
+    private void releaseRegions() {
+        if (this.ownedRegions.isEmpty()) {
+            return;
+        }
+
+        final Set<Region> usedRegions = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectRegions(getState(),
+                       usedRegions);
+        collectRegions(this.pendingState.build(),
+                       usedRegions);
+        this.surfaceRole.ifPresent(role -> role.getRetainedStates()
+                                               .forEach(surfaceState -> collectRegions(surfaceState,
+                                                                                       usedRegions)));
+
+        this.ownedRegions.removeIf(region -> {
+            if (usedRegions.contains(region)) {
+                return false;
+            }
+            region.close();
+            return true;
+        });
+    }
+
+    private static void collectRegions(@Nonnull final SurfaceState surfaceState,
+                                       @Nonnull final Set<Region> regions) {
+        surfaceState.getDamage()
+                    .ifPresent(regions::add);
+        surfaceState.getOpaqueRegion()
+                    .ifPresent(regions::add);
+        surfaceState.getInputRegion()
+                    .ifPresent(regions::add);
     }
 
     @Nonnull
@@ -276,7 +396,7 @@ public class Surface {
     @Nonnull
     public Surface setOpaqueRegion(@Nonnull final WlRegionResource wlRegionResource) {
         final WlRegion wlRegion = (WlRegion) wlRegionResource.getImplementation();
-        final Region   region   = wlRegion.getRegion();
+        final Region   region   = copyRegion(wlRegion.getRegion());
         this.pendingState.opaqueRegion(Optional.of(region));
         return this;
     }
@@ -290,7 +410,7 @@ public class Surface {
     @Nonnull
     public Surface setInputRegion(@Nonnull final WlRegionResource wlRegionResource) {
         final WlRegion wlRegion = (WlRegion) wlRegionResource.getImplementation();
-        final Region   region   = wlRegion.getRegion();
+        final Region   region   = copyRegion(wlRegion.getRegion());
         getPendingState().inputRegion(Optional.of(region));
         return this;
     }
@@ -389,4 +509,23 @@ public class Surface {
     public void setRenderState(@Nonnull final SurfaceRenderState renderState) {
         this.renderState = Optional.of(renderState);
     }
-}
\ No newline at end of file
+
+    /**
+     * Forget the render state, after the renderer deleted it. The renderer will create a new render state the next
+     * time the surface is drawn.
+     */
+    public void clearRenderState() {
+        this.renderState = Optional.empty();
+    }
+
+    private static final class CommittedDamage {
+        private final SurfaceState state;
+        private final Rectangle    damage;
+
+        private CommittedDamage(final SurfaceState state,
+                                final Rectangle damage) {
+            this.state = state;
+            this.damage = damage;
+        }
+    }
+}
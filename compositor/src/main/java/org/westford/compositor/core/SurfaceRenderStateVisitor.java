@@ -24,4 +24,6 @@ public interface SurfaceRenderStateVisitor {
     default Optional<SurfaceRenderState> visit(final ShmSurfaceState shmSurfaceState) { return Optional.of(shmSurfaceState); }
 
     default Optional<SurfaceRenderState> visit(final EglSurfaceState eglSurfaceState) { return Optional.of(eglSurfaceState); }
+
+    default Optional<SurfaceRenderState> visit(final AtlasSurfaceState atlasSurfaceState) { return Optional.of(atlasSurfaceState); }
 }
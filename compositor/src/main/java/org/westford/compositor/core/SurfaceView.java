@@ -0,0 +1,84 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import com.google.auto.value.AutoValue;
+import org.freedesktop.wayland.server.WlSurfaceResource;
+import org.westford.compositor.core.calc.Mat4;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * An immutable view of a surface, as it should be drawn in a single frame. Everything that can change when the client
+ * commits again is copied when the view is created, so a view stays valid until the frame that shows it is done.
+ */
+@AutoValue
+public abstract class SurfaceView {
+
+    public static SurfaceView create(@Nonnull final WlSurfaceResource wlSurfaceResource,
+                                     @Nonnull final Surface surface,
+                                     @Nonnull final SurfaceState surfaceState,
+                                     @Nonnull final Buffer buffer,
+                                     @Nonnull final Mat4 transform,
+                                     @Nonnull final List<Rectangle> opaqueRegion) {
+        return new AutoValue_SurfaceView(wlSurfaceResource,
+                                         surface,
+                                         surfaceState,
+                                         buffer,
+                                         transform,
+                                         opaqueRegion);
+    }
+
+    @Nonnull
+    public abstract WlSurfaceResource getWlSurfaceResource();
+
+    /**
+     * The surface itself is only used on the compositor thread, to track render state and fire paint callbacks. Any
+     * other surface property should be read from the snapshotted values of this view.
+     */
+    @Nonnull
+    public abstract Surface getSurface();
+
+    /**
+     * The regions of this state are closed once the surface no longer needs them, so they must not be read from the
+     * view. Use {@link #getOpaqueRegion()} instead.
+     *
+     * @return the committed surface state at the time of the snapshot, to tell if the surface committed since.
+     */
+    @Nonnull
+    public abstract SurfaceState getSurfaceState();
+
+    /**
+     * @return the committed buffer at the time of the snapshot.
+     */
+    @Nonnull
+    public abstract Buffer getBuffer();
+
+    /**
+     * @return the surface transform at the time of the snapshot.
+     */
+    @Nonnull
+    public abstract Mat4 getTransform();
+
+    /**
+     * @return a copy of the opaque region of the committed surface state, in surface coordinates.
+     */
+    @Nonnull
+    public abstract List<Rectangle> getOpaqueRegion();
+}
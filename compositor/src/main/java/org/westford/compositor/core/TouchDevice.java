@@ -28,6 +28,7 @@ import org.westford.compositor.core.events.TouchDown;
 import org.westford.compositor.core.events.TouchGrab;
 import org.westford.compositor.core.events.TouchMotion;
 import org.westford.compositor.core.events.TouchUp;
+import org.westford.compositor.protocol.ClientResourceSet;
 import org.westford.compositor.protocol.WlSurface;
 
 import javax.annotation.Nonnegative;
@@ -35,7 +36,6 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class TouchDevice {
 
@@ -85,11 +85,8 @@ public class TouchDevice {
 
     private Set<WlTouchResource> filter(final Set<WlTouchResource> wlTouchResources,
                                         final Client client) {
-        //filter out touch resources that do not belong to the given client.
-        return wlTouchResources.stream()
-                               .filter(wlPointerResource -> wlPointerResource.getClient()
-                                                                             .equals(client))
-                               .collect(Collectors.toSet());
+        return ClientResourceSet.filter(wlTouchResources,
+                                        client);
     }
 
     //TODO unit test
@@ -0,0 +1,357 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.core;
+
+import sun.misc.Signal;
+import sun.misc.Unsafe;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opt-in timeline tracing. Enable with {@code -Dwestford.trace=true}, optionally setting the number of events kept
+ * with {@code -Dwestford.trace.size=<events>}.
+ * <p>
+ * Events are recorded in a preallocated ring buffer and can be dumped as Chrome/Perfetto trace JSON with
+ * {@link #dump()}, or by sending {@code SIGURG} to the compositor. Another signal can be used with
+ * {@code -Dwestford.trace.signal=<name>}, eg. {@code HUP}. {@code USR1} and {@code USR2} are reserved by the JVM.
+ * Every hook must be guarded with {@code if (Trace.ENABLED)} so tracing costs a single, constant folded, branch when
+ * disabled:
+ * <pre>
+ * if (Trace.ENABLED) {
+ *     Trace.begin("render");
+ * }
+ * </pre>
+ * Events can be recorded from any thread. Names must be constants, they are stored by reference.
+ */
+public final class Trace {
+
+    public static final boolean ENABLED = Boolean.getBoolean("westford.trace");
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+    //fences for the plain event fields, which are guarded by a per slot sequence number, seqlock style.
+    private static final Unsafe UNSAFE = unsafe();
+
+    private static final byte PHASE_BEGIN    = 'B';
+    private static final byte PHASE_END      = 'E';
+    private static final byte PHASE_INSTANT  = 'i';
+    private static final byte PHASE_COMPLETE = 'X';
+
+    private static final int  CAPACITY = ENABLED ? Integer.highestOneBit(Math.max(1,
+                                                                                   Integer.getInteger("westford.trace.size",
+                                                                                                      1 << 16))) : 0;
+    private static final long MASK     = CAPACITY - 1;
+
+    private static final AtomicLong      NEXT       = new AtomicLong();
+    //sequence number + 1 of the event in each slot, 0 when empty and -1 while being written.
+    private static final AtomicLongArray SEQUENCES  = new AtomicLongArray(CAPACITY);
+    private static final String[]        NAMES      = new String[CAPACITY];
+    private static final byte[]          PHASES     = new byte[CAPACITY];
+    private static final long[]          TIMESTAMPS = new long[CAPACITY];
+    private static final long[]          DURATIONS  = new long[CAPACITY];
+    private static final long[]          THREADS    = new long[CAPACITY];
+    private static final String[]        ARG_NAMES  = new String[CAPACITY];
+    private static final long[]          ARGS       = new long[CAPACITY];
+
+    //every thread that recorded an event, registered once on its first event.
+    private static final Queue<TraceThread>       TRACE_THREADS  = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<TraceThread> CURRENT_THREAD = ThreadLocal.withInitial(Trace::registerThread);
+
+    static {
+        if (ENABLED) {
+            final String signalName = System.getProperty("westford.trace.signal",
+                                                         "URG");
+            try {
+                Signal.handle(new Signal(signalName),
+                              signal -> dumpAsync());
+                LOGGER.info(String.format("Tracing enabled, keeping the last %d events. Send SIG%s to dump.",
+                                          CAPACITY,
+                                          signalName));
+            }
+            catch (final IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING,
+                           String.format("Tracing enabled, keeping the last %d events. Failed to install SIG%s trace dump handler.",
+                                         CAPACITY,
+                                         signalName),
+                           e);
+            }
+        }
+    }
+
+    private Trace() {
+    }
+
+    private static Unsafe unsafe() {
+        try {
+            final Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return (Unsafe) theUnsafe.get(null);
+        }
+        catch (final NoSuchFieldException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+
+    private static TraceThread registerThread() {
+        final Thread      thread      = Thread.currentThread();
+        final TraceThread traceThread = new TraceThread(thread.getId(),
+                                                        thread.getName());
+        TRACE_THREADS.add(traceThread);
+        return traceThread;
+    }
+
+    /**
+     * Begin a span on the current thread. Must be matched by an {@link #end(String)} on the same thread.
+     */
+    public static void begin(@Nonnull final String name) {
+        record(name,
+               PHASE_BEGIN,
+               System.nanoTime(),
+               0L,
+               null,
+               0L);
+    }
+
+    public static void end(@Nonnull final String name) {
+        record(name,
+               PHASE_END,
+               System.nanoTime(),
+               0L,
+               null,
+               0L);
+    }
+
+    public static void instant(@Nonnull final String name) {
+        record(name,
+               PHASE_INSTANT,
+               System.nanoTime(),
+               0L,
+               null,
+               0L);
+    }
+
+    public static void instant(@Nonnull final String name,
+                               @Nonnull final String argName,
+                               final long arg) {
+        record(name,
+               PHASE_INSTANT,
+               System.nanoTime(),
+               0L,
+               argName,
+               arg);
+    }
+
+    /**
+     * Record a span that has already finished, eg. one that started on another thread or in the kernel.
+     *
+     * @param name  the name of the span.
+     * @param start the start of the span, as returned by {@link System#nanoTime()}.
+     * @param end   the end of the span, as returned by {@link System#nanoTime()}.
+     */
+    public static void complete(@Nonnull final String name,
+                                final long start,
+                                final long end) {
+        record(name,
+               PHASE_COMPLETE,
+               start,
+               Math.max(0L,
+                        end - start),
+               null,
+               0L);
+    }
+
+    private static void record(final String name,
+                               final byte phase,
+                               final long timestamp,
+                               final long duration,
+                               final String argName,
+                               final long arg) {
+        if (!ENABLED) {
+            //unguarded hook
+            return;
+        }
+
+        final long threadId = CURRENT_THREAD.get().id;
+        final long sequence = NEXT.getAndIncrement();
+        final int  slot     = (int) (sequence & MASK);
+
+        SEQUENCES.set(slot,
+                      -1L);
+        //keep the event fields from being written before the slot is marked as being written.
+        UNSAFE.storeFence();
+        NAMES[slot] = name;
+        PHASES[slot] = phase;
+        TIMESTAMPS[slot] = timestamp;
+        DURATIONS[slot] = duration;
+        THREADS[slot] = threadId;
+        ARG_NAMES[slot] = argName;
+        ARGS[slot] = arg;
+        //publish
+        SEQUENCES.set(slot,
+                      sequence + 1);
+    }
+
+    /**
+     * Dump the trace buffer on a background thread so the caller, typically the compositor thread, is not stalled.
+     */
+    public static void dumpAsync() {
+        if (!ENABLED) {
+            return;
+        }
+        final Thread thread = new Thread(Trace::dump,
+                                         "westford-trace-dump");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Write the contents of the trace buffer as Chrome trace JSON to a new file in the working directory. Events
+     * that are overwritten while dumping are skipped.
+     */
+    public static synchronized void dump() {
+        if (!ENABLED) {
+            return;
+        }
+
+        final Path path = Paths.get(String.format("westford-trace-%d.json",
+                                                  System.currentTimeMillis()));
+        try (final BufferedWriter writer = Files.newBufferedWriter(path,
+                                                                   StandardCharsets.UTF_8)) {
+            write(writer);
+            LOGGER.info("Trace written to " + path.toAbsolutePath());
+        }
+        catch (final IOException e) {
+            LOGGER.log(Level.WARNING,
+                       "Failed to write trace " + path.toAbsolutePath(),
+                       e);
+        }
+    }
+
+    private static void write(final Writer writer) throws IOException {
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+
+        boolean first = true;
+        for (final TraceThread traceThread : TRACE_THREADS) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write(String.format("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":\"%s\"}}",
+                                       traceThread.id,
+                                       escape(traceThread.name)));
+        }
+
+        final long end   = NEXT.get();
+        final long start = Math.max(0L,
+                                    end - CAPACITY);
+        for (long sequence = start; sequence < end; sequence++) {
+            final int  slot     = (int) (sequence & MASK);
+            final long expected = sequence + 1;
+            if (SEQUENCES.get(slot) != expected) {
+                continue;
+            }
+
+            final String name      = NAMES[slot];
+            final byte   phase     = PHASES[slot];
+            final long   timestamp = TIMESTAMPS[slot];
+            final long   duration  = DURATIONS[slot];
+            final long   threadId  = THREADS[slot];
+            final String argName   = ARG_NAMES[slot];
+            final long   arg       = ARGS[slot];
+
+            //keep the event fields from being read after the sequence number is checked again.
+            UNSAFE.loadFence();
+            if (SEQUENCES.get(slot) != expected) {
+                //overwritten while we were reading it
+                continue;
+            }
+
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            final StringBuilder event = new StringBuilder(128);
+            event.append("{\"name\":\"")
+                 .append(escape(name))
+                 .append("\",\"ph\":\"")
+                 .append((char) phase)
+                 .append("\",\"pid\":1,\"tid\":")
+                 .append(threadId)
+                 .append(",\"ts\":")
+                 .append(toMicros(timestamp));
+            if (phase == PHASE_COMPLETE) {
+                event.append(",\"dur\":")
+                     .append(toMicros(duration));
+            }
+            else if (phase == PHASE_INSTANT) {
+                event.append(",\"s\":\"t\"");
+            }
+            if (argName != null) {
+                event.append(",\"args\":{\"")
+                     .append(escape(argName))
+                     .append("\":")
+                     .append(arg)
+                     .append('}');
+            }
+            event.append('}');
+            writer.write(event.toString());
+        }
+
+        writer.write("]}");
+    }
+
+    private static String toMicros(final long nanos) {
+        return String.format("%d.%03d",
+                             Math.floorDiv(nanos,
+                                           1000L),
+                             Math.floorMod(nanos,
+                                           1000L));
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\",
+                             "\\\\")
+                    .replace("\"",
+                             "\\\"");
+    }
+
+    private static final class TraceThread {
+        private final long   id;
+        private final String name;
+
+        private TraceThread(final long id,
+                            final String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+}
@@ -83,11 +83,13 @@ public class Geo {
         final int rectX = targetX > sourceX ? sourceX : targetX;
         final int rectY = targetY > sourceY ? sourceY : targetY;
 
-        final Region intersect = region.intersect(Rectangle.create(rectX,
-                                                                   rectY,
-                                                                   rectWidth,
-                                                                   rectHeight));
-        List<Rectangle> intersectionRects = intersect.asList();
+        List<Rectangle> intersectionRects;
+        try (Region intersect = region.intersect(Rectangle.create(rectX,
+                                                                  rectY,
+                                                                  rectWidth,
+                                                                  rectHeight))) {
+            intersectionRects = intersect.asList();
+        }
         if (intersectionRects.isEmpty()) {
             //Both points fall completely outside the region. make the entire clamp region the intersection.
             //this way the closest corner point of the clamp region will be returned. Not perfect, but good enough.
@@ -0,0 +1,482 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.dispmanx;
+
+import com.google.auto.factory.AutoFactory;
+import com.google.auto.factory.Provided;
+import org.freedesktop.jaccall.JNI;
+import org.freedesktop.jaccall.Pointer;
+import org.freedesktop.wayland.server.ShmBuffer;
+import org.freedesktop.wayland.shared.WlShmFormat;
+import org.westford.compositor.core.Buffer;
+import org.westford.compositor.core.JobExecutor;
+import org.westford.compositor.core.Output;
+import org.westford.compositor.core.OutputMode;
+import org.westford.compositor.core.Rectangle;
+import org.westford.compositor.core.SceneSnapshot;
+import org.westford.compositor.core.SmBuffer;
+import org.westford.compositor.core.Surface;
+import org.westford.compositor.core.SurfaceState;
+import org.westford.compositor.core.SurfaceView;
+import org.westford.compositor.core.calc.Mat4;
+import org.westford.compositor.core.calc.Vec4;
+import org.westford.nativ.ScratchArena;
+import org.westford.nativ.libbcm_host.DISPMANX_CALLBACK_FUNC_T;
+import org.westford.nativ.libbcm_host.Libbcm_host;
+import org.westford.nativ.libbcm_host.VC_DISPMANX_ALPHA_T;
+import org.westford.nativ.libbcm_host.VC_RECT_T;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+import static org.westford.nativ.libbcm_host.Libbcm_host.DISPMANX_FLAGS_ALPHA_FIXED_ALL_PIXELS;
+import static org.westford.nativ.libbcm_host.Libbcm_host.DISPMANX_FLAGS_ALPHA_FROM_SOURCE;
+import static org.westford.nativ.libbcm_host.Libbcm_host.DISPMANX_FLAGS_ALPHA_PREMULT;
+import static org.westford.nativ.libbcm_host.Libbcm_host.DISPMANX_NO_ROTATE;
+import static org.westford.nativ.libbcm_host.Libbcm_host.DISPMANX_PROTECTION_NONE;
+import static org.westford.nativ.libbcm_host.Libbcm_host.ELEMENT_CHANGE_DEST_RECT;
+import static org.westford.nativ.libbcm_host.Libbcm_host.ELEMENT_CHANGE_LAYER;
+import static org.westford.nativ.libbcm_host.Libbcm_host.VC_IMAGE_ARGB8888;
+import static org.westford.nativ.libbcm_host.Libbcm_host.VC_IMAGE_XRGB8888;
+import static org.westford.nativ.libbcm_host.PointerDISPMANX_CALLBACK_FUNC_T.nref;
+
+/**
+ * Shows the topmost shm views of a dispmanx display on hardware layers of their own, so they are composited by the
+ * HVS instead of GLES.
+ * <p>
+ * Every layer is backed by two resources. A new commit is copied into the resource that is not on screen, which is
+ * then shown by changing the source of the element. Moving or restacking a view only changes the attributes of its
+ * element.
+ * </p>
+ * <p>
+ * Updates are submitted asynchronously. Resources that are no longer used are only deleted once the update that
+ * stopped showing them has been applied.
+ * </p>
+ */
+@AutoFactory(className = "DispmanxLayersFactory",
+             allowSubclasses = true)
+public class DispmanxLayers {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /**
+     * The GLES element is at layer 0, hardware layers are stacked on top of it.
+     */
+    private static final int BASE_LAYER = 1;
+
+    @Nonnull
+    private final Libbcm_host         libbcm_host;
+    @Nonnull
+    private final JobExecutor         jobExecutor;
+    private final int                 display;
+    private final int                 maxLayers;
+    @Nonnull
+    private       Map<Surface, Layer> layers = new IdentityHashMap<>();
+
+    @Nonnull
+    private final Pointer<DISPMANX_CALLBACK_FUNC_T> updateDoneCallback = nref(this::onUpdateDone);
+    /**
+     * Resources that are no longer shown once the update that is being built is applied.
+     */
+    @Nonnull
+    private final List<Integer>                     retiredResources   = new ArrayList<>();
+    /**
+     * Resources to delete once the submitted update they belong to is applied, by submit id. Update handles can be
+     * reused by the firmware so they can not be used as key.
+     */
+    @Nonnull
+    private final Map<Long, List<Integer>>          pendingDeletes     = new HashMap<>();
+    private       long                              nextSubmitId       = 0L;
+
+    DispmanxLayers(@Provided @Nonnull final Libbcm_host libbcm_host,
+                   @Provided @Nonnull final JobExecutor jobExecutor,
+                   final int display,
+                   final int maxLayers) {
+        this.libbcm_host = libbcm_host;
+        this.jobExecutor = jobExecutor;
+        this.display = display;
+        this.maxLayers = maxLayers;
+    }
+
+    /**
+     * Put as many views as possible on a hardware layer. Only views on top of the scene qualify, as anything below a
+     * view that is drawn by GLES has to be drawn by GLES as well to keep the stacking order.
+     *
+     * @param output        the output of the display.
+     * @param sceneSnapshot all views that should be shown, bottom to top.
+     *
+     * @return the views that still need to be drawn by GLES.
+     */
+    @Nonnull
+    public SceneSnapshot assign(@Nonnull final Output output,
+                                @Nonnull final SceneSnapshot sceneSnapshot) {
+        final List<SurfaceView> surfaceViews = sceneSnapshot.getSurfaceViews();
+        if (surfaceViews.isEmpty() && this.layers.isEmpty()) {
+            return sceneSnapshot;
+        }
+
+        final OutputMode mode = output.getMode();
+        final Rectangle outputRectangle = Rectangle.create(0,
+                                                           0,
+                                                           mode.getWidth(),
+                                                           mode.getHeight());
+        final int update = this.libbcm_host.vc_dispmanx_update_start(0);
+
+        //top to bottom, until a view does not fit on a layer.
+        final List<Layer> assignedLayers = new ArrayList<>();
+        int               firstLayered   = surfaceViews.size();
+        while (firstLayered > 0 && assignedLayers.size() < this.maxLayers) {
+            final SurfaceView         surfaceView = surfaceViews.get(firstLayered - 1);
+            final Optional<Rectangle> destination = destination(output,
+                                                                outputRectangle,
+                                                                surfaceView);
+            if (!destination.isPresent()) {
+                break;
+            }
+            final Optional<Layer> layer = layer(update,
+                                                surfaceView);
+            if (!layer.isPresent()) {
+                break;
+            }
+            layer.get().destination = destination.get();
+            assignedLayers.add(layer.get());
+            firstLayered--;
+        }
+
+        //bottom to top
+        Collections.reverse(assignedLayers);
+        final Map<Surface, Layer> newLayers = new IdentityHashMap<>();
+        for (int i = 0; i < assignedLayers.size(); i++) {
+            final Layer       layer       = assignedLayers.get(i);
+            final SurfaceView surfaceView = surfaceViews.get(firstLayered + i);
+            show(update,
+                 layer,
+                 surfaceView,
+                 BASE_LAYER + i);
+            newLayers.put(surfaceView.getSurface(),
+                          layer);
+        }
+
+        //layers of views that are gone or drawn by GLES again
+        this.layers.values()
+                   .forEach(layer -> retire(update,
+                                            layer));
+        this.layers = newLayers;
+        submit(update);
+
+        return SceneSnapshot.create(Collections.unmodifiableList(surfaceViews.subList(0,
+                                                                                      firstLayered)));
+    }
+
+    /**
+     * @return where the view is shown on the output, if it can be shown by a hardware layer.
+     */
+    @Nonnull
+    private Optional<Rectangle> destination(@Nonnull final Output output,
+                                            @Nonnull final Rectangle outputRectangle,
+                                            @Nonnull final SurfaceView surfaceView) {
+        if (!imageType(surfaceView.getBuffer()).isPresent()) {
+            return Optional.empty();
+        }
+
+        final Buffer buffer    = surfaceView.getBuffer();
+        final int    width     = buffer.getWidth();
+        final int    height    = buffer.getHeight();
+        final Mat4   transform = output.getInverseTransform()
+                                       .multiply(surfaceView.getTransform());
+        final Vec4 topLeft = transform.multiply(Vec4.create(0f,
+                                                            0f,
+                                                            0f,
+                                                            1f));
+        final Vec4 bottomRight = transform.multiply(Vec4.create(width,
+                                                                height,
+                                                                0f,
+                                                                1f));
+        final Vec4 topRight = transform.multiply(Vec4.create(width,
+                                                             0f,
+                                                             0f,
+                                                             1f));
+
+        //dispmanx can scale and rotate, but for now only views that are shown as is go on a layer.
+        final int x = (int) topLeft.getX();
+        final int y = (int) topLeft.getY();
+        if (x != topLeft.getX() || y != topLeft.getY()
+            || bottomRight.getX() != x + width || bottomRight.getY() != y + height
+            || topRight.getX() != bottomRight.getX() || topRight.getY() != topLeft.getY()) {
+            return Optional.empty();
+        }
+
+        final Rectangle destination = Rectangle.create(x,
+                                                       y,
+                                                       width,
+                                                       height);
+        if (!destination.intersection(outputRectangle)
+                        .equals(destination)) {
+            return Optional.empty();
+        }
+        return Optional.of(destination);
+    }
+
+    @Nonnull
+    private Optional<Integer> imageType(@Nonnull final Buffer buffer) {
+        if (!(buffer instanceof SmBuffer)) {
+            return Optional.empty();
+        }
+
+        final int format = ((SmBuffer) buffer).getShmBuffer()
+                                              .getFormat();
+        if (format == WlShmFormat.ARGB8888.value) {
+            return Optional.of(VC_IMAGE_ARGB8888);
+        }
+        else if (format == WlShmFormat.XRGB8888.value) {
+            return Optional.of(VC_IMAGE_XRGB8888);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Find or create the layer of a view. A layer that does not match the size or format of the buffer anymore is
+     * replaced.
+     */
+    @Nonnull
+    private Optional<Layer> layer(final int update,
+                                  @Nonnull final SurfaceView surfaceView) {
+        final Buffer buffer    = surfaceView.getBuffer();
+        final int    imageType = imageType(buffer).get();
+
+        final Layer layer = this.layers.remove(surfaceView.getSurface());
+        if (layer != null) {
+            if (layer.width == buffer.getWidth() && layer.height == buffer.getHeight() && layer.imageType == imageType) {
+                return Optional.of(layer);
+            }
+            retire(update,
+                   layer);
+        }
+
+        final int front = createResource(imageType,
+                                         buffer);
+        final int back = createResource(imageType,
+                                        buffer);
+        if (front == 0 || back == 0) {
+            LOGGER.warning("Failed to create dispmanx resources, drawing surface with GLES.");
+            this.libbcm_host.vc_dispmanx_resource_delete(front);
+            this.libbcm_host.vc_dispmanx_resource_delete(back);
+            return Optional.empty();
+        }
+
+        return Optional.of(new Layer(imageType,
+                                     buffer.getWidth(),
+                                     buffer.getHeight(),
+                                     front,
+                                     back));
+    }
+
+    private int createResource(final int imageType,
+                               @Nonnull final Buffer buffer) {
+        final ScratchArena arena = ScratchArena.get();
+        try (ScratchArena.Scope scope = arena.scope()) {
+            final Pointer<Integer> imageHandle = arena.nref(0);
+            return this.libbcm_host.vc_dispmanx_resource_create(imageType,
+                                                                buffer.getWidth(),
+                                                                buffer.getHeight(),
+                                                                imageHandle.address);
+        }
+    }
+
+    private void show(final int update,
+                      @Nonnull final Layer layer,
+                      @Nonnull final SurfaceView surfaceView,
+                      final int layerNumber) {
+        final VC_RECT_T destinationRect = rect(layer.destination.getX(),
+                                               layer.destination.getY(),
+                                               layer.width,
+                                               layer.height);
+        if (layer.element == 0) {
+            write(layer.front,
+                  layer,
+                  surfaceView);
+
+            final VC_RECT_T sourceRect = rect(0,
+                                              0,
+                                              layer.width << 16,
+                                              layer.height << 16);
+            final VC_DISPMANX_ALPHA_T alpha = new VC_DISPMANX_ALPHA_T();
+            //wayland argb is premultiplied
+            alpha.flags(layer.imageType == VC_IMAGE_ARGB8888 ?
+                        DISPMANX_FLAGS_ALPHA_FROM_SOURCE | DISPMANX_FLAGS_ALPHA_PREMULT :
+                        DISPMANX_FLAGS_ALPHA_FIXED_ALL_PIXELS);
+            alpha.opacity(255);
+            alpha.mask(0);
+
+            layer.element = this.libbcm_host.vc_dispmanx_element_add(update,
+                                                                     this.display,
+                                                                     layerNumber,
+                                                                     Pointer.ref(destinationRect).address,
+                                                                     layer.front,
+                                                                     Pointer.ref(sourceRect).address,
+                                                                     DISPMANX_PROTECTION_NONE,
+                                                                     Pointer.ref(alpha).address,
+                                                                     0L,
+                                                                     DISPMANX_NO_ROTATE);
+        }
+        else {
+            if (layer.state != surfaceView.getSurfaceState()) {
+                //new content, copy it to the resource that is not on screen and flip.
+                write(layer.back,
+                      layer,
+                      surfaceView);
+                this.libbcm_host.vc_dispmanx_element_change_source(update,
+                                                                   layer.element,
+                                                                   layer.back);
+                final int front = layer.back;
+                layer.back = layer.front;
+                layer.front = front;
+            }
+            if (layer.layerNumber != layerNumber || !layer.destination.equals(layer.shownDestination)) {
+                this.libbcm_host.vc_dispmanx_element_change_attributes(update,
+                                                                       layer.element,
+                                                                       ELEMENT_CHANGE_LAYER | ELEMENT_CHANGE_DEST_RECT,
+                                                                       layerNumber,
+                                                                       (byte) 0,
+                                                                       Pointer.ref(destinationRect).address,
+                                                                       0L,
+                                                                       0,
+                                                                       0);
+            }
+        }
+
+        layer.state = surfaceView.getSurfaceState();
+        layer.layerNumber = layerNumber;
+        layer.shownDestination = layer.destination;
+    }
+
+    private void write(final int resource,
+                       @Nonnull final Layer layer,
+                       @Nonnull final SurfaceView surfaceView) {
+        final ShmBuffer shmBuffer = ((SmBuffer) surfaceView.getBuffer()).getShmBuffer();
+        final VC_RECT_T rect = rect(0,
+                                    0,
+                                    layer.width,
+                                    layer.height);
+        shmBuffer.beginAccess();
+        this.libbcm_host.vc_dispmanx_resource_write_data(resource,
+                                                         layer.imageType,
+                                                         shmBuffer.getStride(),
+                                                         JNI.unwrap(shmBuffer.getData()),
+                                                         Pointer.ref(rect).address);
+        shmBuffer.endAccess();
+    }
+
+    @Nonnull
+    private VC_RECT_T rect(final int x,
+                           final int y,
+                           final int width,
+                           final int height) {
+        final VC_RECT_T rect = new VC_RECT_T();
+        this.libbcm_host.vc_dispmanx_rect_set(Pointer.ref(rect).address,
+                                              x,
+                                              y,
+                                              width,
+                                              height);
+        return rect;
+    }
+
+    /**
+     * Remove the element of a layer in the given update. Its resources are deleted once the update is applied.
+     */
+    private void retire(final int update,
+                        @Nonnull final Layer layer) {
+        if (layer.element != 0) {
+            this.libbcm_host.vc_dispmanx_element_remove(update,
+                                                        layer.element);
+            layer.element = 0;
+        }
+        this.retiredResources.add(layer.front);
+        this.retiredResources.add(layer.back);
+    }
+
+    private void submit(final int update) {
+        if (this.retiredResources.isEmpty()) {
+            this.libbcm_host.vc_dispmanx_update_submit(update,
+                                                       0L,
+                                                       0L);
+            return;
+        }
+
+        final long submitId = this.nextSubmitId++;
+        this.pendingDeletes.put(submitId,
+                                new ArrayList<>(this.retiredResources));
+        this.retiredResources.clear();
+        if (this.libbcm_host.vc_dispmanx_update_submit(update,
+                                                       this.updateDoneCallback.address,
+                                                       submitId) != 0) {
+            LOGGER.warning("Failed to submit dispmanx update.");
+            deleteResources(submitId);
+        }
+    }
+
+    /**
+     * Called by a videocore thread once an update is applied.
+     *
+     * @param update the update handle.
+     * @param arg    the submit id of the update.
+     */
+    private void onUpdateDone(final int update,
+                              final long arg) {
+        this.jobExecutor.submit(() -> deleteResources(arg));
+    }
+
+    private void deleteResources(final long submitId) {
+        final List<Integer> resources = this.pendingDeletes.remove(submitId);
+        if (resources != null) {
+            resources.forEach(this.libbcm_host::vc_dispmanx_resource_delete);
+        }
+    }
+
+    private static final class Layer {
+        private final int          imageType;
+        private final int          width;
+        private final int          height;
+        private       int          front;
+        private       int          back;
+        private       int          element;
+        private       int          layerNumber;
+        private       SurfaceState state;
+        private       Rectangle    destination      = Rectangle.ZERO;
+        private       Rectangle    shownDestination = Rectangle.ZERO;
+
+        private Layer(final int imageType,
+                      final int width,
+                      final int height,
+                      final int front,
+                      final int back) {
+            this.imageType = imageType;
+            this.width = width;
+            this.height = height;
+            this.front = front;
+            this.back = back;
+        }
+    }
+}
@@ -25,20 +25,27 @@ import org.westford.compositor.core.Renderer;
 import org.westford.compositor.protocol.WlOutput;
 
 import javax.annotation.Nonnull;
+import java.util.Optional;
 
 @AutoFactory(allowSubclasses = true,
              className = "DispmanxOutputFactory")
 public class DispmanxOutput implements RenderOutput {
 
-    private final WlOutput wlOutput;
-    private final int      dispmanxElement;
-    private final Renderer renderer;
+    private final WlOutput                 wlOutput;
+    private final int                      dispmanxDisplay;
+    private final int                      dispmanxElement;
+    private final Optional<DispmanxLayers> layers;
+    private final Renderer                 renderer;
 
     DispmanxOutput(@Nonnull @Provided final Renderer renderer,
                    final WlOutput wlOutput,
-                   final int dispmanxElement) {
+                   final int dispmanxDisplay,
+                   final int dispmanxElement,
+                   @Nonnull final Optional<DispmanxLayers> layers) {
         this.wlOutput = wlOutput;
+        this.dispmanxDisplay = dispmanxDisplay;
         this.dispmanxElement = dispmanxElement;
+        this.layers = layers;
         this.renderer = renderer;
     }
 
@@ -48,10 +55,22 @@ public class DispmanxOutput implements RenderOutput {
         return this.wlOutput;
     }
 
+    public int getDispmanxDisplay() {
+        return this.dispmanxDisplay;
+    }
+
     public int getDispmanxElement() {
         return this.dispmanxElement;
     }
 
+    /**
+     * @return the hardware layers of this output, if enabled.
+     */
+    @Nonnull
+    public Optional<DispmanxLayers> getLayers() {
+        return this.layers;
+    }
+
     @Override
     public void render() {
         this.renderer.visit(this);
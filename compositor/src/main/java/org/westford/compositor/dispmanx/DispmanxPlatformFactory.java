@@ -35,6 +35,7 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static org.westford.nativ.libbcm_host.Libbcm_host.DISPMANX_NO_ROTATE;
 import static org.westford.nativ.libbcm_host.Libbcm_host.DISPMANX_PROTECTION_NONE;
@@ -43,6 +44,12 @@ import static org.westford.nativ.libbcm_host.Libbcm_host.DISPMANX_PROTECTION_NON
 //TODO refactor once we get all of this working
 public class DispmanxPlatformFactory {
 
+    /**
+     * Maximum number of client surfaces shown on a hardware layer of their own, 0 draws everything with GLES.
+     */
+    private static final int HARDWARE_LAYERS = Integer.getInteger("westford.dispmanx.layers",
+                                                                  0);
+
     @Nonnull
     private final Libbcm_host                    libbcm_host;
     @Nonnull
@@ -53,18 +60,22 @@ public class DispmanxPlatformFactory {
     private final PrivateDispmanxPlatformFactory privateDispmanxPlatformFactory;
     @Nonnull
     private final DispmanxOutputFactory          dispmanxOutputFactory;
+    @Nonnull
+    private final DispmanxLayersFactory          dispmanxLayersFactory;
 
     @Inject
     DispmanxPlatformFactory(@Nonnull final Libbcm_host libbcm_host,
                             @Nonnull final WlOutputFactory wlOutputFactory,
                             @Nonnull final OutputFactory outputFactory,
                             @Nonnull final PrivateDispmanxPlatformFactory privateDispmanxPlatformFactory,
-                            @Nonnull final DispmanxOutputFactory dispmanxRenderOutputFactory) {
+                            @Nonnull final DispmanxOutputFactory dispmanxRenderOutputFactory,
+                            @Nonnull final DispmanxLayersFactory dispmanxLayersFactory) {
         this.libbcm_host = libbcm_host;
         this.wlOutputFactory = wlOutputFactory;
         this.outputFactory = outputFactory;
         this.privateDispmanxPlatformFactory = privateDispmanxPlatformFactory;
         this.dispmanxOutputFactory = dispmanxRenderOutputFactory;
+        this.dispmanxLayersFactory = dispmanxLayersFactory;
     }
 
     public DispmanxPlatform create(final int device) {
@@ -87,9 +98,15 @@ public class DispmanxPlatformFactory {
         final Output output = createOutput(device,
                                            modeinfo);
         final WlOutput wlOutput = this.wlOutputFactory.create(output);
+        final Optional<DispmanxLayers> layers = HARDWARE_LAYERS > 0 ?
+                                                Optional.of(this.dispmanxLayersFactory.create(display,
+                                                                                              HARDWARE_LAYERS)) :
+                                                Optional.empty();
 
         dispmanxOutputs.add(this.dispmanxOutputFactory.create(wlOutput,
-                                                              dispmanxElement));
+                                                              display,
+                                                              dispmanxElement,
+                                                              layers));
 
         return this.privateDispmanxPlatformFactory.create(modeinfo,
                                                           dispmanxOutputs);
@@ -19,37 +19,97 @@ package org.westford.compositor.dispmanx.egl;
 
 import com.google.auto.factory.AutoFactory;
 import com.google.auto.factory.Provided;
+import org.freedesktop.jaccall.Pointer;
 import org.freedesktop.wayland.server.Display;
+import org.freedesktop.wayland.server.EventLoop;
+import org.freedesktop.wayland.server.EventSource;
 import org.westford.compositor.core.EglOutput;
 import org.westford.compositor.core.EglOutputState;
+import org.westford.compositor.core.FrameStatsRegistry;
+import org.westford.compositor.core.JobExecutor;
 import org.westford.compositor.core.Renderer;
+import org.westford.compositor.core.SceneSnapshot;
+import org.westford.compositor.core.Trace;
 import org.westford.compositor.dispmanx.DispmanxOutput;
 import org.westford.compositor.protocol.WlOutput;
+import org.westford.nativ.libbcm_host.DISPMANX_CALLBACK_FUNC_T;
 import org.westford.nativ.libbcm_host.EGL_DISPMANX_WINDOW_T;
+import org.westford.nativ.libbcm_host.Libbcm_host;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
 
+import static org.westford.nativ.libbcm_host.PointerDISPMANX_CALLBACK_FUNC_T.nref;
+
+/**
+ * A dispmanx element that is drawn with egl.
+ * <p>
+ * Once {@link #startVsync()} succeeds, rendering is paced by the vsync callback of the dispmanx display. Render
+ * requests are coalesced and started at the next vsync, so at most one frame is rendered per refresh. A swapped frame
+ * is on screen at the vsync that follows it, its time is used for the frame callbacks of that frame.
+ */
 @AutoFactory(className = "DispmanxEglOutputFactory",
              allowSubclasses = true)
 public class DispmanxEglOutput implements EglOutput {
 
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /**
+     * Time to wait for a vsync before the waiting frame is completed without it, eg when the display is powered down.
+     */
+    private static final int VSYNC_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(1);
+
     @Nonnull
     private final Display               display;
     @Nonnull
     private final Renderer              renderer;
     @Nonnull
+    private final Libbcm_host           libbcm_host;
+    @Nonnull
+    private final JobExecutor           jobExecutor;
+    @Nonnull
+    private final FrameStatsRegistry    frameStatsRegistry;
+    @Nonnull
     private final DispmanxOutput        dispmanxOutput;
     @Nonnull
     private final EGL_DISPMANX_WINDOW_T eglDispmanxWindow;
     private final long                  eglSurface;
     private final long                  eglContext;
     private final long                  eglDisplay;
+    @Nonnull
+    private final EventSource           vsyncTimeout;
     private boolean                  renderScheduled = false;
     private Optional<EglOutputState> state           = Optional.empty();
 
+    private final EventLoop.IdleHandler doRender = this::doRender;
+
+    /*
+     * vsync pacing, only used when the vsync callback could be installed.
+     */
+    @Nonnull
+    private final Pointer<DISPMANX_CALLBACK_FUNC_T> vsyncCallback      = nref(this::onVsync);
+    /**
+     * Set by the compositor thread when it waits for a vsync, cleared by the videocore thread when it delivers one.
+     */
+    @Nonnull
+    private final AtomicBoolean                     vsyncRequested     = new AtomicBoolean();
+    @Nonnull
+    private final List<LongConsumer>                presentedListeners = new ArrayList<>();
+    private       boolean                           vsync;
+    private       boolean                           renderAfterVsync;
+    private       long                              presentRequested;
+
     DispmanxEglOutput(@Nonnull @Provided final Display display,
                       @Nonnull @Provided final Renderer renderer,
+                      @Nonnull @Provided final Libbcm_host libbcm_host,
+                      @Nonnull @Provided final JobExecutor jobExecutor,
+                      @Nonnull @Provided final FrameStatsRegistry frameStatsRegistry,
                       @Nonnull final DispmanxOutput dispmanxOutput,
                       @Nonnull final EGL_DISPMANX_WINDOW_T eglDispmanxWindow,
                       final long eglSurface,
@@ -57,11 +117,16 @@ public class DispmanxEglOutput implements EglOutput {
                       final long eglDisplay) {
         this.display = display;
         this.renderer = renderer;
+        this.libbcm_host = libbcm_host;
+        this.jobExecutor = jobExecutor;
+        this.frameStatsRegistry = frameStatsRegistry;
         this.dispmanxOutput = dispmanxOutput;
         this.eglDispmanxWindow = eglDispmanxWindow;
         this.eglSurface = eglSurface;
         this.eglContext = eglContext;
         this.eglDisplay = eglDisplay;
+        this.vsyncTimeout = display.getEventLoop()
+                                   .addTimer(this::onVsyncTimeout);
     }
 
     @Nonnull
@@ -106,21 +171,127 @@ public class DispmanxEglOutput implements EglOutput {
         return this.dispmanxOutput.getWlOutput();
     }
 
+    @Nonnull
+    @Override
+    public SceneSnapshot assignPlanes(@Nonnull final SceneSnapshot sceneSnapshot) {
+        return this.dispmanxOutput.getLayers()
+                                  .map(dispmanxLayers -> dispmanxLayers.assign(getWlOutput().getOutput(),
+                                                                               sceneSnapshot))
+                                  .orElse(sceneSnapshot);
+    }
+
+    /**
+     * Pace rendering with the vsync of the dispmanx display. Rendering is not paced if the callback can not be
+     * installed.
+     */
+    public void startVsync() {
+        this.vsync = this.libbcm_host.vc_dispmanx_vsync_callback(this.dispmanxOutput.getDispmanxDisplay(),
+                                                                 this.vsyncCallback.address,
+                                                                 0L) == 0;
+        if (!this.vsync) {
+            LOGGER.warning(String.format("Failed to install vsync callback for output %s. Rendering will not be paced.",
+                                         getWlOutput().getOutput()
+                                                      .getName()));
+        }
+    }
+
+    @Override
+    public void whenPresented(@Nonnull final LongConsumer presented) {
+        if (this.vsync) {
+            //the frame was swapped and will be on screen at the next vsync.
+            if (this.presentedListeners.isEmpty()) {
+                this.presentRequested = System.nanoTime();
+            }
+            this.presentedListeners.add(presented);
+            requestVsync();
+        }
+        else {
+            presented.accept(System.nanoTime());
+        }
+    }
+
     @Override
     public void render() {
-        //TODO unit test 2 cases here: schedule idle, no-op when already scheduled
+        //TODO unit test 3 cases here: schedule idle, no-op when already scheduled, delayed render until vsync
+        if (this.vsync) {
+            //coalesce with any other render request until the next vsync.
+            this.renderAfterVsync = true;
+            requestVsync();
+        }
+        else {
+            whenIdleDoRender();
+        }
+    }
+
+    private void requestVsync() {
+        if (!this.vsyncRequested.getAndSet(true)) {
+            this.vsyncTimeout.updateTimer(VSYNC_TIMEOUT);
+        }
+    }
+
+    /**
+     * Called by a videocore thread on every vsync of the display.
+     */
+    private void onVsync(final int update,
+                         final long arg) {
+        if (this.vsyncRequested.getAndSet(false)) {
+            final long vsyncTime = System.nanoTime();
+            this.jobExecutor.submit(() -> vsync(vsyncTime));
+        }
+    }
+
+    /**
+     * Complete only the frame that waited too long for a vsync. The vsync callback stays installed so the next frame is
+     * paced again as soon as vsyncs are delivered.
+     */
+    private int onVsyncTimeout() {
+        if (this.vsync && this.vsyncRequested.getAndSet(false)) {
+            LOGGER.fine(String.format("No vsync for output %s within %d ms.",
+                                      getWlOutput().getOutput()
+                                                   .getName(),
+                                      VSYNC_TIMEOUT));
+            vsync(System.nanoTime());
+        }
+        return 0;
+    }
+
+    private void vsync(final long vsyncTime) {
+        //disarm
+        this.vsyncTimeout.updateTimer(0);
+
+        if (!this.presentedListeners.isEmpty()) {
+            if (Trace.ENABLED) {
+                Trace.complete("vsync",
+                               this.presentRequested,
+                               vsyncTime);
+            }
+            this.frameStatsRegistry.get(getWlOutput().getOutput())
+                                   .recordPageFlip(Math.max(0L,
+                                                            vsyncTime - this.presentRequested));
+
+            final List<LongConsumer> presentedListeners = new ArrayList<>(this.presentedListeners);
+            this.presentedListeners.clear();
+            presentedListeners.forEach(presentedListener -> presentedListener.accept(vsyncTime));
+            this.display.flushClients();
+        }
+
+        if (this.renderAfterVsync) {
+            this.renderAfterVsync = false;
+            whenIdleDoRender();
+        }
+    }
+
+    private void whenIdleDoRender() {
         if (!this.renderScheduled) {
             this.renderScheduled = true;
-            whenIdleRender();
+            this.display.getEventLoop()
+                        .addIdle(this.doRender);
         }
     }
 
-    private void whenIdleRender() {
-        this.display.getEventLoop()
-                    .addIdle(() -> {
-                        this.renderer.visit(this);
-                        this.display.flushClients();
-                        this.renderScheduled = false;
-                    });
+    private void doRender() {
+        this.renderer.visit(this);
+        this.display.flushClients();
+        this.renderScheduled = false;
     }
 }
@@ -125,11 +125,13 @@ public class DispmanxEglPlatformFactory {
                                                      config,
                                                      eglContext);
 
-            dispmanxEglRenderOutputs.add(this.dispmanxEglRenderOutputFactory.create(dispmanxOutput,
-                                                                                    eglDispmanxWindow,
-                                                                                    eglSurface,
-                                                                                    eglContext,
-                                                                                    eglDisplay));
+            final DispmanxEglOutput dispmanxEglOutput = this.dispmanxEglRenderOutputFactory.create(dispmanxOutput,
+                                                                                                   eglDispmanxWindow,
+                                                                                                   eglSurface,
+                                                                                                   eglContext,
+                                                                                                   eglDisplay);
+            dispmanxEglOutput.startVsync();
+            dispmanxEglRenderOutputs.add(dispmanxEglOutput);
         });
 
         return this.privateDispmanxEglOutputFactory.create(this.dispmanxPlatform,
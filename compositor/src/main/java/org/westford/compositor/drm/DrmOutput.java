@@ -39,6 +39,7 @@ public class DrmOutput implements RenderOutput {
     private final Renderer         renderer;
     @Nonnull
     private final WlOutput         wlOutput;
+    private final int              drmFd;
     @Nonnull
     private final DrmModeRes       drmModeRes;
     @Nonnull
@@ -49,12 +50,14 @@ public class DrmOutput implements RenderOutput {
 
     DrmOutput(@Nonnull @Provided final Renderer renderer,
               @Nonnull final WlOutput wlOutput,
+              final int drmFd,
               @Nonnull final DrmModeRes drmModeRes,
               @Nonnull final DrmModeConnector drmModeConnector,
               @Nonnegative final int crtcId,
               @Nonnull final DrmModeModeInfo mode) {
         this.renderer = renderer;
         this.wlOutput = wlOutput;
+        this.drmFd = drmFd;
         this.drmModeRes = drmModeRes;
         this.drmModeConnector = drmModeConnector;
         this.crtcId = crtcId;
@@ -67,6 +70,13 @@ public class DrmOutput implements RenderOutput {
         return this.wlOutput;
     }
 
+    /**
+     * @return the drm device this output is connected to.
+     */
+    public int getDrmFd() {
+        return this.drmFd;
+    }
+
     @Nonnull
     public DrmModeRes getDrmModeRes() {
         return this.drmModeRes;
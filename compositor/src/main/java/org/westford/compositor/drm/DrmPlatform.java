@@ -35,6 +35,8 @@ public class DrmPlatform implements RenderPlatform {
     private final long            drmDevice;
     private final int             drmFd;
     @Nonnull
+    private final List<Integer>   drmFds;
+    @Nonnull
     private final DrmEventBus     drmEventBus;
     @Nonnull
     private final List<DrmOutput> drmOutputs;
@@ -43,10 +45,12 @@ public class DrmPlatform implements RenderPlatform {
 
     DrmPlatform(final long drmDevice,
                 final int drmFd,
+                @Nonnull final List<Integer> drmFds,
                 @Nonnull final DrmEventBus drmEventBus,
                 @Nonnull final List<DrmOutput> drmOutputs) {
         this.drmDevice = drmDevice;
         this.drmFd = drmFd;
+        this.drmFds = drmFds;
         this.drmEventBus = drmEventBus;
         this.drmOutputs = drmOutputs;
     }
@@ -75,7 +79,18 @@ public class DrmPlatform implements RenderPlatform {
         return this.drmDevice;
     }
 
+    /**
+     * @return the drm device of the primary gpu, that renders all outputs.
+     */
     public int getDrmFd() {
         return this.drmFd;
     }
+
+    /**
+     * @return the drm devices of all gpus with outputs, the primary gpu first.
+     */
+    @Nonnull
+    public List<Integer> getDrmFds() {
+        return this.drmFds;
+    }
 }
@@ -98,16 +98,54 @@ public class DrmPlatformFactory {
             throw new RuntimeException("Failed to initialize udev");
         }
         //TODO seat from config
-        final long drmDevice = findPrimaryGpu(udev,
-                                              "seat0");
-        if (drmDevice == 0L) {
+        final List<Long> drmDevices = findGpus(udev,
+                                               "seat0");
+        if (drmDevices.isEmpty()) {
             throw new RuntimeException("No drm capable gpu device found.");
         }
 
-        final int drmFd = initDrm(drmDevice);
+        final long drmDevice = drmDevices.get(0);
+        final int  drmFd     = initDrm(drmDevice);
 
-        final List<DrmOutput> drmOutputs = createDrmRenderOutputs(drmFd);
+        final long resources = this.libdrm.drmModeGetResources(drmFd);
+        if (resources == 0L) {
+            throw new RuntimeException("Getting drm resources failed.");
+        }
+
+        final List<Integer>   drmFds      = new ArrayList<>(drmDevices.size());
+        final List<DrmOutput> drmOutputs  = createDrmRenderOutputs(drmFd,
+                                                                   resources);
+        final DrmEventBus     drmEventBus = addDrmEventBus(drmFd);
+        drmFds.add(drmFd);
+
+        //outputs of secondary gpus are rendered by the primary gpu, each device flips its own outputs.
+        for (final long secondaryDrmDevice : drmDevices.subList(1,
+                                                                drmDevices.size())) {
+            final int  secondaryDrmFd     = initDrm(secondaryDrmDevice);
+            final long secondaryResources = this.libdrm.drmModeGetResources(secondaryDrmFd);
+            //render only gpus have no outputs of their own
+            final List<DrmOutput> secondaryDrmOutputs = secondaryResources == 0L ?
+                                                        new ArrayList<>() :
+                                                        createDrmRenderOutputs(secondaryDrmFd,
+                                                                               secondaryResources);
+            if (secondaryDrmOutputs.isEmpty()) {
+                this.libc.close(secondaryDrmFd);
+                this.libudev.udev_device_unref(secondaryDrmDevice);
+                continue;
+            }
+            addDrmEventBus(secondaryDrmFd);
+            drmFds.add(secondaryDrmFd);
+            drmOutputs.addAll(secondaryDrmOutputs);
+        }
+
+        return this.privateDrmPlatformFactory.create(drmDevice,
+                                                     drmFd,
+                                                     drmFds,
+                                                     drmEventBus,
+                                                     drmOutputs);
+    }
 
+    private DrmEventBus addDrmEventBus(final int drmFd) {
         final DrmEventBus drmEventBus = this.drmEventBusFactory.create(drmFd);
         this.display.getEventLoop()
                     .addFileDescriptor(drmFd,
@@ -116,20 +154,17 @@ public class DrmPlatformFactory {
 
         this.privileges.setDrmMaster(drmFd);
 
-        return this.privateDrmPlatformFactory.create(drmDevice,
-                                                     drmFd,
-                                                     drmEventBus,
-                                                     drmOutputs);
+        return drmEventBus;
     }
 
     /*
-     * Find primary GPU
+     * Find all GPUs, primary GPU first
      * Some systems may have multiple DRM devices attached to a single seat. This
      * function loops over all devices and tries to find a PCI device with the
-     * boot_vga sysfs attribute set to 1.
+     * boot_vga sysfs attribute set to 1 to use as primary GPU.
      * If no such device is found, the first DRM device reported by udev is used.
      */
-    private long findPrimaryGpu(final long udev,
+    private List<Long> findGpus(final long udev,
                                 final String seat) {
 
         final long udevEnumerate = this.libudev.udev_enumerate_new(udev);
@@ -139,7 +174,7 @@ public class DrmPlatformFactory {
                                                       nref("card[0-9]*").address);
 
         this.libudev.udev_enumerate_scan_devices(udevEnumerate);
-        long drmDevice = 0L;
+        final List<Long> drmDevices = new ArrayList<>();
 
         for (long entry = this.libudev.udev_enumerate_get_list_entry(udevEnumerate);
              entry != 0L;
@@ -179,24 +214,17 @@ public class DrmPlatformFactory {
                 if (id != 0L && wrap(String.class,
                                      id).dref()
                                         .equals("1")) {
-                    if (drmDevice != 0L) {
-                        this.libudev.udev_device_unref(drmDevice);
-                    }
-                    drmDevice = device;
-                    break;
+                    drmDevices.add(0,
+                                   device);
+                    continue;
                 }
             }
 
-            if (drmDevice == 0L) {
-                drmDevice = device;
-            }
-            else {
-                this.libudev.udev_device_unref(device);
-            }
+            drmDevices.add(device);
         }
 
         this.libudev.udev_enumerate_unref(udevEnumerate);
-        return drmDevice;
+        return drmDevices;
     }
 
     private int initDrm(final long device) {
@@ -224,12 +252,8 @@ public class DrmPlatformFactory {
         return fd;
     }
 
-    private List<DrmOutput> createDrmRenderOutputs(final int drmFd) {
-        final long resources = this.libdrm.drmModeGetResources(drmFd);
-        if (resources == 0L) {
-            throw new RuntimeException("Getting drm resources failed.");
-        }
-
+    private List<DrmOutput> createDrmRenderOutputs(final int drmFd,
+                                                   final long resources) {
         final DrmModeRes drmModeRes = wrap(DrmModeRes.class,
                                            resources).dref();
 
@@ -252,7 +276,8 @@ public class DrmPlatformFactory {
                 findCrtcIdForConnector(drmFd,
                                        drmModeRes,
                                        drmModeConnector,
-                                       usedCrtcs).ifPresent(crtcId -> drmOutputs.add(createDrmRenderOutput(drmModeRes,
+                                       usedCrtcs).ifPresent(crtcId -> drmOutputs.add(createDrmRenderOutput(drmFd,
+                                                                                                           drmModeRes,
                                                                                                            drmModeConnector,
                                                                                                            crtcId)));
             }
@@ -293,7 +318,8 @@ public class DrmPlatformFactory {
         return Optional.empty();
     }
 
-    private DrmOutput createDrmRenderOutput(final DrmModeRes drmModeRes,
+    private DrmOutput createDrmRenderOutput(final int drmFd,
+                                            final DrmModeRes drmModeRes,
                                             final DrmModeConnector drmModeConnector,
                                             final int crtcId) {
         /* find highest resolution mode: */
@@ -349,6 +375,7 @@ public class DrmPlatformFactory {
         return this.drmOutputFactory.create(this.wlOutputFactory.create(this.outputFactory.create("dummy",
                                                                                                   outputGeometry,
                                                                                                   outputMode)),
+                                            drmFd,
                                             drmModeRes,
                                             drmModeConnector,
                                             crtcId,
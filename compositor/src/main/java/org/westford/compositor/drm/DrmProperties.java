@@ -0,0 +1,153 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.drm;
+
+import org.freedesktop.jaccall.Pointer;
+import org.westford.nativ.libdrm.DrmModeObjectProperties;
+import org.westford.nativ.libdrm.DrmModePropertyBlobRes;
+import org.westford.nativ.libdrm.DrmModePropertyRes;
+import org.westford.nativ.libdrm.Libdrm;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.freedesktop.jaccall.Pointer.wrap;
+
+/**
+ * Reads the properties of kms objects (crtcs, connectors, planes).
+ */
+public class DrmProperties {
+
+    @Nonnull
+    private final Libdrm libdrm;
+
+    @Inject
+    DrmProperties(@Nonnull final Libdrm libdrm) {
+        this.libdrm = libdrm;
+    }
+
+    /**
+     * @param drmFd      the drm device.
+     * @param objectId   the kms object.
+     * @param objectType one of the DRM_MODE_OBJECT_* types.
+     *
+     * @return the current property values of the object, by property name.
+     */
+    @Nonnull
+    public Map<String, Long> getValues(final int drmFd,
+                                       final int objectId,
+                                       final int objectType) {
+        final Map<String, Long> values = new HashMap<>();
+        forEach(drmFd,
+                objectId,
+                objectType,
+                (name, id, value) -> values.put(name,
+                                                value));
+        return values;
+    }
+
+    /**
+     * @param drmFd      the drm device.
+     * @param objectId   the kms object.
+     * @param objectType one of the DRM_MODE_OBJECT_* types.
+     *
+     * @return the property ids of the object, by property name. Property ids are needed to change a property.
+     */
+    @Nonnull
+    public Map<String, Integer> getIds(final int drmFd,
+                                       final int objectId,
+                                       final int objectType) {
+        final Map<String, Integer> ids = new HashMap<>();
+        forEach(drmFd,
+                objectId,
+                objectType,
+                (name, id, value) -> ids.put(name,
+                                             id));
+        return ids;
+    }
+
+    /**
+     * @param drmFd  the drm device.
+     * @param blobId the value of a blob property.
+     *
+     * @return a copy of the blob data, or nothing if the blob does not exist.
+     */
+    @Nonnull
+    public Optional<byte[]> getBlob(final int drmFd,
+                                    final int blobId) {
+        final long blob = this.libdrm.drmModeGetPropertyBlob(drmFd,
+                                                             blobId);
+        if (blob == 0L) {
+            return Optional.empty();
+        }
+
+        final DrmModePropertyBlobRes drmModePropertyBlobRes = wrap(DrmModePropertyBlobRes.class,
+                                                                   blob).dref();
+        final Pointer<Byte> bytes = wrap(Byte.class,
+                                         drmModePropertyBlobRes.data().address);
+        final byte[]        data  = new byte[drmModePropertyBlobRes.length()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = bytes.dref(i);
+        }
+        this.libdrm.drmModeFreePropertyBlob(blob);
+
+        return Optional.of(data);
+    }
+
+    private void forEach(final int drmFd,
+                         final int objectId,
+                         final int objectType,
+                         @Nonnull final PropertyConsumer propertyConsumer) {
+        final long objectProperties = this.libdrm.drmModeObjectGetProperties(drmFd,
+                                                                             objectId,
+                                                                             objectType);
+        if (objectProperties == 0L) {
+            return;
+        }
+        final DrmModeObjectProperties drmModeObjectProperties = wrap(DrmModeObjectProperties.class,
+                                                                     objectProperties).dref();
+        for (int i = 0; i < drmModeObjectProperties.count_props(); i++) {
+            final int  propertyId = drmModeObjectProperties.props()
+                                                           .dref(i);
+            final long property   = this.libdrm.drmModeGetProperty(drmFd,
+                                                                   propertyId);
+            if (property == 0L) {
+                continue;
+            }
+            propertyConsumer.accept(wrap(DrmModePropertyRes.class,
+                                         property).dref()
+                                                  .name()
+                                                  .dref(),
+                                    propertyId,
+                                    drmModeObjectProperties.prop_values()
+                                                           .dref(i));
+            this.libdrm.drmModeFreeProperty(property);
+        }
+        this.libdrm.drmModeFreeObjectProperties(objectProperties);
+    }
+
+    @FunctionalInterface
+    private interface PropertyConsumer {
+        void accept(@Nonnull String name,
+                    int id,
+                    long value);
+    }
+}
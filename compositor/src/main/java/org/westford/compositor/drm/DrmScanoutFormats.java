@@ -0,0 +1,212 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.drm;
+
+import org.freedesktop.jaccall.Pointer;
+import org.westford.nativ.ScratchArena;
+import org.westford.nativ.libdrm.DrmModePlane;
+import org.westford.nativ.libdrm.DrmModePlaneRes;
+import org.westford.nativ.libdrm.DrmModePropertyBlobRes;
+import org.westford.nativ.libdrm.DrmModeRes;
+import org.westford.nativ.libdrm.Libdrm;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.freedesktop.jaccall.Pointer.wrap;
+import static org.westford.nativ.libdrm.Libdrm.DRM_CAP_ADDFB2_MODIFIERS;
+import static org.westford.nativ.libdrm.Libdrm.DRM_CLIENT_CAP_UNIVERSAL_PLANES;
+import static org.westford.nativ.libdrm.Libdrm.DRM_MODE_OBJECT_PLANE;
+import static org.westford.nativ.libdrm.Libdrm.DRM_PLANE_TYPE_PRIMARY;
+
+/**
+ * Finds the format modifiers the primary plane of an output can scan out, as advertised by the IN_FORMATS property of
+ * the plane. Framebuffers with tiled or compressed modifiers need less memory bandwidth than linear ones.
+ */
+public class DrmScanoutFormats {
+
+    private static final long[] NO_MODIFIERS = new long[0];
+
+    /**
+     * sizeof(struct drm_format_modifier)
+     */
+    private static final int FORMAT_MODIFIER_SIZE = 24;
+
+    @Nonnull
+    private final Libdrm        libdrm;
+    @Nonnull
+    private final DrmProperties drmProperties;
+
+    @Inject
+    DrmScanoutFormats(@Nonnull final Libdrm libdrm,
+                      @Nonnull final DrmProperties drmProperties) {
+        this.libdrm = libdrm;
+        this.drmProperties = drmProperties;
+    }
+
+    /**
+     * @param drmFd     the drm device.
+     * @param drmOutput the output whose primary plane is queried.
+     * @param format    a drm fourcc format.
+     *
+     * @return the modifiers the primary plane supports for the format. Empty if the kernel or driver can not create
+     * framebuffers with modifiers or does not advertise them, in which case framebuffers should be created without.
+     */
+    @Nonnull
+    public long[] getModifiers(final int drmFd,
+                               @Nonnull final DrmOutput drmOutput,
+                               final int format) {
+        final ScratchArena arena = ScratchArena.get();
+        try (ScratchArena.Scope scope = arena.scope()) {
+            final Pointer<Long> cap = arena.nref(0L);
+            if (this.libdrm.drmGetCap(drmFd,
+                                      DRM_CAP_ADDFB2_MODIFIERS,
+                                      cap.address) != 0 || cap.dref() == 0L) {
+                return NO_MODIFIERS;
+            }
+        }
+        //without universal planes the primary plane is hidden from us
+        if (this.libdrm.drmSetClientCap(drmFd,
+                                        DRM_CLIENT_CAP_UNIVERSAL_PLANES,
+                                        1L) != 0) {
+            return NO_MODIFIERS;
+        }
+
+        return findPrimaryPlane(drmFd,
+                                drmOutput).map(planeId -> readInFormats(drmFd,
+                                                                        planeId,
+                                                                        format))
+                                          .orElse(NO_MODIFIERS);
+    }
+
+    @Nonnull
+    private Optional<Integer> findPrimaryPlane(final int drmFd,
+                                               @Nonnull final DrmOutput drmOutput) {
+        final DrmModeRes drmModeRes = drmOutput.getDrmModeRes();
+        int              crtcIndex  = -1;
+        for (int i = 0; i < drmModeRes.count_crtcs(); i++) {
+            if (drmModeRes.crtcs()
+                          .dref(i) == drmOutput.getCrtcId()) {
+                crtcIndex = i;
+                break;
+            }
+        }
+        if (crtcIndex < 0) {
+            return Optional.empty();
+        }
+
+        final long planeResources = this.libdrm.drmModeGetPlaneResources(drmFd);
+        if (planeResources == 0L) {
+            return Optional.empty();
+        }
+        final DrmModePlaneRes drmModePlaneRes = wrap(DrmModePlaneRes.class,
+                                                     planeResources).dref();
+
+        Optional<Integer> primaryPlane = Optional.empty();
+        for (int i = 0; i < drmModePlaneRes.count_planes() && !primaryPlane.isPresent(); i++) {
+            final long plane = this.libdrm.drmModeGetPlane(drmFd,
+                                                           drmModePlaneRes.planes()
+                                                                          .dref(i));
+            if (plane == 0L) {
+                continue;
+            }
+            final DrmModePlane drmModePlane = wrap(DrmModePlane.class,
+                                                   plane).dref();
+            final int planeId = drmModePlane.plane_id();
+            if ((drmModePlane.possible_crtcs() & (1 << crtcIndex)) != 0) {
+                final Long type = this.drmProperties.getValues(drmFd,
+                                                               planeId,
+                                                               DRM_MODE_OBJECT_PLANE)
+                                                    .get("type");
+                if (type != null && type == DRM_PLANE_TYPE_PRIMARY) {
+                    primaryPlane = Optional.of(planeId);
+                }
+            }
+            this.libdrm.drmModeFreePlane(plane);
+        }
+        this.libdrm.drmModeFreePlaneResources(planeResources);
+
+        return primaryPlane;
+    }
+
+    /**
+     * Parse the struct drm_format_modifier_blob of the IN_FORMATS plane property.
+     */
+    @Nonnull
+    private long[] readInFormats(final int drmFd,
+                                 final int planeId,
+                                 final int format) {
+        final Long blobId = this.drmProperties.getValues(drmFd,
+                                                         planeId,
+                                                         DRM_MODE_OBJECT_PLANE)
+                                              .get("IN_FORMATS");
+        if (blobId == null) {
+            return NO_MODIFIERS;
+        }
+        final long blob = this.libdrm.drmModeGetPropertyBlob(drmFd,
+                                                             blobId.intValue());
+        if (blob == 0L) {
+            return NO_MODIFIERS;
+        }
+
+        final long data = wrap(DrmModePropertyBlobRes.class,
+                               blob).dref()
+                                    .data()
+                                    .address;
+        final Pointer<Integer> header          = wrap(Integer.class,
+                                                      data);
+        final int              countFormats    = header.dref(2);
+        final int              formatsOffset   = header.dref(3);
+        final int              countModifiers  = header.dref(4);
+        final int              modifiersOffset = header.dref(5);
+
+        final Pointer<Integer> formats     = wrap(Integer.class,
+                                                  data + formatsOffset);
+        int                    formatIndex = -1;
+        for (int i = 0; i < countFormats; i++) {
+            if (formats.dref(i) == format) {
+                formatIndex = i;
+                break;
+            }
+        }
+
+        final LongStream.Builder modifiers = LongStream.builder();
+        if (formatIndex >= 0) {
+            for (int i = 0; i < countModifiers; i++) {
+                final long modifier = data + modifiersOffset + (long) i * FORMAT_MODIFIER_SIZE;
+                //the formats bitmask covers 64 formats, starting at offset
+                final long formatMask = wrap(Long.class,
+                                             modifier).dref();
+                final int offset = wrap(Integer.class,
+                                        modifier + 8).dref();
+                final int bit = formatIndex - offset;
+                if (bit >= 0 && bit < 64 && ((formatMask >>> bit) & 1L) != 0L) {
+                    modifiers.add(wrap(Long.class,
+                                       modifier + 16).dref());
+                }
+            }
+        }
+        this.libdrm.drmModeFreePropertyBlob(blob);
+
+        return modifiers.build()
+                        .distinct()
+                        .toArray();
+    }
+}
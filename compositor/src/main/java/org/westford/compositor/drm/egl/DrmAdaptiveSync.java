@@ -0,0 +1,107 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.drm.egl;
+
+import com.google.auto.factory.AutoFactory;
+import com.google.auto.factory.Provided;
+import org.westford.nativ.libdrm.Libdrm;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.westford.nativ.libdrm.Libdrm.DRM_MODE_OBJECT_CRTC;
+
+/**
+ * Variable refresh rate of a crtc that drives a vrr capable connector. While enabled, the crtc waits for a page flip
+ * before starting the next refresh instead of refreshing at the fixed rate of its mode, up to the minimum refresh rate
+ * of the panel.
+ */
+@AutoFactory(className = "DrmAdaptiveSyncFactory",
+             allowSubclasses = true)
+public class DrmAdaptiveSync {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    @Nonnull
+    private final Libdrm  libdrm;
+    private final int     drmFd;
+    private final int     crtcId;
+    private final int     vrrEnabledProperty;
+    private final int     minRefresh;
+    private       boolean enabled;
+
+    DrmAdaptiveSync(@Provided @Nonnull final Libdrm libdrm,
+                    final int drmFd,
+                    final int crtcId,
+                    final int vrrEnabledProperty,
+                    @Nonnegative final int minRefresh) {
+        this.libdrm = libdrm;
+        this.drmFd = drmFd;
+        this.crtcId = crtcId;
+        this.vrrEnabledProperty = vrrEnabledProperty;
+        this.minRefresh = minRefresh;
+    }
+
+    /**
+     * Set the VRR_ENABLED property of the crtc. Does nothing if the property already has the requested value.
+     *
+     * @param enabled true to refresh on page flips, false to refresh at the rate of the mode.
+     */
+    public void setEnabled(final boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        if (this.libdrm.drmModeObjectSetProperty(this.drmFd,
+                                                 this.crtcId,
+                                                 DRM_MODE_OBJECT_CRTC,
+                                                 this.vrrEnabledProperty,
+                                                 enabled ? 1L : 0L) != 0) {
+            LOGGER.warning(String.format("Failed to %s variable refresh rate on crtc %d.",
+                                         enabled ? "enable" : "disable",
+                                         this.crtcId));
+            return;
+        }
+        this.enabled = enabled;
+        LOGGER.fine(String.format("Variable refresh rate %s on crtc %d.",
+                                  enabled ? "enabled" : "disabled",
+                                  this.crtcId));
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return the lowest refresh rate of the panel, in Hz.
+     */
+    @Nonnegative
+    public int getMinRefresh() {
+        return this.minRefresh;
+    }
+
+    /**
+     * @return the longest time the panel can wait for a new frame, in nanoseconds. Frames that take longer are
+     * repeated by the driver.
+     */
+    @Nonnegative
+    public long getMaxFramePeriod() {
+        return TimeUnit.SECONDS.toNanos(1) / this.minRefresh;
+    }
+}
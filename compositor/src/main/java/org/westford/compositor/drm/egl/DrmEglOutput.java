@@ -26,27 +26,66 @@ import org.freedesktop.jaccall.Unsigned;
 import org.freedesktop.wayland.server.Display;
 import org.freedesktop.wayland.server.EventLoop;
 import org.freedesktop.wayland.server.EventSource;
+import org.freedesktop.wayland.server.WlBufferResource;
+import org.westford.compositor.core.Buffer;
+import org.westford.compositor.core.EglBuffer;
 import org.westford.compositor.core.EglOutput;
 import org.westford.compositor.core.EglOutputState;
+import org.westford.compositor.core.FrameStats;
+import org.westford.compositor.core.FrameStatsRegistry;
+import org.westford.compositor.core.OutputMode;
 import org.westford.compositor.core.Renderer;
+import org.westford.compositor.core.SceneSnapshot;
+import org.westford.compositor.core.SurfaceView;
+import org.westford.compositor.core.Trace;
+import org.westford.compositor.core.calc.Mat4;
+import org.westford.compositor.core.calc.Vec4;
 import org.westford.compositor.drm.DrmOutput;
 import org.westford.compositor.drm.DrmPageFlipCallback;
 import org.westford.compositor.protocol.WlOutput;
+import org.westford.nativ.ScratchArena;
 import org.westford.nativ.glibc.Libc;
+import org.westford.nativ.libdrm.DrmModeModeInfo;
 import org.westford.nativ.libdrm.Libdrm;
 import org.westford.nativ.libgbm.Libgbm;
 import org.westford.nativ.libgbm.Pointerdestroy_user_data;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
+import static org.westford.nativ.libEGL.LibEGL.EGL_TEXTURE_RGB;
+import static org.westford.nativ.libdrm.Libdrm.DRM_FORMAT_MOD_INVALID;
+import static org.westford.nativ.libdrm.Libdrm.DRM_MODE_FB_MODIFIERS;
 import static org.westford.nativ.libdrm.Libdrm.DRM_MODE_PAGE_FLIP_EVENT;
+import static org.westford.nativ.libgbm.Libgbm.GBM_BO_IMPORT_WL_BUFFER;
+import static org.westford.nativ.libgbm.Libgbm.GBM_BO_USE_SCANOUT;
 
 //TODO put all gbm/egl specifics here
 @AutoFactory(allowSubclasses = true,
              className = "DrmEglOutputFactory")
 public class DrmEglOutput implements EglOutput, DrmPageFlipCallback {
 
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /**
+     * Time before the predicted vblank at which we start composing a new frame. A smaller window lowers latency but
+     * increases the chance of missing the vblank. Set with {@code -Dwestford.drm.repaint.window=<milliseconds>}.
+     */
+    private static final long REPAINT_WINDOW = TimeUnit.MILLISECONDS.toNanos(Long.getLong("westford.drm.repaint.window",
+                                                                                          7L));
+    /**
+     * Vblank predictions based on a page flip older than this are not trusted.
+     */
+    private static final long MAX_PREDICTION = TimeUnit.SECONDS.toNanos(1);
+
     @Nonnull
     private final Libc    libc;
     @Nonnull
@@ -58,34 +97,71 @@ public class DrmEglOutput implements EglOutput, DrmPageFlipCallback {
 
     @Nonnull
     private final Renderer renderer;
+    @Nonnull
+    private final FrameStatsRegistry frameStatsRegistry;
 
-    private final int       drmFd;
-    private final long      gbmSurface;
+    private final int                  drmFd;
+    private final long                 gbmSurface;
+    private final boolean              modifiers;
     @Nonnull
-    private final DrmOutput drmOutput;
-    private final long      eglSurface;
-    private final long      eglContext;
-    private final long      eglDisplay;
-    private       long      gbmBo;
-    private       long      nextGbmBo;
+    private final Optional<DrmGpuCopy>      gpuCopy;
+    @Nonnull
+    private final Optional<DrmAdaptiveSync> adaptiveSync;
+    @Nonnull
+    private final DrmOutput                 drmOutput;
+    private final long                      eglSurface;
+    private final long                      eglContext;
+    private final long                      eglDisplay;
+    private       long                      gbmBo;
+    private       long                      nextGbmBo;
     private       boolean               renderPending       = false;
     private       boolean               pageFlipPending     = false;
     private       Optional<Runnable>    afterPageFlipRender = Optional.empty();
     private       Optional<EventSource> onIdleEventSource   = Optional.empty();
     private final EventLoop.IdleHandler doRender            = this::doRender;
-    private final Optional<Runnable>    whenIdleDoRender    = Optional.of(this::whenIdleDoRender);
+    private final Optional<Runnable>    whenRepaintDoRender = Optional.of(this::whenRepaintDoRender);
+    @Nonnull
+    private final EventSource           repaintTimer;
     private boolean enabled;
     private Optional<EglOutputState> state = Optional.empty();
 
+    /*
+     * repaint scheduling, all times are CLOCK_MONOTONIC nanoseconds.
+     */
+    private long lastVblank;
+    private long targetVblank;
+    private long pageFlipRequested;
+
+    /*
+     * direct scan-out of fullscreen client buffers. Either gbmBo or scanoutBo is on screen, the other one is 0.
+     */
+    @Nonnull
+    private final Map<WlBufferResource, Long> scanoutBos          = new HashMap<>();
+    /**
+     * bos of client buffers that were destroyed while on screen, destroyed once they are replaced.
+     */
+    @Nonnull
+    private final Set<Long>                   destroyedScanoutBos = new HashSet<>();
+    private       long                        scanoutBo;
+    private       long                        nextScanoutBo;
+    @Nonnull
+    private       Optional<Runnable>          scanoutReplaced     = Optional.empty();
+    @Nonnull
+    private       Optional<Runnable>          nextScanoutReplaced = Optional.empty();
+
 
     DrmEglOutput(@Nonnull @Provided final Libc libc,
                  @Nonnull @Provided final Libgbm libgbm,
                  @Nonnull @Provided final Libdrm libdrm,
                  @Nonnull @Provided final Display display,
                  @Nonnull @Provided final Renderer renderer,
+                 @Nonnull @Provided final FrameStatsRegistry frameStatsRegistry,
                  final int drmFd,
                  final long gbmBo,
                  final long gbmSurface,
+                 final boolean modifiers,
+                 @Nonnull final Optional<DrmGpuCopy> gpuCopy,
+                 @Nonnull final Optional<DrmAdaptiveSync> adaptiveSync,
                  @Nonnull final DrmOutput drmOutput,
                  final long eglSurface,
                  final long eglContext,
@@ -95,13 +171,22 @@ public class DrmEglOutput implements EglOutput, DrmPageFlipCallback {
         this.libdrm = libdrm;
         this.display = display;
         this.renderer = renderer;
+        this.frameStatsRegistry = frameStatsRegistry;
         this.drmFd = drmFd;
         this.gbmBo = gbmBo;
         this.gbmSurface = gbmSurface;
+        this.modifiers = modifiers;
+        this.gpuCopy = gpuCopy;
+        this.adaptiveSync = adaptiveSync;
         this.drmOutput = drmOutput;
         this.eglSurface = eglSurface;
         this.eglContext = eglContext;
         this.eglDisplay = eglDisplay;
+        this.repaintTimer = display.getEventLoop()
+                                   .addTimer(() -> {
+                                       doRender();
+                                       return 0;
+                                   });
     }
 
     @Override
@@ -109,18 +194,229 @@ public class DrmEglOutput implements EglOutput, DrmPageFlipCallback {
         this.nextGbmBo = this.libgbm.gbm_surface_lock_front_buffer(this.gbmSurface);
         this.libdrm.drmModePageFlip(this.drmFd,
                                     this.drmOutput.getCrtcId(),
-                                    getFbId(this.nextGbmBo),
+                                    getRenderFbId(this.nextGbmBo),
                                     DRM_MODE_PAGE_FLIP_EVENT,
                                     Pointer.from(this).address);
         this.pageFlipPending = true;
+        this.pageFlipRequested = System.nanoTime();
+    }
+
+    @Override
+    public boolean scanout(@Nonnull final SceneSnapshot sceneSnapshot,
+                           @Nonnull final Runnable replaced) {
+        updateAdaptiveSync(sceneSnapshot);
+
+        final List<SurfaceView> surfaceViews = sceneSnapshot.getSurfaceViews();
+        //client buffers live on the primary gpu
+        if (surfaceViews.isEmpty() || this.pageFlipPending || this.gpuCopy.isPresent()) {
+            return false;
+        }
+        final SurfaceView surfaceView = surfaceViews.get(surfaceViews.size() - 1);
+        if (!coversOutput(surfaceView)) {
+            return false;
+        }
+
+        final Optional<Long> bo = importBo(((EglBuffer) surfaceView.getBuffer()).getWlBufferResource());
+        if (!bo.isPresent()) {
+            return false;
+        }
+        if (bo.get() == this.scanoutBo) {
+            //already on screen
+            replaced.run();
+            return true;
+        }
+
+        if (this.libdrm.drmModePageFlip(this.drmFd,
+                                        this.drmOutput.getCrtcId(),
+                                        getFbId(bo.get()),
+                                        DRM_MODE_PAGE_FLIP_EVENT,
+                                        Pointer.from(this).address) != 0) {
+            return false;
+        }
+        this.nextGbmBo = 0L;
+        this.nextScanoutBo = bo.get();
+        this.nextScanoutReplaced = Optional.of(replaced);
+        this.pageFlipPending = true;
+        this.pageFlipRequested = System.nanoTime();
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public SceneSnapshot assignPlanes(@Nonnull final SceneSnapshot sceneSnapshot) {
+        updateAdaptiveSync(sceneSnapshot);
+        return sceneSnapshot;
+    }
+
+    /**
+     * Refresh at a variable rate while a fullscreen surface is on top, so its frames are shown when they are
+     * committed instead of on the next fixed vblank.
+     */
+    private void updateAdaptiveSync(@Nonnull final SceneSnapshot sceneSnapshot) {
+        this.adaptiveSync.ifPresent(drmAdaptiveSync -> {
+            final List<SurfaceView> surfaceViews = sceneSnapshot.getSurfaceViews();
+            drmAdaptiveSync.setEnabled(!surfaceViews.isEmpty() &&
+                                       isFullscreen(surfaceViews.get(surfaceViews.size() - 1)));
+        });
+    }
+
+    /**
+     * @return true if the view covers all of this output.
+     */
+    private boolean isFullscreen(@Nonnull final SurfaceView surfaceView) {
+        final Buffer buffer = surfaceView.getBuffer();
+        final int    width  = buffer.getWidth();
+        final int    height = buffer.getHeight();
+
+        final Mat4 transform = getWlOutput().getOutput()
+                                            .getInverseTransform()
+                                            .multiply(surfaceView.getTransform());
+        float left   = Float.POSITIVE_INFINITY;
+        float top    = Float.POSITIVE_INFINITY;
+        float right  = Float.NEGATIVE_INFINITY;
+        float bottom = Float.NEGATIVE_INFINITY;
+        for (final Vec4 corner : new Vec4[]{Vec4.create(0f,
+                                                        0f,
+                                                        0f,
+                                                        1f),
+                                            Vec4.create(width,
+                                                        0f,
+                                                        0f,
+                                                        1f),
+                                            Vec4.create(0f,
+                                                        height,
+                                                        0f,
+                                                        1f),
+                                            Vec4.create(width,
+                                                        height,
+                                                        0f,
+                                                        1f)}) {
+            final Vec4 outputCorner = transform.multiply(corner);
+            left = Math.min(left,
+                            outputCorner.getX());
+            top = Math.min(top,
+                           outputCorner.getY());
+            right = Math.max(right,
+                             outputCorner.getX());
+            bottom = Math.max(bottom,
+                              outputCorner.getY());
+        }
+
+        final OutputMode mode = getWlOutput().getOutput()
+                                             .getMode();
+        return left <= 0f && top <= 0f && right >= mode.getWidth() && bottom >= mode.getHeight();
+    }
+
+    /**
+     * @return true if the view is an opaque egl buffer that exactly covers this output.
+     */
+    private boolean coversOutput(@Nonnull final SurfaceView surfaceView) {
+        final Buffer buffer = surfaceView.getBuffer();
+        if (!(buffer instanceof EglBuffer) || ((EglBuffer) buffer).getTextureFormat() != EGL_TEXTURE_RGB) {
+            return false;
+        }
+
+        final OutputMode mode = getWlOutput().getOutput()
+                                             .getMode();
+        final int width  = mode.getWidth();
+        final int height = mode.getHeight();
+        if (buffer.getWidth() != width || buffer.getHeight() != height) {
+            return false;
+        }
+
+        final Mat4 transform = getWlOutput().getOutput()
+                                            .getInverseTransform()
+                                            .multiply(surfaceView.getTransform());
+        final Vec4 topLeft = transform.multiply(Vec4.create(0f,
+                                                            0f,
+                                                            0f,
+                                                            1f));
+        final Vec4 topRight = transform.multiply(Vec4.create(width,
+                                                             0f,
+                                                             0f,
+                                                             1f));
+        final Vec4 bottomRight = transform.multiply(Vec4.create(width,
+                                                                height,
+                                                                0f,
+                                                                1f));
+        return topLeft.getX() == 0f && topLeft.getY() == 0f
+               && topRight.getX() == width && topRight.getY() == 0f
+               && bottomRight.getX() == width && bottomRight.getY() == height;
+    }
+
+    /**
+     * Import a client buffer as a bo with a framebuffer. Buffers that can not be imported or scanned out are
+     * remembered so they are not tried again.
+     */
+    @Nonnull
+    private Optional<Long> importBo(@Nonnull final WlBufferResource wlBufferResource) {
+        final Long importedBo = this.scanoutBos.get(wlBufferResource);
+        if (importedBo != null) {
+            return importedBo == 0L ? Optional.empty() : Optional.of(importedBo);
+        }
+
+        long bo = this.libgbm.gbm_bo_import(this.libgbm.gbm_bo_get_device(this.gbmBo == 0L ?
+                                                                          this.scanoutBo :
+                                                                          this.gbmBo),
+                                            GBM_BO_IMPORT_WL_BUFFER,
+                                            wlBufferResource.pointer,
+                                            GBM_BO_USE_SCANOUT);
+        if (bo != 0L && !createFb(bo,
+                                  true).isPresent()) {
+            this.libgbm.gbm_bo_destroy(bo);
+            bo = 0L;
+        }
+
+        this.scanoutBos.put(wlBufferResource,
+                            bo);
+        wlBufferResource.register(() -> {
+            final Long destroyedBo = this.scanoutBos.remove(wlBufferResource);
+            if (destroyedBo == null || destroyedBo == 0L) {
+                return;
+            }
+            if (destroyedBo == this.scanoutBo || destroyedBo == this.nextScanoutBo) {
+                this.destroyedScanoutBos.add(destroyedBo);
+            }
+            else {
+                this.libgbm.gbm_bo_destroy(destroyedBo);
+            }
+        });
+
+        return bo == 0L ? Optional.empty() : Optional.of(bo);
+    }
+
+    /**
+     * Get the framebuffer that shows a rendered bo of the gbm surface. Bos rendered for an output of a secondary gpu
+     * are delivered to that gpu first.
+     */
+    private int getRenderFbId(final long gbmBo) {
+        return this.gpuCopy.map(drmGpuCopy -> createFb(drmGpuCopy.getScanoutBo(gbmBo),
+                                                       true).orElseThrow(() -> new RuntimeException("failed to create fb")))
+                           .orElseGet(() -> getFbId(gbmBo));
     }
 
     public int getFbId(final long gbmBo) {
+        return createFb(gbmBo,
+                        this.modifiers).orElseThrow(() -> new RuntimeException("failed to create fb"));
+    }
+
+    /**
+     * Get the framebuffer of a bo, creating it if needed.
+     *
+     * @param gbmBo     the bo.
+     * @param modifiers create the framebuffer with the layout and format of the bo, instead of assuming a single
+     *                  plane xrgb layout.
+     *
+     * @return the framebuffer id, empty if it could not be created.
+     */
+    @Nonnull
+    private Optional<Integer> createFb(final long gbmBo,
+                                       final boolean modifiers) {
         final long fbIdP = this.libgbm.gbm_bo_get_user_data(gbmBo);
         if (fbIdP != 0L) {
-            return Pointer.wrap(Integer.class,
-                                fbIdP)
-                          .dref();
+            return Optional.of(Pointer.wrap(Integer.class,
+                                            fbIdP)
+                                      .dref());
         }
 
         final Pointer<Integer> fb = Pointer.calloc(1,
@@ -128,36 +424,117 @@ public class DrmEglOutput implements EglOutput, DrmPageFlipCallback {
                                                    Integer.class);
         final int width  = this.libgbm.gbm_bo_get_width(gbmBo);
         final int height = this.libgbm.gbm_bo_get_height(gbmBo);
-        final int stride = this.libgbm.gbm_bo_get_stride(gbmBo);
-        final int handle = (int) this.libgbm.gbm_bo_get_handle(gbmBo);
-        final int ret = this.libdrm.drmModeAddFB(this.drmFd,
-                                                 width,
-                                                 height,
-                                                 (byte) 24,
-                                                 (byte) 32,
-                                                 stride,
-                                                 handle,
-                                                 fb.address);
+        final int ret    = modifiers ?
+                           addFbWithModifiers(gbmBo,
+                                              width,
+                                              height,
+                                              fb.address) :
+                           this.libdrm.drmModeAddFB(this.drmFd,
+                                                    width,
+                                                    height,
+                                                    (byte) 24,
+                                                    (byte) 32,
+                                                    this.libgbm.gbm_bo_get_stride(gbmBo),
+                                                    (int) this.libgbm.gbm_bo_get_handle(gbmBo),
+                                                    fb.address);
         if (ret != 0) {
-            throw new RuntimeException("failed to create fb");
+            fb.close();
+            return Optional.empty();
         }
 
         this.libgbm.gbm_bo_set_user_data(gbmBo,
                                          fb.address,
                                          Pointerdestroy_user_data.nref(this::destroyUserData).address);
 
-        return fb.dref();
+        return Optional.of(fb.dref());
+    }
+
+    /**
+     * Create a framebuffer for a buffer object with an explicit, possibly tiled or compressed, layout over one or more
+     * planes.
+     */
+    private int addFbWithModifiers(final long gbmBo,
+                                   final int width,
+                                   final int height,
+                                   final long fb) {
+        final long   modifier   = this.libgbm.gbm_bo_get_modifier(gbmBo);
+        final int    planeCount = this.libgbm.gbm_bo_get_plane_count(gbmBo);
+        final int[]  handles    = new int[4];
+        final int[]  pitches    = new int[4];
+        final int[]  offsets    = new int[4];
+        final long[] modifiers  = new long[4];
+        for (int plane = 0; plane < planeCount; plane++) {
+            handles[plane] = (int) this.libgbm.gbm_bo_get_handle_for_plane(gbmBo,
+                                                                           plane);
+            pitches[plane] = this.libgbm.gbm_bo_get_stride_for_plane(gbmBo,
+                                                                     plane);
+            offsets[plane] = this.libgbm.gbm_bo_get_offset(gbmBo,
+                                                           plane);
+            modifiers[plane] = modifier;
+        }
+
+        final ScratchArena arena = ScratchArena.get();
+        try (ScratchArena.Scope scope = arena.scope()) {
+            return this.libdrm.drmModeAddFB2WithModifiers(this.drmFd,
+                                                          width,
+                                                          height,
+                                                          this.libgbm.gbm_bo_get_format(gbmBo),
+                                                          arena.nref(handles).address,
+                                                          arena.nref(pitches).address,
+                                                          arena.nref(offsets).address,
+                                                          arena.nref(modifiers).address,
+                                                          fb,
+                                                          modifier == DRM_FORMAT_MOD_INVALID ?
+                                                          0 :
+                                                          DRM_MODE_FB_MODIFIERS);
+        }
     }
 
     @Override
     public void onPageFlip(@Unsigned final int sequence,
                            @Unsigned final int tv_sec,
                            @Unsigned final int tv_usec) {
-        this.libgbm.gbm_surface_release_buffer(this.gbmSurface,
-                                               this.gbmBo);
+        if (this.gbmBo != 0L) {
+            this.libgbm.gbm_surface_release_buffer(this.gbmSurface,
+                                                   this.gbmBo);
+        }
+        this.scanoutReplaced.ifPresent(Runnable::run);
+        if (this.destroyedScanoutBos.remove(this.scanoutBo)) {
+            this.libgbm.gbm_bo_destroy(this.scanoutBo);
+        }
         this.gbmBo = this.nextGbmBo;
+        this.scanoutBo = this.nextScanoutBo;
+        this.scanoutReplaced = this.nextScanoutReplaced;
+        this.nextScanoutBo = 0L;
+        this.nextScanoutReplaced = Optional.empty();
         this.pageFlipPending = false;
 
+        //drm page flip timestamps use CLOCK_MONOTONIC, same as System.nanoTime().
+        final long vblank = TimeUnit.SECONDS.toNanos(Integer.toUnsignedLong(tv_sec)) +
+                            TimeUnit.MICROSECONDS.toNanos(Integer.toUnsignedLong(tv_usec));
+        final FrameStats frameStats = this.frameStatsRegistry.get(getWlOutput().getOutput());
+        if (this.lastVblank != 0L &&
+            vblank - this.lastVblank <= MAX_PREDICTION) {
+            frameStats.recordRefresh(vblank - this.lastVblank);
+        }
+        if (this.targetVblank != 0L &&
+            vblank - this.targetVblank > getRefreshPeriod() / 2) {
+            frameStats.recordMissedDeadline();
+            LOGGER.fine(String.format("Output %s missed its vblank deadline by %d us. %d missed deadlines.",
+                                      this.drmOutput.getDrmModeConnector()
+                                                    .connector_id(),
+                                      TimeUnit.NANOSECONDS.toMicros(vblank - this.targetVblank),
+                                      frameStats.getMissedDeadlines()));
+        }
+        this.lastVblank = vblank;
+        if (Trace.ENABLED) {
+            Trace.complete("page flip",
+                           this.pageFlipRequested,
+                           vblank);
+        }
+        frameStats.recordPageFlip(Math.max(0L,
+                                           vblank - this.pageFlipRequested));
+
         this.afterPageFlipRender.ifPresent(Runnable::run);
         this.afterPageFlipRender = Optional.empty();
     }
@@ -211,6 +588,7 @@ public class DrmEglOutput implements EglOutput, DrmPageFlipCallback {
 
     private void doRender() {
         this.onIdleEventSource = Optional.empty();
+        this.targetVblank = predictVblank(System.nanoTime());
         this.renderer.visit(this);
         this.display.flushClients();
         this.renderPending = false;
@@ -218,8 +596,13 @@ public class DrmEglOutput implements EglOutput, DrmPageFlipCallback {
 
     @Override
     public void disable() {
+        this.adaptiveSync.ifPresent(drmAdaptiveSync -> drmAdaptiveSync.setEnabled(false));
         this.afterPageFlipRender = Optional.empty();
         this.onIdleEventSource.ifPresent(EventSource::remove);
+        this.onIdleEventSource = Optional.empty();
+        //disarm
+        this.repaintTimer.updateTimer(0);
+        this.renderPending = false;
         this.enabled = false;
     }
 
@@ -242,13 +625,90 @@ public class DrmEglOutput implements EglOutput, DrmPageFlipCallback {
         //schedule a new render as soon as the pageflip ends, but only if we haven't scheduled one already
         if (this.pageFlipPending) {
             if (!this.afterPageFlipRender.isPresent()) {
-                this.afterPageFlipRender = this.whenIdleDoRender;
+                this.afterPageFlipRender = this.whenRepaintDoRender;
             }
         }
         //schedule a new render but only if we haven't scheduled one already.
         else if (!this.renderPending) {
+            whenRepaintDoRender();
+        }
+    }
+
+    /**
+     * Start composing a new frame when the repaint window before the next vblank opens. Client commits that arrive
+     * in the meantime will be part of the new frame.
+     */
+    private void whenRepaintDoRender() {
+        if (isAdaptiveSyncEnabled()) {
+            //the panel waits for our frame, show client commits as soon as they arrive.
             whenIdleDoRender();
+            return;
+        }
+
+        final long now        = System.nanoTime();
+        final long vblank     = predictVblank(now);
+        final long delayMilli = TimeUnit.NANOSECONDS.toMillis(vblank - REPAINT_WINDOW - now);
+
+        if (vblank == 0L || delayMilli <= 0) {
+            //no prediction possible or we're already inside the repaint window.
+            whenIdleDoRender();
+        }
+        else {
+            this.renderPending = true;
+            this.repaintTimer.updateTimer((int) delayMilli);
+        }
+    }
+
+    /**
+     * Predict the first vblank after the given time, based on the last page flip.
+     *
+     * @param now the current CLOCK_MONOTONIC time in nanoseconds.
+     *
+     * @return the predicted vblank time, or 0 if no prediction can be made.
+     */
+    private long predictVblank(final long now) {
+        if (this.lastVblank == 0L ||
+            now - this.lastVblank > MAX_PREDICTION) {
+            return 0L;
+        }
+
+        final long refreshPeriod = getRefreshPeriod();
+        if (isAdaptiveSyncEnabled()) {
+            //the panel refreshes as soon as a frame arrives, but not faster than the mode allows. Once it waited
+            //longer than its lowest refresh rate allows it repeats the last frame, which we can not predict.
+            return now - this.lastVblank >= this.adaptiveSync.get()
+                                                             .getMaxFramePeriod() ?
+                   0L :
+                   Math.max(now,
+                            this.lastVblank + refreshPeriod);
         }
+        final long vblanks = (now - this.lastVblank) / refreshPeriod + 1;
+        return this.lastVblank + vblanks * refreshPeriod;
+    }
+
+    /**
+     * @return the time between 2 vblanks of the current mode, in nanoseconds.
+     */
+    @Nonnegative
+    public long getRefreshPeriod() {
+        final DrmModeModeInfo mode   = this.drmOutput.getMode();
+        final long            clock  = Integer.toUnsignedLong(mode.clock());
+        final long            pixels = (long) Short.toUnsignedInt(mode.htotal()) * Short.toUnsignedInt(mode.vtotal());
+        if (clock != 0L && pixels != 0L) {
+            //clock is in kHz
+            return pixels * TimeUnit.MILLISECONDS.toNanos(1) / clock;
+        }
+
+        final long vrefresh = Integer.toUnsignedLong(mode.vrefresh());
+        return TimeUnit.SECONDS.toNanos(1) / (vrefresh == 0L ? 60L : vrefresh);
+    }
+
+    /**
+     * @return true if the output currently refreshes at a variable rate.
+     */
+    public boolean isAdaptiveSyncEnabled() {
+        return this.adaptiveSync.map(DrmAdaptiveSync::isEnabled)
+                                .orElse(false);
     }
 
     private void whenIdleDoRender() {
@@ -258,17 +718,23 @@ public class DrmEglOutput implements EglOutput, DrmPageFlipCallback {
     }
 
     public void setDefaultMode() {
-        final int fbId = getFbId(this.gbmBo);
-
-        final int error = this.libdrm.drmModeSetCrtc(this.drmFd,
-                                                     this.drmOutput.getCrtcId(),
-                                                     fbId,
-                                                     0,
-                                                     0,
-                                                     Pointer.nref(this.drmOutput.getDrmModeConnector()
-                                                                                .connector_id()).address,
-                                                     1,
-                                                     Pointer.ref(this.drmOutput.getMode()).address);
+        final int fbId = this.gbmBo == 0L ?
+                         getFbId(this.scanoutBo) :
+                         getRenderFbId(this.gbmBo);
+
+        final ScratchArena arena = ScratchArena.get();
+        final int          error;
+        try (ScratchArena.Scope scope = arena.scope()) {
+            error = this.libdrm.drmModeSetCrtc(this.drmFd,
+                                               this.drmOutput.getCrtcId(),
+                                               fbId,
+                                               0,
+                                               0,
+                                               arena.nref(this.drmOutput.getDrmModeConnector()
+                                                                        .connector_id()).address,
+                                               1,
+                                               Pointer.ref(this.drmOutput.getMode()).address);
+        }
         if (error != 0) {
             throw new RuntimeException(String.format("failed to drmModeSetCrtc. [%d]",
                                                      this.libc.getErrno()));
@@ -22,8 +22,11 @@ import org.freedesktop.jaccall.Pointer;
 import org.westford.compositor.core.GlRenderer;
 import org.westford.compositor.drm.DrmOutput;
 import org.westford.compositor.drm.DrmPlatform;
+import org.westford.compositor.drm.DrmProperties;
+import org.westford.compositor.drm.DrmScanoutFormats;
 import org.westford.launch.LifeCycleSignals;
 import org.westford.launch.Privileges;
+import org.westford.nativ.ScratchArena;
 import org.westford.nativ.libEGL.EglCreatePlatformWindowSurfaceEXT;
 import org.westford.nativ.libEGL.EglGetPlatformDisplayEXT;
 import org.westford.nativ.libEGL.LibEGL;
@@ -33,7 +36,10 @@ import org.westford.nativ.libgbm.Libgbm;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.logging.Logger;
 
 import static java.lang.String.format;
@@ -48,11 +54,21 @@ import static org.westford.nativ.libEGL.LibEGL.EGL_PLATFORM_GBM_KHR;
 import static org.westford.nativ.libEGL.LibEGL.EGL_RENDER_BUFFER;
 import static org.westford.nativ.libEGL.LibEGL.EGL_VENDOR;
 import static org.westford.nativ.libEGL.LibEGL.EGL_VERSION;
+import static org.westford.nativ.libdrm.Libdrm.DRM_MODE_OBJECT_CONNECTOR;
+import static org.westford.nativ.libdrm.Libdrm.DRM_MODE_OBJECT_CRTC;
 
 public class DrmEglPlatformFactory {
 
     private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
+    /*
+     * edid 1.3 layout of the display descriptors.
+     */
+    private static final int EDID_DESCRIPTORS      = 54;
+    private static final int EDID_DESCRIPTOR_COUNT = 4;
+    private static final int EDID_DESCRIPTOR_SIZE  = 18;
+    private static final int EDID_RANGE_LIMITS     = 0xfd;
+
     @Nonnull
     private final PrivateDrmEglPlatformFactory privateDrmEglPlatformFactory;
     @Nonnull
@@ -71,6 +87,19 @@ public class DrmEglPlatformFactory {
     private final LifeCycleSignals             lifeCycleSignals;
     @Nonnull
     private final Privileges                   privileges;
+    @Nonnull
+    private final DrmScanoutFormats            drmScanoutFormats;
+    @Nonnull
+    private final DrmGpuCopyFactory            drmGpuCopyFactory;
+    @Nonnull
+    private final DrmProperties                drmProperties;
+    @Nonnull
+    private final DrmAdaptiveSyncFactory       drmAdaptiveSyncFactory;
+    /**
+     * gbm devices of secondary gpus, by drm fd.
+     */
+    @Nonnull
+    private final Map<Integer, Long>           secondaryGbmDevices = new HashMap<>();
 
     @Inject
     DrmEglPlatformFactory(@Nonnull final PrivateDrmEglPlatformFactory privateDrmEglPlatformFactory,
@@ -81,7 +110,11 @@ public class DrmEglPlatformFactory {
                           @Nonnull final DrmEglOutputFactory drmEglOutputFactory,
                           @Nonnull final GlRenderer glRenderer,
                           @Nonnull final LifeCycleSignals lifeCycleSignals,
-                          @Nonnull final Privileges privileges) {
+                          @Nonnull final Privileges privileges,
+                          @Nonnull final DrmScanoutFormats drmScanoutFormats,
+                          @Nonnull final DrmGpuCopyFactory drmGpuCopyFactory,
+                          @Nonnull final DrmProperties drmProperties,
+                          @Nonnull final DrmAdaptiveSyncFactory drmAdaptiveSyncFactory) {
         this.privateDrmEglPlatformFactory = privateDrmEglPlatformFactory;
         this.libgbm = libgbm;
         this.libEGL = libEGL;
@@ -91,6 +124,10 @@ public class DrmEglPlatformFactory {
         this.glRenderer = glRenderer;
         this.lifeCycleSignals = lifeCycleSignals;
         this.privileges = privileges;
+        this.drmScanoutFormats = drmScanoutFormats;
+        this.drmGpuCopyFactory = drmGpuCopyFactory;
+        this.drmProperties = drmProperties;
+        this.drmAdaptiveSyncFactory = drmAdaptiveSyncFactory;
     }
 
     public DrmEglPlatform create() {
@@ -140,7 +177,8 @@ public class DrmEglPlatformFactory {
                                                                                     eglConfig)));
         this.lifeCycleSignals.getActivateSignal()
                              .connect(event -> {
-                                 this.privileges.setDrmMaster(this.drmPlatform.getDrmFd());
+                                 this.drmPlatform.getDrmFds()
+                                                 .forEach(this.privileges::setDrmMaster);
                                  drmEglRenderOutputs.forEach(drmEglRenderOutput -> {
                                      drmEglRenderOutput.setDefaultMode();
                                      drmEglRenderOutput.enable();
@@ -149,7 +187,8 @@ public class DrmEglPlatformFactory {
         this.lifeCycleSignals.getDeactivateSignal()
                              .connect(event -> {
                                  drmEglRenderOutputs.forEach(DrmEglOutput::disable);
-                                 this.privileges.dropDrmMaster(this.drmPlatform.getDrmFd());
+                                 this.drmPlatform.getDrmFds()
+                                                 .forEach(this.privileges::dropDrmMaster);
                              });
 
         return this.privateDrmEglPlatformFactory.create(gbmDevice,
@@ -216,13 +255,45 @@ public class DrmEglPlatformFactory {
                                                   final long eglContext,
                                                   final long eglConfig) {
 
-        final long gbmSurface = this.libgbm.gbm_surface_create(gbmDevice,
-                                                               drmOutput.getMode()
-                                                                        .hdisplay(),
-                                                               drmOutput.getMode()
-                                                                        .vdisplay(),
-                                                               Libgbm.GBM_FORMAT_XRGB8888,
-                                                               Libgbm.GBM_BO_USE_SCANOUT | Libgbm.GBM_BO_USE_RENDERING);
+        final int width  = drmOutput.getMode()
+                                    .hdisplay();
+        final int height = drmOutput.getMode()
+                                    .vdisplay();
+
+        //outputs of a secondary gpu are rendered by the primary gpu in a linear layout both can use
+        final boolean secondary = drmOutput.getDrmFd() != this.drmPlatform.getDrmFd();
+
+        //let the driver pick a tiled or compressed layout the primary plane can scan out
+        final long[] modifiers = secondary ?
+                                 new long[0] :
+                                 this.drmScanoutFormats.getModifiers(drmOutput.getDrmFd(),
+                                                                     drmOutput,
+                                                                     Libgbm.GBM_FORMAT_XRGB8888);
+        long gbmSurface = 0L;
+        if (modifiers.length > 0) {
+            final ScratchArena arena = ScratchArena.get();
+            try (ScratchArena.Scope scope = arena.scope()) {
+                gbmSurface = this.libgbm.gbm_surface_create_with_modifiers(gbmDevice,
+                                                                           width,
+                                                                           height,
+                                                                           Libgbm.GBM_FORMAT_XRGB8888,
+                                                                           arena.nref(modifiers).address,
+                                                                           modifiers.length);
+            }
+            if (gbmSurface == 0L) {
+                LOGGER.info("Failed to create gbm surface with modifiers, falling back to implicit layout.");
+            }
+        }
+        final boolean withModifiers = gbmSurface != 0L;
+        if (!withModifiers) {
+            gbmSurface = this.libgbm.gbm_surface_create(gbmDevice,
+                                                        width,
+                                                        height,
+                                                        Libgbm.GBM_FORMAT_XRGB8888,
+                                                        secondary ?
+                                                        Libgbm.GBM_BO_USE_LINEAR | Libgbm.GBM_BO_USE_RENDERING :
+                                                        Libgbm.GBM_BO_USE_SCANOUT | Libgbm.GBM_BO_USE_RENDERING);
+        }
 
         if (gbmSurface == 0) {
             throw new RuntimeException("failed to create gbm surface");
@@ -245,9 +316,17 @@ public class DrmEglPlatformFactory {
                                    eglSurface);
         final long gbmBo = this.libgbm.gbm_surface_lock_front_buffer(gbmSurface);
 
-        final DrmEglOutput drmEglRenderOutput = this.drmEglOutputFactory.create(this.drmPlatform.getDrmFd(),
+        final Optional<DrmGpuCopy> gpuCopy = secondary ?
+                                             Optional.of(this.drmGpuCopyFactory.create(this.secondaryGbmDevices.computeIfAbsent(drmOutput.getDrmFd(),
+                                                                                                                                this.libgbm::gbm_create_device))) :
+                                             Optional.empty();
+
+        final DrmEglOutput drmEglRenderOutput = this.drmEglOutputFactory.create(drmOutput.getDrmFd(),
                                                                                 gbmBo,
                                                                                 gbmSurface,
+                                                                                withModifiers,
+                                                                                gpuCopy,
+                                                                                createAdaptiveSync(drmOutput),
                                                                                 drmOutput,
                                                                                 eglSurface,
                                                                                 eglContext,
@@ -257,6 +336,78 @@ public class DrmEglPlatformFactory {
         return drmEglRenderOutput;
     }
 
+    /**
+     * @return variable refresh rate control of the output, or nothing if the connector is not vrr capable or its
+     * refresh range is unknown.
+     */
+    @Nonnull
+    private Optional<DrmAdaptiveSync> createAdaptiveSync(@Nonnull final DrmOutput drmOutput) {
+        final int drmFd       = drmOutput.getDrmFd();
+        final int connectorId = drmOutput.getDrmModeConnector()
+                                         .connector_id();
+
+        final Map<String, Long> connectorProperties = this.drmProperties.getValues(drmFd,
+                                                                                   connectorId,
+                                                                                   DRM_MODE_OBJECT_CONNECTOR);
+        final Long vrrCapable = connectorProperties.get("vrr_capable");
+        if (vrrCapable == null || vrrCapable == 0L) {
+            return Optional.empty();
+        }
+        final Integer vrrEnabled = this.drmProperties.getIds(drmFd,
+                                                             drmOutput.getCrtcId(),
+                                                             DRM_MODE_OBJECT_CRTC)
+                                                     .get("VRR_ENABLED");
+        if (vrrEnabled == null) {
+            return Optional.empty();
+        }
+
+        //kms does not expose the refresh range of the panel, read it from its edid
+        final Long              edid       = connectorProperties.get("EDID");
+        final Optional<Integer> minRefresh = edid == null ?
+                                             Optional.empty() :
+                                             this.drmProperties.getBlob(drmFd,
+                                                                        edid.intValue())
+                                                               .flatMap(this::getMinRefresh);
+        final int modeRefresh = drmOutput.getMode()
+                                         .vrefresh();
+        if (!minRefresh.isPresent() || minRefresh.get() >= modeRefresh) {
+            LOGGER.info(format("Connector %d is vrr capable but has no usable refresh range.",
+                               connectorId));
+            return Optional.empty();
+        }
+
+        LOGGER.info(format("Connector %d supports variable refresh rates from %d to %d Hz.",
+                           connectorId,
+                           minRefresh.get(),
+                           modeRefresh));
+        return Optional.of(this.drmAdaptiveSyncFactory.create(drmFd,
+                                                              drmOutput.getCrtcId(),
+                                                              vrrEnabled,
+                                                              minRefresh.get()));
+    }
+
+    /**
+     * Find the minimum vertical rate of the display range limits descriptor of an edid.
+     */
+    @Nonnull
+    private Optional<Integer> getMinRefresh(@Nonnull final byte[] edid) {
+        for (int i = 0; i < EDID_DESCRIPTOR_COUNT; i++) {
+            final int descriptor = EDID_DESCRIPTORS + i * EDID_DESCRIPTOR_SIZE;
+            if (descriptor + EDID_DESCRIPTOR_SIZE > edid.length) {
+                break;
+            }
+            if (edid[descriptor] == 0 &&
+                edid[descriptor + 1] == 0 &&
+                (edid[descriptor + 3] & 0xff) == EDID_RANGE_LIMITS) {
+                //rates above 255 Hz have an offset flag
+                final int offset     = (edid[descriptor + 4] & 0x03) == 0x03 ? 255 : 0;
+                final int minRefresh = (edid[descriptor + 5] & 0xff) + offset;
+                return minRefresh == 0 ? Optional.empty() : Optional.of(minRefresh);
+            }
+        }
+        return Optional.empty();
+    }
+
     private long createEglSurface(final long eglDisplay,
                                   final long config,
                                   final long gbmSurface) {
@@ -0,0 +1,192 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.drm.egl;
+
+import com.google.auto.factory.AutoFactory;
+import com.google.auto.factory.Provided;
+import org.freedesktop.jaccall.Pointer;
+import org.westford.nativ.ScratchArena;
+import org.westford.nativ.glibc.Libc;
+import org.westford.nativ.libgbm.Libgbm;
+import org.westford.nativ.libgbm.gbm_import_fd_data;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.westford.nativ.libgbm.Libgbm.GBM_BO_IMPORT_FD;
+import static org.westford.nativ.libgbm.Libgbm.GBM_BO_TRANSFER_READ;
+import static org.westford.nativ.libgbm.Libgbm.GBM_BO_TRANSFER_WRITE;
+import static org.westford.nativ.libgbm.Libgbm.GBM_BO_USE_LINEAR;
+import static org.westford.nativ.libgbm.Libgbm.GBM_BO_USE_SCANOUT;
+
+/**
+ * Delivers frames rendered on the primary gpu to an output of a secondary gpu.
+ * <p>
+ * The rendered buffer is exported as a dmabuf and imported on the secondary gpu, so it can be scanned out without
+ * copying. If the secondary gpu can not import it, every frame is copied by the cpu into one of two scanout buffers of
+ * the secondary gpu instead.
+ * </p>
+ */
+@AutoFactory(className = "DrmGpuCopyFactory",
+             allowSubclasses = true)
+public class DrmGpuCopy {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    @Nonnull
+    private final Libgbm          libgbm;
+    @Nonnull
+    private final Libc            libc;
+    private final long            gbmDevice;
+    /**
+     * rendered bo of the primary gpu to its import on the secondary gpu.
+     */
+    @Nonnull
+    private final Map<Long, Long> importedBos = new HashMap<>();
+    @Nonnull
+    private final long[]          copyBos     = new long[2];
+    private       int             copyBack;
+    private       boolean         cpuCopy;
+
+    DrmGpuCopy(@Provided @Nonnull final Libgbm libgbm,
+               @Provided @Nonnull final Libc libc,
+               final long gbmDevice) {
+        this.libgbm = libgbm;
+        this.libc = libc;
+        this.gbmDevice = gbmDevice;
+    }
+
+    /**
+     * @param renderBo a linear bo rendered by the primary gpu.
+     *
+     * @return a bo of the secondary gpu with the same content.
+     */
+    public long getScanoutBo(final long renderBo) {
+        if (!this.cpuCopy) {
+            final Long importedBo = this.importedBos.get(renderBo);
+            if (importedBo != null) {
+                return importedBo;
+            }
+
+            final long bo = importBo(renderBo);
+            if (bo != 0L) {
+                this.importedBos.put(renderBo,
+                                     bo);
+                return bo;
+            }
+            LOGGER.info("Secondary gpu can not import dmabufs of the primary gpu, falling back to cpu copies.");
+            this.cpuCopy = true;
+        }
+
+        return copy(renderBo);
+    }
+
+    private long importBo(final long renderBo) {
+        final int fd = this.libgbm.gbm_bo_get_fd(renderBo);
+        if (fd < 0) {
+            return 0L;
+        }
+
+        final gbm_import_fd_data importFdData = new gbm_import_fd_data();
+        importFdData.fd(fd);
+        importFdData.width(this.libgbm.gbm_bo_get_width(renderBo));
+        importFdData.height(this.libgbm.gbm_bo_get_height(renderBo));
+        importFdData.stride(this.libgbm.gbm_bo_get_stride(renderBo));
+        importFdData.format(this.libgbm.gbm_bo_get_format(renderBo));
+        final long bo = this.libgbm.gbm_bo_import(this.gbmDevice,
+                                                  GBM_BO_IMPORT_FD,
+                                                  Pointer.ref(importFdData).address,
+                                                  GBM_BO_USE_SCANOUT);
+        //the import holds its own reference
+        this.libc.close(fd);
+
+        return bo;
+    }
+
+    /**
+     * Copy into the scanout bo that is not on screen. Only one page flip is pending at a time, so the other one is the
+     * one on screen.
+     */
+    private long copy(final long renderBo) {
+        final int width  = this.libgbm.gbm_bo_get_width(renderBo);
+        final int height = this.libgbm.gbm_bo_get_height(renderBo);
+        final int format = this.libgbm.gbm_bo_get_format(renderBo);
+
+        long bo = this.copyBos[this.copyBack];
+        if (bo == 0L) {
+            bo = this.libgbm.gbm_bo_create(this.gbmDevice,
+                                           width,
+                                           height,
+                                           format,
+                                           GBM_BO_USE_SCANOUT | GBM_BO_USE_LINEAR);
+            if (bo == 0L) {
+                throw new RuntimeException("failed to create scanout bo on secondary gpu");
+            }
+            this.copyBos[this.copyBack] = bo;
+        }
+
+        final ScratchArena arena = ScratchArena.get();
+        try (ScratchArena.Scope scope = arena.scope()) {
+            final Pointer<Integer> sourceStride  = arena.nref(0);
+            final Pointer<Long>    sourceMapData = arena.nref(0L);
+            final long source = this.libgbm.gbm_bo_map(renderBo,
+                                                       0,
+                                                       0,
+                                                       width,
+                                                       height,
+                                                       GBM_BO_TRANSFER_READ,
+                                                       sourceStride.address,
+                                                       sourceMapData.address);
+            final Pointer<Integer> destinationStride  = arena.nref(0);
+            final Pointer<Long>    destinationMapData = arena.nref(0L);
+            final long destination = this.libgbm.gbm_bo_map(bo,
+                                                            0,
+                                                            0,
+                                                            width,
+                                                            height,
+                                                            GBM_BO_TRANSFER_WRITE,
+                                                            destinationStride.address,
+                                                            destinationMapData.address);
+
+            if (source != 0L && destination != 0L) {
+                //strides can differ between gpus
+                final int rowSize = Math.min(sourceStride.dref(),
+                                             destinationStride.dref());
+                for (int row = 0; row < height; row++) {
+                    this.libc.memcpy(destination + (long) row * destinationStride.dref(),
+                                     source + (long) row * sourceStride.dref(),
+                                     rowSize);
+                }
+            }
+
+            if (destination != 0L) {
+                this.libgbm.gbm_bo_unmap(bo,
+                                         destinationMapData.dref());
+            }
+            if (source != 0L) {
+                this.libgbm.gbm_bo_unmap(renderBo,
+                                         sourceMapData.dref());
+            }
+        }
+
+        this.copyBack = 1 - this.copyBack;
+        return bo;
+    }
+}
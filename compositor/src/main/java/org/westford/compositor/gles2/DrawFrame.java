@@ -0,0 +1,87 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.gles2;
+
+import com.google.auto.value.AutoValue;
+import org.westford.compositor.core.OutputMode;
+import org.westford.compositor.core.Rectangle;
+import org.westford.compositor.core.calc.Mat4;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Everything the render thread needs to draw and swap a frame of an output, prepared on the compositor thread. Nothing
+ * in here refers to surface or output state that can change while the frame is drawn.
+ */
+@AutoValue
+abstract class DrawFrame {
+
+    static DrawFrame create(@Nonnull final List<DrawView> drawViews,
+                            @Nonnull final List<Rectangle> damage,
+                            @Nonnull final OutputMode mode,
+                            @Nonnull final Mat4 glTransform,
+                            @Nonnegative final long prepareNanos,
+                            @Nonnegative final long textureBytes,
+                            @Nonnegative final int gpuCalls) {
+        return new AutoValue_DrawFrame(drawViews,
+                                       damage,
+                                       mode,
+                                       glTransform,
+                                       prepareNanos,
+                                       textureBytes,
+                                       gpuCalls);
+    }
+
+    /**
+     * @return the views to draw, bottom to top.
+     */
+    @Nonnull
+    abstract List<DrawView> getDrawViews();
+
+    /**
+     * @return the damaged rectangles, in output pixels with the origin in the top left corner.
+     */
+    @Nonnull
+    abstract List<Rectangle> getDamage();
+
+    @Nonnull
+    abstract OutputMode getMode();
+
+    /**
+     * @return the projection from output pixels to gl coordinates.
+     */
+    @Nonnull
+    abstract Mat4 getGlTransform();
+
+    /**
+     * @return the time spent on the compositor thread to upload textures for this frame.
+     */
+    @Nonnegative
+    abstract long getPrepareNanos();
+
+    @Nonnegative
+    abstract long getTextureBytes();
+
+    /**
+     * @return the gpu calls that were made to prepare this frame.
+     */
+    @Nonnegative
+    abstract int getGpuCalls();
+}
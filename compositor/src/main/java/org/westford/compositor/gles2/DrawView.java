@@ -0,0 +1,44 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.gles2;
+
+import com.google.auto.value.AutoValue;
+import org.westford.compositor.core.SurfaceRenderState;
+import org.westford.compositor.core.calc.Mat4;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A surface as it is drawn by the render thread. The render state is only read, its textures are uploaded on the
+ * compositor thread before the frame is handed over.
+ */
+@AutoValue
+abstract class DrawView {
+
+    static DrawView create(@Nonnull final Mat4 transform,
+                           @Nonnull final SurfaceRenderState surfaceRenderState) {
+        return new AutoValue_DrawView(transform,
+                                      surfaceRenderState);
+    }
+
+    @Nonnull
+    abstract Mat4 getTransform();
+
+    @Nonnull
+    abstract SurfaceRenderState getSurfaceRenderState();
+}
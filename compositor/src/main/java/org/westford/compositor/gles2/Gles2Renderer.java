@@ -19,43 +19,73 @@ package org.westford.compositor.gles2;
 
 import org.freedesktop.jaccall.JNI;
 import org.freedesktop.jaccall.Pointer;
+import org.freedesktop.wayland.server.DestroyListener;
 import org.freedesktop.wayland.server.Display;
+import org.freedesktop.wayland.server.EventSource;
 import org.freedesktop.wayland.server.ShmBuffer;
 import org.freedesktop.wayland.server.WlBufferResource;
 import org.freedesktop.wayland.server.WlSurfaceResource;
 import org.freedesktop.wayland.shared.WlShmFormat;
+import org.westford.compositor.core.AtlasSurfaceState;
 import org.westford.compositor.core.Buffer;
 import org.westford.compositor.core.BufferVisitor;
 import org.westford.compositor.core.EglBuffer;
 import org.westford.compositor.core.EglOutput;
 import org.westford.compositor.core.EglOutputState;
 import org.westford.compositor.core.EglSurfaceState;
+import org.westford.compositor.core.FrameStats;
+import org.westford.compositor.core.FrameStatsRegistry;
 import org.westford.compositor.core.GlRenderer;
+import org.westford.compositor.core.JobExecutor;
 import org.westford.compositor.core.Output;
 import org.westford.compositor.core.OutputMode;
+import org.westford.compositor.core.Rectangle;
 import org.westford.compositor.core.RenderOutput;
+import org.westford.compositor.core.RenderThread;
 import org.westford.compositor.core.Scene;
+import org.westford.compositor.core.SceneSnapshot;
 import org.westford.compositor.core.ShmSurfaceState;
 import org.westford.compositor.core.SmBuffer;
 import org.westford.compositor.core.Surface;
 import org.westford.compositor.core.SurfaceRenderState;
 import org.westford.compositor.core.SurfaceRenderStateVisitor;
+import org.westford.compositor.core.SurfaceView;
+import org.westford.compositor.core.Trace;
 import org.westford.compositor.core.UnsupportedBuffer;
 import org.westford.compositor.core.calc.Mat4;
+import org.westford.compositor.core.calc.Vec4;
 import org.westford.compositor.protocol.WlSurface;
+import org.westford.nativ.ScratchArena;
 import org.westford.nativ.libEGL.EglBindWaylandDisplayWL;
 import org.westford.nativ.libEGL.EglCreateImageKHR;
 import org.westford.nativ.libEGL.EglDestroyImageKHR;
 import org.westford.nativ.libEGL.EglQueryWaylandBufferWL;
+import org.westford.nativ.libEGL.EglSetDamageRegionKHR;
+import org.westford.nativ.libEGL.EglSwapBuffersWithDamageKHR;
 import org.westford.nativ.libEGL.LibEGL;
+import org.westford.nativ.libGLESv2.GlBeginQueryEXT;
 import org.westford.nativ.libGLESv2.GlEGLImageTargetTexture2DOES;
+import org.westford.nativ.libGLESv2.GlEndQueryEXT;
+import org.westford.nativ.libGLESv2.GlGenQueriesEXT;
+import org.westford.nativ.libGLESv2.GlGetQueryObjectui64vEXT;
+import org.westford.nativ.libGLESv2.GlGetQueryObjectuivEXT;
 import org.westford.nativ.libGLESv2.LibGLESv2;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
@@ -64,12 +94,14 @@ import static org.freedesktop.jaccall.Pointer.wrap;
 import static org.freedesktop.jaccall.Size.sizeof;
 import static org.westford.nativ.libEGL.LibEGL.EGL_ALPHA_SIZE;
 import static org.westford.nativ.libEGL.LibEGL.EGL_BLUE_SIZE;
+import static org.westford.nativ.libEGL.LibEGL.EGL_BUFFER_AGE_EXT;
 import static org.westford.nativ.libEGL.LibEGL.EGL_GREEN_SIZE;
 import static org.westford.nativ.libEGL.LibEGL.EGL_HEIGHT;
 import static org.westford.nativ.libEGL.LibEGL.EGL_NONE;
 import static org.westford.nativ.libEGL.LibEGL.EGL_NO_CONTEXT;
 import static org.westford.nativ.libEGL.LibEGL.EGL_NO_DISPLAY;
 import static org.westford.nativ.libEGL.LibEGL.EGL_NO_IMAGE_KHR;
+import static org.westford.nativ.libEGL.LibEGL.EGL_NO_SURFACE;
 import static org.westford.nativ.libEGL.LibEGL.EGL_OPENGL_ES2_BIT;
 import static org.westford.nativ.libEGL.LibEGL.EGL_OPENGL_ES_API;
 import static org.westford.nativ.libEGL.LibEGL.EGL_RED_SIZE;
@@ -93,6 +125,27 @@ public class Gles2Renderer implements GlRenderer {
 
     private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
+    /*
+     * Number of frames for which the damage is remembered. Back buffers that are older are repainted completely.
+     */
+    private static final int MAX_BUFFER_AGE = 4;
+
+    /*
+     * Shm surfaces that are at most this large in both dimensions share one texture atlas, so they don't need a
+     * texture of their own and are drawn together. 0 disables the atlas.
+     */
+    private static final int ATLAS_MAX_SURFACE = Integer.getInteger("westford.atlas.max",
+                                                                    64);
+    private static final int ATLAS_SIZE        = Integer.getInteger("westford.atlas.size",
+                                                                    1024);
+
+    /*
+     * Frame callbacks of surfaces that were not visible in a frame are held back, and only fired at this interval in
+     * milliseconds so their clients stay alive. 0 disables throttling.
+     */
+    private static final int THROTTLE_INTERVAL = Integer.getInteger("westford.throttle.interval",
+                                                                    1000);
+
     private static final String VERTEX_SHADER =
             "uniform mat4 u_projection;\n" +
             "uniform mat4 u_transform;\n" +
@@ -171,13 +224,21 @@ public class Gles2Renderer implements GlRenderer {
             FRAGMENT_CONVERT_YUV;
 
     @Nonnull
-    private final LibEGL    libEGL;
+    private final LibEGL       libEGL;
+    @Nonnull
+    private final LibGLESv2    libGLESv2;
+    @Nonnull
+    private final Display      display;
+    @Nonnull
+    private final Scene        scene;
+    @Nonnull
+    private final RenderThread renderThread;
     @Nonnull
-    private final LibGLESv2 libGLESv2;
+    private final JobExecutor  jobExecutor;
     @Nonnull
-    private final Display   display;
+    private final FrameStatsRegistry frameStatsRegistry;
     @Nonnull
-    private final Scene     scene;
+    private final TextureBudget      textureBudget;
     private final int[]                                  textureArgs                  = new int[3];
     @Nonnull
     private       Optional<EglQueryWaylandBufferWL>      eglQueryWaylandBufferWL      = Optional.empty();
@@ -187,6 +248,11 @@ public class Gles2Renderer implements GlRenderer {
     private       Optional<EglDestroyImageKHR>           eglDestroyImageKHR           = Optional.empty();
     @Nonnull
     private       Optional<GlEGLImageTargetTexture2DOES> glEGLImageTargetTexture2DOES = Optional.empty();
+    @Nonnull
+    private       Optional<EglSwapBuffersWithDamageKHR>  eglSwapBuffersWithDamage     = Optional.empty();
+    @Nonnull
+    private       Optional<EglSetDamageRegionKHR>        eglSetDamageRegionKHR        = Optional.empty();
+    private       boolean                                hasBufferAge                 = false;
     //shader programs
     //used by shm & egl
     private int argb8888ShaderProgram;
@@ -208,47 +274,136 @@ public class Gles2Renderer implements GlRenderer {
     private boolean init            = false;
 
 
+    //per frame counters, handed from the compositor thread to the thread that draws along with the frame. Gpu calls are
+    //the draw calls, texture uploads and the swap, not every native call.
+    private int                    gpuCalls;
+    private long                   textureBytes;
+    //shm texture atlas. The atlas texture is only written to on the compositor thread while no frame is drawn.
+    private int                    atlasTexture;
+    private int                    atlasSize;
+
+    /*
+     * Only used on the thread that draws.
+     */
     private EglOutputState         eglOutputState;
     private EglOutputState.Builder newEglOutputState;
+    //pre-transformed vertices of atlas views that are waiting to be drawn in a single call
+    private float[]                atlasBatch = new float[24 * 16];
+    private int                    atlasBatchLength;
+    private int                    atlasBatchProgram;
+    //GL_EXT_disjoint_timer_query
+    @Nonnull
+    private       Optional<GpuTimerQuery>              gpuTimerQuery      = Optional.empty();
+    @Nonnull
+    private final Map<EglOutput, Deque<Integer>>       gpuQueriesInFlight = new HashMap<>();
+    @Nonnull
+    private final Deque<Integer>                       gpuQueryPool       = new ArrayDeque<>();
+
+    /*
+     * Only used on the compositor thread.
+     */
+    private       long                                    frameTime;
+    private       ShelfPacker                             atlasPacker;
+    //a single frame, of any output, is drawn at a time so the compositor thread can use the egl context in between.
+    private       boolean                                 frameInFlight;
+    @Nonnull
+    private final Set<EglOutput>                          renderRequested   = new HashSet<>();
+    //render states of destroyed surfaces, their textures are deleted when the next frame is prepared.
+    @Nonnull
+    private final List<SurfaceRenderState>                pendingDestroys   = new ArrayList<>();
+    @Nonnull
+    private final Set<EglOutput>                          eglOutputs        = new HashSet<>();
+    //buffers that are still read by a frame that is being drawn, or shown by an output, eg. because they are scanned out.
+    @Nonnull
+    private final Map<WlBufferResource, Integer>          buffersInFlight   = new HashMap<>();
+    //buffers that were released by their surface while still being read or shown.
+    @Nonnull
+    private final Map<WlBufferResource, DestroyListener> pendingReleases   = new HashMap<>();
+    @Nonnull
+    private final Map<EglOutput, OutputDamage>            outputDamages     = new HashMap<>();
+    @Nonnull
+    private final OutputVisibility                        outputVisibility  = new OutputVisibility();
+    //surfaces that were not visible in their last frame, their frame callbacks are fired by the throttle timer.
+    @Nonnull
+    private final Set<Surface>                            throttledSurfaces = new HashSet<>();
+    @Nonnull
+    private       Optional<EventSource>                   throttleTimer     = Optional.empty();
 
     //TODO guarantee 1 renderer instance per platform
     @Inject
     Gles2Renderer(@Nonnull final LibEGL libEGL,
                   @Nonnull final LibGLESv2 libGLESv2,
                   @Nonnull final Display display,
-                  @Nonnull final Scene scene) {
+                  @Nonnull final Scene scene,
+                  @Nonnull final RenderThread renderThread,
+                  @Nonnull final JobExecutor jobExecutor,
+                  @Nonnull final FrameStatsRegistry frameStatsRegistry,
+                  @Nonnull final TextureBudget textureBudget) {
         this.libEGL = libEGL;
         this.libGLESv2 = libGLESv2;
         this.display = display;
         this.scene = scene;
+        this.renderThread = renderThread;
+        this.jobExecutor = jobExecutor;
+        this.frameStatsRegistry = frameStatsRegistry;
+        this.textureBudget = textureBudget;
     }
 
     @Override
     public void onDestroy(@Nonnull final WlSurfaceResource wlSurfaceResource) {
+        destroyRenderState(((WlSurface) wlSurfaceResource.getImplementation()).getSurface());
+    }
 
-        final WlSurface wlSurface = (WlSurface) wlSurfaceResource.getImplementation();
-        wlSurface.getSurface()
-                 .getRenderState()
+    private void destroyRenderState(@Nonnull final Surface surface) {
+        this.textureBudget.remove(surface);
+        surface.getRenderState()
                  .ifPresent(surfaceRenderState -> surfaceRenderState.accept(new SurfaceRenderStateVisitor() {
                      @Override
                      public Optional<SurfaceRenderState> visit(final ShmSurfaceState shmSurfaceState) {
-                         destroy(shmSurfaceState);
+                         //the frame that is being drawn can still use the texture
+                         Gles2Renderer.this.pendingDestroys.add(shmSurfaceState);
                          return Optional.empty();
                      }
 
                      @Override
                      public Optional<SurfaceRenderState> visit(final EglSurfaceState eglSurfaceState) {
-                         destroy(eglSurfaceState);
+                         Gles2Renderer.this.pendingDestroys.add(eglSurfaceState);
+                         return Optional.empty();
+                     }
+
+                     @Override
+                     public Optional<SurfaceRenderState> visit(final AtlasSurfaceState atlasSurfaceState) {
+                         //the slot is only written to again when the next frame is prepared
+                         destroy(atlasSurfaceState);
                          return Optional.empty();
                      }
                  }));
+        surface.clearRenderState();
+    }
+
+    private void destroyPendingRenderStates() {
+        this.pendingDestroys.forEach(surfaceRenderState -> surfaceRenderState.accept(new SurfaceRenderStateVisitor() {
+            @Override
+            public Optional<SurfaceRenderState> visit(final ShmSurfaceState shmSurfaceState) {
+                destroy(shmSurfaceState);
+                return Optional.empty();
+            }
+
+            @Override
+            public Optional<SurfaceRenderState> visit(final EglSurfaceState eglSurfaceState) {
+                destroy(eglSurfaceState);
+                return Optional.empty();
+            }
+        }));
+        this.pendingDestroys.clear();
     }
 
     private void destroy(final EglSurfaceState eglSurfaceState) {
         //delete textures & egl images
-        for (final int texture : eglSurfaceState.getTextures()) {
-            this.libGLESv2.glDeleteTextures(1,
-                                            Pointer.nref(texture).address);
+        final ScratchArena arena = ScratchArena.get();
+        try (ScratchArena.Scope scope = arena.scope()) {
+            this.libGLESv2.glDeleteTextures(eglSurfaceState.getTextures().length,
+                                            arena.nref(eglSurfaceState.getTextures()).address);
         }
 
         for (final long eglImage : eglSurfaceState.getEglImages()) {
@@ -259,8 +414,16 @@ public class Gles2Renderer implements GlRenderer {
 
     private void destroy(final ShmSurfaceState shmSurfaceState) {
         //delete texture
-        this.libGLESv2.glDeleteTextures(1,
-                                        Pointer.nref(shmSurfaceState.getTexture()).address);
+        final ScratchArena arena = ScratchArena.get();
+        try (ScratchArena.Scope scope = arena.scope()) {
+            this.libGLESv2.glDeleteTextures(1,
+                                            arena.nref(shmSurfaceState.getTexture()).address);
+        }
+    }
+
+    private void destroy(final AtlasSurfaceState atlasSurfaceState) {
+        //the atlas texture stays, only give back the slot
+        this.atlasPacker.free(atlasSurfaceState.getSlot());
     }
 
     @Nonnull
@@ -277,9 +440,23 @@ public class Gles2Renderer implements GlRenderer {
                                      shmBuffer);
         }
         else if (this.eglQueryWaylandBufferWL.isPresent()) {
-            final EglQueryWaylandBufferWL queryWlEglBuffer = this.eglQueryWaylandBufferWL.get();
-            final Pointer<Integer>        textureFormatP   = Pointer.nref(0);
-            final Long                    bufferPointer    = wlBufferResource.pointer;
+            buffer = queryEglBuffer(wlBufferResource,
+                                    this.eglQueryWaylandBufferWL.get());
+        }
+        else //TODO dma buffer.
+        {
+            buffer = UnsupportedBuffer.create(wlBufferResource);
+        }
+
+        return buffer;
+    }
+
+    private Buffer queryEglBuffer(@Nonnull final WlBufferResource wlBufferResource,
+                                  @Nonnull final EglQueryWaylandBufferWL queryWlEglBuffer) {
+        final ScratchArena arena = ScratchArena.get();
+        try (ScratchArena.Scope scope = arena.scope()) {
+            final Pointer<Integer> textureFormatP = arena.nref(0);
+            final Long             bufferPointer  = wlBufferResource.pointer;
 
             queryWlEglBuffer.$(this.eglDisplay,
                                bufferPointer,
@@ -288,8 +465,8 @@ public class Gles2Renderer implements GlRenderer {
             final int textureFormat = textureFormatP.dref();
 
             if (textureFormat != 0) {
-                final Pointer<Integer> widthP  = Pointer.nref(0);
-                final Pointer<Integer> heightP = Pointer.nref(0);
+                final Pointer<Integer> widthP  = arena.nref(0);
+                final Pointer<Integer> heightP = arena.nref(0);
                 queryWlEglBuffer.$(this.eglDisplay,
                                    bufferPointer,
                                    EGL_WIDTH,
@@ -301,21 +478,15 @@ public class Gles2Renderer implements GlRenderer {
                 final int width  = widthP.dref();
                 final int height = heightP.dref();
 
-                buffer = EglBuffer.create(width,
-                                          height,
-                                          wlBufferResource,
-                                          textureFormat);
+                return EglBuffer.create(width,
+                                        height,
+                                        wlBufferResource,
+                                        textureFormat);
             }
             else {
-                buffer = UnsupportedBuffer.create(wlBufferResource);
+                return UnsupportedBuffer.create(wlBufferResource);
             }
         }
-        else //TODO dma buffer.
-        {
-            buffer = UnsupportedBuffer.create(wlBufferResource);
-        }
-
-        return buffer;
     }
 
     @Override
@@ -355,6 +526,7 @@ public class Gles2Renderer implements GlRenderer {
 
         bindWlEglDisplay(eglDisplay,
                          eglExtensions);
+        bindDamageExtensions(eglExtensions);
 
         this.eglDisplay = eglDisplay;
 
@@ -386,6 +558,34 @@ public class Gles2Renderer implements GlRenderer {
         }
     }
 
+    private void bindDamageExtensions(@Nonnull final String eglExtensions) {
+        //both extensions define the same function, only the name differs.
+        if (eglExtensions.contains("EGL_KHR_swap_buffers_with_damage")) {
+            this.eglSwapBuffersWithDamage = Optional.of(wrap(EglSwapBuffersWithDamageKHR.class,
+                                                             this.libEGL.eglGetProcAddress(Pointer.nref("eglSwapBuffersWithDamageKHR").address)).dref());
+        }
+        else if (eglExtensions.contains("EGL_EXT_swap_buffers_with_damage")) {
+            this.eglSwapBuffersWithDamage = Optional.of(wrap(EglSwapBuffersWithDamageKHR.class,
+                                                             this.libEGL.eglGetProcAddress(Pointer.nref("eglSwapBuffersWithDamageEXT").address)).dref());
+        }
+        else {
+            LOGGER.info("Extension EGL_KHR_swap_buffers_with_damage not available. Every frame will be presented as fully damaged.");
+        }
+
+        //partial update implies buffer age
+        if (eglExtensions.contains("EGL_KHR_partial_update")) {
+            this.eglSetDamageRegionKHR = Optional.of(wrap(EglSetDamageRegionKHR.class,
+                                                          this.libEGL.eglGetProcAddress(Pointer.nref("eglSetDamageRegionKHR").address)).dref());
+            this.hasBufferAge = true;
+        }
+        else if (eglExtensions.contains("EGL_EXT_buffer_age")) {
+            this.hasBufferAge = true;
+        }
+        else {
+            LOGGER.info("Extension EGL_EXT_buffer_age not available. Every frame will be repainted completely.");
+        }
+    }
+
     private boolean bindDisplay(final long eglDisplay,
                                 final String extensions) {
         if (extensions.contains("EGL_WL_bind_wayland_display")) {
@@ -413,31 +613,534 @@ public class Gles2Renderer implements GlRenderer {
     }
 
     private void render(@Nonnull final EglOutput eglOutput) {
+        final Output output = eglOutput.getWlOutput()
+                                       .getOutput();
+        final FrameStats frameStats = this.frameStatsRegistry.get(output);
+
+        if (this.eglOutputs.add(eglOutput)) {
+            //first render for this output, render again on external updates. The new projection is picked up by the
+            //next frame.
+            output.getTransformSignal()
+                  .connect(event -> eglOutput.render());
+            output.getModeSignal()
+                  .connect(event -> eglOutput.render());
+        }
+
+        if (this.frameInFlight) {
+            //render again as soon as the current frame is done.
+            this.renderRequested.add(eglOutput);
+            return;
+        }
+
+        final OutputDamage outputDamage = this.outputDamages.computeIfAbsent(eglOutput,
+                                                                             key -> new OutputDamage());
+
+        final SceneSnapshot sceneSnapshot = this.scene.snapshot(this);
+        if (scanout(eglOutput,
+                    sceneSnapshot)) {
+            //nothing was swapped, the output flips to the client buffer by itself
+            whenPresentedFirePaintCallbacks(eglOutput,
+                                            sceneSnapshot);
+            return;
+        }
+        //views on a hardware plane are shown by the output itself
+        final SceneSnapshot drawSnapshot = eglOutput.assignPlanes(sceneSnapshot);
+        final DrawFrame drawFrame = prepare(eglOutput,
+                                            drawSnapshot,
+                                            outputDamage.damage(output,
+                                                                drawSnapshot));
+        if (!this.renderThread.isStarted()) {
+            draw(eglOutput,
+                 drawFrame,
+                 frameStats);
+            frameDone(eglOutput,
+                      sceneSnapshot);
+            return;
+        }
+
+        //egl client buffers are read by the gpu until the frame is done
+        retainBuffers(drawSnapshot);
+        this.frameInFlight = true;
+        releaseContext();
+        this.renderThread.submit(() -> {
+            draw(eglOutput,
+                 drawFrame,
+                 frameStats);
+            releaseContext();
+            this.jobExecutor.submit(() -> {
+                this.frameInFlight = false;
+                releaseBuffers(drawSnapshot);
+                frameDone(eglOutput,
+                          sceneSnapshot);
+                this.display.flushClients();
+
+                final List<EglOutput> requested = new ArrayList<>(this.renderRequested);
+                this.renderRequested.clear();
+                requested.forEach(EglOutput::render);
+            });
+        });
+    }
+
+    /**
+     * Release the egl context from the current thread, so it can be made current on the thread that uses it next.
+     */
+    private void releaseContext() {
         this.libEGL.eglMakeCurrent(this.eglDisplay,
-                                   eglOutput.getEglSurface(),
-                                   eglOutput.getEglSurface(),
-                                   eglOutput.getEglContext());
-        eglOutput.renderBegin();
+                                   EGL_NO_SURFACE,
+                                   EGL_NO_SURFACE,
+                                   EGL_NO_CONTEXT);
+    }
 
-        if (!this.init) {
-            //one time init because we need a current context
-            assert (eglOutput.getEglContext() != EGL_NO_CONTEXT);
-            initRenderer();
+    /**
+     * Let the output show the buffer of the topmost view without composition. The buffer is kept from being released
+     * until the output replaces it on screen.
+     *
+     * @return true if the output shows the buffer and no frame should be drawn.
+     */
+    private boolean scanout(@Nonnull final EglOutput eglOutput,
+                            @Nonnull final SceneSnapshot sceneSnapshot) {
+        final List<SurfaceView> surfaceViews = sceneSnapshot.getSurfaceViews();
+        if (surfaceViews.isEmpty()) {
+            return false;
         }
 
-        setupEglOutputState(eglOutput);
+        final SceneSnapshot topSnapshot = SceneSnapshot.create(Collections.singletonList(surfaceViews.get(surfaceViews.size() - 1)));
+        retainBuffers(topSnapshot);
+        if (eglOutput.scanout(sceneSnapshot,
+                              () -> releaseBuffers(topSnapshot))) {
+            //the drawn frame is stale once we composite again
+            this.outputDamages.remove(eglOutput);
+            return true;
+        }
+        releaseBuffers(topSnapshot);
+        return false;
+    }
 
-        //TODO comment out these 2 calls when we have a shell that provides a solid background.
-        this.libGLESv2.glClearColor(1.0f,
-                                    1.0f,
-                                    1.0f,
-                                    1.0f);
-        this.libGLESv2.glClear(LibGLESv2.GL_COLOR_BUFFER_BIT);
+    private void retainBuffers(@Nonnull final SceneSnapshot sceneSnapshot) {
+        sceneSnapshot.getSurfaceViews()
+                     .forEach(surfaceView -> surfaceView.getSurfaceState()
+                                                        .getBuffer()
+                                                        .ifPresent(wlBufferResource -> this.buffersInFlight.merge(wlBufferResource,
+                                                                                                                  1,
+                                                                                                                  Integer::sum)));
+    }
+
+    private void releaseBuffers(@Nonnull final SceneSnapshot sceneSnapshot) {
+        sceneSnapshot.getSurfaceViews()
+                     .forEach(surfaceView -> surfaceView.getSurfaceState()
+                                                        .getBuffer()
+                                                        .ifPresent(wlBufferResource -> {
+                                                            if (this.buffersInFlight.merge(wlBufferResource,
+                                                                                           -1,
+                                                                                           Integer::sum) == 0) {
+                                                                this.buffersInFlight.remove(wlBufferResource);
+                                                                final DestroyListener destroyListener = this.pendingReleases.remove(wlBufferResource);
+                                                                if (destroyListener != null) {
+                                                                    wlBufferResource.unregister(destroyListener);
+                                                                    wlBufferResource.release();
+                                                                }
+                                                            }
+                                                        }));
+    }
+
+    @Override
+    public void release(@Nonnull final WlBufferResource wlBufferResource) {
+        if (this.buffersInFlight.containsKey(wlBufferResource)) {
+            //still being drawn, release it once the frame is done.
+            if (!this.pendingReleases.containsKey(wlBufferResource)) {
+                final DestroyListener destroyListener = () -> this.pendingReleases.remove(wlBufferResource);
+                wlBufferResource.register(destroyListener);
+                this.pendingReleases.put(wlBufferResource,
+                                         destroyListener);
+            }
+        }
+        else {
+            wlBufferResource.release();
+        }
+    }
+
+    /**
+     * Called on the compositor thread once a frame has been swapped.
+     */
+    private void frameDone(@Nonnull final EglOutput eglOutput,
+                           @Nonnull final SceneSnapshot sceneSnapshot) {
+        eglOutput.renderEndAfterSwap();
+        whenPresentedFirePaintCallbacks(eglOutput,
+                                        sceneSnapshot);
+        //textures of surfaces that are not drawn anymore are only deleted once we are over budget.
+        this.textureBudget.evict(System.nanoTime())
+                          .forEach(this::destroyRenderState);
+    }
+
+    /**
+     * Fire the frame callbacks of the visible surfaces of a snapshot once the output shows it.
+     */
+    private void whenPresentedFirePaintCallbacks(@Nonnull final EglOutput eglOutput,
+                                                 @Nonnull final SceneSnapshot sceneSnapshot) {
+        final Predicate<Surface> visible = THROTTLE_INTERVAL == 0 ?
+                                           surface -> true :
+                                           this.outputVisibility.visibleSurfaces(eglOutput.getWlOutput()
+                                                                                          .getOutput(),
+                                                                                 sceneSnapshot)::contains;
+        eglOutput.whenPresented(presented -> firePaintCallbacks(sceneSnapshot,
+                                                                visible,
+                                                                presented));
+    }
+
+    private void firePaintCallbacks(@Nonnull final SceneSnapshot sceneSnapshot,
+                                    @Nonnull final Predicate<Surface> visible,
+                                    final long presented) {
+        //TODO Introduce the concept of views => output <-- view (=many2many) --> surface, so paint callbacks are only fired once all outputs showing a surface are done.
+        final int time = (int) NANOSECONDS.toMillis(presented);
+        sceneSnapshot.getSurfaceViews()
+                     .forEach(surfaceView -> {
+                         final Surface surface = surfaceView.getSurface();
+                         if (!visible.test(surface)) {
+                             throttle(surface);
+                             return;
+                         }
+                         this.throttledSurfaces.remove(surface);
+                         if (!surface.isDestroyed()) {
+                             surface.firePaintCallbacks(time);
+                         }
+                         if (Trace.ENABLED) {
+                             Trace.instant("frame callback",
+                                           "surface",
+                                           System.identityHashCode(surface));
+                         }
+                     });
+    }
+
+    /**
+     * Hold back the frame callbacks of a surface that did not contribute any pixels to a frame, so its client does not
+     * draw at full speed for nothing.
+     */
+    private void throttle(@Nonnull final Surface surface) {
+        if (this.throttledSurfaces.isEmpty()) {
+            if (!this.throttleTimer.isPresent()) {
+                this.throttleTimer = Optional.of(this.display.getEventLoop()
+                                                             .addTimer(this::fireThrottledPaintCallbacks));
+            }
+            this.throttleTimer.get()
+                              .updateTimer(THROTTLE_INTERVAL);
+        }
+        this.throttledSurfaces.add(surface);
+    }
+
+    private int fireThrottledPaintCallbacks() {
+        final int           time     = (int) NANOSECONDS.toMillis(System.nanoTime());
+        final List<Surface> surfaces = new ArrayList<>(this.throttledSurfaces);
+        this.throttledSurfaces.clear();
+        surfaces.forEach(surface -> {
+            if (!surface.isDestroyed()) {
+                surface.firePaintCallbacks(time);
+            }
+        });
+        this.display.flushClients();
+        return 0;
+    }
+
+    /**
+     * Upload the textures of all views of a frame and collect what is needed to draw them. Runs on the compositor
+     * thread, as it reads client buffers and surface render state.
+     */
+    @Nonnull
+    private DrawFrame prepare(@Nonnull final EglOutput eglOutput,
+                              @Nonnull final SceneSnapshot sceneSnapshot,
+                              @Nonnull final List<Rectangle> damage) {
+        //native out parameters of this frame are released in bulk when it is prepared
+        try (ScratchArena.Scope frame = ScratchArena.get()
+                                                    .scope()) {
+            if (Trace.ENABLED) {
+                Trace.begin("prepare");
+            }
+            final long prepareStart = System.nanoTime();
+            this.frameTime = prepareStart;
+            this.gpuCalls = 0;
+            this.textureBytes = 0L;
+
+            this.libEGL.eglMakeCurrent(this.eglDisplay,
+                                       eglOutput.getEglSurface(),
+                                       eglOutput.getEglSurface(),
+                                       eglOutput.getEglContext());
+            if (!this.init) {
+                //one time init because we need a current context
+                assert (eglOutput.getEglContext() != EGL_NO_CONTEXT);
+                initRenderer();
+            }
+            //no frame that uses them is drawn anymore
+            destroyPendingRenderStates();
+
+            final List<DrawView> drawViews = new ArrayList<>(sceneSnapshot.getSurfaceViews()
+                                                                          .size());
+            sceneSnapshot.getSurfaceViews()
+                         .forEach(surfaceView -> prepare(surfaceView,
+                                                         drawViews));
+
+            final Output output = eglOutput.getWlOutput()
+                                           .getOutput();
+            final DrawFrame drawFrame = DrawFrame.create(Collections.unmodifiableList(drawViews),
+                                                         damage,
+                                                         output.getMode(),
+                                                         createGlTransform(output),
+                                                         System.nanoTime() - prepareStart,
+                                                         this.textureBytes,
+                                                         this.gpuCalls);
+            if (Trace.ENABLED) {
+                Trace.end("prepare");
+            }
+            return drawFrame;
+        }
+    }
+
+    /**
+     * Draw and swap a prepared frame. Runs on the render thread once it is started, so only the immutable frame and
+     * state that is not used by the compositor thread is read.
+     */
+    private void draw(@Nonnull final EglOutput eglOutput,
+                      @Nonnull final DrawFrame drawFrame,
+                      @Nonnull final FrameStats frameStats) {
+        //native out parameters of this frame are released in bulk when it ends
+        try (ScratchArena.Scope frame = ScratchArena.get()
+                                                    .scope()) {
+            if (Trace.ENABLED) {
+                Trace.begin("render");
+            }
+            final long renderStart = System.nanoTime();
+            this.gpuCalls = drawFrame.getGpuCalls();
+
+            this.libEGL.eglMakeCurrent(this.eglDisplay,
+                                       eglOutput.getEglSurface(),
+                                       eglOutput.getEglSurface(),
+                                       eglOutput.getEglContext());
+            eglOutput.renderBegin();
+
+            collectGpuTime(eglOutput,
+                           frameStats);
+            beginGpuTime(eglOutput);
+
+            setupEglOutputState(eglOutput,
+                                drawFrame);
+
+            final OutputMode mode = drawFrame.getMode();
+            final Rectangle outputRectangle = Rectangle.create(0,
+                                                               0,
+                                                               mode.getWidth(),
+                                                               mode.getHeight());
+            final List<Rectangle> damage       = drawFrame.getDamage();
+            Rectangle             damageBounds = Rectangle.ZERO;
+            for (final Rectangle rectangle : damage) {
+                damageBounds = damageBounds.union(rectangle);
+            }
+            final Rectangle repaint = repaintArea(eglOutput,
+                                                  outputRectangle,
+                                                  damageBounds);
+            final boolean partialRepaint = !repaint.equals(outputRectangle);
+            if (partialRepaint) {
+                //everything outside of the repaint area is still valid in the back buffer.
+                this.libGLESv2.glEnable(LibGLESv2.GL_SCISSOR_TEST);
+                this.libGLESv2.glScissor(repaint.getX(),
+                                         outputRectangle.getHeight() - repaint.getY() - repaint.getHeight(),
+                                         repaint.getWidth(),
+                                         repaint.getHeight());
+            }
+
+            //TODO comment out these 2 calls when we have a shell that provides a solid background.
+            this.libGLESv2.glClearColor(1.0f,
+                                        1.0f,
+                                        1.0f,
+                                        1.0f);
+            this.libGLESv2.glClear(LibGLESv2.GL_COLOR_BUFFER_BIT);
+
+            //naive single pass, bottom to top overdraw rendering.
+            drawFrame.getDrawViews()
+                     .forEach(this::draw);
+            flushAtlasBatch();
+            if (partialRepaint) {
+                this.libGLESv2.glDisable(LibGLESv2.GL_SCISSOR_TEST);
+            }
+            endGpuTime();
+            updateDamageHistory(damageBounds);
+            flushRenderState(eglOutput);
+
+            if (Trace.ENABLED) {
+                Trace.end("render");
+                Trace.begin("swap");
+            }
+            final long swapStart = System.nanoTime();
+            this.gpuCalls++;
+            swapBuffers(eglOutput,
+                        outputRectangle,
+                        damage);
+            final long swapEnd = System.nanoTime();
+            if (Trace.ENABLED) {
+                Trace.end("swap");
+            }
+
+            frameStats.recordFrame(drawFrame.getPrepareNanos() + swapStart - renderStart,
+                                   swapEnd - swapStart,
+                                   drawFrame.getDrawViews()
+                                            .size(),
+                                   drawFrame.getTextureBytes(),
+                                   this.gpuCalls);
+        }
+    }
+
+    /**
+     * Find the part of the back buffer that has to be repainted. The back buffer can hold a frame that is a few swaps
+     * old, so the damage of all frames that came after it has to be repainted as well.
+     */
+    @Nonnull
+    private Rectangle repaintArea(@Nonnull final EglOutput eglOutput,
+                                  @Nonnull final Rectangle outputRectangle,
+                                  @Nonnull final Rectangle damageBounds) {
+        if (!this.hasBufferAge) {
+            return outputRectangle;
+        }
 
-        //naive single pass, bottom to top overdraw rendering.
-        this.scene.getSurfacesStack()
-                  .forEach(this::draw);
-        flushRenderState(eglOutput);
+        final Pointer<Integer> bufferAge = ScratchArena.get()
+                                                       .nref(0);
+        if (this.libEGL.eglQuerySurface(this.eglDisplay,
+                                        eglOutput.getEglSurface(),
+                                        EGL_BUFFER_AGE_EXT,
+                                        bufferAge.address) == 0) {
+            return outputRectangle;
+        }
+
+        //an age of 0 means the content of the back buffer is undefined.
+        final int             age           = bufferAge.dref();
+        final List<Rectangle> damageHistory = this.eglOutputState.getDamageHistory();
+        Rectangle             repaint       = outputRectangle;
+        if (age > 0 && age - 1 <= damageHistory.size()) {
+            repaint = damageBounds;
+            for (final Rectangle frameDamage : damageHistory.subList(0,
+                                                                     age - 1)) {
+                repaint = repaint.union(frameDamage);
+            }
+            repaint = repaint.intersection(outputRectangle);
+        }
+
+        final Rectangle damageRegion = repaint;
+        this.eglSetDamageRegionKHR.ifPresent(eglSetDamageRegionKHR -> {
+            //tell the driver it only needs to preserve the back buffer outside of the repaint area.
+            eglSetDamageRegionKHR.$(this.eglDisplay,
+                                    eglOutput.getEglSurface(),
+                                    eglRectangles(outputRectangle,
+                                                  Collections.singletonList(damageRegion)).address,
+                                    1);
+        });
+
+        return repaint;
+    }
+
+    private void updateDamageHistory(@Nonnull final Rectangle damageBounds) {
+        final List<Rectangle> damageHistory = new ArrayList<>(MAX_BUFFER_AGE);
+        damageHistory.add(damageBounds);
+        damageHistory.addAll(this.eglOutputState.getDamageHistory()
+                                                .subList(0,
+                                                         Math.min(MAX_BUFFER_AGE - 1,
+                                                                  this.eglOutputState.getDamageHistory()
+                                                                                     .size())));
+        this.newEglOutputState.damageHistory(Collections.unmodifiableList(damageHistory));
+    }
+
+    private void swapBuffers(@Nonnull final EglOutput eglOutput,
+                             @Nonnull final Rectangle outputRectangle,
+                             @Nonnull final List<Rectangle> damage) {
+        if (this.eglSwapBuffersWithDamage.isPresent() && !damage.equals(Collections.singletonList(outputRectangle))) {
+            //no rectangles means everything is damaged, so an unchanged frame is presented as an empty rectangle.
+            final List<Rectangle> swapDamage = damage.isEmpty() ? Collections.singletonList(Rectangle.ZERO) : damage;
+            this.eglSwapBuffersWithDamage.get()
+                                         .$(this.eglDisplay,
+                                            eglOutput.getEglSurface(),
+                                            eglRectangles(outputRectangle,
+                                                          swapDamage).address,
+                                            swapDamage.size());
+        }
+        else {
+            this.libEGL.eglSwapBuffers(this.eglDisplay,
+                                       eglOutput.getEglSurface());
+        }
+    }
+
+    /**
+     * @return the rectangles as egl expects them: x, y, width, height with the origin in the bottom left corner.
+     */
+    @Nonnull
+    private Pointer<Integer> eglRectangles(@Nonnull final Rectangle outputRectangle,
+                                           @Nonnull final List<Rectangle> rectangles) {
+        final int[] eglRectangles = new int[rectangles.size() * 4];
+        int         i             = 0;
+        for (final Rectangle rectangle : rectangles) {
+            eglRectangles[i++] = rectangle.getX();
+            eglRectangles[i++] = outputRectangle.getHeight() - rectangle.getY() - rectangle.getHeight();
+            eglRectangles[i++] = rectangle.getWidth();
+            eglRectangles[i++] = rectangle.getHeight();
+        }
+        return ScratchArena.get()
+                           .nref(eglRectangles);
+    }
+
+    private void beginGpuTime(@Nonnull final EglOutput eglOutput) {
+        this.gpuTimerQuery.ifPresent(gpuTimerQuery -> {
+            Integer query = this.gpuQueryPool.poll();
+            if (query == null) {
+                final Pointer<Integer> queryP = ScratchArena.get()
+                                                            .nref(0);
+                gpuTimerQuery.glGenQueriesEXT.$(1,
+                                                queryP.address);
+                query = queryP.dref();
+            }
+            gpuTimerQuery.glBeginQueryEXT.$(LibGLESv2.GL_TIME_ELAPSED_EXT,
+                                            query);
+            this.gpuQueriesInFlight.computeIfAbsent(eglOutput,
+                                                    key -> new ArrayDeque<>())
+                                   .add(query);
+        });
+    }
+
+    private void endGpuTime() {
+        this.gpuTimerQuery.ifPresent(gpuTimerQuery -> {
+            gpuTimerQuery.glEndQueryEXT.$(LibGLESv2.GL_TIME_ELAPSED_EXT);
+        });
+    }
+
+    /**
+     * Record the gpu time of previous frames of an output, if their results are available. We never wait for the
+     * gpu.
+     */
+    private void collectGpuTime(@Nonnull final EglOutput eglOutput,
+                                @Nonnull final FrameStats frameStats) {
+        final Deque<Integer> queries = this.gpuQueriesInFlight.get(eglOutput);
+        if (queries == null || queries.isEmpty()) {
+            return;
+        }
+        final GpuTimerQuery gpuTimerQuery = this.gpuTimerQuery.get();
+
+        //a disjoint operation (eg. a gpu frequency change) invalidates all pending results.
+        final ScratchArena     arena    = ScratchArena.get();
+        final Pointer<Integer> disjoint = arena.nref(0);
+        this.libGLESv2.glGetIntegerv(LibGLESv2.GL_GPU_DISJOINT_EXT,
+                                     disjoint.address);
+
+        final Pointer<Integer> available = arena.nref(0);
+        final Pointer<Long>    elapsed   = arena.nref(0L);
+        Integer                query;
+        while ((query = queries.peek()) != null) {
+            gpuTimerQuery.glGetQueryObjectuivEXT.$(query,
+                                                   LibGLESv2.GL_QUERY_RESULT_AVAILABLE_EXT,
+                                                   available.address);
+            if (available.dref() == 0) {
+                break;
+            }
+            gpuTimerQuery.glGetQueryObjectui64vEXT.$(query,
+                                                     LibGLESv2.GL_QUERY_RESULT_EXT,
+                                                     elapsed.address);
+            if (disjoint.dref() == 0) {
+                frameStats.recordGpu(elapsed.dref());
+            }
+            this.gpuQueryPool.add(queries.poll());
+        }
     }
 
     private void initRenderer() {
@@ -481,16 +1184,53 @@ public class Gles2Renderer implements GlRenderer {
             }
         }
 
+        if (glExtensions.contains("GL_EXT_disjoint_timer_query")) {
+            this.gpuTimerQuery = Optional.of(new GpuTimerQuery(wrap(GlGenQueriesEXT.class,
+                                                                    this.libEGL.eglGetProcAddress(Pointer.nref("glGenQueriesEXT").address)).dref(),
+                                                               wrap(GlBeginQueryEXT.class,
+                                                                    this.libEGL.eglGetProcAddress(Pointer.nref("glBeginQueryEXT").address)).dref(),
+                                                               wrap(GlEndQueryEXT.class,
+                                                                    this.libEGL.eglGetProcAddress(Pointer.nref("glEndQueryEXT").address)).dref(),
+                                                               wrap(GlGetQueryObjectuivEXT.class,
+                                                                    this.libEGL.eglGetProcAddress(Pointer.nref("glGetQueryObjectuivEXT").address)).dref(),
+                                                               wrap(GlGetQueryObjectui64vEXT.class,
+                                                                    this.libEGL.eglGetProcAddress(Pointer.nref("glGetQueryObjectui64vEXT").address)).dref()));
+        }
+        else {
+            LOGGER.info("Extension GL_EXT_disjoint_timer_query not available. No gpu frame timings will be recorded.");
+        }
+
+        //the atlas texture itself is only created once a surface is put in it.
+        final Pointer<Integer> maxTextureSize = ScratchArena.get()
+                                                            .nref(0);
+        this.libGLESv2.glGetIntegerv(LibGLESv2.GL_MAX_TEXTURE_SIZE,
+                                     maxTextureSize.address);
+        this.atlasSize = Math.min(ATLAS_SIZE,
+                                  maxTextureSize.dref());
+        this.atlasPacker = new ShelfPacker(this.atlasSize,
+                                           this.atlasSize);
+
         //configure texture blending
         this.libGLESv2.glBlendFunc(LibGLESv2.GL_ONE,
                                    LibGLESv2.GL_ONE_MINUS_SRC_ALPHA);
         this.init = true;
     }
 
-    private void setupEglOutputState(@Nonnull final EglOutput eglOutput) {
+    private void setupEglOutputState(@Nonnull final EglOutput eglOutput,
+                                     @Nonnull final DrawFrame drawFrame) {
         //to be used state
         this.eglOutputState = eglOutput.getState()
-                                       .orElseGet(() -> initOutputRenderState(eglOutput));
+                                       .orElseGet(() -> initOutputRenderState(eglOutput,
+                                                                              drawFrame));
+        if (!this.eglOutputState.getGlTransform()
+                                .equals(drawFrame.getGlTransform())) {
+            //the output was transformed or changed mode since its previous frame
+            final EglOutputState.Builder stateBuilder = this.eglOutputState.toBuilder();
+            updateTransform(stateBuilder,
+                            drawFrame.getMode(),
+                            drawFrame.getGlTransform());
+            this.eglOutputState = stateBuilder.build();
+        }
         //updates to state are registered with the builder
         this.newEglOutputState = this.eglOutputState.toBuilder();
     }
@@ -498,9 +1238,6 @@ public class Gles2Renderer implements GlRenderer {
     private void flushRenderState(final EglOutput eglOutput) {
         eglOutput.updateState(this.newEglOutputState.build());
         eglOutput.renderEndBeforeSwap();
-        this.libEGL.eglSwapBuffers(this.eglDisplay,
-                                   eglOutput.getEglSurface());
-        eglOutput.renderEndAfterSwap();
     }
 
     private int createShaderProgram(final String vertexShaderSource,
@@ -565,25 +1302,17 @@ public class Gles2Renderer implements GlRenderer {
         return shaderProgram;
     }
 
-    private EglOutputState initOutputRenderState(final EglOutput eglOutput) {
+    private EglOutputState initOutputRenderState(final EglOutput eglOutput,
+                                                 final DrawFrame drawFrame) {
 
         final EglOutputState.Builder builder = EglOutputState.builder();
-        final Output output = eglOutput.getWlOutput()
-                                       .getOutput();
         updateTransform(builder,
-                        output);
+                        drawFrame.getMode(),
+                        drawFrame.getGlTransform());
 
         final EglOutputState eglOutputState = builder.build();
         eglOutput.updateState(eglOutputState);
 
-        //listen for external updates
-        output.getTransformSignal()
-              .connect(event -> handleOutputUpdate(eglOutput,
-                                                   output));
-        output.getModeSignal()
-              .connect(event -> handleOutputUpdate(eglOutput,
-                                                   output));
-
         return eglOutputState;
     }
 
@@ -602,9 +1331,9 @@ public class Gles2Renderer implements GlRenderer {
     }
 
     private void updateTransform(final EglOutputState.Builder eglOutputStateBuilder,
-                                 final Output output) {
+                                 final OutputMode mode,
+                                 final Mat4 glTransform) {
 
-        final OutputMode mode   = output.getMode();
         final int        width  = mode.getWidth();
         final int        height = mode.getHeight();
 
@@ -619,20 +1348,7 @@ public class Gles2Renderer implements GlRenderer {
                                     1.0f);
         this.libGLESv2.glClear(LibGLESv2.GL_COLOR_BUFFER_BIT);
 
-        eglOutputStateBuilder.glTransform(createGlTransform(output));
-    }
-
-    private void handleOutputUpdate(final EglOutput eglOutput,
-                                    final Output output) {
-        eglOutput.getState()
-                 .ifPresent(eglOutputState -> {
-                     final EglOutputState.Builder stateBuilder = eglOutputState.toBuilder();
-                     updateTransform(stateBuilder,
-                                     output);
-                     eglOutput.updateState(stateBuilder.build());
-                     //schedule new render
-                     eglOutput.render();
-                 });
+        eglOutputStateBuilder.glTransform(glTransform);
     }
 
     private void checkShaderCompilation(final int shader) {
@@ -678,65 +1394,67 @@ public class Gles2Renderer implements GlRenderer {
         //@formatter:on
     }
 
-    private void draw(final WlSurfaceResource wlSurfaceResource) {
-        final WlSurface wlSurface = (WlSurface) wlSurfaceResource.getImplementation();
-        //don't bother rendering subsurfaces if the parent doesn't have a buffer.
-        wlSurface.getSurface()
-                 .getState()
-                 .getBuffer()
-                 .ifPresent(wlBufferResource -> {
-                     final LinkedList<WlSurfaceResource> subsurfaces = this.scene.getSubsurfaceStack(wlSurfaceResource);
-                     draw(wlSurfaceResource,
-                          wlBufferResource);
-                     subsurfaces.forEach((subsurface) -> {
-                         if (subsurface != wlSurfaceResource) {
-                             draw(subsurface);
-                         }
-                     });
-                 });
+    private void prepare(@Nonnull final SurfaceView surfaceView,
+                         @Nonnull final List<DrawView> drawViews) {
+        surfaceView.getBuffer()
+                   .accept(new BufferVisitor() {
+                       @Override
+                       public void visit(@Nonnull final Buffer buffer) {
+                           LOGGER.warning("Unsupported buffer.");
+                       }
+
+                       @Override
+                       public void visit(@Nonnull final EglBuffer eglBuffer) {
+                           queryEglSurfaceRenderState(surfaceView,
+                                                      eglBuffer).ifPresent(surfaceRenderState -> drawViews.add(DrawView.create(surfaceView.getTransform(),
+                                                                                                                               surfaceRenderState)));
+                       }
+
+                       @Override
+                       public void visit(@Nonnull final SmBuffer smBuffer) {
+                           queryShmSurfaceRenderState(surfaceView,
+                                                      smBuffer.getShmBuffer()).ifPresent(surfaceRenderState -> drawViews.add(DrawView.create(surfaceView.getTransform(),
+                                                                                                                                            surfaceRenderState)));
+                       }
+                   });
     }
 
-    private void draw(final WlSurfaceResource wlSurfaceResource,
-                      final WlBufferResource wlBufferResource) {
-        queryBuffer(wlBufferResource).accept(new BufferVisitor() {
-            @Override
-            public void visit(@Nonnull final Buffer buffer) {
-                LOGGER.warning("Unsupported buffer.");
-            }
-
-            @Override
-            public void visit(@Nonnull final EglBuffer eglBuffer) {
-                drawEgl(wlSurfaceResource,
-                        eglBuffer);
-            }
-
-            @Override
-            public void visit(@Nonnull final SmBuffer smBuffer) {
-                drawShm(wlSurfaceResource,
-                        smBuffer);
-            }
-        });
-    }
-
-    private void drawShm(final @Nonnull WlSurfaceResource wlSurfaceResource,
-                         final SmBuffer smBuffer) {
-
-        queryShmSurfaceRenderState(wlSurfaceResource,
-                                   smBuffer.getShmBuffer()).ifPresent(surfaceRenderState -> surfaceRenderState.accept(new SurfaceRenderStateVisitor() {
-            @Override
-            public Optional<SurfaceRenderState> visit(final ShmSurfaceState shmSurfaceState) {
-                drawShm(wlSurfaceResource,
-                        shmSurfaceState);
-                return null;
-            }
-        }));
+    private void draw(@Nonnull final DrawView drawView) {
+        final Mat4 transform = drawView.getTransform();
+        //vertex data is read by gl at draw time, keep it until the view is drawn
+        try (ScratchArena.Scope scope = ScratchArena.get()
+                                                    .scope()) {
+            drawView.getSurfaceRenderState()
+                    .accept(new SurfaceRenderStateVisitor() {
+                        @Override
+                        public Optional<SurfaceRenderState> visit(final ShmSurfaceState shmSurfaceState) {
+                            drawShm(transform,
+                                    shmSurfaceState);
+                            return null;
+                        }
+
+                        @Override
+                        public Optional<SurfaceRenderState> visit(final EglSurfaceState eglSurfaceState) {
+                            drawEgl(transform,
+                                    eglSurfaceState);
+                            return null;
+                        }
+
+                        @Override
+                        public Optional<SurfaceRenderState> visit(final AtlasSurfaceState atlasSurfaceState) {
+                            batchAtlas(transform,
+                                       atlasSurfaceState);
+                            return null;
+                        }
+                    });
+        }
     }
 
-    private Optional<SurfaceRenderState> queryShmSurfaceRenderState(final WlSurfaceResource wlSurfaceResource,
+    private Optional<SurfaceRenderState> queryShmSurfaceRenderState(final SurfaceView surfaceView,
                                                                     final ShmBuffer shmBuffer) {
 
-        final WlSurface              wlSurface          = (WlSurface) wlSurfaceResource.getImplementation();
-        final Surface                surface            = wlSurface.getSurface();
+        final Surface                surface            = surfaceView.getSurface();
+        final boolean                fitsAtlas          = fitsAtlas(shmBuffer);
         Optional<SurfaceRenderState> surfaceRenderState = surface.getRenderState();
 
         if (surfaceRenderState.isPresent()) {
@@ -744,8 +1462,18 @@ public class Gles2Renderer implements GlRenderer {
                                                    .accept(new SurfaceRenderStateVisitor() {
                                                        @Override
                                                        public Optional<SurfaceRenderState> visit(final ShmSurfaceState shmSurfaceState) {
+                                                           if (fitsAtlas) {
+                                                               //the surface became small enough to move it to the atlas.
+                                                               final Optional<SurfaceRenderState> atlasSurfaceState = createAtlasSurfaceRenderState(shmBuffer,
+                                                                                                                                                    Optional.empty());
+                                                               if (atlasSurfaceState.isPresent()) {
+                                                                   destroy(shmSurfaceState);
+                                                                   Gles2Renderer.this.textureBudget.remove(surface);
+                                                                   return atlasSurfaceState;
+                                                               }
+                                                           }
                                                            //the surface already has an shm render state associated. update it.
-                                                           return createShmSurfaceRenderState(wlSurfaceResource,
+                                                           return createShmSurfaceRenderState(surfaceView,
                                                                                               shmBuffer,
                                                                                               Optional.of(shmSurfaceState));
                                                        }
@@ -755,7 +1483,26 @@ public class Gles2Renderer implements GlRenderer {
                                                            //the surface was previously associated with an egl render state but is now using an shm render state. create it.
                                                            destroy(eglSurfaceState);
                                                            //TODO we could reuse the texture id from the egl surface render state
-                                                           return createShmSurfaceRenderState(wlSurfaceResource,
+                                                           return createShmOrAtlasSurfaceRenderState(surfaceView,
+                                                                                                     shmBuffer,
+                                                                                                     fitsAtlas);
+                                                       }
+
+                                                       @Override
+                                                       public Optional<SurfaceRenderState> visit(final AtlasSurfaceState atlasSurfaceState) {
+                                                           if (fitsAtlas) {
+                                                               //the surface already lives in the atlas. update it.
+                                                               final Optional<SurfaceRenderState> newAtlasSurfaceState = createAtlasSurfaceRenderState(shmBuffer,
+                                                                                                                                                       Optional.of(atlasSurfaceState));
+                                                               if (newAtlasSurfaceState.isPresent()) {
+                                                                   return newAtlasSurfaceState;
+                                                               }
+                                                           }
+                                                           else {
+                                                               //the surface grew too large for the atlas.
+                                                               destroy(atlasSurfaceState);
+                                                           }
+                                                           return createShmSurfaceRenderState(surfaceView,
                                                                                               shmBuffer,
                                                                                               Optional.empty());
                                                        }
@@ -763,24 +1510,145 @@ public class Gles2Renderer implements GlRenderer {
         }
         else {
             //the surface was not previously associated with any render state. create an shm render state.
-            surfaceRenderState = createShmSurfaceRenderState(wlSurfaceResource,
-                                                             shmBuffer,
-                                                             Optional.empty());
+            surfaceRenderState = createShmOrAtlasSurfaceRenderState(surfaceView,
+                                                                    shmBuffer,
+                                                                    fitsAtlas);
         }
 
         if (surfaceRenderState.isPresent()) {
             surface
                     .setRenderState(surfaceRenderState.get());
+            surfaceRenderState.get()
+                              .accept(new SurfaceRenderStateVisitor() {
+                                  @Override
+                                  public Optional<SurfaceRenderState> visit(final ShmSurfaceState shmSurfaceState) {
+                                      Gles2Renderer.this.textureBudget.use(surface,
+                                                                           surfaceView.getWlSurfaceResource()
+                                                                                      .getClient(),
+                                                                           4L * shmSurfaceState.getPitch() * shmSurfaceState.getHeight(),
+                                                                           Gles2Renderer.this.frameTime);
+                                      return null;
+                                  }
+                              });
         }
         else {
-            onDestroy(wlSurfaceResource);
+            destroyRenderState(surface);
         }
 
         return surfaceRenderState;
     }
 
 
-    private Optional<SurfaceRenderState> createShmSurfaceRenderState(final WlSurfaceResource wlSurfaceResource,
+    private boolean fitsAtlas(final ShmBuffer shmBuffer) {
+        final int shmBufferFormat = shmBuffer.getFormat();
+        return shmBuffer.getStride() / 4 <= ATLAS_MAX_SURFACE &&
+               shmBuffer.getHeight() <= ATLAS_MAX_SURFACE &&
+               (shmBufferFormat == WlShmFormat.ARGB8888.value || shmBufferFormat == WlShmFormat.XRGB8888.value);
+    }
+
+    private Optional<SurfaceRenderState> createShmOrAtlasSurfaceRenderState(final SurfaceView surfaceView,
+                                                                            final ShmBuffer shmBuffer,
+                                                                            final boolean fitsAtlas) {
+        if (fitsAtlas) {
+            final Optional<SurfaceRenderState> atlasSurfaceState = createAtlasSurfaceRenderState(shmBuffer,
+                                                                                                 Optional.empty());
+            if (atlasSurfaceState.isPresent()) {
+                return atlasSurfaceState;
+            }
+            //atlas is full, fall back to a texture of its own.
+        }
+        return createShmSurfaceRenderState(surfaceView,
+                                           shmBuffer,
+                                           Optional.empty());
+    }
+
+    private Optional<SurfaceRenderState> createAtlasSurfaceRenderState(final ShmBuffer shmBuffer,
+                                                                       final Optional<AtlasSurfaceState> oldRenderState) {
+        final int pitch         = shmBuffer.getStride() / 4;
+        final int height        = shmBuffer.getHeight();
+        final int shaderProgram = shmBuffer.getFormat() == WlShmFormat.ARGB8888.value ?
+                                  this.argb8888ShaderProgram :
+                                  this.xrgb8888ShaderProgram;
+
+        final Rectangle slot;
+        if (oldRenderState.isPresent() &&
+            oldRenderState.get()
+                          .getPitch() == pitch &&
+            oldRenderState.get()
+                          .getHeight() == height) {
+            //same size, upload in place
+            slot = oldRenderState.get()
+                                 .getSlot();
+        }
+        else {
+            oldRenderState.ifPresent(atlasSurfaceState -> destroy(atlasSurfaceState));
+            //keep a texel between slots so neighbours never bleed in when sampling at the edges.
+            final Optional<Rectangle> newSlot = this.atlasPacker.allocate(pitch + 1,
+                                                                          height + 1);
+            if (!newSlot.isPresent()) {
+                return Optional.empty();
+            }
+            slot = newSlot.get();
+        }
+
+        final AtlasSurfaceState atlasSurfaceState = AtlasSurfaceState.create(pitch,
+                                                                             height,
+                                                                             shaderProgram,
+                                                                             LibGLESv2.GL_BGRA_EXT,
+                                                                             LibGLESv2.GL_UNSIGNED_BYTE,
+                                                                             slot);
+        atlasUpdate(shmBuffer,
+                    atlasSurfaceState);
+        return Optional.of(atlasSurfaceState);
+    }
+
+    private void atlasUpdate(final ShmBuffer shmBuffer,
+                             final AtlasSurfaceState atlasSurfaceState) {
+        if (this.atlasTexture == 0) {
+            //allocate the atlas storage once, slots are filled in with sub image uploads.
+            this.atlasTexture = genTexture(LibGLESv2.GL_TEXTURE_2D);
+            this.libGLESv2.glBindTexture(LibGLESv2.GL_TEXTURE_2D,
+                                         this.atlasTexture);
+            this.libGLESv2.glTexImage2D(LibGLESv2.GL_TEXTURE_2D,
+                                        0,
+                                        LibGLESv2.GL_BGRA_EXT,
+                                        this.atlasSize,
+                                        this.atlasSize,
+                                        0,
+                                        LibGLESv2.GL_BGRA_EXT,
+                                        LibGLESv2.GL_UNSIGNED_BYTE,
+                                        0L);
+        }
+        else {
+            this.libGLESv2.glBindTexture(LibGLESv2.GL_TEXTURE_2D,
+                                         this.atlasTexture);
+        }
+        if (Trace.ENABLED) {
+            Trace.begin("texture upload");
+        }
+        shmBuffer.beginAccess();
+        this.textureBytes += (long) shmBuffer.getStride() * atlasSurfaceState.getHeight();
+        this.gpuCalls++;
+        this.libGLESv2.glTexSubImage2D(LibGLESv2.GL_TEXTURE_2D,
+                                       0,
+                                       atlasSurfaceState.getSlot()
+                                                        .getX(),
+                                       atlasSurfaceState.getSlot()
+                                                        .getY(),
+                                       atlasSurfaceState.getPitch(),
+                                       atlasSurfaceState.getHeight(),
+                                       atlasSurfaceState.getGlFormat(),
+                                       atlasSurfaceState.getGlPixelType(),
+                                       JNI.unwrap(shmBuffer.getData()));
+        shmBuffer.endAccess();
+        if (Trace.ENABLED) {
+            Trace.end("texture upload");
+        }
+        this.libGLESv2.glBindTexture(LibGLESv2.GL_TEXTURE_2D,
+                                     0);
+    }
+
+    private Optional<SurfaceRenderState> createShmSurfaceRenderState(final SurfaceView surfaceView,
                                                                      final ShmBuffer shmBuffer,
                                                                      final Optional<ShmSurfaceState> oldRenderState) {
         //new values
@@ -834,13 +1702,13 @@ public class Gles2Renderer implements GlRenderer {
                 glFormat != oldShmSurfaceState.getGlFormat() ||
                 glPixelType != oldShmSurfaceState.getGlPixelType()) {
                 //state needs full texture updating
-                shmUpdateAll(wlSurfaceResource,
+                shmUpdateAll(surfaceView,
                              shmBuffer,
                              newShmSurfaceState);
             }
             else {
                 //partial texture update
-                shmUpdateDamaged(wlSurfaceResource,
+                shmUpdateDamaged(surfaceView,
                                  shmBuffer,
                                  newShmSurfaceState);
             }
@@ -855,7 +1723,7 @@ public class Gles2Renderer implements GlRenderer {
                                                         glFormat,
                                                         glPixelType,
                                                         texture);
-            shmUpdateAll(wlSurfaceResource,
+            shmUpdateAll(surfaceView,
                          shmBuffer,
                          newShmSurfaceState);
         }
@@ -863,21 +1731,26 @@ public class Gles2Renderer implements GlRenderer {
         return Optional.of(newShmSurfaceState);
     }
 
-    private void shmUpdateDamaged(final WlSurfaceResource wlSurfaceResource,
+    private void shmUpdateDamaged(final SurfaceView surfaceView,
                                   final ShmBuffer shmBuffer,
                                   final ShmSurfaceState newShmSurfaceState) {
         //TODO implement damage
-        shmUpdateAll(wlSurfaceResource,
+        shmUpdateAll(surfaceView,
                      shmBuffer,
                      newShmSurfaceState);
     }
 
-    private void shmUpdateAll(final WlSurfaceResource wlSurfaceResource,
+    private void shmUpdateAll(final SurfaceView surfaceView,
                               final ShmBuffer shmBuffer,
                               final ShmSurfaceState newShmSurfaceState) {
         this.libGLESv2.glBindTexture(newShmSurfaceState.getTarget(),
                                      newShmSurfaceState.getTexture());
+        if (Trace.ENABLED) {
+            Trace.begin("texture upload");
+        }
         shmBuffer.beginAccess();
+        this.textureBytes += (long) shmBuffer.getStride() * newShmSurfaceState.getHeight();
+        this.gpuCalls++;
         this.libGLESv2.glTexImage2D(newShmSurfaceState.getTarget(),
                                     0,
                                     newShmSurfaceState.getGlFormat(),
@@ -888,23 +1761,23 @@ public class Gles2Renderer implements GlRenderer {
                                     newShmSurfaceState.getGlPixelType(),
                                     JNI.unwrap(shmBuffer.getData()));
         shmBuffer.endAccess();
+        if (Trace.ENABLED) {
+            Trace.end("texture upload");
+        }
         this.libGLESv2.glBindTexture(newShmSurfaceState.getTarget(),
                                      0);
-
-        //FIXME firing the paint callback here is actually wrong since we might still need to draw on a different output. Only when all views of a surface are processed, we can call the fire paint callback.
-        //TODO Introduce the concept of views => output <-- view (=many2many) --> surface
-        final WlSurface wlSurface = (WlSurface) wlSurfaceResource.getImplementation();
-        wlSurface.getSurface()
-                 .firePaintCallbacks((int) NANOSECONDS.toMillis(System.nanoTime()));
     }
 
-    private void drawShm(final @Nonnull WlSurfaceResource wlSurfaceResource,
+    private void drawShm(final @Nonnull Mat4 transform,
                          final ShmSurfaceState shmSurfaceState) {
+        //atlas views below this one must be drawn first
+        flushAtlasBatch();
+
         final int shaderProgram = shmSurfaceState.getShaderProgram();
 
         //activate & setup shader
         this.libGLESv2.glUseProgram(shaderProgram);
-        setupVertexParams(wlSurfaceResource,
+        setupVertexParams(transform,
                           shmSurfaceState.getPitch(),
                           shmSurfaceState.getHeight());
 
@@ -918,6 +1791,7 @@ public class Gles2Renderer implements GlRenderer {
         //draw
         //enable texture blending
         this.libGLESv2.glEnable(LibGLESv2.GL_BLEND);
+        this.gpuCalls++;
         this.libGLESv2.glDrawArrays(LibGLESv2.GL_TRIANGLES,
                                     0,
                                     6);
@@ -929,11 +1803,122 @@ public class Gles2Renderer implements GlRenderer {
         this.libGLESv2.glUseProgram(0);
     }
 
-    private Optional<SurfaceRenderState> queryEglSurfaceRenderState(final WlSurfaceResource wlSurfaceResource,
+    private void batchAtlas(final @Nonnull Mat4 transform,
+                            final AtlasSurfaceState atlasSurfaceState) {
+        if (this.atlasBatchLength > 0 && this.atlasBatchProgram != atlasSurfaceState.getShaderProgram()) {
+            flushAtlasBatch();
+        }
+        this.atlasBatchProgram = atlasSurfaceState.getShaderProgram();
+
+        final float     width     = atlasSurfaceState.getPitch();
+        final float     height    = atlasSurfaceState.getHeight();
+        final Rectangle slot      = atlasSurfaceState.getSlot();
+        final float     left      = slot.getX() / (float) this.atlasSize;
+        final float     top       = slot.getY() / (float) this.atlasSize;
+        final float     right     = (slot.getX() + width) / this.atlasSize;
+        final float     bottom    = (slot.getY() + height) / this.atlasSize;
+
+        //same triangles as vertexData, but transformed up front so views with a different transform share a draw call.
+        batchAtlasVertex(transform,
+                         0f,
+                         0f,
+                         left,
+                         top);
+        batchAtlasVertex(transform,
+                         width,
+                         0f,
+                         right,
+                         top);
+        batchAtlasVertex(transform,
+                         width,
+                         height,
+                         right,
+                         bottom);
+        batchAtlasVertex(transform,
+                         width,
+                         height,
+                         right,
+                         bottom);
+        batchAtlasVertex(transform,
+                         0f,
+                         height,
+                         left,
+                         bottom);
+        batchAtlasVertex(transform,
+                         0f,
+                         0f,
+                         left,
+                         top);
+    }
+
+    private void batchAtlasVertex(final Mat4 transform,
+                                  final float x,
+                                  final float y,
+                                  final float textureX,
+                                  final float textureY) {
+        if (this.atlasBatchLength + 4 > this.atlasBatch.length) {
+            this.atlasBatch = Arrays.copyOf(this.atlasBatch,
+                                            this.atlasBatch.length * 2);
+        }
+        final Vec4 position = transform.multiply(Vec4.create(x,
+                                                             y,
+                                                             0f,
+                                                             1f));
+        this.atlasBatch[this.atlasBatchLength++] = position.getX();
+        this.atlasBatch[this.atlasBatchLength++] = position.getY();
+        this.atlasBatch[this.atlasBatchLength++] = textureX;
+        this.atlasBatch[this.atlasBatchLength++] = textureY;
+    }
+
+    /**
+     * Draw all queued atlas views in one call.
+     */
+    private void flushAtlasBatch() {
+        if (this.atlasBatchLength == 0) {
+            return;
+        }
+
+        final ScratchArena   arena      = ScratchArena.get();
+        final Pointer<Float> vertexData = arena.allocate(this.atlasBatchLength * Float.BYTES,
+                                                         Float.class);
+        for (int i = 0; i < this.atlasBatchLength; i++) {
+            vertexData.writei(i,
+                              this.atlasBatch[i]);
+        }
+
+        //activate & setup shader, vertices are already transformed.
+        this.libGLESv2.glUseProgram(this.atlasBatchProgram);
+        setupVertexParams(Mat4.IDENTITY.toArray(),
+                          vertexData);
+
+        //set the atlas in the shader
+        this.libGLESv2.glActiveTexture(LibGLESv2.GL_TEXTURE0);
+        this.libGLESv2.glBindTexture(LibGLESv2.GL_TEXTURE_2D,
+                                     this.atlasTexture);
+        this.libGLESv2.glUniform1i(this.textureArgs[0],
+                                   0);
+
+        //draw
+        //enable texture blending
+        this.libGLESv2.glEnable(LibGLESv2.GL_BLEND);
+        this.gpuCalls++;
+        this.libGLESv2.glDrawArrays(LibGLESv2.GL_TRIANGLES,
+                                    0,
+                                    this.atlasBatchLength / 4);
+
+        //cleanup
+        this.libGLESv2.glDisable(LibGLESv2.GL_BLEND);
+        this.libGLESv2.glDisableVertexAttribArray(this.positionArg);
+        this.libGLESv2.glDisableVertexAttribArray(this.textureCoordinateArg);
+        this.libGLESv2.glUseProgram(0);
+
+        this.atlasBatchLength = 0;
+    }
+
+    private Optional<SurfaceRenderState> queryEglSurfaceRenderState(final SurfaceView surfaceView,
                                                                     final EglBuffer eglBuffer) {
 
-        final WlSurface              wlSurface          = (WlSurface) wlSurfaceResource.getImplementation();
-        final Surface                surface            = wlSurface.getSurface();
+        final Surface                surface            = surfaceView.getSurface();
         Optional<SurfaceRenderState> surfaceRenderState = surface.getRenderState();
 
         if (surfaceRenderState.isPresent()) {
@@ -944,6 +1929,15 @@ public class Gles2Renderer implements GlRenderer {
                                                            //the surface was previously associated with an shm render state but is now using an egl render state. create it.
                                                            //TODO we could reuse the texture id
                                                            destroy(shmSurfaceState);
+                                                           Gles2Renderer.this.textureBudget.remove(surface);
+                                                           return createEglSurfaceRenderState(eglBuffer,
+                                                                                              Optional.empty());
+                                                       }
+
+                                                       @Override
+                                                       public Optional<SurfaceRenderState> visit(final AtlasSurfaceState atlasSurfaceState) {
+                                                           //the surface was previously in the shm atlas but is now using an egl render state. create it.
+                                                           destroy(atlasSurfaceState);
                                                            return createEglSurfaceRenderState(eglBuffer,
                                                                                               Optional.empty());
                                                        }
@@ -966,7 +1960,7 @@ public class Gles2Renderer implements GlRenderer {
             surface.setRenderState(surfaceRenderState.get());
         }
         else {
-            onDestroy(wlSurfaceResource);
+            destroyRenderState(surface);
         }
 
         return surfaceRenderState;
@@ -988,7 +1982,8 @@ public class Gles2Renderer implements GlRenderer {
 
         final EglQueryWaylandBufferWL queryWaylandBuffer = this.eglQueryWaylandBufferWL.get();
 
-        final Pointer<Integer> yInvertedP = Pointer.nref(0);
+        final ScratchArena     arena      = ScratchArena.get();
+        final Pointer<Integer> yInvertedP = arena.nref(0);
 
         yInverted = queryWaylandBuffer.$(this.eglDisplay,
                                          buffer,
@@ -1052,7 +2047,7 @@ public class Gles2Renderer implements GlRenderer {
                                                            EGL_NO_CONTEXT,
                                                            EGL_WAYLAND_BUFFER_WL,
                                                            buffer,
-                                                           Pointer.nref(attribs).address);
+                                                           arena.nref(attribs).address);
             if (eglImage == EGL_NO_IMAGE_KHR) {
                 return Optional.empty();
             }
@@ -1084,7 +2079,7 @@ public class Gles2Renderer implements GlRenderer {
                     //cleanup old unused texture ids
                     for (int j = oldTextures.length - 1; j >= oldTextures.length + deltaNewTextures; j--) {
                         this.libGLESv2.glDeleteTextures(1,
-                                                        Pointer.nref(oldTextures[j]).address);
+                                                        arena.nref(oldTextures[j]).address);
                     }
                 }
             });
@@ -1107,28 +2102,17 @@ public class Gles2Renderer implements GlRenderer {
     }
 
 
-    private void drawEgl(final WlSurfaceResource wlSurfaceResource,
-                         final EglBuffer eglBuffer) {
-        queryEglSurfaceRenderState(wlSurfaceResource,
-                                   eglBuffer).ifPresent(surfaceRenderState -> surfaceRenderState.accept(new SurfaceRenderStateVisitor() {
-            @Override
-            public Optional<SurfaceRenderState> visit(final EglSurfaceState eglSurfaceState) {
-                drawEgl(wlSurfaceResource,
-                        eglSurfaceState);
-                return null;
-            }
-        }));
-    }
-
-    private void drawEgl(final WlSurfaceResource wlSurfaceResource,
+    private void drawEgl(final @Nonnull Mat4 transform,
                          final EglSurfaceState eglSurfaceState) {
         //TODO unify with drawShm
+        //atlas views below this one must be drawn first
+        flushAtlasBatch();
 
         final int shaderProgram = eglSurfaceState.getShaderProgram();
 
         //activate & setup shader
         this.libGLESv2.glUseProgram(shaderProgram);
-        setupVertexParams(wlSurfaceResource,
+        setupVertexParams(transform,
                           eglSurfaceState.getPitch(),
                           eglSurfaceState.getHeight());
 
@@ -1154,6 +2138,7 @@ public class Gles2Renderer implements GlRenderer {
         //draw
         //enable texture blending
         this.libGLESv2.glEnable(LibGLESv2.GL_BLEND);
+        this.gpuCalls++;
         this.libGLESv2.glDrawArrays(LibGLESv2.GL_TRIANGLES,
                                     0,
                                     6);
@@ -1165,14 +2150,11 @@ public class Gles2Renderer implements GlRenderer {
             this.libGLESv2.glDisableVertexAttribArray(this.textureArgs[i]);
         }
         this.libGLESv2.glUseProgram(0);
-
-        final WlSurface wlSurface = (WlSurface) wlSurfaceResource.getImplementation();
-        wlSurface.getSurface()
-                 .firePaintCallbacks((int) NANOSECONDS.toMillis(System.nanoTime()));
     }
 
     private int genTexture(final int target) {
-        final Pointer<Integer> texture = Pointer.nref(0);
+        final Pointer<Integer> texture = ScratchArena.get()
+                                                     .nref(0);
         this.libGLESv2.glGenTextures(1,
                                      texture.address);
         final Integer textureId = texture.dref();
@@ -1195,27 +2177,29 @@ public class Gles2Renderer implements GlRenderer {
         return textureId;
     }
 
-    private void setupVertexParams(final @Nonnull WlSurfaceResource wlSurfaceResource,
+    private void setupVertexParams(final @Nonnull Mat4 transform,
                                    final float bufferWidth,
                                    final float bufferHeight) {
-        final WlSurface wlSurface = (WlSurface) wlSurfaceResource.getImplementation();
-        final Surface   surface   = wlSurface.getSurface();
-        final float[] transform = surface.getTransform()
-                                         .toArray();
-
         //define vertex data
         final Pointer<Float> vertexData = vertexData(bufferWidth,
                                                      bufferHeight);
 
+        setupVertexParams(transform.toArray(),
+                          vertexData);
+    }
+
+    private void setupVertexParams(final float[] transform,
+                                   final Pointer<Float> vertexData) {
         //upload uniform vertex data
-        final Pointer<Float> projectionBuffer = Pointer.nref(this.eglOutputState.getGlTransform()
-                                                                                .toArray());
+        final ScratchArena   arena            = ScratchArena.get();
+        final Pointer<Float> projectionBuffer = arena.nref(this.eglOutputState.getGlTransform()
+                                                                              .toArray());
         this.libGLESv2.glUniformMatrix4fv(this.projectionArg,
                                           1,
                                           0,
                                           projectionBuffer.address);
 
-        final Pointer<Float> transformBuffer = Pointer.nref(transform);
+        final Pointer<Float> transformBuffer = arena.nref(transform);
         this.libGLESv2.glUniformMatrix4fv(this.transformArg,
                                           1,
                                           0,
@@ -1242,35 +2226,56 @@ public class Gles2Renderer implements GlRenderer {
                                       final float bufferHeight) {
         //first pair => attribute vec2 a_position
         //second pair => attribute vec2 a_texCoord
-        return Pointer.nref(//top left:
-                            0f,
-                            0f,
-                            0f,
-                            0f,
-                            //top right:
-                            bufferWidth,
-                            0f,
-                            1f,
-                            0f,
-                            //bottom right:
-                            bufferWidth,
-                            bufferHeight,
-                            1f,
-                            1f,
-                            //bottom right:
-                            bufferWidth,
-                            bufferHeight,
-                            1f,
-                            1f,
-                            //bottom left:
-                            0f,
-                            bufferHeight,
-                            0f,
-                            1f,
-                            //top left:
-                            0f,
-                            0f,
-                            0f,
-                            0f);
+        return ScratchArena.get()
+                           .nref(//top left:
+                                 0f,
+                                 0f,
+                                 0f,
+                                 0f,
+                                 //top right:
+                                 bufferWidth,
+                                 0f,
+                                 1f,
+                                 0f,
+                                 //bottom right:
+                                 bufferWidth,
+                                 bufferHeight,
+                                 1f,
+                                 1f,
+                                 //bottom right:
+                                 bufferWidth,
+                                 bufferHeight,
+                                 1f,
+                                 1f,
+                                 //bottom left:
+                                 0f,
+                                 bufferHeight,
+                                 0f,
+                                 1f,
+                                 //top left:
+                                 0f,
+                                 0f,
+                                 0f,
+                                 0f);
+    }
+
+    private static class GpuTimerQuery {
+        private final GlGenQueriesEXT          glGenQueriesEXT;
+        private final GlBeginQueryEXT          glBeginQueryEXT;
+        private final GlEndQueryEXT            glEndQueryEXT;
+        private final GlGetQueryObjectuivEXT   glGetQueryObjectuivEXT;
+        private final GlGetQueryObjectui64vEXT glGetQueryObjectui64vEXT;
+
+        GpuTimerQuery(final GlGenQueriesEXT glGenQueriesEXT,
+                      final GlBeginQueryEXT glBeginQueryEXT,
+                      final GlEndQueryEXT glEndQueryEXT,
+                      final GlGetQueryObjectuivEXT glGetQueryObjectuivEXT,
+                      final GlGetQueryObjectui64vEXT glGetQueryObjectui64vEXT) {
+            this.glGenQueriesEXT = glGenQueriesEXT;
+            this.glBeginQueryEXT = glBeginQueryEXT;
+            this.glEndQueryEXT = glEndQueryEXT;
+            this.glGetQueryObjectuivEXT = glGetQueryObjectuivEXT;
+            this.glGetQueryObjectui64vEXT = glGetQueryObjectui64vEXT;
+        }
     }
 }
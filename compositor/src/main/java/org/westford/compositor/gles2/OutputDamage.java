@@ -0,0 +1,199 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.gles2;
+
+import org.westford.compositor.core.Buffer;
+import org.westford.compositor.core.Output;
+import org.westford.compositor.core.OutputMode;
+import org.westford.compositor.core.Rectangle;
+import org.westford.compositor.core.SceneSnapshot;
+import org.westford.compositor.core.Surface;
+import org.westford.compositor.core.SurfaceState;
+import org.westford.compositor.core.SurfaceView;
+import org.westford.compositor.core.calc.Mat4;
+import org.westford.compositor.core.calc.Vec4;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tracks which part of an output changed between two frames. A view damages the output when it appears, disappears,
+ * moves, changes its stacking order or when its surface commits damage. Anything that can not be tracked, like a new
+ * output mode or transform, damages the whole output.
+ */
+class OutputDamage {
+
+    /**
+     * Above this many rectangles a single bounding box is cheaper to handle for both the renderer and the display
+     * server.
+     */
+    private static final int MAX_RECTANGLES = 16;
+
+    @Nonnull
+    private Map<Surface, DrawnView> drawnViews     = new IdentityHashMap<>();
+    @Nonnull
+    private Optional<Mat4>          drawnTransform = Optional.empty();
+    @Nonnull
+    private Rectangle               drawnOutput    = Rectangle.ZERO;
+
+    /**
+     * Compare a new snapshot with the previous one.
+     *
+     * @param output        the output that will show the snapshot.
+     * @param sceneSnapshot the snapshot that will be drawn next.
+     *
+     * @return the damaged rectangles, in output pixels with the origin in the top left corner. Empty if nothing changed.
+     */
+    @Nonnull
+    public List<Rectangle> damage(@Nonnull final Output output,
+                                  @Nonnull final SceneSnapshot sceneSnapshot) {
+        final OutputMode mode = output.getMode();
+        final Rectangle outputRectangle = Rectangle.create(0,
+                                                           0,
+                                                           mode.getWidth(),
+                                                           mode.getHeight());
+        final Mat4 outputTransform = output.getInverseTransform();
+
+        final boolean fullDamage = !this.drawnTransform.equals(Optional.of(outputTransform))
+                                   || !this.drawnOutput.equals(outputRectangle);
+        this.drawnTransform = Optional.of(outputTransform);
+        this.drawnOutput = outputRectangle;
+
+        final List<Rectangle>         damage     = new ArrayList<>();
+        final Map<Surface, DrawnView> newViews   = new IdentityHashMap<>();
+        Surface                       below      = null;
+
+        for (final SurfaceView surfaceView : sceneSnapshot.getSurfaceViews()) {
+            final Surface      surface      = surfaceView.getSurface();
+            final SurfaceState surfaceState = surfaceView.getSurfaceState();
+            final Buffer       buffer       = surfaceView.getBuffer();
+            final Mat4         transform    = outputTransform.multiply(surfaceView.getTransform());
+            final Rectangle bounds = bounds(transform,
+                                            Rectangle.create(0,
+                                                             0,
+                                                             buffer.getWidth(),
+                                                             buffer.getHeight()));
+
+            final DrawnView drawnView = this.drawnViews.remove(surface);
+            if (drawnView == null) {
+                //new view
+                damage.add(bounds);
+            }
+            else if (!drawnView.bounds.equals(bounds) || drawnView.below != below) {
+                //moved, resized or restacked
+                damage.add(drawnView.bounds);
+                damage.add(bounds);
+            }
+            else if (drawnView.state != surfaceState) {
+                //new content
+                final int scale = surfaceState.getScale();
+                damage.add(surface.getDamageSince(drawnView.state)
+                                  .map(surfaceDamage -> bounds(transform,
+                                                               Rectangle.create(surfaceDamage.getX() * scale,
+                                                                                surfaceDamage.getY() * scale,
+                                                                                surfaceDamage.getWidth() * scale,
+                                                                                surfaceDamage.getHeight() * scale)).intersection(bounds))
+                                  .orElse(bounds));
+            }
+
+            newViews.put(surface,
+                         new DrawnView(surfaceState,
+                                       bounds,
+                                       below));
+            below = surface;
+        }
+
+        //views that are gone
+        this.drawnViews.values()
+                       .forEach(drawnView -> damage.add(drawnView.bounds));
+        this.drawnViews = newViews;
+
+        if (fullDamage) {
+            return Collections.singletonList(outputRectangle);
+        }
+
+        final List<Rectangle> clippedDamage = new ArrayList<>(damage.size());
+        Rectangle             damageBounds  = Rectangle.ZERO;
+        for (final Rectangle rectangle : damage) {
+            final Rectangle clippedRectangle = rectangle.intersection(outputRectangle);
+            if (!clippedRectangle.isEmpty()) {
+                clippedDamage.add(clippedRectangle);
+                damageBounds = damageBounds.union(clippedRectangle);
+            }
+        }
+
+        if (clippedDamage.size() > MAX_RECTANGLES) {
+            return Collections.singletonList(damageBounds);
+        }
+        return clippedDamage;
+    }
+
+    @Nonnull
+    static Rectangle bounds(@Nonnull final Mat4 transform,
+                            @Nonnull final Rectangle rectangle) {
+        final float[] xs = {rectangle.getX(), rectangle.getX() + rectangle.getWidth()};
+        final float[] ys = {rectangle.getY(), rectangle.getY() + rectangle.getHeight()};
+
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (final float x : xs) {
+            for (final float y : ys) {
+                final Vec4 corner = transform.multiply(Vec4.create(x,
+                                                                   y,
+                                                                   0f,
+                                                                   1f));
+                minX = Math.min(minX,
+                                corner.getX());
+                minY = Math.min(minY,
+                                corner.getY());
+                maxX = Math.max(maxX,
+                                corner.getX());
+                maxY = Math.max(maxY,
+                                corner.getY());
+            }
+        }
+
+        final int x = (int) Math.floor(minX);
+        final int y = (int) Math.floor(minY);
+        return Rectangle.create(x,
+                                y,
+                                (int) Math.ceil(maxX) - x,
+                                (int) Math.ceil(maxY) - y);
+    }
+
+    private static final class DrawnView {
+        private final SurfaceState state;
+        private final Rectangle    bounds;
+        private final Surface      below;
+
+        private DrawnView(final SurfaceState state,
+                          final Rectangle bounds,
+                          final Surface below) {
+            this.state = state;
+            this.bounds = bounds;
+            this.below = below;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.gles2;
+
+import org.westford.compositor.core.Buffer;
+import org.westford.compositor.core.Output;
+import org.westford.compositor.core.OutputMode;
+import org.westford.compositor.core.Rectangle;
+import org.westford.compositor.core.SceneSnapshot;
+import org.westford.compositor.core.Surface;
+import org.westford.compositor.core.SurfaceState;
+import org.westford.compositor.core.SurfaceView;
+import org.westford.compositor.core.calc.Mat4;
+import org.westford.compositor.core.calc.Vec4;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the surfaces that show at least one pixel on an output. A view is hidden when it is outside the output, or
+ * when it is covered by the opaque regions of the views above it.
+ */
+class OutputVisibility {
+
+    /**
+     * Above this many uncovered rectangles a view is assumed to be visible, instead of subtracting any further.
+     */
+    private static final int MAX_RECTANGLES = 64;
+
+    /**
+     * @param output        the output that shows the snapshot.
+     * @param sceneSnapshot all views shown by the output, bottom to top.
+     *
+     * @return the surfaces of which at least one view is visible on the output.
+     */
+    @Nonnull
+    public Set<Surface> visibleSurfaces(@Nonnull final Output output,
+                                        @Nonnull final SceneSnapshot sceneSnapshot) {
+        final OutputMode mode = output.getMode();
+        final Rectangle outputRectangle = Rectangle.create(0,
+                                                           0,
+                                                           mode.getWidth(),
+                                                           mode.getHeight());
+        final Mat4 outputTransform = output.getInverseTransform();
+
+        final Set<Surface>      visibleSurfaces = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Rectangle>   opaque          = new ArrayList<>();
+        final List<SurfaceView> surfaceViews    = sceneSnapshot.getSurfaceViews();
+
+        //top to bottom, so everything that covers a view is known when we get to it
+        for (int i = surfaceViews.size() - 1; i >= 0; i--) {
+            final SurfaceView  surfaceView  = surfaceViews.get(i);
+            final SurfaceState surfaceState = surfaceView.getSurfaceState();
+            final Buffer       buffer       = surfaceView.getBuffer();
+            final Mat4         transform    = outputTransform.multiply(surfaceView.getTransform());
+            final Rectangle bounds = OutputDamage.bounds(transform,
+                                                         Rectangle.create(0,
+                                                                          0,
+                                                                          buffer.getWidth(),
+                                                                          buffer.getHeight()))
+                                                 .intersection(outputRectangle);
+            if (bounds.isEmpty()) {
+                continue;
+            }
+
+            if (!isCovered(bounds,
+                           opaque)) {
+                visibleSurfaces.add(surfaceView.getSurface());
+            }
+
+            //an opaque region that is rotated or skewed covers less than its bounding box
+            if (isAxisAligned(transform)) {
+                final int scale = surfaceState.getScale();
+                for (final Rectangle rectangle : surfaceView.getOpaqueRegion()) {
+                    final Rectangle covered = innerBounds(transform,
+                                                          rectangle,
+                                                          scale).intersection(bounds);
+                    if (!covered.isEmpty()) {
+                        opaque.add(covered);
+                    }
+                }
+            }
+        }
+
+        return visibleSurfaces;
+    }
+
+    private static boolean isCovered(@Nonnull final Rectangle bounds,
+                                     @Nonnull final List<Rectangle> opaque) {
+        List<Rectangle> uncovered = Collections.singletonList(bounds);
+        for (final Rectangle opaqueRectangle : opaque) {
+            final List<Rectangle> remaining = new ArrayList<>(uncovered.size());
+            for (final Rectangle rectangle : uncovered) {
+                subtract(rectangle,
+                         opaqueRectangle,
+                         remaining);
+            }
+            if (remaining.isEmpty()) {
+                return true;
+            }
+            if (remaining.size() > MAX_RECTANGLES) {
+                return false;
+            }
+            uncovered = remaining;
+        }
+        return false;
+    }
+
+    /**
+     * Add the parts of a rectangle that are not covered by another one.
+     */
+    private static void subtract(@Nonnull final Rectangle rectangle,
+                                 @Nonnull final Rectangle other,
+                                 @Nonnull final List<Rectangle> remaining) {
+        final Rectangle overlap = rectangle.intersection(other);
+        if (overlap.isEmpty()) {
+            remaining.add(rectangle);
+            return;
+        }
+
+        final int right         = rectangle.getX() + rectangle.getWidth();
+        final int bottom        = rectangle.getY() + rectangle.getHeight();
+        final int overlapRight  = overlap.getX() + overlap.getWidth();
+        final int overlapBottom = overlap.getY() + overlap.getHeight();
+
+        addIfNotEmpty(remaining,
+                      Rectangle.create(rectangle.getX(),
+                                       rectangle.getY(),
+                                       rectangle.getWidth(),
+                                       overlap.getY() - rectangle.getY()));
+        addIfNotEmpty(remaining,
+                      Rectangle.create(rectangle.getX(),
+                                       overlapBottom,
+                                       rectangle.getWidth(),
+                                       bottom - overlapBottom));
+        addIfNotEmpty(remaining,
+                      Rectangle.create(rectangle.getX(),
+                                       overlap.getY(),
+                                       overlap.getX() - rectangle.getX(),
+                                       overlap.getHeight()));
+        addIfNotEmpty(remaining,
+                      Rectangle.create(overlapRight,
+                                       overlap.getY(),
+                                       right - overlapRight,
+                                       overlap.getHeight()));
+    }
+
+    private static void addIfNotEmpty(@Nonnull final List<Rectangle> rectangles,
+                                      @Nonnull final Rectangle rectangle) {
+        if (!rectangle.isEmpty()) {
+            rectangles.add(rectangle);
+        }
+    }
+
+    /**
+     * @return true if the transform only translates, scales or rotates by a multiple of 90 degrees.
+     */
+    private static boolean isAxisAligned(@Nonnull final Mat4 transform) {
+        return (transform.getM01() == 0f && transform.getM10() == 0f) ||
+               (transform.getM00() == 0f && transform.getM11() == 0f);
+    }
+
+    /**
+     * @param transform an axis aligned transform from buffer to output pixels.
+     * @param rectangle a rectangle in surface coordinates.
+     * @param scale     the buffer scale of the surface.
+     *
+     * @return the largest whole pixel rectangle inside the transformed rectangle.
+     */
+    @Nonnull
+    private static Rectangle innerBounds(@Nonnull final Mat4 transform,
+                                         @Nonnull final Rectangle rectangle,
+                                         final int scale) {
+        //in floats, an infinite region does not fit in an int once scaled
+        final float left   = (float) rectangle.getX() * scale;
+        final float top    = (float) rectangle.getY() * scale;
+        final float right  = ((float) rectangle.getX() + rectangle.getWidth()) * scale;
+        final float bottom = ((float) rectangle.getY() + rectangle.getHeight()) * scale;
+
+        final Vec4 a = transform.multiply(Vec4.create(left,
+                                                      top,
+                                                      0f,
+                                                      1f));
+        final Vec4 b = transform.multiply(Vec4.create(right,
+                                                      bottom,
+                                                      0f,
+                                                      1f));
+
+        //clamp to what an output can be, so the size does not overflow
+        final int x      = (int) Math.max(Short.MIN_VALUE,
+                                          Math.ceil(Math.min(a.getX(),
+                                                             b.getX())));
+        final int y      = (int) Math.max(Short.MIN_VALUE,
+                                          Math.ceil(Math.min(a.getY(),
+                                                             b.getY())));
+        final int width  = (int) Math.min(Short.MAX_VALUE,
+                                          Math.floor(Math.max(a.getX(),
+                                                              b.getX()))) - x;
+        final int height = (int) Math.min(Short.MAX_VALUE,
+                                          Math.floor(Math.max(a.getY(),
+                                                              b.getY()))) - y;
+        if (width <= 0 || height <= 0) {
+            return Rectangle.ZERO;
+        }
+        return Rectangle.create(x,
+                                y,
+                                width,
+                                height);
+    }
+}
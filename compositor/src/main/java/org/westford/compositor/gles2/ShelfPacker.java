@@ -0,0 +1,192 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.gles2;
+
+import org.westford.compositor.core.Rectangle;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Packs rectangles into a fixed area by stacking horizontal shelves. A rectangle goes on the shelf that wastes the
+ * least height, a new shelf is only opened when that waste is larger than the rectangle itself. Space that is freed is
+ * reused by later rectangles on the same shelf, empty shelves at the top are closed.
+ */
+class ShelfPacker {
+
+    @Nonnegative
+    private final int width;
+    @Nonnegative
+    private final int height;
+    //bottom to top
+    @Nonnull
+    private final List<Shelf> shelves = new ArrayList<>();
+
+    ShelfPacker(@Nonnegative final int width,
+                @Nonnegative final int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Reserve an area.
+     *
+     * @param width  the width of the area.
+     * @param height the height of the area.
+     *
+     * @return the reserved area or nothing if there's no room left.
+     */
+    @Nonnull
+    public Optional<Rectangle> allocate(@Nonnegative final int width,
+                                        @Nonnegative final int height) {
+        if (width > this.width || height > this.height) {
+            return Optional.empty();
+        }
+
+        Shelf best = null;
+        for (final Shelf shelf : this.shelves) {
+            if (shelf.height >= height &&
+                (best == null || shelf.height < best.height) &&
+                shelf.fits(width)) {
+                best = shelf;
+            }
+        }
+
+        final int top = this.shelves.isEmpty() ? 0 : last().top();
+        if ((best == null || best.height - height > height) && top + height <= this.height) {
+            best = new Shelf(top,
+                             height,
+                             this.width);
+            this.shelves.add(best);
+        }
+
+        if (best == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(Rectangle.create(best.take(width),
+                                            best.y,
+                                            width,
+                                            height));
+    }
+
+    /**
+     * Release an area that was reserved with {@link #allocate(int, int)}.
+     *
+     * @param rectangle the reserved area.
+     */
+    public void free(@Nonnull final Rectangle rectangle) {
+        for (final Shelf shelf : this.shelves) {
+            if (shelf.y == rectangle.getY()) {
+                shelf.give(rectangle.getX(),
+                           rectangle.getWidth());
+                break;
+            }
+        }
+
+        //close empty shelves at the top so their height can be reused by taller rectangles.
+        while (!this.shelves.isEmpty() && last().isEmpty()) {
+            this.shelves.remove(this.shelves.size() - 1);
+        }
+    }
+
+    private Shelf last() {
+        return this.shelves.get(this.shelves.size() - 1);
+    }
+
+    public int getShelves() {
+        return this.shelves.size();
+    }
+
+    private static class Shelf {
+        private final int                       y;
+        private final int                       height;
+        private final int                       width;
+        //x -> width of each free span, adjacent spans are merged.
+        private final TreeMap<Integer, Integer> free = new TreeMap<>();
+
+        Shelf(final int y,
+              final int height,
+              final int width) {
+            this.y = y;
+            this.height = height;
+            this.width = width;
+            this.free.put(0,
+                          width);
+        }
+
+        int top() {
+            return this.y + this.height;
+        }
+
+        boolean isEmpty() {
+            return this.free.size() == 1 && this.free.firstEntry()
+                                                     .getValue() == this.width;
+        }
+
+        boolean fits(final int width) {
+            for (final int span : this.free.values()) {
+                if (span >= width) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int take(final int width) {
+            for (final Map.Entry<Integer, Integer> span : this.free.entrySet()) {
+                final int x         = span.getKey();
+                final int spanWidth = span.getValue();
+                if (spanWidth >= width) {
+                    this.free.remove(x);
+                    if (spanWidth > width) {
+                        this.free.put(x + width,
+                                      spanWidth - width);
+                    }
+                    return x;
+                }
+            }
+            throw new IllegalStateException("No free span of width " + width);
+        }
+
+        void give(final int x,
+                  final int width) {
+            int start = x;
+            int end   = x + width;
+
+            final Map.Entry<Integer, Integer> before = this.free.floorEntry(x);
+            if (before != null && before.getKey() + before.getValue() == x) {
+                start = before.getKey();
+                this.free.remove(start);
+            }
+            final Integer after = this.free.get(end);
+            if (after != null) {
+                this.free.remove(end);
+                end += after;
+            }
+
+            this.free.put(start,
+                          end - start);
+        }
+    }
+}
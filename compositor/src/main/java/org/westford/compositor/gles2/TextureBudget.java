@@ -0,0 +1,235 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.gles2;
+
+import org.freedesktop.wayland.server.Client;
+import org.westford.compositor.core.Surface;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the memory used by shm surface textures under a budget. When the budget is exceeded, the textures of surfaces
+ * that were drawn least recently are evicted. An evicted texture is uploaded again from the surface's buffer when the
+ * surface is drawn again.
+ * <p/>
+ * Egl textures are not accounted as they are views of buffers that are owned by the client, deleting them frees no
+ * memory.
+ * <p/>
+ * The budget is set in megabytes with {@code westford.texture.budget} and is unlimited by default. Usage is available
+ * as the JMX MBean {@code org.westford:type=TextureBudget}. Except for the MBean getters, a texture budget must only be
+ * used on the thread that renders.
+ */
+@Singleton
+public class TextureBudget implements TextureBudgetMBean {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /*
+     * Textures that were drawn this recently are never evicted, even when over budget, so we don't upload the same
+     * texture every frame.
+     */
+    private static final long MIN_IDLE = TimeUnit.SECONDS.toNanos(1);
+
+    private final long                budgetBytes;
+    //least recently used first
+    @Nonnull
+    private final Map<Surface, Entry> entries     = new LinkedHashMap<>(16,
+                                                                        0.75f,
+                                                                        true);
+    @Nonnull
+    private final Map<Client, Long>   clientBytes = new HashMap<>();
+    private       long                usedBytes;
+    private       long                evictions;
+    private       boolean             overBudget;
+
+    @Inject
+    TextureBudget() {
+        this(Long.getLong("westford.texture.budget",
+                          0L) * 1024 * 1024);
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(this,
+                                            new ObjectName("org.westford:type=TextureBudget"));
+        }
+        catch (final JMException e) {
+            LOGGER.log(Level.WARNING,
+                       "Failed to register texture budget MBean.",
+                       e);
+        }
+    }
+
+    TextureBudget(final long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Mark the texture of a surface as used.
+     *
+     * @param surface the surface that owns the texture.
+     * @param client  the client of the surface.
+     * @param bytes   the size of the texture in bytes.
+     * @param time    the time in nanoseconds at which the texture was used.
+     */
+    public synchronized void use(@Nonnull final Surface surface,
+                                 @Nonnull final Client client,
+                                 final long bytes,
+                                 final long time) {
+        Entry entry = this.entries.get(surface);
+        if (entry == null) {
+            entry = new Entry(client);
+            this.entries.put(surface,
+                             entry);
+        }
+        account(entry.client,
+                bytes - entry.bytes);
+        entry.bytes = bytes;
+        entry.time = time;
+    }
+
+    /**
+     * Stop accounting the texture of a surface, because it was deleted.
+     *
+     * @param surface the surface that owned the texture.
+     */
+    public synchronized void remove(@Nonnull final Surface surface) {
+        final Entry entry = this.entries.remove(surface);
+        if (entry != null) {
+            account(entry.client,
+                    -entry.bytes);
+        }
+    }
+
+    /**
+     * Take the surfaces whose texture should be deleted to get under budget, least recently used first. The returned
+     * surfaces are no longer accounted.
+     *
+     * @param time the current time in nanoseconds.
+     *
+     * @return the surfaces to evict, empty if under budget.
+     */
+    @Nonnull
+    public synchronized List<Surface> evict(final long time) {
+        if (this.budgetBytes <= 0 || this.usedBytes <= this.budgetBytes) {
+            this.overBudget = false;
+            return Collections.emptyList();
+        }
+
+        final List<Surface>                       evicted  = new ArrayList<>();
+        final Iterator<Map.Entry<Surface, Entry>> iterator = this.entries.entrySet()
+                                                                         .iterator();
+        while (this.usedBytes > this.budgetBytes && iterator.hasNext()) {
+            final Map.Entry<Surface, Entry> next  = iterator.next();
+            final Entry                     entry = next.getValue();
+            if (time - entry.time < MIN_IDLE) {
+                //all remaining textures were used even more recently.
+                break;
+            }
+            iterator.remove();
+            account(entry.client,
+                    -entry.bytes);
+            evicted.add(next.getKey());
+            this.evictions++;
+        }
+
+        if (this.usedBytes > this.budgetBytes && !this.overBudget) {
+            LOGGER.warning(String.format("Visible shm textures use %d KiB, more than the texture budget of %d KiB.",
+                                         this.usedBytes / 1024,
+                                         this.budgetBytes / 1024));
+        }
+        this.overBudget = this.usedBytes > this.budgetBytes;
+
+        return evicted;
+    }
+
+    private void account(@Nonnull final Client client,
+                         final long bytes) {
+        this.usedBytes += bytes;
+        final long total = this.clientBytes.merge(client,
+                                                  bytes,
+                                                  Long::sum);
+        if (total == 0L) {
+            this.clientBytes.remove(client);
+        }
+    }
+
+    @Override
+    public long getBudgetBytes() {
+        return this.budgetBytes;
+    }
+
+    @Override
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    @Override
+    public synchronized int getTextures() {
+        return this.entries.size();
+    }
+
+    @Override
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    @Override
+    public synchronized String[] getClientUsage() {
+        return this.clientBytes.entrySet()
+                               .stream()
+                               .map(clientBytes -> String.format("client@%x: %d KiB",
+                                                                 clientBytes.getKey().pointer,
+                                                                 clientBytes.getValue() / 1024))
+                               .toArray(String[]::new);
+    }
+
+    /**
+     * @param client the client.
+     *
+     * @return the texture bytes used by the client.
+     */
+    public synchronized long getClientBytes(@Nonnull final Client client) {
+        return this.clientBytes.getOrDefault(client,
+                                             0L);
+    }
+
+    private static class Entry {
+        @Nonnull
+        private final Client client;
+        private       long   bytes;
+        private       long   time;
+
+        Entry(@Nonnull final Client client) {
+            this.client = client;
+        }
+    }
+}
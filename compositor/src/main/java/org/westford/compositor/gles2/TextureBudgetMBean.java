@@ -0,0 +1,49 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.gles2;
+
+/**
+ * JMX view of the shm texture memory used by the {@link Gles2Renderer}.
+ */
+public interface TextureBudgetMBean {
+
+    /**
+     * @return the configured budget in bytes, 0 if unlimited.
+     */
+    long getBudgetBytes();
+
+    /**
+     * @return the bytes of all shm textures that are currently uploaded.
+     */
+    long getUsedBytes();
+
+    /**
+     * @return the number of shm textures that are currently uploaded.
+     */
+    int getTextures();
+
+    /**
+     * @return the number of textures that were evicted since startup.
+     */
+    long getEvictions();
+
+    /**
+     * @return the texture bytes used by each client, one line per client.
+     */
+    String[] getClientUsage();
+}
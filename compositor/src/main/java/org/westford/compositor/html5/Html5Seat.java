@@ -123,10 +123,10 @@ public class Html5Seat {
                                                                      .getResources();
         this.wlSeat.getWlPointer()
                    .getPointerDevice()
-                   .motion(wlPointerResources,
-                           time,
-                           xCor,
-                           yCor);
+                   .queueMotion(wlPointerResources,
+                                time,
+                                xCor,
+                                yCor);
     }
 
     private void handkeKeyboardKey(final String message,
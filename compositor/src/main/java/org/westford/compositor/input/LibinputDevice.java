@@ -19,7 +19,6 @@ package org.westford.compositor.input;
 
 import com.google.auto.factory.AutoFactory;
 import com.google.auto.factory.Provided;
-import org.freedesktop.jaccall.Pointer;
 import org.freedesktop.wayland.shared.WlKeyboardKeyState;
 import org.freedesktop.wayland.shared.WlPointerAxis;
 import org.freedesktop.wayland.shared.WlPointerAxisSource;
@@ -35,19 +34,17 @@ import org.westford.compositor.protocol.WlOutput;
 import org.westford.compositor.protocol.WlPointer;
 import org.westford.compositor.protocol.WlSeat;
 import org.westford.compositor.protocol.WlTouch;
-import org.westford.nativ.libinput.Libinput;
 
 import javax.annotation.Nonnull;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static org.westford.nativ.libinput.Libinput.LIBINPUT_BUTTON_STATE_PRESSED;
 import static org.westford.nativ.libinput.Libinput.LIBINPUT_BUTTON_STATE_RELEASED;
 import static org.westford.nativ.libinput.Libinput.LIBINPUT_KEY_STATE_PRESSED;
 import static org.westford.nativ.libinput.Libinput.LIBINPUT_KEY_STATE_RELEASED;
-import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SCROLL_HORIZONTAL;
-import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SCROLL_VERTICAL;
 import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SOURCE_CONTINUOUS;
 import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SOURCE_FINGER;
 import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SOURCE_WHEEL;
@@ -56,8 +53,7 @@ import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SOURCE_
              allowSubclasses = true)
 public class LibinputDevice {
     @Nonnull
-    private final Libinput                  libinput;
-    private final long                      device;
+    private final Optional<String>          outputName;
     @Nonnull
     private final RenderPlatform            renderPlatform;
     @Nonnull
@@ -65,15 +61,17 @@ public class LibinputDevice {
     @Nonnull
     private final EnumSet<WlSeatCapability> deviceCapabilities;
 
-    public LibinputDevice(@Provided @Nonnull final Libinput libinput,
-                          @Provided @Nonnull final RenderPlatform renderPlatform,
+    @Nonnull
+    private Optional<WlOutput> boundOutput = Optional.empty();
+    private boolean            boundOutputValid;
+
+    public LibinputDevice(@Provided @Nonnull final RenderPlatform renderPlatform,
                           @Nonnull final WlSeat wlSeat,
-                          final long device,
+                          @Nonnull final Optional<String> outputName,
                           @Nonnull final EnumSet<WlSeatCapability> deviceCapabilities) {
-        this.libinput = libinput;
         this.renderPlatform = renderPlatform;
         this.wlSeat = wlSeat;
-        this.device = device;
+        this.outputName = outputName;
         this.deviceCapabilities = deviceCapabilities;
     }
 
@@ -82,12 +80,23 @@ public class LibinputDevice {
         return this.deviceCapabilities;
     }
 
-    public void handleKeyboardKey(final long keyboardEvent) {
+    /**
+     * Convert a libinput microsecond timestamp to a wayland millisecond timestamp.
+     *
+     * @param timeUsec libinput event time in microseconds.
+     *
+     * @return the event time in milliseconds, with undefined base.
+     */
+    private int toTime(final long timeUsec) {
+        return (int) TimeUnit.MICROSECONDS.toMillis(timeUsec);
+    }
+
+    public void handleKeyboardKey(@Nonnull final LibinputEvent keyboardEvent) {
 
-        final int time         = this.libinput.libinput_event_keyboard_get_time(keyboardEvent);
-        final int key          = this.libinput.libinput_event_keyboard_get_key(keyboardEvent);
-        final int keyState     = this.libinput.libinput_event_keyboard_get_key_state(keyboardEvent);
-        final int seatKeyCount = this.libinput.libinput_event_keyboard_get_seat_key_count(keyboardEvent);
+        final int time         = toTime(keyboardEvent.timeUsec);
+        final int key          = keyboardEvent.key;
+        final int keyState     = keyboardEvent.keyState;
+        final int seatKeyCount = keyboardEvent.seatKeyCount;
 
         if ((keyState == LIBINPUT_KEY_STATE_PRESSED &&
              seatKeyCount != 1) ||
@@ -116,24 +125,24 @@ public class LibinputDevice {
         return wlKeyboardKeyState;
     }
 
-    public void handlePointerMotion(final long pointerEvent) {
+    public void handlePointerMotion(@Nonnull final LibinputEvent pointerEvent) {
 
-        final int    time = this.libinput.libinput_event_pointer_get_time(pointerEvent);
-        final double dx   = this.libinput.libinput_event_pointer_get_dx(pointerEvent);
-        final double dy   = this.libinput.libinput_event_pointer_get_dy(pointerEvent);
+        final int    time = toTime(pointerEvent.timeUsec);
+        final double dx   = pointerEvent.dx;
+        final double dy   = pointerEvent.dy;
 
         final WlPointer     wlPointer             = this.wlSeat.getWlPointer();
         final PointerDevice pointerDevice         = wlPointer.getPointerDevice();
-        final Point         pointerDevicePosition = pointerDevice.getPosition();
+        //relative motion builds on top of motion that has not been delivered yet.
+        final Point         pointerDevicePosition = pointerDevice.getQueuedPosition();
 
-        pointerDevice.motion(wlPointer.getResources(),
-                             time,
-                             pointerDevicePosition.getX() + (int) dx,
-                             pointerDevicePosition.getY() + (int) dy);
-        pointerDevice.frame(wlPointer.getResources());
+        pointerDevice.queueMotion(wlPointer.getResources(),
+                                  time,
+                                  pointerDevicePosition.getX() + (int) dx,
+                                  pointerDevicePosition.getY() + (int) dy);
     }
 
-    public void handlePointerMotionAbsolute(final long pointerEvent) {
+    public void handlePointerMotionAbsolute(@Nonnull final LibinputEvent pointerEvent) {
         findBoundOutput().ifPresent(wlOutput -> {
             //FIXME we should to take into account that boundOutput pixel size is not always the same as compositor coordinates but for now it is.
 
@@ -142,28 +151,48 @@ public class LibinputDevice {
             final int physicalWidth  = geometry.getPhysicalWidth();
             final int physicalHeight = geometry.getPhysicalHeight();
 
-            final int time = this.libinput.libinput_event_pointer_get_time(pointerEvent);
-            final double x = this.libinput.libinput_event_pointer_get_absolute_x_transformed(pointerEvent,
-                                                                                             physicalWidth);
-            final double y = this.libinput.libinput_event_pointer_get_absolute_y_transformed(pointerEvent,
-                                                                                             physicalHeight);
+            final int time = toTime(pointerEvent.timeUsec);
+            final double x = transform(pointerEvent.absoluteX,
+                                       physicalWidth);
+            final double y = transform(pointerEvent.absoluteY,
+                                       physicalHeight);
 
             final WlPointer     wlPointer     = this.wlSeat.getWlPointer();
             final PointerDevice pointerDevice = wlPointer.getPointerDevice();
 
-            pointerDevice.motion(wlPointer.getResources(),
-                                 time,
-                                 (int) x,
-                                 (int) y);
-            pointerDevice.frame(wlPointer.getResources());
+            pointerDevice.queueMotion(wlPointer.getResources(),
+                                      time,
+                                      (int) x,
+                                      (int) y);
         });
     }
 
+    /**
+     * Scale an absolute coordinate, as decoded by {@link LibinputEvent}, to the given size.
+     */
+    private double transform(final double absolute,
+                             final int size) {
+        return absolute * size / LibinputEvent.ABSOLUTE_RANGE;
+    }
+
     public Optional<WlOutput> findBoundOutput() {
-        //TODO we can cache the output that is mapped to this device and listen for output detsruction/addition so we save a few nanoseconds
+        if (!this.boundOutputValid) {
+            this.boundOutput = lookupBoundOutput();
+            this.boundOutputValid = true;
+        }
+        return this.boundOutput;
+    }
 
-        final long outputNamePointer = this.libinput.libinput_device_get_output_name(this.device);
-        if (outputNamePointer == 0L) {
+    /**
+     * Forget the output this device is mapped to. Must be called whenever outputs are added or removed.
+     */
+    public void invalidateBoundOutput() {
+        this.boundOutputValid = false;
+        this.boundOutput = Optional.empty();
+    }
+
+    private Optional<WlOutput> lookupBoundOutput() {
+        if (!this.outputName.isPresent()) {
             final Iterator<? extends RenderOutput> iterator = this.renderPlatform.getRenderOutputs()
                                                                                  .iterator();
             if (iterator.hasNext()) {
@@ -175,9 +204,7 @@ public class LibinputDevice {
             }
         }
 
-        final String deviceOutputName = Pointer.wrap(String.class,
-                                                     outputNamePointer)
-                                               .dref();
+        final String deviceOutputName = this.outputName.get();
 //        for (final WlOutput wlOutput : this.renderPlatform.getWlOutput()) {
         //FIXME give outputs a name, iterate them and match
 //            if (deviceOutputName.equals(renderPlatform.getOutput()
@@ -191,12 +218,12 @@ public class LibinputDevice {
         //      return Optional.empty();
     }
 
-    public void handlePointerButton(final long pointerEvent) {
+    public void handlePointerButton(@Nonnull final LibinputEvent pointerEvent) {
 
-        final int time            = this.libinput.libinput_event_pointer_get_time(pointerEvent);
-        final int buttonState     = this.libinput.libinput_event_pointer_get_button_state(pointerEvent);
-        final int seatButtonCount = this.libinput.libinput_event_pointer_get_seat_button_count(pointerEvent);
-        final int button          = this.libinput.libinput_event_pointer_get_button(pointerEvent);
+        final int time            = toTime(pointerEvent.timeUsec);
+        final int buttonState     = pointerEvent.buttonState;
+        final int seatButtonCount = pointerEvent.seatButtonCount;
+        final int button          = pointerEvent.button;
 
         if ((buttonState == LIBINPUT_BUTTON_STATE_PRESSED &&
              seatButtonCount != 1) ||
@@ -225,16 +252,14 @@ public class LibinputDevice {
         }
     }
 
-    public void handlePointerAxis(final long pointerEvent) {
+    public void handlePointerAxis(@Nonnull final LibinputEvent pointerEvent) {
 
-        final int hasVertical = this.libinput.libinput_event_pointer_has_axis(pointerEvent,
-                                                                              LIBINPUT_POINTER_AXIS_SCROLL_VERTICAL);
-        final int hasHorizontal = this.libinput.libinput_event_pointer_has_axis(pointerEvent,
-                                                                                LIBINPUT_POINTER_AXIS_SCROLL_HORIZONTAL);
+        final boolean hasVertical   = pointerEvent.hasVertical;
+        final boolean hasHorizontal = pointerEvent.hasHorizontal;
 
-        if (hasVertical == 0 && hasHorizontal == 0) { return; }
+        if (!hasVertical && !hasHorizontal) { return; }
 
-        final int                 source = this.libinput.libinput_event_pointer_get_axis_source(pointerEvent);
+        final int                 source = pointerEvent.axisSource;
         final WlPointerAxisSource wlPointerAxisSource;
 
         switch (source) {
@@ -258,13 +283,11 @@ public class LibinputDevice {
         pointerDevice.axisSource(wlPointer.getResources(),
                                  wlPointerAxisSource);
 
-        if (hasVertical != 0) {
-            final int vertDiscrete = getAxisDiscrete(pointerEvent,
-                                                     LIBINPUT_POINTER_AXIS_SCROLL_VERTICAL);
-            final double vert = normalizeScroll(pointerEvent,
-                                                LIBINPUT_POINTER_AXIS_SCROLL_VERTICAL);
+        final int time = toTime(pointerEvent.timeUsec);
 
-            final int time = this.libinput.libinput_event_pointer_get_time(pointerEvent);
+        if (hasVertical) {
+            final int    vertDiscrete = pointerEvent.verticalDiscrete;
+            final double vert         = pointerEvent.vertical;
 
             if (vertDiscrete == 0) {
                 pointerDevice.axisContinuous(wlPointer.getResources(),
@@ -281,13 +304,9 @@ public class LibinputDevice {
             }
         }
 
-        if (hasHorizontal != 0) {
-            final int horizDiscrete = getAxisDiscrete(pointerEvent,
-                                                      LIBINPUT_POINTER_AXIS_SCROLL_HORIZONTAL);
-            final double horiz = normalizeScroll(pointerEvent,
-                                                 LIBINPUT_POINTER_AXIS_SCROLL_HORIZONTAL);
-
-            final int time = this.libinput.libinput_event_pointer_get_time(pointerEvent);
+        if (hasHorizontal) {
+            final int    horizDiscrete = pointerEvent.horizontalDiscrete;
+            final double horiz         = pointerEvent.horizontal;
 
             if (horizDiscrete == 0) {
                 pointerDevice.axisContinuous(wlPointer.getResources(),
@@ -307,42 +326,7 @@ public class LibinputDevice {
         pointerDevice.frame(wlPointer.getResources());
     }
 
-    private int getAxisDiscrete(final long pointerEvent,
-                                final int axis) {
-        final int source = this.libinput.libinput_event_pointer_get_axis_source(pointerEvent);
-
-        if (source != LIBINPUT_POINTER_AXIS_SOURCE_WHEEL) { return 0; }
-
-        return (int) this.libinput.libinput_event_pointer_get_axis_value_discrete(pointerEvent,
-                                                                                  axis);
-    }
-
-    private double normalizeScroll(final long pointerEvent,
-                                   final int axis) {
-        double value = 0.0;
-
-        final int source = this.libinput.libinput_event_pointer_get_axis_source(pointerEvent);
-    /* libinput < 0.8 sent wheel click events with value 10. Since 0.8
-       the value is the angle of the click in degrees. To keep
-	   backwards-compat with existing clients, we just send multiples of
-	   the click count.
-	 */
-        switch (source) {
-            case LIBINPUT_POINTER_AXIS_SOURCE_WHEEL:
-                value = 10 * this.libinput.libinput_event_pointer_get_axis_value_discrete(pointerEvent,
-                                                                                          axis);
-                break;
-            case LIBINPUT_POINTER_AXIS_SOURCE_FINGER:
-            case LIBINPUT_POINTER_AXIS_SOURCE_CONTINUOUS:
-                value = this.libinput.libinput_event_pointer_get_axis_value(pointerEvent,
-                                                                            axis);
-                break;
-        }
-
-        return value;
-    }
-
-    public void handleTouchDown(final long touchEvent) {
+    public void handleTouchDown(@Nonnull final LibinputEvent touchEvent) {
         findBoundOutput().ifPresent(wlOutput -> {
             //FIXME we should to take into account that boundOutput pixel size != compositor coordinates
 
@@ -351,12 +335,12 @@ public class LibinputDevice {
             final int physicalWidth  = outputGeometry.getPhysicalWidth();
             final int physicalHeight = outputGeometry.getPhysicalHeight();
 
-            final int time = this.libinput.libinput_event_touch_get_time(touchEvent);
-            final int slot = this.libinput.libinput_event_touch_get_seat_slot(touchEvent);
-            final int x = (int) this.libinput.libinput_event_touch_get_x_transformed(touchEvent,
-                                                                                     physicalWidth);
-            final int y = (int) this.libinput.libinput_event_touch_get_y_transformed(touchEvent,
-                                                                                     physicalHeight);
+            final int time = toTime(touchEvent.timeUsec);
+            final int slot = touchEvent.touchSlot;
+            final int x = (int) transform(touchEvent.touchX,
+                                          physicalWidth);
+            final int y = (int) transform(touchEvent.touchY,
+                                          physicalHeight);
 
             final WlTouch wlTouch = this.wlSeat.getWlTouch();
             wlTouch.getTouchDevice()
@@ -368,7 +352,7 @@ public class LibinputDevice {
         });
     }
 
-    public void handleTouchMotion(final long touchEvent) {
+    public void handleTouchMotion(@Nonnull final LibinputEvent touchEvent) {
         findBoundOutput().ifPresent(wlOutput -> {
             //FIXME we should to take into account that boundOutput pixel size is not always the same as compositor coordinates but for now it is.
 
@@ -377,12 +361,12 @@ public class LibinputDevice {
             final int physicalWidth  = outputGeometry.getPhysicalWidth();
             final int physicalHeight = outputGeometry.getPhysicalHeight();
 
-            final int time = this.libinput.libinput_event_touch_get_time(touchEvent);
-            final int slot = this.libinput.libinput_event_touch_get_seat_slot(touchEvent);
-            final int x = (int) this.libinput.libinput_event_touch_get_x_transformed(touchEvent,
-                                                                                     physicalWidth);
-            final int y = (int) this.libinput.libinput_event_touch_get_y_transformed(touchEvent,
-                                                                                     physicalHeight);
+            final int time = toTime(touchEvent.timeUsec);
+            final int slot = touchEvent.touchSlot;
+            final int x = (int) transform(touchEvent.touchX,
+                                          physicalWidth);
+            final int y = (int) transform(touchEvent.touchY,
+                                          physicalHeight);
 
             final WlTouch wlTouch = this.wlSeat.getWlTouch();
             wlTouch.getTouchDevice()
@@ -394,9 +378,9 @@ public class LibinputDevice {
         });
     }
 
-    public void handleTouchUp(final long touchEvent) {
-        final int time = this.libinput.libinput_event_touch_get_time(touchEvent);
-        final int slot = this.libinput.libinput_event_touch_get_seat_slot(touchEvent);
+    public void handleTouchUp(@Nonnull final LibinputEvent touchEvent) {
+        final int time = toTime(touchEvent.timeUsec);
+        final int slot = touchEvent.touchSlot;
 
         final WlTouch wlTouch = this.wlSeat.getWlTouch();
         wlTouch.getTouchDevice()
@@ -405,7 +389,7 @@ public class LibinputDevice {
                    time);
     }
 
-    public void handleTouchFrame(final long touchEvent) {
+    public void handleTouchFrame(@Nonnull final LibinputEvent touchEvent) {
         final WlTouch wlTouch = this.wlSeat.getWlTouch();
         wlTouch.getTouchDevice()
                .frame(wlTouch.getResources());
@@ -0,0 +1,268 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.input;
+
+import org.freedesktop.jaccall.Pointer;
+import org.freedesktop.wayland.shared.WlSeatCapability;
+import org.westford.nativ.libinput.Libinput;
+
+import javax.annotation.Nonnull;
+import java.util.EnumSet;
+import java.util.Optional;
+
+import static org.freedesktop.wayland.shared.WlSeatCapability.KEYBOARD;
+import static org.freedesktop.wayland.shared.WlSeatCapability.POINTER;
+import static org.freedesktop.wayland.shared.WlSeatCapability.TOUCH;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_DEVICE_CAP_KEYBOARD;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_DEVICE_CAP_POINTER;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_DEVICE_CAP_TOUCH;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_DEVICE_ADDED;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_KEYBOARD_KEY;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_POINTER_AXIS;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_POINTER_BUTTON;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_POINTER_MOTION;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_POINTER_MOTION_ABSOLUTE;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_TOUCH_DOWN;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_TOUCH_MOTION;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_TOUCH_UP;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SCROLL_HORIZONTAL;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SCROLL_VERTICAL;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SOURCE_CONTINUOUS;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SOURCE_FINGER;
+import static org.westford.nativ.libinput.Libinput.LIBINPUT_POINTER_AXIS_SOURCE_WHEEL;
+
+/**
+ * A libinput event, decoded into plain java fields so it can be handled without calling into libinput. This allows
+ * events to be read on a dedicated input thread and handled on the compositor thread, as libinput itself is not
+ * thread safe. Instances are mutable and reused.
+ */
+class LibinputEvent {
+
+    /**
+     * Absolute coordinates are decoded relative to this size, and scaled to the bound output when handled.
+     */
+    static final int ABSOLUTE_RANGE = 0x10000;
+
+    int  type;
+    long device;
+    long timeUsec;
+
+    //device added
+    @Nonnull
+    final EnumSet<WlSeatCapability> capabilities = EnumSet.noneOf(WlSeatCapability.class);
+    @Nonnull
+    Optional<String> outputName = Optional.empty();
+
+    //keyboard
+    int key;
+    int keyState;
+    int seatKeyCount;
+
+    //pointer
+    double dx;
+    double dy;
+    double absoluteX;
+    double absoluteY;
+    int    button;
+    int    buttonState;
+    int    seatButtonCount;
+
+    //axis
+    boolean hasVertical;
+    boolean hasHorizontal;
+    int     axisSource;
+    int     verticalDiscrete;
+    double  vertical;
+    int     horizontalDiscrete;
+    double  horizontal;
+
+    //touch
+    int    touchSlot;
+    double touchX;
+    double touchY;
+
+    /**
+     * Read all fields relevant for the given libinput event.
+     *
+     * @param libinput libinput
+     * @param event    a native libinput event.
+     */
+    void decode(@Nonnull final Libinput libinput,
+                final long event) {
+        this.type = libinput.libinput_event_get_type(event);
+        this.device = libinput.libinput_event_get_device(event);
+
+        switch (this.type) {
+            case LIBINPUT_EVENT_DEVICE_ADDED:
+                decodeDevice(libinput);
+                break;
+            case LIBINPUT_EVENT_KEYBOARD_KEY:
+                decodeKeyboardKey(libinput,
+                                  libinput.libinput_event_get_keyboard_event(event));
+                break;
+            case LIBINPUT_EVENT_POINTER_MOTION:
+            case LIBINPUT_EVENT_POINTER_MOTION_ABSOLUTE:
+            case LIBINPUT_EVENT_POINTER_BUTTON:
+            case LIBINPUT_EVENT_POINTER_AXIS:
+                decodePointer(libinput,
+                              libinput.libinput_event_get_pointer_event(event));
+                break;
+            case LIBINPUT_EVENT_TOUCH_DOWN:
+            case LIBINPUT_EVENT_TOUCH_MOTION:
+            case LIBINPUT_EVENT_TOUCH_UP:
+                decodeTouch(libinput,
+                            libinput.libinput_event_get_touch_event(event));
+                break;
+            default:
+                //device removed, touch frame or an event we don't handle. No additional data.
+                this.timeUsec = 0L;
+                break;
+        }
+    }
+
+    private void decodeDevice(@Nonnull final Libinput libinput) {
+        this.capabilities.clear();
+        if (libinput.libinput_device_has_capability(this.device,
+                                                    LIBINPUT_DEVICE_CAP_KEYBOARD) != 0) {
+            this.capabilities.add(KEYBOARD);
+        }
+        if (libinput.libinput_device_has_capability(this.device,
+                                                    LIBINPUT_DEVICE_CAP_POINTER) != 0) {
+            this.capabilities.add(POINTER);
+        }
+        if (libinput.libinput_device_has_capability(this.device,
+                                                    LIBINPUT_DEVICE_CAP_TOUCH) != 0) {
+            this.capabilities.add(TOUCH);
+        }
+
+        final long outputNamePointer = libinput.libinput_device_get_output_name(this.device);
+        this.outputName = outputNamePointer == 0L ? Optional.empty() : Optional.of(Pointer.wrap(String.class,
+                                                                                                outputNamePointer)
+                                                                                          .dref());
+    }
+
+    private void decodeKeyboardKey(@Nonnull final Libinput libinput,
+                                   final long keyboardEvent) {
+        this.timeUsec = libinput.libinput_event_keyboard_get_time_usec(keyboardEvent);
+        this.key = libinput.libinput_event_keyboard_get_key(keyboardEvent);
+        this.keyState = libinput.libinput_event_keyboard_get_key_state(keyboardEvent);
+        this.seatKeyCount = libinput.libinput_event_keyboard_get_seat_key_count(keyboardEvent);
+    }
+
+    private void decodePointer(@Nonnull final Libinput libinput,
+                               final long pointerEvent) {
+        this.timeUsec = libinput.libinput_event_pointer_get_time_usec(pointerEvent);
+
+        switch (this.type) {
+            case LIBINPUT_EVENT_POINTER_MOTION:
+                this.dx = libinput.libinput_event_pointer_get_dx(pointerEvent);
+                this.dy = libinput.libinput_event_pointer_get_dy(pointerEvent);
+                break;
+            case LIBINPUT_EVENT_POINTER_MOTION_ABSOLUTE:
+                this.absoluteX = libinput.libinput_event_pointer_get_absolute_x_transformed(pointerEvent,
+                                                                                            ABSOLUTE_RANGE);
+                this.absoluteY = libinput.libinput_event_pointer_get_absolute_y_transformed(pointerEvent,
+                                                                                            ABSOLUTE_RANGE);
+                break;
+            case LIBINPUT_EVENT_POINTER_BUTTON:
+                this.button = libinput.libinput_event_pointer_get_button(pointerEvent);
+                this.buttonState = libinput.libinput_event_pointer_get_button_state(pointerEvent);
+                this.seatButtonCount = libinput.libinput_event_pointer_get_seat_button_count(pointerEvent);
+                break;
+            case LIBINPUT_EVENT_POINTER_AXIS:
+                decodeAxis(libinput,
+                           pointerEvent);
+                break;
+        }
+    }
+
+    private void decodeAxis(@Nonnull final Libinput libinput,
+                            final long pointerEvent) {
+        this.hasVertical = libinput.libinput_event_pointer_has_axis(pointerEvent,
+                                                                    LIBINPUT_POINTER_AXIS_SCROLL_VERTICAL) != 0;
+        this.hasHorizontal = libinput.libinput_event_pointer_has_axis(pointerEvent,
+                                                                      LIBINPUT_POINTER_AXIS_SCROLL_HORIZONTAL) != 0;
+        if (!this.hasVertical && !this.hasHorizontal) {
+            return;
+        }
+
+        this.axisSource = libinput.libinput_event_pointer_get_axis_source(pointerEvent);
+        if (this.hasVertical) {
+            this.verticalDiscrete = getAxisDiscrete(libinput,
+                                                    pointerEvent,
+                                                    LIBINPUT_POINTER_AXIS_SCROLL_VERTICAL);
+            this.vertical = normalizeScroll(libinput,
+                                            pointerEvent,
+                                            LIBINPUT_POINTER_AXIS_SCROLL_VERTICAL);
+        }
+        if (this.hasHorizontal) {
+            this.horizontalDiscrete = getAxisDiscrete(libinput,
+                                                      pointerEvent,
+                                                      LIBINPUT_POINTER_AXIS_SCROLL_HORIZONTAL);
+            this.horizontal = normalizeScroll(libinput,
+                                              pointerEvent,
+                                              LIBINPUT_POINTER_AXIS_SCROLL_HORIZONTAL);
+        }
+    }
+
+    private int getAxisDiscrete(@Nonnull final Libinput libinput,
+                                final long pointerEvent,
+                                final int axis) {
+        if (this.axisSource != LIBINPUT_POINTER_AXIS_SOURCE_WHEEL) { return 0; }
+
+        return (int) libinput.libinput_event_pointer_get_axis_value_discrete(pointerEvent,
+                                                                             axis);
+    }
+
+    private double normalizeScroll(@Nonnull final Libinput libinput,
+                                   final long pointerEvent,
+                                   final int axis) {
+        double value = 0.0;
+
+    /* libinput < 0.8 sent wheel click events with value 10. Since 0.8
+       the value is the angle of the click in degrees. To keep
+	   backwards-compat with existing clients, we just send multiples of
+	   the click count.
+	 */
+        switch (this.axisSource) {
+            case LIBINPUT_POINTER_AXIS_SOURCE_WHEEL:
+                value = 10 * libinput.libinput_event_pointer_get_axis_value_discrete(pointerEvent,
+                                                                                     axis);
+                break;
+            case LIBINPUT_POINTER_AXIS_SOURCE_FINGER:
+            case LIBINPUT_POINTER_AXIS_SOURCE_CONTINUOUS:
+                value = libinput.libinput_event_pointer_get_axis_value(pointerEvent,
+                                                                       axis);
+                break;
+        }
+
+        return value;
+    }
+
+    private void decodeTouch(@Nonnull final Libinput libinput,
+                             final long touchEvent) {
+        this.timeUsec = libinput.libinput_event_touch_get_time_usec(touchEvent);
+        this.touchSlot = libinput.libinput_event_touch_get_seat_slot(touchEvent);
+        if (this.type != LIBINPUT_EVENT_TOUCH_UP) {
+            this.touchX = libinput.libinput_event_touch_get_x_transformed(touchEvent,
+                                                                          ABSOLUTE_RANGE);
+            this.touchY = libinput.libinput_event_touch_get_y_transformed(touchEvent,
+                                                                          ABSOLUTE_RANGE);
+        }
+    }
+}
@@ -24,23 +24,25 @@ import org.freedesktop.wayland.server.Display;
 import org.freedesktop.wayland.server.EventSource;
 import org.freedesktop.wayland.server.jaccall.WaylandServerCore;
 import org.freedesktop.wayland.shared.WlSeatCapability;
+import org.westford.compositor.core.InputLatency;
+import org.westford.compositor.core.InputQueue;
 import org.westford.compositor.core.Seat;
+import org.westford.compositor.core.Trace;
 import org.westford.compositor.protocol.WlSeat;
+import org.westford.nativ.glibc.Libc;
+import org.westford.nativ.glibc.pollfd;
 import org.westford.nativ.libinput.Libinput;
 
 import javax.annotation.Nonnull;
 import java.util.EnumSet;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-
-import static org.freedesktop.jaccall.Pointer.wrap;
-import static org.freedesktop.wayland.shared.WlSeatCapability.KEYBOARD;
-import static org.freedesktop.wayland.shared.WlSeatCapability.POINTER;
-import static org.freedesktop.wayland.shared.WlSeatCapability.TOUCH;
-import static org.westford.nativ.libinput.Libinput.LIBINPUT_DEVICE_CAP_KEYBOARD;
-import static org.westford.nativ.libinput.Libinput.LIBINPUT_DEVICE_CAP_POINTER;
-import static org.westford.nativ.libinput.Libinput.LIBINPUT_DEVICE_CAP_TOUCH;
+import java.util.logging.Logger;
+
+import static org.westford.nativ.glibc.Libc.EFD_CLOEXEC;
+import static org.westford.nativ.glibc.Libc.EFD_NONBLOCK;
+import static org.westford.nativ.glibc.Libc.POLLIN;
 import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_DEVICE_ADDED;
 import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_DEVICE_REMOVED;
 import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_KEYBOARD_KEY;
@@ -58,29 +60,70 @@ import static org.westford.nativ.libinput.Libinput.LIBINPUT_EVENT_TOUCH_UP;
              className = "PrivateLibinputSeatFactory")
 public class LibinputSeat {
 
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /**
+     * Number of decoded events that can be in flight between the input thread and the compositor thread.
+     */
+    private static final int INPUT_QUEUE_SIZE = 512;
+
     @Nonnull
     private final Display               display;
     @Nonnull
     private final Libinput              libinput;
     @Nonnull
+    private final Libc                  libc;
+    @Nonnull
     private final LibinputDeviceFactory libinputDeviceFactory;
     private final long                  libinputContext;
     @Nonnull
     private final WlSeat                wlSeat;
+    private final boolean               inputThread;
 
-    private final Set<LibinputDevice>   libinputDevices  = new HashSet<>();
-    private       Optional<EventSource> inputEventSource = Optional.empty();
+    /**
+     * All devices we handle, indexed by their native libinput device.
+     */
+    private final Map<Long, LibinputDevice> libinputDevices  = new HashMap<>();
+    @Nonnull
+    private final InputLatency              inputLatency     = new InputLatency("libinput");
+    @Nonnull
+    private final LibinputEvent             libinputEvent    = new LibinputEvent();
+    private       Optional<EventSource>     inputEventSource = Optional.empty();
 
+    @Nonnull
+    private final InputQueue<LibinputEvent> inputQueue;
+    private       Optional<Thread>          readerThread = Optional.empty();
+    private       int                       stopFd       = -1;
+    //eventfd counter increment that wakes up the input thread.
+    @Nonnull
+    private final Pointer<Long>             stopValue    = Pointer.nref(1L);
+
+    //input events tend to come in bursts from the same device, so remember the last device lookup.
+    private long           lastDevice;
+    private LibinputDevice lastLibinputDevice;
+
+    /**
+     * @param inputThread read and decode libinput events on a dedicated thread instead of on the compositor thread.
+     */
     LibinputSeat(@Provided @Nonnull final Display display,
                  @Provided @Nonnull final Libinput libinput,
+                 @Provided @Nonnull final Libc libc,
                  @Provided @Nonnull final LibinputDeviceFactory libinputDeviceFactory,
                  final long libinputContext,
-                 @Nonnull final WlSeat wlSeat) {
+                 @Nonnull final WlSeat wlSeat,
+                 final boolean inputThread) {
         this.display = display;
         this.libinput = libinput;
+        this.libc = libc;
         this.libinputDeviceFactory = libinputDeviceFactory;
         this.libinputContext = libinputContext;
         this.wlSeat = wlSeat;
+        this.inputThread = inputThread;
+        this.inputQueue = new InputQueue<>(display,
+                                           libc,
+                                           INPUT_QUEUE_SIZE,
+                                           LibinputEvent::new,
+                                           this::handleEvent);
     }
 
     public void disableInput() {
@@ -88,10 +131,32 @@ public class LibinputSeat {
             eventSource.remove();
             this.inputEventSource = Optional.empty();
         });
+        this.readerThread.ifPresent(thread -> {
+            //wake up the input thread so it notices it has to stop.
+            this.libc.write(this.stopFd,
+                            this.stopValue.address,
+                            Long.BYTES);
+            try {
+                thread.join();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+            this.libc.close(this.stopFd);
+            this.stopFd = -1;
+            this.inputQueue.stop();
+            this.readerThread = Optional.empty();
+        });
     }
 
     public void enableInput() {
-        loop(this.libinputContext);
+        if (this.inputThread) {
+            startInputThread(this.libinputContext);
+        }
+        else {
+            loop(this.libinputContext);
+        }
     }
 
     private void loop(final long libinput) {
@@ -110,132 +175,205 @@ public class LibinputSeat {
     }
 
     private void processEvents(final long libinput) {
+        //read all pending input from the kernel once, then drain every event that it produced.
         this.libinput.libinput_dispatch(libinput);
 
         long event;
         while ((event = this.libinput.libinput_get_event(libinput)) != 0) {
+            if (Trace.ENABLED) {
+                Trace.instant("input received");
+            }
+            this.libinputEvent.decode(this.libinput,
+                                      event);
+            this.libinput.libinput_event_destroy(event);
+            handleEvent(this.libinputEvent);
+        }
+    }
 
-            processEvent(event);
+    private void startInputThread(final long libinput) {
+        if (this.readerThread.isPresent()) {
+            return;
+        }
+
+        this.stopFd = this.libc.eventfd(0,
+                                        EFD_CLOEXEC | EFD_NONBLOCK);
+        if (this.stopFd < 0) {
+            throw new RuntimeException("eventfd() failed: " + this.libc.getErrno());
+        }
+        this.inputQueue.start();
+
+        final int    stopFd = this.stopFd;
+        final Thread thread = new Thread(() -> readEvents(libinput,
+                                                          stopFd),
+                                         "westford-libinput");
+        thread.setDaemon(true);
+        thread.start();
+        this.readerThread = Optional.of(thread);
+    }
+
+    /**
+     * Runs on the input thread. libinput is only touched from this thread while it is running.
+     */
+    private void readEvents(final long libinput,
+                            final int stopFd) {
+        final Pointer<pollfd> pollfds = Pointer.calloc(2,
+                                                       pollfd.SIZE,
+                                                       pollfd.class);
+        pollfds.dref(0)
+               .fd(this.libinput.libinput_get_fd(libinput));
+        pollfds.dref(0)
+               .events((short) POLLIN);
+        pollfds.dref(1)
+               .fd(stopFd);
+        pollfds.dref(1)
+               .events((short) POLLIN);
+
+        while (true) {
+            if (this.libc.poll(pollfds.address,
+                               2,
+                               -1) < 0) {
+                if (this.libc.getErrno() == Libc.EINTR) {
+                    continue;
+                }
+                LOGGER.severe("Input thread poll() failed: " + this.libc.getErrno());
+                break;
+            }
+            if (pollfds.dref(1)
+                       .revents() != 0) {
+                break;
+            }
 
-            this.libinput.libinput_event_destroy(event);
             this.libinput.libinput_dispatch(libinput);
+            long event;
+            while ((event = this.libinput.libinput_get_event(libinput)) != 0) {
+                if (Trace.ENABLED) {
+                    Trace.instant("input received");
+                }
+                final LibinputEvent libinputEvent = this.inputQueue.claim();
+                libinputEvent.decode(this.libinput,
+                                     event);
+                this.libinput.libinput_event_destroy(event);
+                this.inputQueue.publish();
+            }
         }
+
+        pollfds.close();
     }
 
-    private void processEvent(final long event) {
-        final int  eventType = this.libinput.libinput_event_get_type(event);
-        final long device    = this.libinput.libinput_event_get_device(event);
-        switch (eventType) {
+    private void handleEvent(@Nonnull final LibinputEvent event) {
+        switch (event.type) {
             case LIBINPUT_EVENT_NONE:
                 //no more events
                 break;
             case LIBINPUT_EVENT_DEVICE_ADDED:
-                handleDeviceAdded(device);
+                handleDeviceAdded(event);
                 break;
             case LIBINPUT_EVENT_DEVICE_REMOVED:
-                handleDeviceRemoved(device);
+                handleDeviceRemoved(event.device);
                 break;
             default:
-                processDeviceEvent(event,
-                                   eventType,
-                                   device);
+                processDeviceEvent(event);
                 break;
         }
     }
 
-    private void handleDeviceAdded(final long device) {
+    private void handleDeviceAdded(@Nonnull final LibinputEvent event) {
         //check device capabilities, if it's not a touch, pointer or keyboard, we're not interested.
-        final EnumSet<WlSeatCapability> deviceCapabilities = EnumSet.noneOf(WlSeatCapability.class);
-
-        if (this.libinput.libinput_device_has_capability(device,
-                                                         LIBINPUT_DEVICE_CAP_KEYBOARD) != 0) {
-            deviceCapabilities.add(KEYBOARD);
-        }
-        if (this.libinput.libinput_device_has_capability(device,
-                                                         LIBINPUT_DEVICE_CAP_POINTER) != 0) {
-            deviceCapabilities.add(POINTER);
-        }
-        if (this.libinput.libinput_device_has_capability(device,
-                                                         LIBINPUT_DEVICE_CAP_TOUCH) != 0) {
-            deviceCapabilities.add(TOUCH);
-        }
-
-        if (deviceCapabilities.isEmpty()) {
+        if (event.capabilities.isEmpty()) {
             return;
         }
 
         //TODO configure device
 
         final LibinputDevice libinputDevice = this.libinputDeviceFactory.create(this.wlSeat,
-                                                                                device,
-                                                                                deviceCapabilities);
-        this.libinput.libinput_device_set_user_data(device,
-                                                    Pointer.from(libinputDevice).address);
-        this.libinput.libinput_device_ref(device);
-        this.libinputDevices.add(libinputDevice);
+                                                                                event.outputName,
+                                                                                EnumSet.copyOf(event.capabilities));
+        this.libinputDevices.put(event.device,
+                                 libinputDevice);
 
         emitSeatCapabilities();
     }
 
     private void handleDeviceRemoved(final long device) {
-        final long deviceData = this.libinput.libinput_device_get_user_data(device);
-        if (deviceData == 0L) {
+        final LibinputDevice libinputDevice = this.libinputDevices.remove(device);
+        if (libinputDevice == null) {
             //device is not handled by us
             return;
         }
 
-        final Pointer<LibinputDevice> devicePointer = wrap(LibinputDevice.class,
-                                                           deviceData);
-        final LibinputDevice libinputDevice = devicePointer.dref();
-        this.libinputDevices.remove(libinputDevice);
-        devicePointer.close();
-        this.libinput.libinput_device_unref(device);
+        if (this.lastDevice == device) {
+            this.lastDevice = 0L;
+            this.lastLibinputDevice = null;
+        }
 
         emitSeatCapabilities();
     }
 
-    private void processDeviceEvent(final long event,
-                                    final int eventType,
-                                    final long device) {
-        final long deviceData = this.libinput.libinput_device_get_user_data(device);
-        if (deviceData == 0L) {
-            //device was not mapped to a device we can handle
-            return;
+    /**
+     * Forget the output each device is mapped to. Must be called whenever outputs are added or removed.
+     */
+    public void invalidateBoundOutputs() {
+        this.libinputDevices.values()
+                            .forEach(LibinputDevice::invalidateBoundOutput);
+    }
+
+    private void processDeviceEvent(@Nonnull final LibinputEvent event) {
+        final long           device = event.device;
+        final LibinputDevice libinputDevice;
+        if (this.lastDevice == device) {
+            libinputDevice = this.lastLibinputDevice;
+        }
+        else {
+            libinputDevice = this.libinputDevices.get(device);
+            if (libinputDevice == null) {
+                //device was not mapped to a device we can handle
+                return;
+            }
+            this.lastDevice = device;
+            this.lastLibinputDevice = libinputDevice;
         }
-        final LibinputDevice libinputDevice = (LibinputDevice) wrap(Object.class,
-                                                                    deviceData).dref();
 
-        switch (eventType) {
+        switch (event.type) {
             case LIBINPUT_EVENT_KEYBOARD_KEY:
-                libinputDevice.handleKeyboardKey(this.libinput.libinput_event_get_keyboard_event(event));
+                libinputDevice.handleKeyboardKey(event);
                 break;
             case LIBINPUT_EVENT_POINTER_MOTION:
-                libinputDevice.handlePointerMotion(this.libinput.libinput_event_get_pointer_event(event));
+                libinputDevice.handlePointerMotion(event);
                 break;
             case LIBINPUT_EVENT_POINTER_MOTION_ABSOLUTE:
-                libinputDevice.handlePointerMotionAbsolute(this.libinput.libinput_event_get_pointer_event(event));
+                libinputDevice.handlePointerMotionAbsolute(event);
                 break;
             case LIBINPUT_EVENT_POINTER_BUTTON:
-                libinputDevice.handlePointerButton(this.libinput.libinput_event_get_pointer_event(event));
+                libinputDevice.handlePointerButton(event);
                 break;
             case LIBINPUT_EVENT_POINTER_AXIS:
-                libinputDevice.handlePointerAxis(this.libinput.libinput_event_get_pointer_event(event));
+                libinputDevice.handlePointerAxis(event);
                 break;
             case LIBINPUT_EVENT_TOUCH_DOWN:
-                libinputDevice.handleTouchDown(this.libinput.libinput_event_get_touch_event(event));
+                libinputDevice.handleTouchDown(event);
                 break;
             case LIBINPUT_EVENT_TOUCH_MOTION:
-                libinputDevice.handleTouchMotion(this.libinput.libinput_event_get_touch_event(event));
+                libinputDevice.handleTouchMotion(event);
                 break;
             case LIBINPUT_EVENT_TOUCH_UP:
-                libinputDevice.handleTouchUp(this.libinput.libinput_event_get_touch_event(event));
+                libinputDevice.handleTouchUp(event);
                 break;
             case LIBINPUT_EVENT_TOUCH_FRAME:
-                libinputDevice.handleTouchFrame(this.libinput.libinput_event_get_touch_event(event));
+                libinputDevice.handleTouchFrame(event);
                 break;
             default:
                 //unsupported libinput event
-                break;
+                return;
+        }
+
+        if (event.timeUsec != 0L) {
+            //libinput timestamps use CLOCK_MONOTONIC, same as System.nanoTime().
+            this.inputLatency.delivered(event.timeUsec);
+            if (Trace.ENABLED) {
+                Trace.instant("input delivered",
+                              "latency_us",
+                              InputLatency.nowMicros() - event.timeUsec);
+            }
         }
     }
 
@@ -243,7 +381,7 @@ public class LibinputSeat {
 
         final EnumSet<WlSeatCapability> seatCapabilities = EnumSet.noneOf(WlSeatCapability.class);
 
-        for (final LibinputDevice libinputDevice : this.libinputDevices) {
+        for (final LibinputDevice libinputDevice : this.libinputDevices.values()) {
             seatCapabilities.addAll(libinputDevice.getDeviceCapabilities());
         }
 
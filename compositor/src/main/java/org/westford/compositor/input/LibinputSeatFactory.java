@@ -21,6 +21,7 @@ import org.freedesktop.jaccall.Pointer;
 import org.freedesktop.jaccall.Ptr;
 import org.westford.compositor.core.KeyboardDevice;
 import org.westford.compositor.core.KeyboardDeviceFactory;
+import org.westford.compositor.core.RenderPlatform;
 import org.westford.compositor.protocol.WlKeyboardFactory;
 import org.westford.compositor.protocol.WlPointerFactory;
 import org.westford.compositor.protocol.WlSeat;
@@ -40,6 +41,12 @@ import static org.westford.nativ.libinput.Pointeropen_restricted.nref;
 
 public class LibinputSeatFactory {
 
+    /**
+     * Whether seats created without an explicit input thread choice get one. Enable with
+     * {@code -Dwestford.input.thread=true}.
+     */
+    private static final boolean INPUT_THREAD = Boolean.getBoolean("westford.input.thread");
+
     @Nonnull
     private final WlSeatFactory              wlSeatFactory;
     @Nonnull
@@ -60,6 +67,8 @@ public class LibinputSeatFactory {
     private final Libc                       libc;
     @Nonnull
     private final LifeCycleSignals           lifeCycleSignals;
+    @Nonnull
+    private final RenderPlatform             renderPlatform;
 
     @Inject
     LibinputSeatFactory(@Nonnull final WlSeatFactory wlSeatFactory,
@@ -71,7 +80,8 @@ public class LibinputSeatFactory {
                         @Nonnull final Libinput libinput,
                         @Nonnull final Libudev libudev,
                         @Nonnull final Libc libc,
-                        @Nonnull final LifeCycleSignals lifeCycleSignals) {
+                        @Nonnull final LifeCycleSignals lifeCycleSignals,
+                        @Nonnull final RenderPlatform renderPlatform) {
         this.wlSeatFactory = wlSeatFactory;
         this.wlKeyboardFactory = wlKeyboardFactory;
         this.wlPointerFactory = wlPointerFactory;
@@ -82,6 +92,7 @@ public class LibinputSeatFactory {
         this.libudev = libudev;
         this.libc = libc;
         this.lifeCycleSignals = lifeCycleSignals;
+        this.renderPlatform = renderPlatform;
     }
 
     public WlSeat create(@Nonnull final String seatId,
@@ -90,6 +101,26 @@ public class LibinputSeatFactory {
                          @Nonnull final String keyboardLayout,
                          @Nonnull final String keyboardVariant,
                          @Nonnull final String keyboardOptions) {
+        return create(seatId,
+                      keyboardRule,
+                      keyboardModel,
+                      keyboardLayout,
+                      keyboardVariant,
+                      keyboardOptions,
+                      INPUT_THREAD);
+    }
+
+    /**
+     * @param inputThread read libinput events on a dedicated thread, so input keeps flowing while the compositor
+     *                    thread is busy.
+     */
+    public WlSeat create(@Nonnull final String seatId,
+                         @Nonnull final String keyboardRule,
+                         @Nonnull final String keyboardModel,
+                         @Nonnull final String keyboardLayout,
+                         @Nonnull final String keyboardVariant,
+                         @Nonnull final String keyboardOptions,
+                         final boolean inputThread) {
         final KeyboardDevice keyboardDevice = this.keyboardDeviceFactory.create(this.libinputXkbFactory.create(keyboardRule,
                                                                                                                keyboardModel,
                                                                                                                keyboardLayout,
@@ -101,7 +132,8 @@ public class LibinputSeatFactory {
                                                         this.wlKeyboardFactory.create(keyboardDevice));
 
         final LibinputSeat libinputSeat = this.privateLibinputSeatFactory.create(createUdevContext(seatId),
-                                                                                 wlSeat);
+                                                                                 wlSeat,
+                                                                                 inputThread);
         libinputSeat.enableInput();
 
         this.lifeCycleSignals.getActivateSignal()
@@ -109,6 +141,12 @@ public class LibinputSeatFactory {
         this.lifeCycleSignals.getDeactivateSignal()
                              .connect(event -> libinputSeat.disableInput());
 
+        //devices cache the output they're mapped to, so flush that cache on output hotplug.
+        this.renderPlatform.getRenderOutputNewSignal()
+                           .connect(event -> libinputSeat.invalidateBoundOutputs());
+        this.renderPlatform.getRenderOutputDestroyedSignal()
+                           .connect(event -> libinputSeat.invalidateBoundOutputs());
+
         return wlSeat;
     }
 
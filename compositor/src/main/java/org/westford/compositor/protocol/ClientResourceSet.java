@@ -0,0 +1,176 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.compositor.protocol;
+
+import org.freedesktop.wayland.server.Client;
+import org.freedesktop.wayland.server.Resource;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A set of resources that is indexed by the client owning each resource.
+ * <p/>
+ * Looking up the resources of a single client is O(1) and does not allocate, which makes this set suitable
+ * for delivering input events to the client of a focused surface.
+ *
+ * @param <T> the type of resource.
+ */
+public class ClientResourceSet<T extends Resource<?>> extends AbstractSet<T> {
+
+    @Nonnull
+    private final Map<T, Client>      clients             = new HashMap<>();
+    @Nonnull
+    private final Map<Client, Set<T>> clientResources     = new HashMap<>();
+    @Nonnull
+    private final Map<Client, Set<T>> clientResourceViews = new HashMap<>();
+
+    /**
+     * Find the resources in the given set that belong to the given client. If the set is a {@code ClientResourceSet},
+     * the client index is used, else all resources are compared.
+     *
+     * @param resources the resources to filter.
+     * @param client    the client to filter on.
+     * @param <T>       the type of resource.
+     *
+     * @return the resources of the given client. The returned set must not be modified.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public static <T extends Resource<?>> Set<T> filter(@Nonnull final Set<T> resources,
+                                                        @Nonnull final Client client) {
+        if (resources instanceof ClientResourceSet) {
+            return ((ClientResourceSet<T>) resources).get(client);
+        }
+
+        //filter out resources that do not belong to the given client.
+        return resources.stream()
+                        .filter(resource -> resource.getClient()
+                                                    .equals(client))
+                        .collect(Collectors.toSet());
+    }
+
+    /**
+     * Get all resources of the given client.
+     *
+     * @param client the client owning the resources.
+     *
+     * @return a live, unmodifiable view of the client's resources.
+     */
+    @Nonnull
+    public Set<T> get(@Nonnull final Client client) {
+        final Set<T> resources = this.clientResourceViews.get(client);
+        return resources == null ? Collections.emptySet() : resources;
+    }
+
+    @Override
+    public boolean add(final T resource) {
+        if (this.clients.containsKey(resource)) {
+            return false;
+        }
+
+        final Client client = resource.getClient();
+        this.clients.put(resource,
+                         client);
+        Set<T> resources = this.clientResources.get(client);
+        if (resources == null) {
+            resources = new LinkedHashSet<>();
+            this.clientResources.put(client,
+                                     resources);
+            this.clientResourceViews.put(client,
+                                         Collections.unmodifiableSet(resources));
+        }
+        resources.add(resource);
+        return true;
+    }
+
+    @Override
+    public boolean remove(final Object resource) {
+        if (!this.clients.containsKey(resource)) {
+            return false;
+        }
+
+        //use the client we stored on add, a resource that is being destroyed might no longer know its client.
+        final Client client    = this.clients.remove(resource);
+        final Set<T> resources = this.clientResources.get(client);
+        resources.remove(resource);
+        if (resources.isEmpty()) {
+            this.clientResources.remove(client);
+            this.clientResourceViews.remove(client);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(final Object resource) {
+        return this.clients.containsKey(resource);
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<T> resourceIterator = this.clients.keySet()
+                                                         .iterator();
+        return new Iterator<T>() {
+
+            private T current;
+
+            @Override
+            public boolean hasNext() {
+                return resourceIterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                this.current = resourceIterator.next();
+                return this.current;
+            }
+
+            @Override
+            public void remove() {
+                final Client client = ClientResourceSet.this.clients.get(this.current);
+                resourceIterator.remove();
+                final Set<T> resources = ClientResourceSet.this.clientResources.get(client);
+                resources.remove(this.current);
+                if (resources.isEmpty()) {
+                    ClientResourceSet.this.clientResources.remove(client);
+                    ClientResourceSet.this.clientResourceViews.remove(client);
+                }
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return this.clients.size();
+    }
+
+    @Override
+    public void clear() {
+        this.clients.clear();
+        this.clientResources.clear();
+        this.clientResourceViews.clear();
+    }
+}
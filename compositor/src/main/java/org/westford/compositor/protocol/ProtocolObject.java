@@ -63,7 +63,9 @@ public interface ProtocolObject<T extends Resource<?>> {
              final int id);
 
     /**
-     * Get all resources currently associated with this protocol object.
+     * Get all resources currently associated with this protocol object. Resources are added and removed by
+     * {@link #add(Client, int, int)}, protocol objects that deliver input use a {@link ClientResourceSet} so the
+     * resources of a single client can be looked up directly.
      *
      * @return All associated resources.
      */
@@ -25,15 +25,13 @@ import org.westford.compositor.core.KeyboardDevice;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
-import java.util.Collections;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 @AutoFactory(className = "WlKeyboardFactory",
              allowSubclasses = true)
 public class WlKeyboard implements WlKeyboardRequestsV5, ProtocolObject<WlKeyboardResource> {
 
-    private final Set<WlKeyboardResource> resources = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Set<WlKeyboardResource> resources = new ClientResourceSet<>();
     private final KeyboardDevice keyboardDevice;
 
     WlKeyboard(final KeyboardDevice keyboardDevice) {
@@ -31,15 +31,13 @@ import org.westford.compositor.core.Surface;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Collections;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 @AutoFactory(allowSubclasses = true,
              className = "PrivateWlPointerFactory")
 public class WlPointer implements WlPointerRequestsV5, ProtocolObject<WlPointerResource> {
 
-    private final Set<WlPointerResource> resources = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Set<WlPointerResource> resources = new ClientResourceSet<>();
 
     private final PointerDevice pointerDevice;
 
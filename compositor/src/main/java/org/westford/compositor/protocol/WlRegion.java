@@ -47,10 +47,13 @@ public class WlRegion implements WlRegionRequests, ProtocolObject<WlRegionResour
     public WlRegionResource create(@Nonnull final Client client,
                                    @Nonnegative final int version,
                                    final int id) {
-        return new WlRegionResource(client,
-                                    version,
-                                    id,
-                                    this);
+        final WlRegionResource wlRegionResource = new WlRegionResource(client,
+                                                                       version,
+                                                                       id,
+                                                                       this);
+        //surfaces keep their own copy, so the region can go as soon as the client destroys it.
+        wlRegionResource.register(this.region::close);
+        return wlRegionResource;
     }
 
     @Nonnull
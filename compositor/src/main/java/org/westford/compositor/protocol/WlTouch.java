@@ -25,13 +25,11 @@ import org.westford.compositor.core.TouchDevice;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
-import java.util.Collections;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 public class WlTouch implements WlTouchRequestsV5, ProtocolObject<WlTouchResource> {
 
-    private final Set<WlTouchResource> resources = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Set<WlTouchResource> resources = new ClientResourceSet<>();
     private final TouchDevice touchDevice;
 
     @Inject
@@ -20,13 +20,22 @@ package org.westford.compositor.x11;
 import com.google.auto.factory.AutoFactory;
 import com.google.auto.factory.Provided;
 import org.freedesktop.jaccall.Pointer;
+import org.freedesktop.wayland.server.Display;
 import org.freedesktop.wayland.server.EventLoop;
 import org.westford.Signal;
 import org.westford.Slot;
+import org.westford.compositor.core.InputLatency;
+import org.westford.compositor.core.InputQueue;
+import org.westford.nativ.glibc.Libc;
 import org.westford.nativ.libxcb.Libxcb;
 import org.westford.nativ.libxcb.xcb_generic_event_t;
+import org.westford.nativ.libxcb.xcb_motion_notify_event_t;
 
 import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.westford.nativ.libxcb.Libxcb.XCB_MOTION_NOTIFY;
 
 @AutoFactory(className = "X11EventBusFactory",
              allowSubclasses = true)
@@ -34,32 +43,177 @@ public class X11EventBus implements EventLoop.FileDescriptorEventHandler {
 
     @Nonnull
     private final Signal<Pointer<xcb_generic_event_t>, Slot<Pointer<xcb_generic_event_t>>> xEventSignal = new Signal<>();
+    /**
+     * Number of X events that can be in flight between the input thread and the compositor thread.
+     */
+    private static final int INPUT_QUEUE_SIZE = 256;
+    /**
+     * Most X events that are read in one go by the input thread before they are published.
+     */
+    private static final int INPUT_BATCH_SIZE = 64;
+
+    @Nonnull
+    private final Display display;
     @Nonnull
-    private final Libxcb libxcb;
-    private final long   xcbConnection;
+    private final Libc    libc;
+    @Nonnull
+    private final Libxcb  libxcb;
+    private final long    xcbConnection;
 
-    X11EventBus(@Provided @Nonnull final Libxcb libxcb,
+    @Nonnull
+    private final InputLatency     inputLatency = new InputLatency("X11");
+    @Nonnull
+    private       Optional<Thread> readerThread = Optional.empty();
+    //events read by the compositor thread, before they are emitted.
+    @Nonnull
+    private       long[]           events       = new long[16];
+
+    X11EventBus(@Provided @Nonnull final Display display,
+                @Provided @Nonnull final Libc libc,
+                @Provided @Nonnull final Libxcb libxcb,
                 final long xcbConnection) {
+        this.display = display;
+        this.libc = libc;
         this.libxcb = libxcb;
         this.xcbConnection = xcbConnection;
     }
 
+    /**
+     * Read X events on a dedicated thread instead of on the compositor thread. Events are still emitted on the
+     * compositor thread. The thread stops when the X connection is closed.
+     */
+    public void startInputThread() {
+        if (this.readerThread.isPresent()) {
+            return;
+        }
+
+        final InputQueue<XEvent> inputQueue = new InputQueue<>(this.display,
+                                                               this.libc,
+                                                               INPUT_QUEUE_SIZE,
+                                                               XEvent::new,
+                                                               this::emit);
+        inputQueue.start();
+
+        final Thread thread = new Thread(() -> {
+            final long[] batch = new long[INPUT_BATCH_SIZE];
+            long         event;
+            //xcb is thread safe, so we can block on the connection while the compositor thread sends requests.
+            while ((event = this.libxcb.xcb_wait_for_event(this.xcbConnection)) != 0L) {
+                //take all events that were read together with this one, without reading the connection again.
+                int count = 0;
+                batch[count++] = event;
+                while (count < batch.length && (event = this.libxcb.xcb_poll_for_queued_event(this.xcbConnection)) != 0L) {
+                    batch[count++] = event;
+                }
+                count = compress(batch,
+                                 count);
+
+                final long readMicros = InputLatency.nowMicros();
+                for (int i = 0; i < count; i++) {
+                    final XEvent xEvent = inputQueue.claim();
+                    xEvent.event = batch[i];
+                    xEvent.readMicros = readMicros;
+                    inputQueue.publish();
+                }
+            }
+        },
+                                         "westford-x11");
+        thread.setDaemon(true);
+        thread.start();
+        this.readerThread = Optional.of(thread);
+    }
+
+    private void emit(@Nonnull final XEvent xEvent) {
+        try (final Pointer<xcb_generic_event_t> generic_event = Pointer.wrap(xcb_generic_event_t.class,
+                                                                             xEvent.event)) {
+            getXEventSignal().emit(generic_event);
+        }
+        this.inputLatency.delivered(xEvent.readMicros);
+        this.libxcb.xcb_flush(this.xcbConnection);
+    }
+
     @Override
     public int handle(final int fd,
                       final int mask) {
-        long event;
+        //drain all pending events first so motion can be compressed.
+        final long readMicros = InputLatency.nowMicros();
+        int        count      = 0;
+        long       event;
         while ((event = this.libxcb.xcb_poll_for_event(this.xcbConnection)) != 0L) {
+            if (count == this.events.length) {
+                this.events = Arrays.copyOf(this.events,
+                                            count * 2);
+            }
+            this.events[count++] = event;
+        }
+        count = compress(this.events,
+                         count);
+
+        for (int i = 0; i < count; i++) {
             try (final Pointer<xcb_generic_event_t> generic_event = Pointer.wrap(xcb_generic_event_t.class,
-                                                                                 event)) {
+                                                                                 this.events[i])) {
                 getXEventSignal().emit(generic_event);
             }
+            this.inputLatency.delivered(readMicros);
         }
         this.libxcb.xcb_flush(this.xcbConnection);
         return 0;
     }
 
+    /**
+     * Collapse each run of motion events for the same window into the last event of the run. Only the final position
+     * matters to clients, and the run is not interrupted by any other event so no ordering is lost. Dropped events
+     * are freed.
+     *
+     * @param events the events in the order they were read.
+     * @param count  the number of events in the array.
+     *
+     * @return the number of remaining events, moved to the start of the array.
+     */
+    static int compress(@Nonnull final long[] events,
+                        final int count) {
+        int remaining  = 0;
+        int nextWindow = count > 0 ? motionWindow(events[0]) : 0;
+        for (int i = 0; i < count; i++) {
+            final int window = nextWindow;
+            nextWindow = i + 1 < count ? motionWindow(events[i + 1]) : 0;
+            if (window != 0 && window == nextWindow) {
+                //superseded by the next event
+                Pointer.wrap(xcb_generic_event_t.class,
+                             events[i])
+                       .close();
+            }
+            else {
+                events[remaining++] = events[i];
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * @return the window of a motion event, or 0 if it's not a motion event.
+     */
+    private static int motionWindow(final long event) {
+        final int responseType = Pointer.wrap(xcb_generic_event_t.class,
+                                              event)
+                                        .dref()
+                                        .response_type() & 0x7f;
+        if (responseType != XCB_MOTION_NOTIFY) {
+            return 0;
+        }
+        return Pointer.wrap(xcb_motion_notify_event_t.class,
+                            event)
+                      .dref()
+                      .event();
+    }
+
     @Nonnull
     public Signal<Pointer<xcb_generic_event_t>, Slot<Pointer<xcb_generic_event_t>>> getXEventSignal() {
         return this.xEventSignal;
     }
+
+    private static class XEvent {
+        long event;
+        long readMicros;
+    }
 }
@@ -27,13 +27,16 @@ import org.westford.compositor.core.events.RenderOutputNew;
 import javax.annotation.Nonnull;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @AutoFactory(className = "PrivateX11PlatformFactory",
              allowSubclasses = true)
 public class X11Platform implements RenderPlatform {
 
     @Nonnull
-    private final List<X11Output> x11Outputs;
+    private final List<X11Output>         x11Outputs;
+    @Nonnull
+    private final Map<Integer, X11Output> x11OutputsByWindow;
     private final Signal<RenderOutputNew, Slot<RenderOutputNew>>             renderOutputNewSignal       = new Signal<>();
     private final Signal<RenderOutputDestroyed, Slot<RenderOutputDestroyed>> renderOutputDestroyedSignal = new Signal<>();
 
@@ -45,11 +48,13 @@ public class X11Platform implements RenderPlatform {
     private final Map<String, Integer> atoms;
 
     X11Platform(@Nonnull final List<X11Output> x11Outputs,
+                @Nonnull final Map<Integer, X11Output> x11OutputsByWindow,
                 @Nonnull final X11EventBus x11EventBus,
                 final long xcbConnection,
                 final long xDisplay,
                 @Nonnull final Map<String, Integer> x11Atoms) {
         this.x11Outputs = x11Outputs;
+        this.x11OutputsByWindow = x11OutputsByWindow;
         this.x11EventBus = x11EventBus;
         this.xcbConnection = xcbConnection;
         this.xDisplay = xDisplay;
@@ -80,6 +85,16 @@ public class X11Platform implements RenderPlatform {
         return this.x11Outputs;
     }
 
+    /**
+     * @param xWindow an X window id.
+     *
+     * @return the output shown in the given window.
+     */
+    @Nonnull
+    public Optional<X11Output> getRenderOutput(final int xWindow) {
+        return Optional.ofNullable(this.x11OutputsByWindow.get(xWindow));
+    }
+
     @Override
     public Signal<RenderOutputNew, Slot<RenderOutputNew>> getRenderOutputNewSignal() {
         return this.renderOutputNewSignal;
@@ -146,8 +146,10 @@ public class X11PlatformFactory {
 
         final Iterable<X11OutputConfig> x11OutputConfigs = this.x11PlatformConfig.getX11RenderOutputConfigs();
         final List<X11Output>           x11Outputs       = new LinkedList<>();
+        final Map<Integer, X11Output>   x11Windows       = new HashMap<>();
 
         final X11Platform x11Platform = this.privateX11PlatformFactory.create(x11Outputs,
+                                                                              x11Windows,
                                                                               x11EventBus,
                                                                               xcbConnection,
                                                                               xDisplay,
@@ -158,6 +160,7 @@ public class X11PlatformFactory {
         for (final X11OutputConfig x11OutputConfig : x11OutputConfigs) {
             addX11RenderOutput(x11Platform,
                                x11Outputs,
+                               x11Windows,
                                xcbConnection,
                                x11Atoms,
                                x11EventBus,
@@ -169,11 +172,16 @@ public class X11PlatformFactory {
         }
 
 
-        this.display.getEventLoop()
-                    .addFileDescriptor(this.libxcb.xcb_get_file_descriptor(xcbConnection),
-                                       WaylandServerCore.WL_EVENT_READABLE,
-                                       x11EventBus)
-                    .check();
+        if (this.x11PlatformConfig.isInputThread()) {
+            x11EventBus.startInputThread();
+        }
+        else {
+            this.display.getEventLoop()
+                        .addFileDescriptor(this.libxcb.xcb_get_file_descriptor(xcbConnection),
+                                           WaylandServerCore.WL_EVENT_READABLE,
+                                           x11EventBus)
+                        .check();
+        }
 
         return x11Platform;
     }
@@ -221,6 +229,7 @@ public class X11PlatformFactory {
 
     private void addX11RenderOutput(final X11Platform x11Platform,
                                     final List<X11Output> x11Outputs,
+                                    final Map<Integer, X11Output> x11Windows,
                                     final long xcbConnection,
                                     final Map<String, Integer> x11Atoms,
                                     final X11EventBus x11EventBus,
@@ -311,6 +320,8 @@ public class X11PlatformFactory {
                    });
 
         x11Outputs.add(x11Output);
+        x11Windows.put(window,
+                       x11Output);
     }
 
     private void setWmProtocol(final long connection,
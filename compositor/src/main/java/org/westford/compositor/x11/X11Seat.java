@@ -208,22 +208,18 @@ public class X11Seat {
                               final int x,
                               final int y) {
 
-        this.x11Platform.getRenderOutputs()
-                        .forEach(x11RenderOutput -> {
-                            if (x11RenderOutput.getXWindow() == windowId) {
-
-                                final Point point = x11RenderOutput.toGlobal(x,
-                                                                             y);
-
-                                final WlPointer     wlPointer     = this.wlSeat.getWlPointer();
-                                final PointerDevice pointerDevice = wlPointer.getPointerDevice();
-
-                                pointerDevice.motion(wlPointer.getResources(),
-                                                     time,
-                                                     point.getX(),
-                                                     point.getY());
-                                pointerDevice.frame(wlPointer.getResources());
-                            }
+        this.x11Platform.getRenderOutput(windowId)
+                        .ifPresent(x11RenderOutput -> {
+                            final Point point = x11RenderOutput.toGlobal(x,
+                                                                         y);
+
+                            final WlPointer     wlPointer     = this.wlSeat.getWlPointer();
+                            final PointerDevice pointerDevice = wlPointer.getPointerDevice();
+
+                            pointerDevice.queueMotion(wlPointer.getResources(),
+                                                      time,
+                                                      point.getX(),
+                                                      point.getY());
                         });
     }
 
@@ -25,4 +25,11 @@ public interface X11PlatformConfig {
 
     @Nonnull
     Iterable<X11OutputConfig> getX11RenderOutputConfigs();
+
+    /**
+     * @return true to read X events on a dedicated thread instead of on the compositor thread.
+     */
+    default boolean isInputThread() {
+        return false;
+    }
 }
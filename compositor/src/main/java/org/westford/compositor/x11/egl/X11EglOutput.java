@@ -22,28 +22,62 @@ import com.google.auto.factory.AutoFactory;
 import com.google.auto.factory.Provided;
 import org.freedesktop.wayland.server.Display;
 import org.freedesktop.wayland.server.EventLoop;
+import org.freedesktop.wayland.server.EventSource;
 import org.westford.compositor.core.EglOutput;
 import org.westford.compositor.core.EglOutputState;
+import org.westford.compositor.core.FrameStatsRegistry;
 import org.westford.compositor.core.Renderer;
+import org.westford.compositor.core.Trace;
 import org.westford.compositor.protocol.WlOutput;
 import org.westford.compositor.x11.X11Output;
+import org.westford.nativ.libxcb.Libxcb;
+import org.westford.nativ.libxcbpresent.Libxcbpresent;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
 
+/**
+ * An X11 window that is drawn with egl.
+ * <p>
+ * When the X server supports the Present extension, a render is only started once the previous frame is on screen,
+ * like page flips do for drm outputs. The X server is asked to notify us of the first vblank after each swap, its
+ * timestamp is used for the frame callbacks of that frame.
+ */
 @AutoFactory(allowSubclasses = true,
              className = "X11EglOutputFactory")
 public class X11EglOutput implements EglOutput {
 
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    /**
+     * Time to wait for a present notification before the waiting frame is completed without it. Windows that are not on
+     * any crtc are notified at 1Hz by the X server, so this has to be longer than a second.
+     */
+    private static final int PRESENT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(2);
+
+    @Nonnull
+    private final Renderer           renderer;
+    @Nonnull
+    private final Libxcb             libxcb;
     @Nonnull
-    private final Renderer  renderer;
+    private final Libxcbpresent      libxcbpresent;
     @Nonnull
-    private final X11Output x11Output;
+    private final FrameStatsRegistry frameStatsRegistry;
     @Nonnull
-    private final Display   display;
-    private final long      eglSurface;
-    private final long      eglContext;
-    private final long      eglDisplay;
+    private final X11Output          x11Output;
+    @Nonnull
+    private final Display            display;
+    private final long               xcbConnection;
+    private final long               eglSurface;
+    private final long               eglContext;
+    private final long               eglDisplay;
+    @Nonnull
+    private final EventSource        presentTimeout;
 
     private boolean renderScheduled = false;
 
@@ -51,18 +85,44 @@ public class X11EglOutput implements EglOutput {
 
     private Optional<EglOutputState> state = Optional.empty();
 
+    /*
+     * present pacing, only used when the X server supports it.
+     */
+    private final boolean            present;
+    private       boolean            presentPending;
+    private       boolean            renderAfterPresent;
+    private       int                presentSerial;
+    private       long               presentRequested;
+    private       long               lastMsc;
+    private       long               lastPresented;
+    private       long               refreshPeriod;
+    @Nonnull
+    private final List<LongConsumer> presentedListeners = new ArrayList<>();
+
     X11EglOutput(@Nonnull @Provided final Display display,
                  @Nonnull @Provided final Renderer renderer,
+                 @Nonnull @Provided final Libxcb libxcb,
+                 @Nonnull @Provided final Libxcbpresent libxcbpresent,
+                 @Nonnull @Provided final FrameStatsRegistry frameStatsRegistry,
                  @Nonnull final X11Output x11Output,
+                 final long xcbConnection,
+                 final boolean present,
                  final long eglSurface,
                  final long eglContext,
                  final long eglDisplay) {
         this.display = display;
         this.renderer = renderer;
+        this.libxcb = libxcb;
+        this.libxcbpresent = libxcbpresent;
+        this.frameStatsRegistry = frameStatsRegistry;
         this.x11Output = x11Output;
+        this.xcbConnection = xcbConnection;
+        this.present = present;
         this.eglSurface = eglSurface;
         this.eglContext = eglContext;
         this.eglDisplay = eglDisplay;
+        this.presentTimeout = display.getEventLoop()
+                                     .addTimer(this::onPresentTimeout);
     }
 
     @Override
@@ -102,10 +162,117 @@ public class X11EglOutput implements EglOutput {
         return this.x11Output;
     }
 
+    @Override
+    public void renderEndAfterSwap() {
+        if (!this.present) {
+            return;
+        }
+
+        //ask for a notification at the next vblank, the swapped frame is on screen by then.
+        final long now       = System.nanoTime();
+        long       targetMsc = this.lastMsc + 1;
+        if (this.refreshPeriod > 0L) {
+            //skip the vblanks that passed since the last notification
+            targetMsc += Math.max(0L,
+                                  (now - this.lastPresented) / this.refreshPeriod);
+        }
+        this.presentSerial++;
+        this.libxcbpresent.xcb_present_notify_msc(this.xcbConnection,
+                                                  this.x11Output.getXWindow(),
+                                                  this.presentSerial,
+                                                  targetMsc,
+                                                  0L,
+                                                  0L);
+        this.libxcb.xcb_flush(this.xcbConnection);
+        this.presentPending = true;
+        this.presentRequested = now;
+        this.presentTimeout.updateTimer(PRESENT_TIMEOUT);
+    }
+
+    @Override
+    public void whenPresented(@Nonnull final LongConsumer presented) {
+        if (this.presentPending) {
+            this.presentedListeners.add(presented);
+        }
+        else {
+            presented.accept(System.nanoTime());
+        }
+    }
+
+    /**
+     * Called when the X server sends a present complete notification for the window of this output.
+     *
+     * @param serial the serial of the notification.
+     * @param ust    the CLOCK_MONOTONIC time in microseconds of the vblank.
+     * @param msc    the vblank counter.
+     */
+    public void onPresentComplete(final int serial,
+                                  final long ust,
+                                  final long msc) {
+        if (!this.presentPending || serial != this.presentSerial) {
+            //not ours or superseded
+            return;
+        }
+        //ust is CLOCK_MONOTONIC, same as System.nanoTime().
+        final long presented = TimeUnit.MICROSECONDS.toNanos(ust);
+        if (this.lastPresented != 0L && msc > this.lastMsc) {
+            this.refreshPeriod = (presented - this.lastPresented) / (msc - this.lastMsc);
+        }
+        this.lastMsc = msc;
+        this.lastPresented = presented;
+        presented(presented);
+    }
+
+    /**
+     * Complete only the frame that waited too long for its notification. The next frame asks for a notification again,
+     * so pacing resumes as soon as the X server delivers them. A late notification of the timed out frame is ignored.
+     */
+    private int onPresentTimeout() {
+        if (this.presentPending) {
+            LOGGER.fine(String.format("No present notification for output %s within %d ms.",
+                                      getWlOutput().getOutput()
+                                                   .getName(),
+                                      PRESENT_TIMEOUT));
+            presented(System.nanoTime());
+        }
+        return 0;
+    }
+
+    private void presented(final long presented) {
+        this.presentPending = false;
+        //disarm
+        this.presentTimeout.updateTimer(0);
+
+        if (Trace.ENABLED) {
+            Trace.complete("present",
+                           this.presentRequested,
+                           presented);
+        }
+        this.frameStatsRegistry.get(getWlOutput().getOutput())
+                               .recordPageFlip(Math.max(0L,
+                                                        presented - this.presentRequested));
+
+        final List<LongConsumer> presentedListeners = new ArrayList<>(this.presentedListeners);
+        this.presentedListeners.clear();
+        presentedListeners.forEach(presentedListener -> presentedListener.accept(presented));
+        this.display.flushClients();
+
+        if (this.renderAfterPresent) {
+            this.renderAfterPresent = false;
+            whenIdleDoRender();
+        }
+    }
+
     @Override
     public void render() {
-        //TODO unit test 2 cases here: schedule idle, no-op when already scheduled
-        whenIdleDoRender();
+        //TODO unit test 3 cases here: schedule idle, no-op when already scheduled, delayed render when present pending
+        if (this.presentPending) {
+            //render again as soon as the current frame is on screen.
+            this.renderAfterPresent = true;
+        }
+        else {
+            whenIdleDoRender();
+        }
     }
 
     private void whenIdleDoRender() {
@@ -24,11 +24,19 @@ import org.westford.compositor.x11.X11Platform;
 import org.westford.nativ.libEGL.EglCreatePlatformWindowSurfaceEXT;
 import org.westford.nativ.libEGL.EglGetPlatformDisplayEXT;
 import org.westford.nativ.libEGL.LibEGL;
+import org.westford.nativ.libxcb.Libxcb;
+import org.westford.nativ.libxcb.xcb_generic_event_t;
+import org.westford.nativ.libxcb.xcb_query_extension_reply_t;
+import org.westford.nativ.libxcbpresent.Libxcbpresent;
+import org.westford.nativ.libxcbpresent.xcb_present_complete_notify_event_t;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.logging.Logger;
 
 import static java.lang.String.format;
@@ -43,6 +51,9 @@ import static org.westford.nativ.libEGL.LibEGL.EGL_PLATFORM_X11_KHR;
 import static org.westford.nativ.libEGL.LibEGL.EGL_RENDER_BUFFER;
 import static org.westford.nativ.libEGL.LibEGL.EGL_VENDOR;
 import static org.westford.nativ.libEGL.LibEGL.EGL_VERSION;
+import static org.westford.nativ.libxcb.Libxcb.XCB_GE_GENERIC;
+import static org.westford.nativ.libxcbpresent.Libxcbpresent.XCB_PRESENT_EVENT_COMPLETE_NOTIFY;
+import static org.westford.nativ.libxcbpresent.Libxcbpresent.XCB_PRESENT_EVENT_MASK_COMPLETE_NOTIFY;
 
 public class X11EglPlatformFactory {
 
@@ -58,18 +69,26 @@ public class X11EglPlatformFactory {
     private final GlRenderer                   glRenderer;
     @Nonnull
     private final X11EglOutputFactory          x11EglOutputFactory;
+    @Nonnull
+    private final Libxcb                       libxcb;
+    @Nonnull
+    private final Libxcbpresent                libxcbpresent;
 
     @Inject
     X11EglPlatformFactory(@Nonnull final LibEGL libEGL,
                           @Nonnull final PrivateX11EglPlatformFactory privateX11EglPlatformFactory,
                           @Nonnull final X11Platform x11Platform,
                           @Nonnull final GlRenderer glRenderer,
-                          @Nonnull final X11EglOutputFactory x11EglOutputFactory) {
+                          @Nonnull final X11EglOutputFactory x11EglOutputFactory,
+                          @Nonnull final Libxcb libxcb,
+                          @Nonnull final Libxcbpresent libxcbpresent) {
         this.libEGL = libEGL;
         this.privateX11EglPlatformFactory = privateX11EglPlatformFactory;
         this.x11Platform = x11Platform;
         this.glRenderer = glRenderer;
         this.x11EglOutputFactory = x11EglOutputFactory;
+        this.libxcb = libxcb;
+        this.libxcbpresent = libxcbpresent;
     }
 
     @Nonnull
@@ -112,15 +131,40 @@ public class X11EglPlatformFactory {
         final List<X11Output>    x11Outputs          = this.x11Platform.getRenderOutputs();
         final List<X11EglOutput> x11EglRenderOutputs = new ArrayList<>(x11Outputs.size());
 
+        final long                       xcbConnection  = this.x11Platform.getXcbConnection();
+        final Optional<Integer>          presentOpcode  = queryPresentExtension(xcbConnection);
+        final Map<Integer, X11EglOutput> presentOutputs = new HashMap<>();
 
         x11Outputs.forEach(x11RenderOutput -> {
             final long eglSurface = createEglSurface(eglDisplay,
                                                      eglConfig,
                                                      x11RenderOutput.getXWindow());
-            x11EglRenderOutputs.add(this.x11EglOutputFactory.create(x11RenderOutput,
-                                                                    eglSurface,
-                                                                    eglContext,
-                                                                    eglDisplay));
+            final X11EglOutput x11EglOutput = this.x11EglOutputFactory.create(x11RenderOutput,
+                                                                              xcbConnection,
+                                                                              presentOpcode.isPresent(),
+                                                                              eglSurface,
+                                                                              eglContext,
+                                                                              eglDisplay);
+            x11EglRenderOutputs.add(x11EglOutput);
+
+            if (presentOpcode.isPresent()) {
+                final int window = x11RenderOutput.getXWindow();
+                this.libxcbpresent.xcb_present_select_input(xcbConnection,
+                                                            this.libxcb.xcb_generate_id(xcbConnection),
+                                                            window,
+                                                            XCB_PRESENT_EVENT_MASK_COMPLETE_NOTIFY);
+                presentOutputs.put(window,
+                                   x11EglOutput);
+            }
+        });
+
+        presentOpcode.ifPresent(opcode -> {
+            this.x11Platform.getX11EventBus()
+                            .getXEventSignal()
+                            .connect(event -> handlePresentEvent(event,
+                                                                 opcode,
+                                                                 presentOutputs));
+            this.libxcb.xcb_flush(xcbConnection);
         });
 
         return this.privateX11EglPlatformFactory.create(x11EglRenderOutputs,
@@ -129,6 +173,58 @@ public class X11EglPlatformFactory {
                                                         eglExtensions);
     }
 
+    /**
+     * @return the major opcode of the X Present extension, if the X server supports it.
+     */
+    private Optional<Integer> queryPresentExtension(final long xcbConnection) {
+        final String name   = "Present";
+        final int    cookie = this.libxcb.xcb_query_extension(xcbConnection,
+                                                              (short) name.length(),
+                                                              Pointer.nref(name).address);
+        final long   reply  = this.libxcb.xcb_query_extension_reply(xcbConnection,
+                                                                    cookie,
+                                                                    0L);
+        if (reply == 0L) {
+            LOGGER.warning("Failed to query the X Present extension. Rendering will not be paced.");
+            return Optional.empty();
+        }
+
+        try (final Pointer<xcb_query_extension_reply_t> queryExtensionReply = Pointer.wrap(xcb_query_extension_reply_t.class,
+                                                                                            reply)) {
+            if (queryExtensionReply.dref()
+                                   .present() == 0) {
+                LOGGER.warning("X Present extension not available. Rendering will not be paced.");
+                return Optional.empty();
+            }
+            return Optional.of(queryExtensionReply.dref()
+                                                  .major_opcode() & 0xff);
+        }
+    }
+
+    private void handlePresentEvent(final Pointer<xcb_generic_event_t> event,
+                                    final int presentOpcode,
+                                    final Map<Integer, X11EglOutput> presentOutputs) {
+        if ((event.dref()
+                  .response_type() & 0x7f) != XCB_GE_GENERIC) {
+            return;
+        }
+
+        final xcb_present_complete_notify_event_t completeNotify = event.castp(xcb_present_complete_notify_event_t.class)
+                                                                         .dref();
+        if ((completeNotify.extension() & 0xff) != presentOpcode ||
+            (completeNotify.event_type() & 0xffff) != XCB_PRESENT_EVENT_COMPLETE_NOTIFY) {
+            return;
+        }
+
+        final X11EglOutput x11EglOutput = presentOutputs.get(completeNotify.window());
+        if (x11EglOutput != null) {
+            x11EglOutput.onPresentComplete(completeNotify.serial(),
+                                           completeNotify.ust(),
+                                           Integer.toUnsignedLong(completeNotify.msc_lo()) |
+                                           (Integer.toUnsignedLong(completeNotify.msc_hi()) << 32));
+        }
+    }
+
     private long createEglDisplay(final long nativeDisplay) {
 
         final Pointer<String> noDisplayExtensions = Pointer.wrap(String.class,
@@ -47,6 +47,8 @@ import org.westford.nativ.libudev.Libudev;
 import org.westford.nativ.libudev.Libudev_Symbols;
 import org.westford.nativ.libxcb.Libxcb;
 import org.westford.nativ.libxcb.Libxcb_Symbols;
+import org.westford.nativ.libxcbpresent.Libxcbpresent;
+import org.westford.nativ.libxcbpresent.Libxcbpresent_Symbols;
 import org.westford.nativ.libxkbcommon.Libxkbcommon;
 import org.westford.nativ.libxkbcommon.Libxkbcommon_Symbols;
 import org.westford.nativ.libxkbcommonx11.Libxkbcommonx11;
@@ -150,6 +152,13 @@ public class NativeModule {
         return new Libxcb();
     }
 
+    @Singleton
+    @Provides
+    Libxcbpresent provideLibxcbpresent() {
+        new Libxcbpresent_Symbols().link();
+        return new Libxcbpresent();
+    }
+
     @Singleton
     @Provides
     LibX11xcb provideLibX11xcb() {
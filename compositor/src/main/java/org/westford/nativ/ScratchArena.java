@@ -0,0 +1,335 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.nativ;
+
+import org.freedesktop.jaccall.Pointer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Stack allocator for short lived native memory, like out parameters and small arrays that are passed to a native
+ * call. Memory is handed out from a single preallocated block and released in bulk when the {@link Scope} it was
+ * allocated in is closed, there is no malloc or free per allocation. Allocations that do not fit in the block fall back
+ * to malloc and are freed when their scope closes.
+ * <p/>
+ * Each thread has its own arena, obtained through {@link #get()}. Scopes nest and must be closed in reverse order of
+ * opening, typically a scope per frame with a nested scope per call:
+ * <pre>
+ * final ScratchArena arena = ScratchArena.get();
+ * try (ScratchArena.Scope scope = arena.scope()) {
+ *     final Pointer&lt;Integer&gt; width = arena.nref(0);
+ *     ...
+ * }
+ * </pre>
+ * Pointers allocated from a scope must not be used after it is closed.
+ * <p/>
+ * When the system property {@code westford.arena.debug} is set, every allocation records its call site. Allocations
+ * that are still live when an enclosing scope closes (an inner scope was never closed) and allocations that did not
+ * fit in the arena are logged per call site. The arena size in bytes can be set with {@code westford.arena.size}.
+ */
+public final class ScratchArena {
+
+    public static final boolean DEBUG = Boolean.getBoolean("westford.arena.debug");
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    private static final int CAPACITY  = Integer.getInteger("westford.arena.size",
+                                                            64 * 1024);
+    //enough for any primitive, and for 4x4 float matrices
+    private static final int ALIGNMENT = 16;
+
+    private static final ThreadLocal<ScratchArena> ARENAS = ThreadLocal.withInitial(() -> new ScratchArena(CAPACITY));
+
+    /**
+     * Owned by the thread, lives as long as the thread.
+     */
+    private final Pointer<Byte> block;
+    private final int           capacity;
+
+    private final Deque<Pointer<Byte>> overflow    = new ArrayDeque<>();
+    private final Deque<Allocation>    allocations = new ArrayDeque<>();
+
+    private int   offset;
+    private int   highWaterMark;
+    private long  overflowCount;
+    private Scope innermost;
+
+    ScratchArena(@Nonnegative final int capacity) {
+        this.capacity = capacity;
+        this.block = Pointer.malloc(capacity,
+                                    Byte.class);
+    }
+
+    /**
+     * @return the arena of the calling thread.
+     */
+    @Nonnull
+    public static ScratchArena get() {
+        return ARENAS.get();
+    }
+
+    /**
+     * Open a new scope. All allocations done before the returned scope is closed are released when it closes.
+     *
+     * @return a new innermost scope.
+     */
+    @Nonnull
+    public Scope scope() {
+        this.innermost = new Scope(this.innermost,
+                                   this.offset,
+                                   this.overflow.size(),
+                                   this.allocations.size());
+        return this.innermost;
+    }
+
+    /**
+     * Allocate uninitialized memory in the innermost scope.
+     *
+     * @param size the size in bytes.
+     * @param type the type of the returned pointer.
+     * @param <T>  the type of the returned pointer.
+     *
+     * @return a pointer that is valid until the innermost scope closes.
+     *
+     * @throws IllegalStateException if no scope is open.
+     */
+    @Nonnull
+    public <T> Pointer<T> allocate(@Nonnegative final int size,
+                                   @Nonnull final Class<T> type) {
+        if (this.innermost == null) {
+            throw new IllegalStateException("No open scratch arena scope.");
+        }
+
+        final int  start = (this.offset + ALIGNMENT - 1) & -ALIGNMENT;
+        final long address;
+        if (start + size <= this.capacity) {
+            address = this.block.address + start;
+            this.offset = start + size;
+            this.highWaterMark = Math.max(this.highWaterMark,
+                                          this.offset);
+            if (DEBUG) {
+                this.allocations.push(new Allocation(callSite(),
+                                                     size));
+            }
+        }
+        else {
+            final Pointer<Byte> chunk = Pointer.malloc(size,
+                                                       Byte.class);
+            this.overflow.push(chunk);
+            this.overflowCount++;
+            address = chunk.address;
+            if (DEBUG) {
+                final String callSite = callSite();
+                LOGGER.warning(String.format("Scratch arena of %d bytes exhausted, %d bytes malloc'ed for %s.",
+                                             this.capacity,
+                                             size,
+                                             callSite));
+                this.allocations.push(new Allocation(callSite,
+                                                     size));
+            }
+        }
+
+        return Pointer.wrap(type,
+                            address);
+    }
+
+    @Nonnull
+    public Pointer<Integer> nref(@Nonnull final int... values) {
+        final Pointer<Integer> pointer = allocate(Math.max(1,
+                                                           values.length) * Integer.BYTES,
+                                                  Integer.class);
+        for (int i = 0; i < values.length; i++) {
+            pointer.writei(i,
+                           values[i]);
+        }
+        return pointer;
+    }
+
+    @Nonnull
+    public Pointer<Long> nref(@Nonnull final long... values) {
+        final Pointer<Long> pointer = allocate(Math.max(1,
+                                                        values.length) * Long.BYTES,
+                                               Long.class);
+        for (int i = 0; i < values.length; i++) {
+            pointer.writei(i,
+                           values[i]);
+        }
+        return pointer;
+    }
+
+    @Nonnull
+    public Pointer<Float> nref(@Nonnull final float... values) {
+        final Pointer<Float> pointer = allocate(Math.max(1,
+                                                         values.length) * Float.BYTES,
+                                                Float.class);
+        for (int i = 0; i < values.length; i++) {
+            pointer.writei(i,
+                           values[i]);
+        }
+        return pointer;
+    }
+
+    /**
+     * @param string a java string.
+     *
+     * @return a nul terminated, utf-8 encoded copy of the given string.
+     */
+    @Nonnull
+    public Pointer<Byte> nref(@Nonnull final String string) {
+        final byte[]        bytes   = string.getBytes(StandardCharsets.UTF_8);
+        final Pointer<Byte> pointer = allocate(bytes.length + 1,
+                                               Byte.class);
+        for (int i = 0; i < bytes.length; i++) {
+            pointer.writei(i,
+                           bytes[i]);
+        }
+        pointer.writei(bytes.length,
+                       (byte) 0);
+        return pointer;
+    }
+
+    /**
+     * @return the most bytes of the arena that were in use at the same time.
+     */
+    public int getHighWaterMark() {
+        return this.highWaterMark;
+    }
+
+    /**
+     * @return the number of allocations that did not fit in the arena and were malloc'ed instead.
+     */
+    public long getOverflowCount() {
+        return this.overflowCount;
+    }
+
+    private void release(@Nonnull final Scope scope) {
+        //find the scope opened directly inside the one being closed, if any.
+        Scope child = null;
+        Scope open  = this.innermost;
+        while (open != scope) {
+            if (open == null) {
+                //already released by closing an enclosing scope.
+                return;
+            }
+            child = open;
+            open = open.parent;
+        }
+
+        if (child != null) {
+            //scopes opened after the one being closed were never closed themselves.
+            if (DEBUG) {
+                reportLeaks(child.allocationsMark);
+            }
+            else {
+                LOGGER.warning("Scratch arena scope closed out of order. Set -Dwestford.arena.debug=true for details.");
+            }
+        }
+
+        while (this.overflow.size() > scope.overflowMark) {
+            this.overflow.pop()
+                         .close();
+        }
+        while (this.allocations.size() > scope.allocationsMark) {
+            this.allocations.pop();
+        }
+        this.offset = scope.offsetMark;
+        this.innermost = scope.parent;
+    }
+
+    private void reportLeaks(final int allocationsMark) {
+        final Map<String, int[]> perCallSite = new LinkedHashMap<>();
+        int                      i           = this.allocations.size();
+        for (final Allocation allocation : this.allocations) {
+            if (i-- <= allocationsMark) {
+                break;
+            }
+            final int[] countAndBytes = perCallSite.computeIfAbsent(allocation.callSite,
+                                                                    key -> new int[2]);
+            countAndBytes[0]++;
+            countAndBytes[1] += allocation.size;
+        }
+
+        final StringBuilder report = new StringBuilder("Scratch arena scope closed out of order, leaked allocations:");
+        perCallSite.forEach((callSite, countAndBytes) -> report.append(String.format("%n\t%s: %d allocations, %d bytes",
+                                                                                      callSite,
+                                                                                      countAndBytes[0],
+                                                                                      countAndBytes[1])));
+        LOGGER.warning(report.toString());
+    }
+
+    private static String callSite() {
+        for (final StackTraceElement element : new Throwable().getStackTrace()) {
+            if (!element.getClassName()
+                        .equals(ScratchArena.class.getName())) {
+                return element.toString();
+            }
+        }
+        return "unknown";
+    }
+
+    private static final class Allocation {
+        private final String callSite;
+        private final int    size;
+
+        private Allocation(final String callSite,
+                           final int size) {
+            this.callSite = callSite;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A nested region of an arena. Closing a scope releases everything allocated since it was opened, including
+     * allocations of nested scopes that were not closed.
+     */
+    public final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+        private final int   offsetMark;
+        private final int   overflowMark;
+        private final int   allocationsMark;
+
+        private boolean closed;
+
+        private Scope(final Scope parent,
+                      final int offsetMark,
+                      final int overflowMark,
+                      final int allocationsMark) {
+            this.parent = parent;
+            this.offsetMark = offsetMark;
+            this.overflowMark = overflowMark;
+            this.allocationsMark = allocationsMark;
+        }
+
+        @Override
+        public void close() {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            release(this);
+        }
+    }
+}
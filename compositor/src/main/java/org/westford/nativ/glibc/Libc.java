@@ -137,6 +137,9 @@ public class Libc {
     public static final int SFD_NONBLOCK = O_NONBLOCK;
     public static final int SFD_CLOEXEC  = O_CLOEXEC;
 
+    public static final int EFD_NONBLOCK = O_NONBLOCK;
+    public static final int EFD_CLOEXEC  = O_CLOEXEC;
+
     /***
      * Operation not permitted
      */
@@ -486,6 +489,9 @@ public class Libc {
                                @Ptr(sigset_t.class) long mask,
                                int flags);
 
+    public native int eventfd(@Unsigned int initval,
+                              int flags);
+
     public native int socketpair(int domain,
                                  int type,
                                  int protocol,
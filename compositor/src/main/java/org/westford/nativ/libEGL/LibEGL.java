@@ -43,6 +43,8 @@ public class LibEGL {
     public static final int EGL_PLATFORM_X11_KHR        = 0x31D5;
     public static final int EGL_PLATFORM_X11_SCREEN_KHR = 0x31D6;
 
+    public static final int EGL_BUFFER_AGE_EXT = 0x313D;
+
     public static final int  EGL_ALPHA_SIZE              = 0x3021;
     public static final int  EGL_BAD_ACCESS              = 0x3002;
     public static final int  EGL_BAD_ALLOC               = 0x3003;
@@ -261,6 +263,11 @@ public class LibEGL {
                                       int attribute,
                                       @Ptr long value);
 
+    public native int eglQuerySurface(@Ptr long dpy,
+                                      @Ptr long surface,
+                                      int attribute,
+                                      @Ptr long value);
+
     @Ptr
     public native long eglGetProcAddress(@Ptr long procname);
 
@@ -41,6 +41,12 @@ public class LibGLESv2 {
 
     public static final int GL_TEXTURE_EXTERNAL_OES = 0x8D65;
 
+    //GL_EXT_disjoint_timer_query
+    public static final int GL_QUERY_RESULT_EXT           = 0x8866;
+    public static final int GL_QUERY_RESULT_AVAILABLE_EXT = 0x8867;
+    public static final int GL_TIME_ELAPSED_EXT           = 0x88BF;
+    public static final int GL_GPU_DISJOINT_EXT           = 0x8FBB;
+
     public static final int GL_TRIANGLES                                    = 0x0004;
     public static final int GL_TRIANGLE_STRIP                               = 0x0005;
     public static final int GL_TRIANGLE_FAN                                 = 0x0006;
@@ -340,6 +346,11 @@ public class LibGLESv2 {
                                   int width,
                                   int height);
 
+    public native void glScissor(int x,
+                                 int y,
+                                 int width,
+                                 int height);
+
     public native void glClear(int mask);
 
     public native void glBindBuffer(int target,
@@ -488,6 +499,9 @@ public class LibGLESv2 {
 
     public native int glGetError();
 
+    public native void glGetIntegerv(int pname,
+                                     @Ptr(Integer.class) long data);
+
     public native void glFinish();
 
     public native void glEnable(int cap);
@@ -74,6 +74,18 @@ public class Libbcm_host {
     public static final int VCOS_DISPLAY_INPUT_FORMAT_RGB888  = 1;
     public static final int VCOS_DISPLAY_INPUT_FORMAT_RGB565  = 2;
 
+    /* VC_IMAGE_TYPE_T */
+    public static final int VC_IMAGE_ARGB8888 = 43;
+    public static final int VC_IMAGE_XRGB8888 = 44;
+
+    /* change flags of vc_dispmanx_element_change_attributes */
+    public static final int ELEMENT_CHANGE_LAYER         = 1 << 0;
+    public static final int ELEMENT_CHANGE_OPACITY       = 1 << 1;
+    public static final int ELEMENT_CHANGE_DEST_RECT     = 1 << 2;
+    public static final int ELEMENT_CHANGE_SRC_RECT      = 1 << 3;
+    public static final int ELEMENT_CHANGE_MASK_RESOURCE = 1 << 4;
+    public static final int ELEMENT_CHANGE_TRANSFORM     = 1 << 5;
+
     public native void bcm_host_init();
 
     public native int vc_dispmanx_display_get_info(int display,
@@ -111,11 +123,70 @@ public class Libbcm_host {
                                               @Ptr long clamp,
                                               int transform);
 
+    /**
+     * Change the attributes of an element as part of an update. Only the attributes set in change_flags are used.
+     */
+    public native int vc_dispmanx_element_change_attributes(int update,
+                                                            int element,
+                                                            int change_flags,
+                                                            int layer,
+                                                            byte opacity,
+                                                            @Ptr long dest_rect,
+                                                            @Ptr long src_rect,
+                                                            int mask,
+                                                            int transform);
+
+    /**
+     * Show a different resource in an element as part of an update
+     */
+    public native int vc_dispmanx_element_change_source(int update,
+                                                        int element,
+                                                        int src);
+
+    /**
+     * Remove an element from a display as part of an update
+     */
+    public native int vc_dispmanx_element_remove(int update,
+                                                 int element);
+
     /**
      * End an update and wait for it to complete
      */
     public native int vc_dispmanx_update_submit_sync(int update);
 
+    /**
+     * End an update without waiting for it to complete. The callback is called once the update is shown.
+     */
+    public native int vc_dispmanx_update_submit(int update,
+                                                @Ptr(DISPMANX_CALLBACK_FUNC_T.class) long cb_func,
+                                                @Ptr long cb_arg);
+
+    /**
+     * Create a new resource, 0 on error
+     */
+    public native int vc_dispmanx_resource_create(int type,
+                                                  int width,
+                                                  int height,
+                                                  @Ptr long native_image_handle);
+
+    /**
+     * Copy image data into a resource
+     */
+    public native int vc_dispmanx_resource_write_data(int res,
+                                                      int src_type,
+                                                      int src_pitch,
+                                                      @Ptr long src_address,
+                                                      @Ptr long rect);
+
+    public native int vc_dispmanx_resource_delete(int res);
+
+    /**
+     * Call cb_func on every vsync of a display, from a videocore thread. A NULL cb_func stops the calls.
+     */
+    public native int vc_dispmanx_vsync_callback(int display,
+                                                 @Ptr(DISPMANX_CALLBACK_FUNC_T.class) long cb_func,
+                                                 @Ptr long cb_arg);
+
     public native int vc_dispmanx_rect_set(@Ptr long rect,
                                            int x_offset,
                                            int y_offset,
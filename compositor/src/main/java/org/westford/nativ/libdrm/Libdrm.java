@@ -45,6 +45,28 @@ public class Libdrm {
     public static final int DRM_MODE_SUBPIXEL_VERTICAL_BGR   = 5;
     public static final int DRM_MODE_SUBPIXEL_NONE           = 6;
 
+    public static final int DRM_PROP_NAME_LEN = 32;
+
+    public static final int DRM_MODE_OBJECT_CRTC      = 0xcccccccc;
+    public static final int DRM_MODE_OBJECT_CONNECTOR = 0xc0c0c0c0;
+    public static final int DRM_MODE_OBJECT_PLANE     = 0xeeeeeeee;
+
+    public static final int DRM_PLANE_TYPE_OVERLAY = 0;
+    public static final int DRM_PLANE_TYPE_PRIMARY = 1;
+    public static final int DRM_PLANE_TYPE_CURSOR  = 2;
+
+    public static final long DRM_CLIENT_CAP_UNIVERSAL_PLANES = 2L;
+
+    public static final long DRM_CAP_ADDFB2_MODIFIERS = 0x10L;
+
+    /**
+     * The framebuffer has a format modifier.
+     */
+    public static final int DRM_MODE_FB_MODIFIERS = 1 << 1;
+
+    public static final long DRM_FORMAT_MOD_LINEAR  = 0L;
+    public static final long DRM_FORMAT_MOD_INVALID = 0x00ffffffffffffffL;
+
     public native int drmOpen(@Ptr(String.class) long name,
                               @Ptr(String.class) long busid);
 
@@ -75,6 +97,21 @@ public class Libdrm {
                                    @Unsigned int bo_handle,
                                    @Ptr(int.class) long buf_id);
 
+    /**
+     * Create a framebuffer from up to 4 planes, each with their own modifier if flags has
+     * {@link #DRM_MODE_FB_MODIFIERS}.
+     */
+    public native int drmModeAddFB2WithModifiers(int fd,
+                                                 @Unsigned int width,
+                                                 @Unsigned int height,
+                                                 @Unsigned int pixel_format,
+                                                 @Ptr(int.class) long bo_handles,
+                                                 @Ptr(int.class) long pitches,
+                                                 @Ptr(int.class) long offsets,
+                                                 @Ptr(long.class) long modifier,
+                                                 @Ptr(int.class) long buf_id,
+                                                 @Unsigned int flags);
+
     public native int drmModeSetCrtc(int fd,
                                      @Unsigned int crtcId,
                                      @Unsigned int bufferId,
@@ -93,6 +130,50 @@ public class Libdrm {
     public native int drmHandleEvent(int fd,
                                      @Ptr(DrmEventContext.class) long evctx);
 
+    public native int drmGetCap(int fd,
+                                @Unsigned long capability,
+                                @Ptr(long.class) long value);
+
+    public native int drmSetClientCap(int fd,
+                                      @Unsigned long capability,
+                                      @Unsigned long value);
+
+    @Ptr(DrmModePlaneRes.class)
+    public native long drmModeGetPlaneResources(int fd);
+
+    public native void drmModeFreePlaneResources(@Ptr(DrmModePlaneRes.class) long ptr);
+
+    @Ptr(DrmModePlane.class)
+    public native long drmModeGetPlane(int fd,
+                                       @Unsigned int plane_id);
+
+    public native void drmModeFreePlane(@Ptr(DrmModePlane.class) long ptr);
+
+    @Ptr(DrmModeObjectProperties.class)
+    public native long drmModeObjectGetProperties(int fd,
+                                                  @Unsigned int object_id,
+                                                  @Unsigned int object_type);
+
+    public native void drmModeFreeObjectProperties(@Ptr(DrmModeObjectProperties.class) long ptr);
+
+    public native int drmModeObjectSetProperty(int fd,
+                                               @Unsigned int object_id,
+                                               @Unsigned int object_type,
+                                               @Unsigned int property_id,
+                                               @Unsigned long value);
+
+    @Ptr(DrmModePropertyRes.class)
+    public native long drmModeGetProperty(int fd,
+                                          @Unsigned int propertyId);
+
+    public native void drmModeFreeProperty(@Ptr(DrmModePropertyRes.class) long ptr);
+
+    @Ptr(DrmModePropertyBlobRes.class)
+    public native long drmModeGetPropertyBlob(int fd,
+                                              @Unsigned int blob_id);
+
+    public native void drmModeFreePropertyBlob(@Ptr(DrmModePropertyBlobRes.class) long ptr);
+
     public native int drmSetMaster(int fd);
 
     public native int drmDropMaster(int fd);
@@ -64,6 +64,18 @@ public class Libgbm {
      */
     public static final int GBM_BO_USE_LINEAR       = (1 << 4);
 
+    /**
+     * Import a wl_buffer resource, as created through the wl_drm protocol.
+     */
+    public static final int GBM_BO_IMPORT_WL_BUFFER = 0x5501;
+    /**
+     * Import a dmabuf fd, described by a {@link gbm_import_fd_data}.
+     */
+    public static final int GBM_BO_IMPORT_FD        = 0x5503;
+
+    public static final int GBM_BO_TRANSFER_READ  = (1 << 0);
+    public static final int GBM_BO_TRANSFER_WRITE = (1 << 1);
+
     private static int __gbm_fourcc_code(final byte a,
                                          final byte b,
                                          final byte c,
@@ -81,6 +93,53 @@ public class Libgbm {
                                           @Unsigned int format,
                                           @Unsigned int flags);
 
+    /**
+     * Create a surface whose buffers use one of the given format modifiers, as chosen by the driver.
+     */
+    @Ptr
+    public native long gbm_surface_create_with_modifiers(@Ptr long gbm,
+                                                         @Unsigned int width,
+                                                         @Unsigned int height,
+                                                         @Unsigned int format,
+                                                         @Ptr(long.class) long modifiers,
+                                                         @Unsigned int count);
+
+    @Ptr
+    public native long gbm_bo_import(@Ptr long gbm,
+                                     @Unsigned int type,
+                                     @Ptr long buffer,
+                                     @Unsigned int usage);
+
+    @Ptr
+    public native long gbm_bo_create(@Ptr long gbm,
+                                     @Unsigned int width,
+                                     @Unsigned int height,
+                                     @Unsigned int format,
+                                     @Unsigned int flags);
+
+    public native void gbm_bo_destroy(@Ptr long bo);
+
+    /**
+     * Export the buffer object as a dmabuf fd, -1 on error.
+     */
+    public native int gbm_bo_get_fd(@Ptr long bo);
+
+    /**
+     * Map a region of the buffer object for cpu access, NULL on error.
+     */
+    @Ptr
+    public native long gbm_bo_map(@Ptr long bo,
+                                  @Unsigned int x,
+                                  @Unsigned int y,
+                                  @Unsigned int width,
+                                  @Unsigned int height,
+                                  @Unsigned int flags,
+                                  @Ptr(int.class) long stride,
+                                  @Ptr(long.class) long map_data);
+
+    public native void gbm_bo_unmap(@Ptr long bo,
+                                    @Ptr long map_data);
+
     @Ptr
     public native long gbm_bo_get_user_data(@Ptr long bo);
 
@@ -105,6 +164,21 @@ public class Libgbm {
 
     public native long gbm_bo_get_handle(@Ptr long bo);
 
+    public native long gbm_bo_get_modifier(@Ptr long bo);
+
+    public native int gbm_bo_get_plane_count(@Ptr long bo);
+
+    public native long gbm_bo_get_handle_for_plane(@Ptr long bo,
+                                                   int plane);
+
+    @Unsigned
+    public native int gbm_bo_get_stride_for_plane(@Ptr long bo,
+                                                  int plane);
+
+    @Unsigned
+    public native int gbm_bo_get_offset(@Ptr long bo,
+                                        int plane);
+
     @Ptr
     public native long gbm_surface_lock_front_buffer(@Ptr long surface);
 
@@ -269,6 +269,9 @@ public class Libinput {
     @Unsigned
     public native int libinput_event_keyboard_get_time(@Ptr long event);
 
+    @Unsigned
+    public native long libinput_event_keyboard_get_time_usec(@Ptr long event);
+
 
     public native int libinput_event_keyboard_get_key_state(@Ptr long event);
 
@@ -299,6 +302,9 @@ public class Libinput {
     @Unsigned
     public native int libinput_event_pointer_get_time(@Ptr long event);
 
+    @Unsigned
+    public native long libinput_event_pointer_get_time_usec(@Ptr long event);
+
 
     public native int libinput_event_pointer_has_axis(@Ptr long event,
                                                       int axis);
@@ -317,6 +323,9 @@ public class Libinput {
     @Unsigned
     public native int libinput_event_touch_get_time(@Ptr long event);
 
+    @Unsigned
+    public native long libinput_event_touch_get_time_usec(@Ptr long event);
+
     public native double libinput_event_touch_get_x_transformed(@Ptr long event,
                                                                 @Unsigned int width);
 
@@ -67,5 +67,7 @@ public class Libpixman1 {
 
     public native void pixman_region32_init(@Ptr long region);
 
+    public native void pixman_region32_fini(@Ptr long region);
+
     public native void pixman_region32_clear(@Ptr long region);
 }
@@ -57,6 +57,7 @@ public class Libxcb {
     public static final int  XCB_EXPOSE                    = 12;
     public static final int  XCB_CLIENT_MESSAGE            = 33;
     public static final int  XCB_MAPPING_NOTIFY            = 34;
+    public static final int  XCB_GE_GENERIC                = 35;
     public static final int  XCB_MAPPING_MODIFIER          = 0;
     public static final int  XCB_MAPPING_KEYBOARD          = 1;
     public static final int  XCB_MAPPING_POINTER           = 2;
@@ -94,6 +95,12 @@ public class Libxcb {
     @Ptr
     public native long xcb_poll_for_event(@Ptr long c);
 
+    @Ptr
+    public native long xcb_wait_for_event(@Ptr long c);
+
+    @Ptr
+    public native long xcb_poll_for_queued_event(@Ptr long c);
+
     public native int xcb_get_file_descriptor(@Ptr long c);
 
     public native int xcb_grab_pointer(@Ptr long c,
@@ -130,4 +137,13 @@ public class Libxcb {
 
     public native int xcb_destroy_window(@Ptr long c,
                                          int window);
+
+    public native int xcb_query_extension(@Ptr long c,
+                                          short name_len,
+                                          @Ptr long name);
+
+    @Ptr
+    public native long xcb_query_extension_reply(@Ptr long c,
+                                                 int cookie,
+                                                 @Ptr long e);
 }
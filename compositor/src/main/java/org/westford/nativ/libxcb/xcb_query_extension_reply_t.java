@@ -0,0 +1,42 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.nativ.libxcb;
+
+import org.freedesktop.jaccall.CType;
+import org.freedesktop.jaccall.Field;
+import org.freedesktop.jaccall.Struct;
+
+@Struct({
+                @Field(name = "response_type",
+                       type = CType.UNSIGNED_CHAR),
+                @Field(name = "pad0",
+                       type = CType.UNSIGNED_CHAR),
+                @Field(name = "sequence",
+                       type = CType.UNSIGNED_SHORT),
+                @Field(name = "length",
+                       type = CType.UNSIGNED_INT),
+                @Field(name = "present",
+                       type = CType.UNSIGNED_CHAR),
+                @Field(name = "major_opcode",
+                       type = CType.UNSIGNED_CHAR),
+                @Field(name = "first_event",
+                       type = CType.UNSIGNED_CHAR),
+                @Field(name = "first_error",
+                       type = CType.UNSIGNED_CHAR)
+        })
+public final class xcb_query_extension_reply_t extends xcb_query_extension_reply_t_Jaccall_StructType {}
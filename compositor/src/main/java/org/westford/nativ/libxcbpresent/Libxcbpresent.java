@@ -0,0 +1,46 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.nativ.libxcbpresent;
+
+import org.freedesktop.jaccall.Lib;
+import org.freedesktop.jaccall.Ptr;
+
+import javax.inject.Singleton;
+
+@Singleton
+@Lib(value = "xcb-present",
+     version = 0)
+public class Libxcbpresent {
+
+    public static final int XCB_PRESENT_EVENT_COMPLETE_NOTIFY      = 1;
+    public static final int XCB_PRESENT_EVENT_MASK_COMPLETE_NOTIFY = 2;
+    public static final int XCB_PRESENT_COMPLETE_KIND_PIXMAP       = 0;
+    public static final int XCB_PRESENT_COMPLETE_KIND_NOTIFY_MSC   = 1;
+
+    public native int xcb_present_select_input(@Ptr long c,
+                                               int eid,
+                                               int window,
+                                               int event_mask);
+
+    public native int xcb_present_notify_msc(@Ptr long c,
+                                             int window,
+                                             int serial,
+                                             long target_msc,
+                                             long divisor,
+                                             long remainder);
+}
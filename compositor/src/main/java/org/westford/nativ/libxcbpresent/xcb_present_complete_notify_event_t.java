@@ -0,0 +1,58 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.nativ.libxcbpresent;
+
+import org.freedesktop.jaccall.CType;
+import org.freedesktop.jaccall.Field;
+import org.freedesktop.jaccall.Struct;
+
+/**
+ * xcb declares this event packed, msc directly follows full_sequence without padding. It is split in two halves here
+ * so the field offsets match.
+ */
+@Struct({
+                @Field(name = "response_type",
+                       type = CType.UNSIGNED_CHAR),
+                @Field(name = "extension",
+                       type = CType.UNSIGNED_CHAR),
+                @Field(name = "sequence",
+                       type = CType.UNSIGNED_SHORT),
+                @Field(name = "length",
+                       type = CType.UNSIGNED_INT),
+                @Field(name = "event_type",
+                       type = CType.UNSIGNED_SHORT),
+                @Field(name = "kind",
+                       type = CType.UNSIGNED_CHAR),
+                @Field(name = "mode",
+                       type = CType.UNSIGNED_CHAR),
+                @Field(name = "event",
+                       type = CType.UNSIGNED_INT),
+                @Field(name = "window",
+                       type = CType.UNSIGNED_INT),
+                @Field(name = "serial",
+                       type = CType.UNSIGNED_INT),
+                @Field(name = "ust",
+                       type = CType.UNSIGNED_LONG_LONG),
+                @Field(name = "full_sequence",
+                       type = CType.UNSIGNED_INT),
+                @Field(name = "msc_lo",
+                       type = CType.UNSIGNED_INT),
+                @Field(name = "msc_hi",
+                       type = CType.UNSIGNED_INT)
+        })
+public final class xcb_present_complete_notify_event_t extends xcb_present_complete_notify_event_t_Jaccall_StructType {}
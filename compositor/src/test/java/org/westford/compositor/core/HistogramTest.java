@@ -0,0 +1,75 @@
+//Copyright 2015 Erik De Rijcke
+//
+//Licensed under the Apache License,Version2.0(the"License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing,software
+//distributed under the License is distributed on an"AS IS"BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+package org.westford.compositor.core;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class HistogramTest {
+
+    @Test
+    public void testRecord() throws Exception {
+        //given
+        final Histogram histogram = new Histogram();
+
+        //when
+        histogram.record(0);
+        histogram.record(10);
+        histogram.record(20);
+        histogram.record(1000);
+
+        //then
+        assertThat(histogram.getCount()).isEqualTo(4);
+        assertThat(histogram.getSum()).isEqualTo(1030);
+        assertThat(histogram.getMean()).isEqualTo(257);
+        assertThat(histogram.getMax()).isEqualTo(1000);
+    }
+
+    @Test
+    public void testPercentile() throws Exception {
+        //given
+        final Histogram histogram = new Histogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(5);
+        }
+        histogram.record(5000);
+
+        //when
+        final long p50 = histogram.getPercentile(50);
+        final long p99 = histogram.getPercentile(99);
+        final long p100 = histogram.getPercentile(100);
+
+        //then
+        //5 falls in the [4,7] bucket
+        assertThat(p50).isEqualTo(7);
+        assertThat(p99).isEqualTo(7);
+        assertThat(p100).isEqualTo(5000);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        //given
+        final Histogram histogram = new Histogram();
+        histogram.record(42);
+
+        //when
+        histogram.reset();
+
+        //then
+        assertThat(histogram.getCount()).isEqualTo(0);
+        assertThat(histogram.getMax()).isEqualTo(0);
+        assertThat(histogram.getPercentile(99)).isEqualTo(0);
+    }
+}
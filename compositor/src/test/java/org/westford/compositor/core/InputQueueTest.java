@@ -0,0 +1,128 @@
+//Copyright 2015 Erik De Rijcke
+//
+//Licensed under the Apache License,Version2.0(the"License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing,software
+//distributed under the License is distributed on an"AS IS"BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+package org.westford.compositor.core;
+
+import org.freedesktop.wayland.server.Display;
+import org.freedesktop.wayland.server.EventLoop;
+import org.freedesktop.wayland.server.EventSource;
+import org.freedesktop.wayland.server.jaccall.WaylandServerCore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.westford.nativ.glibc.Libc;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InputQueueTest {
+
+    @Mock
+    private Display     display;
+    @Mock
+    private EventLoop   eventLoop;
+    @Mock
+    private EventSource eventSource;
+    @Mock
+    private Libc        libc;
+
+    private final List<Integer> consumed = new LinkedList<>();
+
+    private InputQueue<int[]> inputQueue;
+
+    @Before
+    public void setUp() {
+        when(this.display.getEventLoop()).thenReturn(this.eventLoop);
+        when(this.libc.eventfd(anyInt(),
+                               anyInt())).thenReturn(7);
+        when(this.eventLoop.addFileDescriptor(eq(7),
+                                              eq(WaylandServerCore.WL_EVENT_READABLE),
+                                              any(EventLoop.FileDescriptorEventHandler.class))).thenReturn(this.eventSource);
+
+        this.inputQueue = new InputQueue<>(this.display,
+                                           this.libc,
+                                           4,
+                                           () -> new int[1],
+                                           slot -> this.consumed.add(slot[0]));
+        this.inputQueue.start();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityNotPowerOfTwo() throws Exception {
+        new InputQueue<>(this.display,
+                         this.libc,
+                         3,
+                         () -> new int[1],
+                         slot -> {});
+    }
+
+    @Test
+    public void testPublishHandle() throws Exception {
+        //given
+        this.inputQueue.claim()[0] = 1;
+        this.inputQueue.publish();
+        this.inputQueue.claim()[0] = 2;
+        this.inputQueue.publish();
+
+        //when
+        this.inputQueue.handle(7,
+                               WaylandServerCore.WL_EVENT_READABLE);
+
+        //then
+        //only a single wakeup for both events
+        verify(this.libc,
+               times(1)).write(eq(7),
+                               anyLong(),
+                               eq(Long.BYTES));
+        assertThat(this.consumed).containsExactly(1,
+                                                  2)
+                                 .inOrder();
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+        //given
+        for (int i = 0; i < 6; i++) {
+            this.inputQueue.claim()[0] = i;
+            this.inputQueue.publish();
+            //when
+            this.inputQueue.handle(7,
+                                   WaylandServerCore.WL_EVENT_READABLE);
+        }
+
+        //then
+        verify(this.libc,
+               times(6)).write(eq(7),
+                               anyLong(),
+                               eq(Long.BYTES));
+        assertThat(this.consumed).containsExactly(0,
+                                                  1,
+                                                  2,
+                                                  3,
+                                                  4,
+                                                  5)
+                                 .inOrder();
+    }
+}
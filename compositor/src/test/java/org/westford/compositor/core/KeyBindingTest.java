@@ -5,20 +5,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
-import org.westford.Signal;
-import org.westford.Slot;
-import org.westford.compositor.core.events.Key;
 
 import java.util.HashSet;
 import java.util.Set;
 
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
 public class KeyBindingTest {
 
-    private final Signal<Key, Slot<Key>> keySignal   = new Signal<>();
-    private final Set<Integer>           bindingKeys = new HashSet<>();
+    private final Set<Integer> bindingKeys = new HashSet<>();
     @Mock
     private KeyboardDevice keyboardDevice;
     @Mock
@@ -28,8 +24,6 @@ public class KeyBindingTest {
 
     @Before
     public void setUp() {
-        when(this.keyboardDevice.getKeySignal()).thenReturn(this.keySignal);
-
         this.keyBinding = new KeyBinding(this.keyboardDevice,
                                          this.bindingKeys,
                                          this.binding);
@@ -40,15 +34,18 @@ public class KeyBindingTest {
         //given a keybinding
         //when keybinding is enabled
         this.keyBinding.enable();
-        //then keybinding is fired when exactly the bound keys are pressed
-
+        //then keybinding is registered with the keyboard device
+        verify(this.keyboardDevice).addKeyBinding(this.keyBinding);
     }
 
     @Test
     public void disable() throws Exception {
         //given a keybinding
+        this.keyBinding.enable();
         //when keybinding is disabled
-        //then keybinding is not fired when exactly the bound keys are pressed
+        this.keyBinding.disable();
+        //then keybinding is unregistered from the keyboard device
+        verify(this.keyboardDevice).removeKeyBinding(this.keyBinding);
     }
 
 }
\ No newline at end of file
@@ -32,7 +32,9 @@ import org.westford.compositor.protocol.WlSurface;
 import org.westford.nativ.NativeFileFactory;
 import org.westford.nativ.glibc.Libc;
 import org.westford.nativ.libxkbcommon.Libxkbcommon;
+import org.westford.nativ.linux.InputEventCodes;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Optional;
@@ -44,6 +46,8 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.westford.nativ.libxkbcommon.Libxkbcommon.XKB_KEY_DOWN;
@@ -190,7 +194,8 @@ public class KeyboardDeviceTest {
                                 wlKeyboardKeyStatePressed);
 
         //then
-        assertThat(this.keyboardDevice.getPressedKeys()).contains(key);
+        assertThat(this.keyboardDevice.getPressedKeys()
+                                       .get(key)).isTrue();
         verify(wlKeyboardResource0).key(serial0,
                                         time0,
                                         key,
@@ -204,7 +209,8 @@ public class KeyboardDeviceTest {
                                 wlKeyboardKeyStateReleased);
 
         //then
-        assertThat(this.keyboardDevice.getPressedKeys()).doesNotContain(key);
+        assertThat(this.keyboardDevice.getPressedKeys()
+                                       .get(key)).isFalse();
         verify(wlKeyboardResource0).key(serial1,
                                         time1,
                                         key,
@@ -286,4 +292,87 @@ public class KeyboardDeviceTest {
                                            0,
                                            keymapString.length());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testKeyBinding() throws Exception {
+        //given
+        final WlKeyboardResource wlKeyboardResource0 = mock(WlKeyboardResource.class);
+        final Set<WlKeyboardResource> wlKeyboardResources = Collections.singleton(wlKeyboardResource0);
+        final Runnable binding = mock(Runnable.class);
+        new KeyBinding(this.keyboardDevice,
+                       new HashSet<>(Arrays.asList(InputEventCodes.KEY_LEFTCTRL,
+                                                   InputEventCodes.KEY_F1)),
+                       binding).enable();
+
+        //when
+        this.keyboardDevice.key(wlKeyboardResources,
+                                1,
+                                InputEventCodes.KEY_LEFTCTRL,
+                                WlKeyboardKeyState.PRESSED);
+        //then
+        verify(binding,
+               never()).run();
+
+        //and when
+        this.keyboardDevice.key(wlKeyboardResources,
+                                2,
+                                InputEventCodes.KEY_F1,
+                                WlKeyboardKeyState.PRESSED);
+        //then
+        verify(binding).run();
+
+        //and when
+        this.keyboardDevice.key(wlKeyboardResources,
+                                3,
+                                InputEventCodes.KEY_LEFTALT,
+                                WlKeyboardKeyState.PRESSED);
+        //then an additional key does not match the binding
+        verify(binding).run();
+    }
+
+    @Test
+    public void testKeyBindingSameKeys() throws Exception {
+        //given
+        final WlKeyboardResource      wlKeyboardResource0 = mock(WlKeyboardResource.class);
+        final Set<WlKeyboardResource> wlKeyboardResources = Collections.singleton(wlKeyboardResource0);
+        final Set<Integer> keys = new HashSet<>(Arrays.asList(InputEventCodes.KEY_LEFTCTRL,
+                                                              InputEventCodes.KEY_F1));
+        final Runnable   binding0    = mock(Runnable.class);
+        final KeyBinding keyBinding0 = new KeyBinding(this.keyboardDevice,
+                                                      keys,
+                                                      binding0);
+        keyBinding0.enable();
+        final Runnable binding1 = mock(Runnable.class);
+        new KeyBinding(this.keyboardDevice,
+                       keys,
+                       binding1).enable();
+
+        //when
+        this.keyboardDevice.key(wlKeyboardResources,
+                                1,
+                                InputEventCodes.KEY_LEFTCTRL,
+                                WlKeyboardKeyState.PRESSED);
+        this.keyboardDevice.key(wlKeyboardResources,
+                                2,
+                                InputEventCodes.KEY_F1,
+                                WlKeyboardKeyState.PRESSED);
+        //then both bindings are triggered
+        verify(binding0).run();
+        verify(binding1).run();
+
+        //and when
+        keyBinding0.disable();
+        this.keyboardDevice.key(wlKeyboardResources,
+                                3,
+                                InputEventCodes.KEY_F1,
+                                WlKeyboardKeyState.RELEASED);
+        this.keyboardDevice.key(wlKeyboardResources,
+                                4,
+                                InputEventCodes.KEY_F1,
+                                WlKeyboardKeyState.PRESSED);
+        //then only the binding that is still enabled is triggered
+        verify(binding0).run();
+        verify(binding1,
+               times(2)).run();
+    }
+}
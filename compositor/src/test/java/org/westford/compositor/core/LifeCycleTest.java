@@ -41,6 +41,8 @@ public class LifeCycleTest {
     @Mock
     private JobExecutor         jobExecutor;
     @Mock
+    private RenderThread        renderThread;
+    @Mock
     private WlCompositor        wlCompositor;
     @Mock
     private WlDataDeviceManager wlDataDeviceManager;
@@ -83,6 +85,7 @@ public class LifeCycleTest {
         //when
         this.lifeCycle.stop();
         //then
+        verify(this.renderThread).stop();
         verify(this.display).terminate();
         verify(this.jobExecutor).fireFinishedEvent();
     }
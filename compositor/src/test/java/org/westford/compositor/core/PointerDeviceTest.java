@@ -16,6 +16,8 @@ package org.westford.compositor.core;
 import org.freedesktop.wayland.server.Client;
 import org.freedesktop.wayland.server.DestroyListener;
 import org.freedesktop.wayland.server.Display;
+import org.freedesktop.wayland.server.EventLoop;
+import org.freedesktop.wayland.server.EventSource;
 import org.freedesktop.wayland.server.WlBufferResource;
 import org.freedesktop.wayland.server.WlPointerResource;
 import org.freedesktop.wayland.server.WlRegionResource;
@@ -1843,4 +1845,139 @@ public class PointerDeviceTest {
         assertThat(this.pointerDevice.getFocus()
                                      .isPresent()).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testQueueMotion() throws Exception {
+        //given
+        final EventLoop eventLoop = mock(EventLoop.class);
+        when(this.display.getEventLoop()).thenReturn(eventLoop);
+        final EventSource eventSource = mock(EventSource.class);
+        when(eventLoop.addIdle(any())).thenReturn(eventSource);
+
+        final WlSurfaceResource wlSurfaceResource0 = mock(WlSurfaceResource.class);
+        final Client            client0            = mock(Client.class);
+        when(wlSurfaceResource0.getClient()).thenReturn(client0);
+        final WlSurface wlSurface0 = mock(WlSurface.class);
+        when(wlSurfaceResource0.getImplementation()).thenReturn(wlSurface0);
+        final Surface surface0 = mock(Surface.class);
+        when(wlSurface0.getSurface()).thenReturn(surface0);
+        when(surface0.local(any())).thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(this.scene.pickSurface(any())).thenReturn(Optional.of(wlSurfaceResource0));
+
+        final WlPointerResource wlPointerResource0 = mock(WlPointerResource.class);
+        when(wlPointerResource0.getClient()).thenReturn(client0);
+        when(wlPointerResource0.getVersion()).thenReturn(5);
+        final Set<WlPointerResource> pointerResources = new HashSet<>();
+        pointerResources.add(wlPointerResource0);
+
+        //when
+        this.pointerDevice.queueMotion(pointerResources,
+                                       1,
+                                       10,
+                                       20);
+        this.pointerDevice.queueMotion(pointerResources,
+                                       2,
+                                       30,
+                                       40);
+
+        //then
+        final ArgumentCaptor<EventLoop.IdleHandler> idleHandlerCaptor = ArgumentCaptor.forClass(EventLoop.IdleHandler.class);
+        verify(eventLoop).addIdle(idleHandlerCaptor.capture());
+        assertThat(this.pointerDevice.getQueuedPosition()).isEqualTo(Point.create(30,
+                                                                                  40));
+        verify(wlPointerResource0,
+               never()).motion(anyInt(),
+                               any(),
+                               any());
+
+        //and when
+        idleHandlerCaptor.getValue()
+                         .handle();
+
+        //then
+        assertThat(this.pointerDevice.getPosition()).isEqualTo(Point.create(30,
+                                                                            40));
+        verify(wlPointerResource0).motion(eq(2),
+                                          eq(Fixed.create(30)),
+                                          eq(Fixed.create(40)));
+        verify(wlPointerResource0).frame();
+        verify(eventSource,
+               never()).remove();
+    }
+
+    @Test
+    public void testQueueMotionWithoutCoalescing() throws Exception {
+        //given
+        final EventLoop eventLoop = mock(EventLoop.class);
+        when(this.display.getEventLoop()).thenReturn(eventLoop);
+
+        final WlSurfaceResource wlSurfaceResource0 = mock(WlSurfaceResource.class);
+        final Client            client0            = mock(Client.class);
+        when(wlSurfaceResource0.getClient()).thenReturn(client0);
+        final WlSurface wlSurface0 = mock(WlSurface.class);
+        when(wlSurfaceResource0.getImplementation()).thenReturn(wlSurface0);
+        final Surface surface0 = mock(Surface.class);
+        when(wlSurface0.getSurface()).thenReturn(surface0);
+        when(surface0.local(any())).thenAnswer(invocation -> invocation.getArguments()[0]);
+        when(this.scene.pickSurface(any())).thenReturn(Optional.of(wlSurfaceResource0));
+
+        final WlPointerResource wlPointerResource0 = mock(WlPointerResource.class);
+        when(wlPointerResource0.getClient()).thenReturn(client0);
+        when(wlPointerResource0.getVersion()).thenReturn(5);
+        final Set<WlPointerResource> pointerResources = new HashSet<>();
+        pointerResources.add(wlPointerResource0);
+
+        this.pointerDevice.setMotionCoalescing(false);
+
+        //when
+        this.pointerDevice.queueMotion(pointerResources,
+                                       1,
+                                       10,
+                                       20);
+        this.pointerDevice.queueMotion(pointerResources,
+                                       2,
+                                       30,
+                                       40);
+
+        //then
+        verify(eventLoop,
+               never()).addIdle(any());
+        assertThat(this.pointerDevice.getPosition()).isEqualTo(Point.create(30,
+                                                                            40));
+        verify(wlPointerResource0).motion(eq(1),
+                                          eq(Fixed.create(10)),
+                                          eq(Fixed.create(20)));
+        verify(wlPointerResource0).motion(eq(2),
+                                          eq(Fixed.create(30)),
+                                          eq(Fixed.create(40)));
+        verify(wlPointerResource0,
+               times(2)).frame();
+    }
+
+    @Test
+    public void testQueueMotionThenMotion() throws Exception {
+        //given
+        final EventLoop eventLoop = mock(EventLoop.class);
+        when(this.display.getEventLoop()).thenReturn(eventLoop);
+        final EventSource eventSource = mock(EventSource.class);
+        when(eventLoop.addIdle(any())).thenReturn(eventSource);
+        when(this.scene.pickSurface(any())).thenReturn(Optional.empty());
+
+        final Set<WlPointerResource> pointerResources = new HashSet<>();
+        this.pointerDevice.queueMotion(pointerResources,
+                                       1,
+                                       10,
+                                       20);
+
+        //when
+        this.pointerDevice.motion(pointerResources,
+                                  2,
+                                  30,
+                                  40);
+
+        //then
+        verify(eventSource).remove();
+        assertThat(this.pointerDevice.getQueuedPosition()).isEqualTo(Point.create(30,
+                                                                                  40));
+    }
+}
@@ -11,6 +11,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.westford.compositor.protocol.WlRegion;
 import org.westford.compositor.protocol.WlSurface;
 
+import java.util.Collections;
 import java.util.Optional;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -86,6 +87,82 @@ public class SceneTest {
         assertThat(pickSurface.get()).isEqualTo(wlSurfaceResource0);
     }
 
+    @Test
+    public void testSnapshot() throws Exception {
+        //given
+        final Renderer renderer = mock(Renderer.class);
+
+        final WlSurfaceResource wlSurfaceResource0 = mock(WlSurfaceResource.class);
+        final WlSurface         wlSurface0         = mock(WlSurface.class);
+        when(wlSurfaceResource0.getImplementation()).thenReturn(wlSurface0);
+        final Surface surface0 = mock(Surface.class);
+        when(wlSurface0.getSurface()).thenReturn(surface0);
+        when(surface0.getTransform()).thenReturn(Transforms.NORMAL);
+        final SurfaceState surfaceState0 = mock(SurfaceState.class);
+        when(surface0.getState()).thenReturn(surfaceState0);
+        final WlBufferResource wlBufferResource0 = mock(WlBufferResource.class);
+        when(surfaceState0.getBuffer()).thenReturn(Optional.of(wlBufferResource0));
+        final Buffer buffer0 = mock(Buffer.class);
+        when(renderer.queryBuffer(wlBufferResource0)).thenReturn(buffer0);
+        final Rectangle opaque0       = Rectangle.create(0,
+                                                         0,
+                                                         10,
+                                                         10);
+        final Region    opaqueRegion0 = mock(Region.class);
+        when(opaqueRegion0.asList()).thenReturn(Collections.singletonList(opaque0));
+        when(surfaceState0.getOpaqueRegion()).thenReturn(Optional.of(opaqueRegion0));
+
+        //a subsurface of surface 0
+        final WlSurfaceResource wlSurfaceResource1 = mock(WlSurfaceResource.class);
+        final WlSurface         wlSurface1         = mock(WlSurface.class);
+        when(wlSurfaceResource1.getImplementation()).thenReturn(wlSurface1);
+        final Surface surface1 = mock(Surface.class);
+        when(wlSurface1.getSurface()).thenReturn(surface1);
+        when(surface1.getTransform()).thenReturn(Transforms.NORMAL);
+        final SurfaceState surfaceState1 = mock(SurfaceState.class);
+        when(surface1.getState()).thenReturn(surfaceState1);
+        final WlBufferResource wlBufferResource1 = mock(WlBufferResource.class);
+        when(surfaceState1.getBuffer()).thenReturn(Optional.of(wlBufferResource1));
+        final Buffer buffer1 = mock(Buffer.class);
+        when(renderer.queryBuffer(wlBufferResource1)).thenReturn(buffer1);
+        when(surfaceState1.getOpaqueRegion()).thenReturn(Optional.empty());
+
+        //a surface without a buffer
+        final WlSurfaceResource wlSurfaceResource2 = mock(WlSurfaceResource.class);
+        final WlSurface         wlSurface2         = mock(WlSurface.class);
+        when(wlSurfaceResource2.getImplementation()).thenReturn(wlSurface2);
+        final Surface surface2 = mock(Surface.class);
+        when(wlSurface2.getSurface()).thenReturn(surface2);
+        final SurfaceState surfaceState2 = mock(SurfaceState.class);
+        when(surface2.getState()).thenReturn(surfaceState2);
+        when(surfaceState2.getBuffer()).thenReturn(Optional.empty());
+
+        this.scene.getSurfacesStack()
+                  .add(wlSurfaceResource0);
+        this.scene.getSurfacesStack()
+                  .add(wlSurfaceResource2);
+        this.scene.getSubsurfaceStack(wlSurfaceResource0)
+                  .add(wlSurfaceResource1);
+
+        //when
+        final SceneSnapshot sceneSnapshot = this.scene.snapshot(renderer);
+
+        //then
+        assertThat(sceneSnapshot.getSurfaceViews()).containsExactly(SurfaceView.create(wlSurfaceResource0,
+                                                                                       surface0,
+                                                                                       surfaceState0,
+                                                                                       buffer0,
+                                                                                       Transforms.NORMAL,
+                                                                                       Collections.singletonList(opaque0)),
+                                                                    SurfaceView.create(wlSurfaceResource1,
+                                                                                       surface1,
+                                                                                       surfaceState1,
+                                                                                       buffer1,
+                                                                                       Transforms.NORMAL,
+                                                                                       Collections.emptyList()))
+                                                   .inOrder();
+    }
+
     @Test
     public void testGetSubsurfaceStack() throws Exception {
         //TODO
@@ -26,8 +26,12 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.westford.compositor.protocol.WlRegion;
 
+import java.util.Collections;
+import java.util.Optional;
+
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -70,6 +74,104 @@ public class SurfaceTest {
         verify(region).add(damage);
     }
 
+    @Test
+    public void testCommitClosesReplacedDamage() throws Exception {
+        //given
+        final FiniteRegion region0 = mock(FiniteRegion.class);
+        final FiniteRegion region1 = mock(FiniteRegion.class);
+        when(this.finiteRegionFactory.create()).thenReturn(region0,
+                                                           region1);
+        final Rectangle damage = Rectangle.create(100,
+                                                  100,
+                                                  20,
+                                                  50);
+        this.surface.markDamaged(damage);
+        this.surface.commit();
+        this.surface.markDamaged(damage);
+        //when
+        this.surface.commit();
+        //then
+        verify(region0).close();
+        verify(region1,
+               never()).close();
+    }
+
+    @Test
+    public void testGetDamageSince() throws Exception {
+        //given
+        final FiniteRegion region0 = mock(FiniteRegion.class);
+        final FiniteRegion region1 = mock(FiniteRegion.class);
+        when(this.finiteRegionFactory.create()).thenReturn(region0,
+                                                           region1);
+        when(region0.asList()).thenReturn(Collections.singletonList(Rectangle.create(0,
+                                                                                     0,
+                                                                                     10,
+                                                                                     10)));
+        when(region1.asList()).thenReturn(Collections.singletonList(Rectangle.create(20,
+                                                                                     30,
+                                                                                     10,
+                                                                                     10)));
+        this.surface.commit();
+        final SurfaceState since = this.surface.getState();
+        this.surface.markDamaged(Rectangle.create(0,
+                                                  0,
+                                                  10,
+                                                  10));
+        this.surface.commit();
+        this.surface.markDamaged(Rectangle.create(20,
+                                                  30,
+                                                  10,
+                                                  10));
+        this.surface.commit();
+        //when
+        final Optional<Rectangle> damage        = this.surface.getDamageSince(since);
+        final Optional<Rectangle> currentDamage = this.surface.getDamageSince(this.surface.getState());
+        final Optional<Rectangle> unknownDamage = this.surface.getDamageSince(SurfaceState.builder()
+                                                                                          .build());
+        //then
+        assertThat(damage.get()).isEqualTo(Rectangle.create(0,
+                                                            0,
+                                                            30,
+                                                            40));
+        assertThat(currentDamage.get()).isEqualTo(Rectangle.ZERO);
+        assertThat(unknownDamage.isPresent()).isFalse();
+    }
+
+    @Test
+    public void testSetOpaqueRegionCopy() throws Exception {
+        //given
+        final WlRegionResource wlRegionResource = mock(WlRegionResource.class);
+        final WlRegion         wlRegion         = mock(WlRegion.class);
+        when(wlRegionResource.getImplementation()).thenReturn(wlRegion);
+        final FiniteRegion region = mock(FiniteRegion.class);
+        when(wlRegion.getRegion()).thenReturn(region);
+        final FiniteRegion copy = mock(FiniteRegion.class);
+        when(this.finiteRegionFactory.create()).thenReturn(copy);
+        //when
+        this.surface.setOpaqueRegion(wlRegionResource);
+        this.surface.commit();
+        //then
+        verify(copy).add(region);
+        assertThat(this.surface.getState()
+                               .getOpaqueRegion()
+                               .get()).isSameAs(copy);
+    }
+
+    @Test
+    public void testMarkDestroyedClosesRegions() throws Exception {
+        //given
+        final FiniteRegion region = mock(FiniteRegion.class);
+        when(this.finiteRegionFactory.create()).thenReturn(region);
+        this.surface.markDamaged(Rectangle.create(0,
+                                                  0,
+                                                  10,
+                                                  10));
+        //when
+        this.surface.markDestroyed();
+        //then
+        verify(region).close();
+    }
+
     @Test
     public void testAttachCommit() throws Exception {
         //given
@@ -128,7 +230,7 @@ public class SurfaceTest {
                                                               .width(200)
                                                               .height(300)
                                                               .build());
-        verify(wlBufferResource).release();
+        verify(this.renderer).release(wlBufferResource);
     }
 
     @Test
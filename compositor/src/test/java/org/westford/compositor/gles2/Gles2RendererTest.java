@@ -14,39 +14,86 @@
 package org.westford.compositor.gles2;
 
 import org.freedesktop.jaccall.Pointer;
+import org.freedesktop.wayland.server.Display;
 import org.freedesktop.wayland.server.ShmBuffer;
+import org.freedesktop.wayland.server.WlSurfaceResource;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.westford.Signal;
+import org.westford.compositor.core.Buffer;
+import org.westford.compositor.core.EglOutput;
+import org.westford.compositor.core.FrameStats;
+import org.westford.compositor.core.FrameStatsRegistry;
+import org.westford.compositor.core.JobExecutor;
+import org.westford.compositor.core.Output;
+import org.westford.compositor.core.OutputMode;
+import org.westford.compositor.core.RenderThread;
+import org.westford.compositor.core.Renderer;
 import org.westford.compositor.core.Scene;
+import org.westford.compositor.core.SceneSnapshot;
+import org.westford.compositor.core.Surface;
+import org.westford.compositor.core.SurfaceState;
+import org.westford.compositor.core.SurfaceView;
+import org.westford.compositor.core.calc.Mat4;
+import org.westford.compositor.protocol.WlOutput;
+import org.westford.nativ.libEGL.LibEGL;
 import org.westford.nativ.libGLESv2.LibGLESv2;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.powermock.api.support.membermodification.MemberMatcher.method;
 import static org.westford.nativ.libGLESv2.LibGLESv2.GL_COMPILE_STATUS;
 import static org.westford.nativ.libGLESv2.LibGLESv2.GL_EXTENSIONS;
 import static org.westford.nativ.libGLESv2.LibGLESv2.GL_LINK_STATUS;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({ShmBuffer.class})
+@PrepareForTest({ShmBuffer.class,
+                 Gles2Renderer.class})
 public class Gles2RendererTest {
 
     @Rule
     public ExpectedException exception = ExpectedException.none();
 
     @Mock
-    private LibGLESv2     libGLESv2;
+    private LibEGL             libEGL;
+    @Mock
+    private LibGLESv2          libGLESv2;
+    @Mock
+    private Display            display;
+    @Mock
+    private Scene              scene;
     @Mock
-    private Scene         scene;
+    private FrameStatsRegistry frameStatsRegistry;
+    @Mock
+    private RenderThread       renderThread;
+    @Mock
+    private JobExecutor        jobExecutor;
+    @Mock
+    private TextureBudget      textureBudget;
     @InjectMocks
     private Gles2Renderer eglGles2RenderEngine;
 
@@ -391,4 +438,191 @@ public class Gles2RendererTest {
 //                                        wlSurfaceResource,
 //                                        shmBuffer);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testScanoutCompositeScanout() throws Exception {
+        //given: an output that scans out the topmost view, then needs it composited, then scans it out again
+        final Gles2Renderer gles2Renderer = PowerMockito.spy(this.eglGles2RenderEngine);
+        final Method        drawFrame     = stubFrames(gles2Renderer);
+
+        final EglOutput     eglOutput     = eglOutput();
+        final SceneSnapshot sceneSnapshot = SceneSnapshot.create(Collections.singletonList(fullscreenView()));
+        when(this.scene.snapshot(any(Renderer.class))).thenReturn(sceneSnapshot);
+        when(eglOutput.assignPlanes(sceneSnapshot)).thenReturn(sceneSnapshot);
+        when(eglOutput.scanout(eq(sceneSnapshot),
+                               any(Runnable.class))).thenReturn(true,
+                                                                false,
+                                                                true);
+
+        //when: 3 frames are rendered
+        gles2Renderer.visit(eglOutput);
+        gles2Renderer.visit(eglOutput);
+        gles2Renderer.visit(eglOutput);
+
+        //then: only the composited frame is drawn and swapped, frame callbacks are fired for every frame
+        final InOrder inOrder = inOrder(eglOutput);
+        inOrder.verify(eglOutput)
+               .scanout(eq(sceneSnapshot),
+                        any(Runnable.class));
+        inOrder.verify(eglOutput)
+               .whenPresented(any());
+        inOrder.verify(eglOutput)
+               .scanout(eq(sceneSnapshot),
+                        any(Runnable.class));
+        inOrder.verify(eglOutput)
+               .renderEndAfterSwap();
+        inOrder.verify(eglOutput)
+               .whenPresented(any());
+        inOrder.verify(eglOutput)
+               .scanout(eq(sceneSnapshot),
+                        any(Runnable.class));
+        inOrder.verify(eglOutput)
+               .whenPresented(any());
+        verify(eglOutput,
+               times(1)).renderEndAfterSwap();
+        PowerMockito.verifyPrivate(gles2Renderer,
+                                   times(1))
+                    .invoke(drawFrame)
+                    .withArguments(any(),
+                                   any(),
+                                   any());
+    }
+
+    @Test
+    public void testRenderThread() throws Exception {
+        //given: a started render thread, an output that is composited
+        final Gles2Renderer gles2Renderer = PowerMockito.spy(this.eglGles2RenderEngine);
+        final Method        drawFrame     = stubFrames(gles2Renderer);
+
+        when(this.renderThread.isStarted()).thenReturn(true);
+        final List<Runnable> renderJobs = new ArrayList<>();
+        doAnswer(invocation -> renderJobs.add((Runnable) invocation.getArguments()[0])).when(this.renderThread)
+                                                                                       .submit(any());
+        final List<Runnable> compositorJobs = new ArrayList<>();
+        doAnswer(invocation -> compositorJobs.add((Runnable) invocation.getArguments()[0])).when(this.jobExecutor)
+                                                                                           .submit(any());
+
+        final EglOutput     eglOutput     = eglOutput();
+        final SceneSnapshot sceneSnapshot = SceneSnapshot.create(Collections.singletonList(fullscreenView()));
+        when(this.scene.snapshot(any(Renderer.class))).thenReturn(sceneSnapshot);
+        when(eglOutput.assignPlanes(sceneSnapshot)).thenReturn(sceneSnapshot);
+
+        //when: a frame is rendered, and another one is requested before the first one is drawn
+        gles2Renderer.visit(eglOutput);
+        gles2Renderer.visit(eglOutput);
+
+        //then: only the first frame is handed to the render thread, nothing is done yet on the compositor thread
+        assertThat(renderJobs).hasSize(1);
+        verify(this.scene,
+               times(1)).snapshot(any(Renderer.class));
+        verify(eglOutput,
+               times(0)).renderEndAfterSwap();
+        verify(eglOutput,
+               times(0)).render();
+
+        //and when: the render thread draws the frame
+        renderJobs.get(0)
+                  .run();
+
+        //then: the frame is drawn, and its completion is handed back to the compositor thread
+        PowerMockito.verifyPrivate(gles2Renderer,
+                                   times(1))
+                    .invoke(drawFrame)
+                    .withArguments(any(),
+                                   any(),
+                                   any());
+        assertThat(compositorJobs).hasSize(1);
+        verify(eglOutput,
+               times(0)).renderEndAfterSwap();
+
+        //and when: the compositor thread runs the completion
+        compositorJobs.get(0)
+                      .run();
+
+        //then: frame callbacks are fired once presented, and the requested frame is rendered
+        final InOrder inOrder = inOrder(eglOutput,
+                                        this.display);
+        inOrder.verify(eglOutput)
+               .renderEndAfterSwap();
+        inOrder.verify(eglOutput)
+               .whenPresented(any());
+        inOrder.verify(this.display)
+               .flushClients();
+        inOrder.verify(eglOutput)
+               .render();
+    }
+
+    /**
+     * Stub out everything that needs a gl context.
+     *
+     * @return the private method that draws a frame.
+     */
+    private Method stubFrames(final Gles2Renderer gles2Renderer) throws Exception {
+        final Method prepareFrame = method(Gles2Renderer.class,
+                                           "prepare",
+                                           EglOutput.class,
+                                           SceneSnapshot.class,
+                                           List.class);
+        PowerMockito.doReturn(DrawFrame.create(Collections.emptyList(),
+                                               Collections.emptyList(),
+                                               mode(),
+                                               Mat4.IDENTITY,
+                                               0L,
+                                               0L,
+                                               0))
+                    .when(gles2Renderer,
+                          prepareFrame)
+                    .withArguments(any(),
+                                   any(),
+                                   any());
+        final Method drawFrame = method(Gles2Renderer.class,
+                                        "draw",
+                                        EglOutput.class,
+                                        DrawFrame.class,
+                                        FrameStats.class);
+        PowerMockito.doNothing()
+                    .when(gles2Renderer,
+                          drawFrame)
+                    .withArguments(any(),
+                                   any(),
+                                   any());
+        return drawFrame;
+    }
+
+    private EglOutput eglOutput() {
+        final Output output = mock(Output.class);
+        when(output.getMode()).thenReturn(mode());
+        when(output.getInverseTransform()).thenReturn(Mat4.IDENTITY);
+        when(output.getTransformSignal()).thenReturn(new Signal<>());
+        when(output.getModeSignal()).thenReturn(new Signal<>());
+        final WlOutput wlOutput = mock(WlOutput.class);
+        when(wlOutput.getOutput()).thenReturn(output);
+        final EglOutput eglOutput = mock(EglOutput.class);
+        when(eglOutput.getWlOutput()).thenReturn(wlOutput);
+        return eglOutput;
+    }
+
+    private OutputMode mode() {
+        return OutputMode.builder()
+                         .width(800)
+                         .height(600)
+                         .refresh(60)
+                         .flags(0)
+                         .build();
+    }
+
+    private SurfaceView fullscreenView() {
+        final Buffer buffer = mock(Buffer.class);
+        when(buffer.getWidth()).thenReturn(800);
+        when(buffer.getHeight()).thenReturn(600);
+        final SurfaceState surfaceState = mock(SurfaceState.class);
+        when(surfaceState.getBuffer()).thenReturn(Optional.empty());
+        when(surfaceState.getScale()).thenReturn(1);
+        return SurfaceView.create(mock(WlSurfaceResource.class),
+                                  mock(Surface.class),
+                                  surfaceState,
+                                  buffer,
+                                  Mat4.IDENTITY,
+                                  Collections.emptyList());
+    }
+}
@@ -0,0 +1,194 @@
+//Copyright 2015 Erik De Rijcke
+//
+//Licensed under the Apache License,Version2.0(the"License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing,software
+//distributed under the License is distributed on an"AS IS"BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+package org.westford.compositor.gles2;
+
+import org.junit.Test;
+import org.westford.compositor.core.Output;
+import org.westford.compositor.core.Rectangle;
+import org.westford.compositor.core.SceneSnapshot;
+import org.westford.compositor.core.Surface;
+import org.westford.compositor.core.SurfaceState;
+import org.westford.compositor.core.SurfaceView;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.westford.compositor.gles2.SceneFixture.snapshot;
+
+public class OutputDamageTest {
+
+    private static final Rectangle OUTPUT = Rectangle.create(0,
+                                                             0,
+                                                             800,
+                                                             600);
+
+    private final Output       output       = SceneFixture.output();
+    private final Surface      surface0     = mock(Surface.class);
+    private final Surface      surface1     = mock(Surface.class);
+    private final OutputDamage outputDamage = new OutputDamage();
+
+    @Test
+    public void testFirstFrame() throws Exception {
+        //given
+        final SceneSnapshot sceneSnapshot = snapshot(view(this.surface0,
+                                                          SurfaceState.builder()
+                                                                      .build(),
+                                                          10,
+                                                          10));
+
+        //when
+        final List<Rectangle> damage = this.outputDamage.damage(this.output,
+                                                                sceneSnapshot);
+
+        //then
+        assertThat(damage).containsExactly(OUTPUT);
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+        //given
+        final SurfaceState surfaceState = SurfaceState.builder()
+                                                      .build();
+        this.outputDamage.damage(this.output,
+                                 snapshot(view(this.surface0,
+                                               surfaceState,
+                                               10,
+                                               10)));
+
+        //when
+        final List<Rectangle> damage = this.outputDamage.damage(this.output,
+                                                                snapshot(view(this.surface0,
+                                                                              surfaceState,
+                                                                              10,
+                                                                              10)));
+
+        //then
+        assertThat(damage).isEmpty();
+    }
+
+    @Test
+    public void testCommittedDamage() throws Exception {
+        //given
+        final SurfaceState surfaceState0 = SurfaceState.builder()
+                                                       .build();
+        final SurfaceState surfaceState1 = SurfaceState.builder()
+                                                       .build();
+        when(this.surface0.getDamageSince(surfaceState0)).thenReturn(Optional.of(Rectangle.create(5,
+                                                                                                  5,
+                                                                                                  20,
+                                                                                                  20)));
+        this.outputDamage.damage(this.output,
+                                 snapshot(view(this.surface0,
+                                               surfaceState0,
+                                               10,
+                                               10)));
+
+        //when
+        final List<Rectangle> damage = this.outputDamage.damage(this.output,
+                                                                snapshot(view(this.surface0,
+                                                                              surfaceState1,
+                                                                              10,
+                                                                              10)));
+
+        //then
+        assertThat(damage).containsExactly(Rectangle.create(15,
+                                                            15,
+                                                            20,
+                                                            20));
+    }
+
+    @Test
+    public void testUnknownCommittedDamage() throws Exception {
+        //given
+        final SurfaceState surfaceState0 = SurfaceState.builder()
+                                                       .build();
+        final SurfaceState surfaceState1 = SurfaceState.builder()
+                                                       .build();
+        when(this.surface0.getDamageSince(surfaceState0)).thenReturn(Optional.empty());
+        this.outputDamage.damage(this.output,
+                                 snapshot(view(this.surface0,
+                                               surfaceState0,
+                                               10,
+                                               10)));
+
+        //when
+        final List<Rectangle> damage = this.outputDamage.damage(this.output,
+                                                                snapshot(view(this.surface0,
+                                                                              surfaceState1,
+                                                                              10,
+                                                                              10)));
+
+        //then
+        assertThat(damage).containsExactly(Rectangle.create(10,
+                                                            10,
+                                                            100,
+                                                            50));
+    }
+
+    @Test
+    public void testMoveAndRemove() throws Exception {
+        //given
+        final SurfaceState surfaceState0 = SurfaceState.builder()
+                                                       .build();
+        final SurfaceState surfaceState1 = SurfaceState.builder()
+                                                       .build();
+        this.outputDamage.damage(this.output,
+                                 snapshot(view(this.surface0,
+                                               surfaceState0,
+                                               10,
+                                               10),
+                                          view(this.surface1,
+                                               surfaceState1,
+                                               700,
+                                               500)));
+
+        //when
+        final List<Rectangle> damage = this.outputDamage.damage(this.output,
+                                                                snapshot(view(this.surface0,
+                                                                              surfaceState0,
+                                                                              20,
+                                                                              10)));
+
+        //then
+        assertThat(damage).containsExactly(Rectangle.create(10,
+                                                            10,
+                                                            100,
+                                                            50),
+                                           Rectangle.create(20,
+                                                            10,
+                                                            100,
+                                                            50),
+                                           Rectangle.create(700,
+                                                            500,
+                                                            100,
+                                                            50));
+    }
+
+    private SurfaceView view(final Surface surface,
+                             final SurfaceState surfaceState,
+                             final int x,
+                             final int y) {
+        return SceneFixture.view(surface,
+                                 surfaceState,
+                                 x,
+                                 y,
+                                 100,
+                                 50,
+                                 Collections.emptyList());
+    }
+}
@@ -0,0 +1,194 @@
+//Copyright 2015 Erik De Rijcke
+//
+//Licensed under the Apache License,Version2.0(the"License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing,software
+//distributed under the License is distributed on an"AS IS"BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+package org.westford.compositor.gles2;
+
+import org.junit.Test;
+import org.westford.compositor.core.Output;
+import org.westford.compositor.core.Rectangle;
+import org.westford.compositor.core.SceneSnapshot;
+import org.westford.compositor.core.Surface;
+import org.westford.compositor.core.SurfaceState;
+import org.westford.compositor.core.SurfaceView;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.westford.compositor.gles2.SceneFixture.snapshot;
+
+public class OutputVisibilityTest {
+
+    private final Output           output           = SceneFixture.output();
+    private final Surface          surface0         = mock(Surface.class);
+    private final Surface          surface1         = mock(Surface.class);
+    private final Surface          surface2         = mock(Surface.class);
+    private final OutputVisibility outputVisibility = new OutputVisibility();
+
+    @Test
+    public void testOffOutput() throws Exception {
+        //given
+        final SceneSnapshot sceneSnapshot = snapshot(view(this.surface0,
+                                                          900,
+                                                          0,
+                                                          100,
+                                                          50,
+                                                          Optional.empty()));
+
+        //when
+        final Set<Surface> visibleSurfaces = this.outputVisibility.visibleSurfaces(this.output,
+                                                                                   sceneSnapshot);
+
+        //then
+        assertThat(visibleSurfaces).isEmpty();
+    }
+
+    @Test
+    public void testOccluded() throws Exception {
+        //given
+        final SceneSnapshot sceneSnapshot = snapshot(view(this.surface0,
+                                                          10,
+                                                          10,
+                                                          100,
+                                                          50,
+                                                          Optional.empty()),
+                                                     view(this.surface1,
+                                                          0,
+                                                          0,
+                                                          200,
+                                                          100,
+                                                          Optional.of(Rectangle.create(0,
+                                                                                       0,
+                                                                                       200,
+                                                                                       100))));
+
+        //when
+        final Set<Surface> visibleSurfaces = this.outputVisibility.visibleSurfaces(this.output,
+                                                                                   sceneSnapshot);
+
+        //then
+        assertThat(visibleSurfaces).containsExactly(this.surface1);
+    }
+
+    @Test
+    public void testPartiallyOccluded() throws Exception {
+        //given
+        final SceneSnapshot sceneSnapshot = snapshot(view(this.surface0,
+                                                          10,
+                                                          10,
+                                                          100,
+                                                          50,
+                                                          Optional.empty()),
+                                                     view(this.surface1,
+                                                          0,
+                                                          0,
+                                                          200,
+                                                          100,
+                                                          Optional.of(Rectangle.create(0,
+                                                                                       0,
+                                                                                       50,
+                                                                                       100))));
+
+        //when
+        final Set<Surface> visibleSurfaces = this.outputVisibility.visibleSurfaces(this.output,
+                                                                                   sceneSnapshot);
+
+        //then
+        assertThat(visibleSurfaces).containsExactly(this.surface0,
+                                                    this.surface1);
+    }
+
+    @Test
+    public void testTranslucent() throws Exception {
+        //given
+        final SceneSnapshot sceneSnapshot = snapshot(view(this.surface0,
+                                                          10,
+                                                          10,
+                                                          100,
+                                                          50,
+                                                          Optional.empty()),
+                                                     view(this.surface1,
+                                                          0,
+                                                          0,
+                                                          200,
+                                                          100,
+                                                          Optional.empty()));
+
+        //when
+        final Set<Surface> visibleSurfaces = this.outputVisibility.visibleSurfaces(this.output,
+                                                                                   sceneSnapshot);
+
+        //then
+        assertThat(visibleSurfaces).containsExactly(this.surface0,
+                                                    this.surface1);
+    }
+
+    @Test
+    public void testOccludedByMultipleViews() throws Exception {
+        //given
+        final SceneSnapshot sceneSnapshot = snapshot(view(this.surface0,
+                                                          10,
+                                                          10,
+                                                          100,
+                                                          50,
+                                                          Optional.empty()),
+                                                     view(this.surface1,
+                                                          0,
+                                                          0,
+                                                          60,
+                                                          100,
+                                                          Optional.of(Rectangle.create(0,
+                                                                                       0,
+                                                                                       60,
+                                                                                       100))),
+                                                     view(this.surface2,
+                                                          60,
+                                                          0,
+                                                          60,
+                                                          100,
+                                                          Optional.of(Rectangle.create(0,
+                                                                                       0,
+                                                                                       60,
+                                                                                       100))));
+
+        //when
+        final Set<Surface> visibleSurfaces = this.outputVisibility.visibleSurfaces(this.output,
+                                                                                   sceneSnapshot);
+
+        //then
+        assertThat(visibleSurfaces).containsExactly(this.surface1,
+                                                    this.surface2);
+    }
+
+    private SurfaceView view(final Surface surface,
+                             final int x,
+                             final int y,
+                             final int width,
+                             final int height,
+                             final Optional<Rectangle> opaque) {
+        final SurfaceState surfaceState = mock(SurfaceState.class);
+        when(surfaceState.getScale()).thenReturn(1);
+
+        return SceneFixture.view(surface,
+                                 surfaceState,
+                                 x,
+                                 y,
+                                 width,
+                                 height,
+                                 opaque.map(Collections::singletonList)
+                                       .orElse(Collections.emptyList()));
+    }
+}
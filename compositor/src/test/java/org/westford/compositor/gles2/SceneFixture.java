@@ -0,0 +1,77 @@
+//Copyright 2015 Erik De Rijcke
+//
+//Licensed under the Apache License,Version2.0(the"License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing,software
+//distributed under the License is distributed on an"AS IS"BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+package org.westford.compositor.gles2;
+
+import org.freedesktop.wayland.server.WlSurfaceResource;
+import org.westford.compositor.core.Buffer;
+import org.westford.compositor.core.Output;
+import org.westford.compositor.core.OutputMode;
+import org.westford.compositor.core.Rectangle;
+import org.westford.compositor.core.SceneSnapshot;
+import org.westford.compositor.core.Surface;
+import org.westford.compositor.core.SurfaceState;
+import org.westford.compositor.core.SurfaceView;
+import org.westford.compositor.core.Transforms;
+import org.westford.compositor.core.calc.Mat4;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Scene snapshots of translated surfaces on an untransformed 800x600 output, shared by the output damage and
+ * visibility tests.
+ */
+final class SceneFixture {
+
+    private SceneFixture() {
+    }
+
+    static Output output() {
+        final Output output = mock(Output.class);
+        when(output.getMode()).thenReturn(OutputMode.builder()
+                                                    .width(800)
+                                                    .height(600)
+                                                    .refresh(60)
+                                                    .flags(0)
+                                                    .build());
+        when(output.getInverseTransform()).thenReturn(Mat4.IDENTITY);
+        return output;
+    }
+
+    static SceneSnapshot snapshot(final SurfaceView... surfaceViews) {
+        return SceneSnapshot.create(Arrays.asList(surfaceViews));
+    }
+
+    static SurfaceView view(final Surface surface,
+                            final SurfaceState surfaceState,
+                            final int x,
+                            final int y,
+                            final int width,
+                            final int height,
+                            final List<Rectangle> opaqueRegion) {
+        final Buffer buffer = mock(Buffer.class);
+        when(buffer.getWidth()).thenReturn(width);
+        when(buffer.getHeight()).thenReturn(height);
+        return SurfaceView.create(mock(WlSurfaceResource.class),
+                                  surface,
+                                  surfaceState,
+                                  buffer,
+                                  Transforms.TRANSLATE(x,
+                                                       y),
+                                  opaqueRegion);
+    }
+}
@@ -0,0 +1,145 @@
+//Copyright 2015 Erik De Rijcke
+//
+//Licensed under the Apache License,Version2.0(the"License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing,software
+//distributed under the License is distributed on an"AS IS"BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+package org.westford.compositor.gles2;
+
+import org.junit.Test;
+import org.westford.compositor.core.Rectangle;
+
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ShelfPackerTest {
+
+    @Test
+    public void testAllocateSameShelf() throws Exception {
+        //given
+        final ShelfPacker shelfPacker = new ShelfPacker(100,
+                                                        100);
+
+        //when
+        final Optional<Rectangle> first = shelfPacker.allocate(30,
+                                                               20);
+        final Optional<Rectangle> second = shelfPacker.allocate(30,
+                                                                15);
+
+        //then
+        assertThat(first.get()).isEqualTo(Rectangle.create(0,
+                                                           0,
+                                                           30,
+                                                           20));
+        assertThat(second.get()).isEqualTo(Rectangle.create(30,
+                                                            0,
+                                                            30,
+                                                            15));
+        assertThat(shelfPacker.getShelves()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAllocateNewShelf() throws Exception {
+        //given
+        final ShelfPacker shelfPacker = new ShelfPacker(100,
+                                                        100);
+        shelfPacker.allocate(30,
+                             40);
+
+        //when
+        final Optional<Rectangle> small = shelfPacker.allocate(10,
+                                                               10);
+        final Optional<Rectangle> full = shelfPacker.allocate(100,
+                                                              10);
+
+        //then
+        assertThat(small.get()).isEqualTo(Rectangle.create(0,
+                                                           40,
+                                                           10,
+                                                           10));
+        assertThat(full.get()).isEqualTo(Rectangle.create(0,
+                                                          50,
+                                                          100,
+                                                          10));
+        assertThat(shelfPacker.getShelves()).isEqualTo(3);
+    }
+
+    @Test
+    public void testAllocateFull() throws Exception {
+        //given
+        final ShelfPacker shelfPacker = new ShelfPacker(64,
+                                                        64);
+        shelfPacker.allocate(64,
+                             64);
+
+        //when
+        final Optional<Rectangle> rectangle = shelfPacker.allocate(1,
+                                                                   1);
+
+        //then
+        assertThat(rectangle.isPresent()).isFalse();
+        assertThat(shelfPacker.allocate(65,
+                                        1)
+                              .isPresent()).isFalse();
+    }
+
+    @Test
+    public void testFreeReuse() throws Exception {
+        //given
+        final ShelfPacker shelfPacker = new ShelfPacker(100,
+                                                        100);
+        final Rectangle first = shelfPacker.allocate(40,
+                                                     20)
+                                           .get();
+        final Rectangle second = shelfPacker.allocate(40,
+                                                      20)
+                                            .get();
+        shelfPacker.allocate(20,
+                             20);
+
+        //when
+        shelfPacker.free(first);
+        shelfPacker.free(second);
+        final Optional<Rectangle> merged = shelfPacker.allocate(80,
+                                                                20);
+
+        //then
+        assertThat(merged.get()).isEqualTo(Rectangle.create(0,
+                                                            0,
+                                                            80,
+                                                            20));
+        assertThat(shelfPacker.getShelves()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFreeClosesTopShelf() throws Exception {
+        //given
+        final ShelfPacker shelfPacker = new ShelfPacker(100,
+                                                        100);
+        shelfPacker.allocate(100,
+                             10);
+        final Rectangle rectangle = shelfPacker.allocate(10,
+                                                         30)
+                                               .get();
+
+        //when
+        shelfPacker.free(rectangle);
+
+        //then
+        assertThat(shelfPacker.getShelves()).isEqualTo(1);
+        assertThat(shelfPacker.allocate(10,
+                                        90)
+                              .get()).isEqualTo(Rectangle.create(0,
+                                                                 10,
+                                                                 10,
+                                                                 90));
+    }
+}
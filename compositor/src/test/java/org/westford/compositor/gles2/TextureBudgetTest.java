@@ -0,0 +1,158 @@
+//Copyright 2015 Erik De Rijcke
+//
+//Licensed under the Apache License,Version2.0(the"License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing,software
+//distributed under the License is distributed on an"AS IS"BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+package org.westford.compositor.gles2;
+
+import org.freedesktop.wayland.server.Client;
+import org.junit.Test;
+import org.westford.compositor.core.Surface;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class TextureBudgetTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testUse() throws Exception {
+        //given
+        final TextureBudget textureBudget = new TextureBudget(0L);
+        final Client        client0       = mock(Client.class);
+        final Client        client1       = mock(Client.class);
+        final Surface       surface0      = mock(Surface.class);
+        final Surface       surface1      = mock(Surface.class);
+
+        //when
+        textureBudget.use(surface0,
+                          client0,
+                          100L,
+                          0L);
+        textureBudget.use(surface1,
+                          client1,
+                          200L,
+                          0L);
+        textureBudget.use(surface0,
+                          client0,
+                          50L,
+                          SECOND);
+
+        //then
+        assertThat(textureBudget.getTextures()).isEqualTo(2);
+        assertThat(textureBudget.getUsedBytes()).isEqualTo(250L);
+        assertThat(textureBudget.getClientBytes(client0)).isEqualTo(50L);
+        assertThat(textureBudget.getClientBytes(client1)).isEqualTo(200L);
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        //given
+        final TextureBudget textureBudget = new TextureBudget(0L);
+        final Client        client        = mock(Client.class);
+        final Surface       surface       = mock(Surface.class);
+        textureBudget.use(surface,
+                          client,
+                          100L,
+                          0L);
+
+        //when
+        textureBudget.remove(surface);
+
+        //then
+        assertThat(textureBudget.getTextures()).isEqualTo(0);
+        assertThat(textureBudget.getUsedBytes()).isEqualTo(0L);
+        assertThat(textureBudget.getClientBytes(client)).isEqualTo(0L);
+        assertThat(textureBudget.getClientUsage()).isEmpty();
+    }
+
+    @Test
+    public void testEvictUnlimited() throws Exception {
+        //given
+        final TextureBudget textureBudget = new TextureBudget(0L);
+        textureBudget.use(mock(Surface.class),
+                          mock(Client.class),
+                          1000L,
+                          0L);
+
+        //when
+        final int evicted = textureBudget.evict(10 * SECOND)
+                                         .size();
+
+        //then
+        assertThat(evicted).isEqualTo(0);
+        assertThat(textureBudget.getUsedBytes()).isEqualTo(1000L);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        //given
+        final TextureBudget textureBudget = new TextureBudget(250L);
+        final Client        client        = mock(Client.class);
+        final Surface       surface0      = mock(Surface.class);
+        final Surface       surface1      = mock(Surface.class);
+        final Surface       surface2      = mock(Surface.class);
+        textureBudget.use(surface0,
+                          client,
+                          100L,
+                          0L);
+        textureBudget.use(surface1,
+                          client,
+                          100L,
+                          0L);
+        textureBudget.use(surface2,
+                          client,
+                          100L,
+                          0L);
+        //surface 0 is drawn again, surface 1 is now the least recently used.
+        textureBudget.use(surface0,
+                          client,
+                          100L,
+                          SECOND);
+
+        //when
+        final List<Surface> evicted = textureBudget.evict(3 * SECOND);
+
+        //then
+        assertThat(evicted).containsExactly(surface1);
+        assertThat(textureBudget.getUsedBytes()).isEqualTo(200L);
+        assertThat(textureBudget.getClientBytes(client)).isEqualTo(200L);
+        assertThat(textureBudget.getEvictions()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testEvictRecentlyUsed() throws Exception {
+        //given
+        final TextureBudget textureBudget = new TextureBudget(100L);
+        final Client        client        = mock(Client.class);
+        final Surface       surface0      = mock(Surface.class);
+        final Surface       surface1      = mock(Surface.class);
+        textureBudget.use(surface0,
+                          client,
+                          100L,
+                          0L);
+        textureBudget.use(surface1,
+                          client,
+                          100L,
+                          SECOND);
+
+        //when
+        final List<Surface> evicted = textureBudget.evict(SECOND + 1);
+
+        //then
+        assertThat(evicted).containsExactly(surface0);
+        assertThat(textureBudget.getUsedBytes()).isEqualTo(100L);
+    }
+}
@@ -0,0 +1,111 @@
+//Copyright 2015 Erik De Rijcke
+//
+//Licensed under the Apache License,Version2.0(the"License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing,software
+//distributed under the License is distributed on an"AS IS"BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+package org.westford.compositor.protocol;
+
+import org.freedesktop.wayland.server.Client;
+import org.freedesktop.wayland.server.WlPointerResource;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClientResourceSetTest {
+
+    private final ClientResourceSet<WlPointerResource> clientResourceSet = new ClientResourceSet<>();
+
+    @Test
+    public void testGet() throws Exception {
+        //given
+        final Client            client0            = mock(Client.class);
+        final Client            client1            = mock(Client.class);
+        final WlPointerResource wlPointerResource0 = mock(WlPointerResource.class);
+        final WlPointerResource wlPointerResource1 = mock(WlPointerResource.class);
+        final WlPointerResource wlPointerResource2 = mock(WlPointerResource.class);
+        when(wlPointerResource0.getClient()).thenReturn(client0);
+        when(wlPointerResource1.getClient()).thenReturn(client0);
+        when(wlPointerResource2.getClient()).thenReturn(client1);
+
+        //when
+        this.clientResourceSet.add(wlPointerResource0);
+        this.clientResourceSet.add(wlPointerResource1);
+        this.clientResourceSet.add(wlPointerResource2);
+
+        //then
+        assertThat(this.clientResourceSet).hasSize(3);
+        assertThat(this.clientResourceSet.get(client0)).containsExactly(wlPointerResource0,
+                                                                        wlPointerResource1);
+        assertThat(this.clientResourceSet.get(client1)).containsExactly(wlPointerResource2);
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        //given
+        final Client            client0            = mock(Client.class);
+        final WlPointerResource wlPointerResource0 = mock(WlPointerResource.class);
+        final WlPointerResource wlPointerResource1 = mock(WlPointerResource.class);
+        when(wlPointerResource0.getClient()).thenReturn(client0);
+        when(wlPointerResource1.getClient()).thenReturn(client0);
+        this.clientResourceSet.add(wlPointerResource0);
+        this.clientResourceSet.add(wlPointerResource1);
+
+        //when
+        this.clientResourceSet.remove(wlPointerResource0);
+
+        //then
+        assertThat(this.clientResourceSet).containsExactly(wlPointerResource1);
+        assertThat(this.clientResourceSet.get(client0)).containsExactly(wlPointerResource1);
+
+        //and when
+        final Iterator<WlPointerResource> iterator = this.clientResourceSet.iterator();
+        iterator.next();
+        iterator.remove();
+
+        //then
+        assertThat(this.clientResourceSet).isEmpty();
+        assertThat(this.clientResourceSet.get(client0)).isEmpty();
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        //given
+        final Client            client0            = mock(Client.class);
+        final Client            client1            = mock(Client.class);
+        final WlPointerResource wlPointerResource0 = mock(WlPointerResource.class);
+        final WlPointerResource wlPointerResource1 = mock(WlPointerResource.class);
+        when(wlPointerResource0.getClient()).thenReturn(client0);
+        when(wlPointerResource1.getClient()).thenReturn(client1);
+        final Set<WlPointerResource> wlPointerResources = new HashSet<>();
+        wlPointerResources.add(wlPointerResource0);
+        wlPointerResources.add(wlPointerResource1);
+        this.clientResourceSet.addAll(wlPointerResources);
+
+        //when
+        final Set<WlPointerResource> filteredSet      = ClientResourceSet.filter(wlPointerResources,
+                                                                                 client1);
+        final Set<WlPointerResource> filteredIndexSet = ClientResourceSet.filter(this.clientResourceSet,
+                                                                                 client1);
+
+        //then
+        assertThat(filteredSet).containsExactly(wlPointerResource1);
+        assertThat(filteredIndexSet).containsExactly(wlPointerResource1);
+    }
+}
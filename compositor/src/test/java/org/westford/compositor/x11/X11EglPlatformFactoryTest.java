@@ -30,6 +30,8 @@ import org.westford.nativ.libEGL.EglCreatePlatformWindowSurfaceEXT;
 import org.westford.nativ.libEGL.LibEGL;
 import org.westford.nativ.libEGL.PointerEglCreatePlatformWindowSurfaceEXT;
 import org.westford.nativ.libEGL.PointerEglGetPlatformDisplayEXT;
+import org.westford.nativ.libxcb.Libxcb;
+import org.westford.nativ.libxcbpresent.Libxcbpresent;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -64,6 +66,10 @@ public class X11EglPlatformFactoryTest {
     private GlRenderer                   glRenderer;
     @Mock
     private X11EglOutputFactory          x11EglOutputFactory;
+    @Mock
+    private Libxcb                       libxcb;
+    @Mock
+    private Libxcbpresent                libxcbpresent;
     @InjectMocks
     private X11EglPlatformFactory        x11EglPlatformFactory;
 
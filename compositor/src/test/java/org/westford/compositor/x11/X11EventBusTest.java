@@ -14,14 +14,18 @@
 package org.westford.compositor.x11;
 
 import org.freedesktop.jaccall.Pointer;
+import org.freedesktop.wayland.server.Display;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.westford.Slot;
+import org.westford.nativ.glibc.Libc;
 import org.westford.nativ.libxcb.Libxcb;
+import org.westford.nativ.libxcb.xcb_button_press_event_t;
 import org.westford.nativ.libxcb.xcb_generic_event_t;
+import org.westford.nativ.libxcb.xcb_motion_notify_event_t;
 
 import java.util.List;
 
@@ -35,7 +39,11 @@ import static org.mockito.Mockito.when;
 public class X11EventBusTest {
 
     @Mock
-    private Libxcb libxcb;
+    private Display display;
+    @Mock
+    private Libc    libc;
+    @Mock
+    private Libxcb  libxcb;
 
     private X11EventBus x11EventBus;
 
@@ -43,7 +51,9 @@ public class X11EventBusTest {
     public void testHandle() throws Exception {
         //given
         final long xcbConnection = 123456;
-        this.x11EventBus = new X11EventBus(this.libxcb,
+        this.x11EventBus = new X11EventBus(this.display,
+                                           this.libc,
+                                           this.libxcb,
                                            xcbConnection);
 
         final int     fd                    = 0;
@@ -72,4 +82,62 @@ public class X11EventBusTest {
         assertThat(pointers.get(0).address).isEqualTo(generic_event_memory0.address);
         assertThat(pointers.get(1).address).isEqualTo(generic_event_memory1.address);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testHandleCompressesMotion() throws Exception {
+        //given
+        final long xcbConnection = 123456;
+        this.x11EventBus = new X11EventBus(this.display,
+                                           this.libc,
+                                           this.libxcb,
+                                           xcbConnection);
+
+        final long motion0 = motion(1);
+        final long motion1 = motion(1);
+        final long button  = button();
+        final long motion2 = motion(1);
+        final long motion3 = motion(2);
+        when(this.libxcb.xcb_poll_for_event(xcbConnection)).thenReturn(motion0,
+                                                                       motion1,
+                                                                       button,
+                                                                       motion2,
+                                                                       motion3,
+                                                                       0L);
+        final Slot<Pointer<xcb_generic_event_t>> slot = mock(Slot.class);
+        this.x11EventBus.getXEventSignal()
+                        .connect(slot);
+
+        //when
+        this.x11EventBus.handle(0,
+                                0);
+
+        //then
+        final ArgumentCaptor<Pointer> pointerArgumentCaptor = ArgumentCaptor.forClass(Pointer.class);
+        verify(slot,
+               times(4)).handle(pointerArgumentCaptor.capture());
+
+        final List<Pointer> pointers = pointerArgumentCaptor.getAllValues();
+        assertThat(pointers.get(0).address).isEqualTo(motion1);
+        assertThat(pointers.get(1).address).isEqualTo(button);
+        assertThat(pointers.get(2).address).isEqualTo(motion2);
+        assertThat(pointers.get(3).address).isEqualTo(motion3);
+    }
+
+    private long motion(final int window) {
+        final Pointer<xcb_motion_notify_event_t> event = Pointer.malloc(xcb_motion_notify_event_t.SIZE,
+                                                                        xcb_motion_notify_event_t.class);
+        event.dref()
+             .response_type((byte) Libxcb.XCB_MOTION_NOTIFY);
+        event.dref()
+             .event(window);
+        return event.address;
+    }
+
+    private long button() {
+        final Pointer<xcb_button_press_event_t> event = Pointer.malloc(xcb_button_press_event_t.SIZE,
+                                                                       xcb_button_press_event_t.class);
+        event.dref()
+             .response_type((byte) Libxcb.XCB_BUTTON_PRESS);
+        return event.address;
+    }
+}
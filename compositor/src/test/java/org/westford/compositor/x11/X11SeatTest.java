@@ -27,6 +27,7 @@ import org.westford.compositor.protocol.WlSeat;
 import org.westford.nativ.libxcb.Libxcb;
 
 import java.util.Collections;
+import java.util.Optional;
 import java.util.Set;
 
 import static org.mockito.Mockito.mock;
@@ -140,11 +141,10 @@ public class X11SeatTest {
     public void testHandleMotion() throws Exception {
         //given
         final X11Output x11Output = mock(X11Output.class);
-        when(x11Output.getXWindow()).thenReturn(12345);
         when(x11Output.toGlobal(80,
                                 -120)).thenReturn(Point.create(10,
                                                                20));
-        when(this.x11Platform.getRenderOutputs()).thenReturn(Collections.singletonList(x11Output));
+        when(this.x11Platform.getRenderOutput(12345)).thenReturn(Optional.of(x11Output));
 
         final WlPointer wlPointer = mock(WlPointer.class);
         when(this.wlSeat.getWlPointer()).thenReturn(wlPointer);
@@ -162,9 +162,9 @@ public class X11SeatTest {
                                    x,
                                    y);
         //then
-        verify(pointerDevice).motion(wlPointerResources,
-                                     time,
-                                     10,
-                                     20);
+        verify(pointerDevice).queueMotion(wlPointerResources,
+                                          time,
+                                          10,
+                                          20);
     }
 }
\ No newline at end of file
@@ -0,0 +1,131 @@
+//Copyright 2015 Erik De Rijcke
+//
+//Licensed under the Apache License,Version2.0(the"License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing,software
+//distributed under the License is distributed on an"AS IS"BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+package org.westford.nativ;
+
+import org.freedesktop.jaccall.Pointer;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ScratchArenaTest {
+
+    @Test
+    public void testScopeRelease() throws Exception {
+        //given
+        final ScratchArena arena = new ScratchArena(1024);
+
+        //when
+        final long first;
+        try (ScratchArena.Scope scope = arena.scope()) {
+            first = arena.nref(1,
+                               2,
+                               3).address;
+        }
+        final long second;
+        try (ScratchArena.Scope scope = arena.scope()) {
+            second = arena.nref(4).address;
+        }
+
+        //then
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    public void testNref() throws Exception {
+        //given
+        final ScratchArena arena = new ScratchArena(1024);
+
+        try (ScratchArena.Scope scope = arena.scope()) {
+            //when
+            final Pointer<Integer> ints   = arena.nref(1,
+                                                       2);
+            final Pointer<Float>   floats = arena.nref(3f,
+                                                       4f);
+
+            //then
+            assertThat(ints.dref(1)).isEqualTo(2);
+            assertThat(floats.dref(0)).isEqualTo(3f);
+            assertThat(arena.nref("foo")
+                            .dref(3)).isEqualTo((byte) 0);
+        }
+    }
+
+    @Test
+    public void testNestedScope() throws Exception {
+        //given
+        final ScratchArena arena = new ScratchArena(1024);
+
+        try (ScratchArena.Scope outer = arena.scope()) {
+            final Pointer<Integer> outerValue = arena.nref(42);
+            //when
+            final long inner;
+            try (ScratchArena.Scope scope = arena.scope()) {
+                inner = arena.nref(0).address;
+            }
+
+            //then
+            assertThat(arena.nref(0).address).isEqualTo(inner);
+            assertThat(outerValue.dref()).isEqualTo(42);
+        }
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        //given
+        final ScratchArena arena = new ScratchArena(16);
+
+        try (ScratchArena.Scope scope = arena.scope()) {
+            //when
+            final Pointer<Long> values = arena.nref(1L,
+                                                    2L,
+                                                    3L);
+
+            //then
+            assertThat(values.dref(2)).isEqualTo(3L);
+            assertThat(arena.getOverflowCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testOutOfOrderClose() throws Exception {
+        //given
+        final ScratchArena arena = new ScratchArena(1024);
+
+        final ScratchArena.Scope outer = arena.scope();
+        final long               first = arena.nref(0).address;
+        final ScratchArena.Scope leaked = arena.scope();
+        arena.nref(0);
+
+        //when
+        outer.close();
+        leaked.close();
+
+        //then
+        try (ScratchArena.Scope scope = arena.scope()) {
+            assertThat(arena.nref(0).address).isEqualTo(first);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAllocateWithoutScope() throws Exception {
+        //given
+        final ScratchArena arena = new ScratchArena(1024);
+
+        //when
+        arena.nref(0);
+
+        //then
+        //exception is thrown
+    }
+}
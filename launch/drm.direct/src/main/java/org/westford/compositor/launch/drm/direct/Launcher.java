@@ -26,6 +26,7 @@ import org.westford.compositor.core.KeyboardDevice;
 import org.westford.compositor.core.LifeCycle;
 import org.westford.compositor.core.PointerDevice;
 import org.westford.compositor.core.TouchDevice;
+import org.westford.compositor.core.Trace;
 import org.westford.compositor.core.events.Activate;
 import org.westford.compositor.core.events.Deactivate;
 import org.westford.compositor.protocol.WlKeyboard;
@@ -174,6 +175,8 @@ public class Launcher {
         addTtyKeyBindings(drmEglCompositor,
                           keyboardDevice,
                           tty);
+        addTraceKeyBinding(drmEglCompositor,
+                           keyboardDevice);
     }
 
     private void addTtyKeyBindings(final DirectDrmEglCompositor drmEglCompositor,
@@ -255,4 +258,17 @@ public class Launcher {
                                  () -> tty.activate(12))
                          .enable();
     }
-}
\ No newline at end of file
+
+    private void addTraceKeyBinding(final DirectDrmEglCompositor drmEglCompositor,
+                                    final KeyboardDevice keyboardDevice) {
+        if (Trace.ENABLED) {
+            drmEglCompositor.keyBindingFactory()
+                            .create(keyboardDevice,
+                                    new HashSet<>(Arrays.asList(InputEventCodes.KEY_LEFTCTRL,
+                                                                InputEventCodes.KEY_LEFTALT,
+                                                                InputEventCodes.KEY_T)),
+                                    Trace::dumpAsync)
+                            .enable();
+        }
+    }
+}
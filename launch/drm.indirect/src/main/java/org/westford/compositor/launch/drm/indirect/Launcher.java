@@ -23,6 +23,7 @@ import org.westford.compositor.core.KeyboardDevice;
 import org.westford.compositor.core.LifeCycle;
 import org.westford.compositor.core.PointerDevice;
 import org.westford.compositor.core.TouchDevice;
+import org.westford.compositor.core.Trace;
 import org.westford.compositor.protocol.WlKeyboard;
 import org.westford.compositor.protocol.WlSeat;
 import org.westford.nativ.linux.InputEventCodes;
@@ -111,6 +112,8 @@ public class Launcher {
         addTtyKeyBindings(drmEglCompositor,
                           keyboardDevice,
                           tty);
+        addTraceKeyBinding(drmEglCompositor,
+                           keyboardDevice);
 
         /*
          * and finally, start the compositor
@@ -198,4 +201,17 @@ public class Launcher {
                                  () -> tty.activate(12))
                          .enable();
     }
-}
\ No newline at end of file
+
+    private void addTraceKeyBinding(final IndirectDrmEglCompositor drmEglCompositor,
+                                    final KeyboardDevice keyboardDevice) {
+        if (Trace.ENABLED) {
+            drmEglCompositor.keyBindingFactory()
+                            .create(keyboardDevice,
+                                    new HashSet<>(Arrays.asList(InputEventCodes.KEY_LEFTCTRL,
+                                                                InputEventCodes.KEY_LEFTALT,
+                                                                InputEventCodes.KEY_T)),
+                                    Trace::dumpAsync)
+                            .enable();
+        }
+    }
+}
@@ -71,4 +71,9 @@ public class X11PlatformConfigSimple implements X11PlatformConfig {
                              }
                             );
     }
+
+    @Override
+    public boolean isInputThread() {
+        return Boolean.getBoolean("westford.input.thread");
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.loadgen;
+
+import org.freedesktop.wayland.client.WlSurfaceProxy;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The part of a surface that is damaged on each commit.
+ */
+public enum DamagePattern {
+    /**
+     * The whole surface, like a video or a game.
+     */
+    FULL {
+        @Override
+        public void damage(@Nonnull final WlSurfaceProxy wlSurfaceProxy,
+                           final int frame,
+                           final int width,
+                           final int height) {
+            wlSurfaceProxy.damage(0,
+                                  0,
+                                  width,
+                                  height);
+        }
+    },
+    /**
+     * A small box moving diagonally, like a blinking cursor or a spinner.
+     */
+    BOX {
+        @Override
+        public void damage(@Nonnull final WlSurfaceProxy wlSurfaceProxy,
+                           final int frame,
+                           final int width,
+                           final int height) {
+            final int size = Math.min(BOX_SIZE,
+                                      Math.min(width,
+                                               height));
+            wlSurfaceProxy.damage(frame % Math.max(1,
+                                                   width - size + 1),
+                                  frame % Math.max(1,
+                                                   height - size + 1),
+                                  size,
+                                  size);
+        }
+    },
+    /**
+     * A full width band moving down, like a scrolling terminal.
+     */
+    STRIPE {
+        @Override
+        public void damage(@Nonnull final WlSurfaceProxy wlSurfaceProxy,
+                           final int frame,
+                           final int width,
+                           final int height) {
+            final int size = Math.min(STRIPE_SIZE,
+                                      height);
+            wlSurfaceProxy.damage(0,
+                                  (frame * size) % Math.max(1,
+                                                            height - size + 1),
+                                  width,
+                                  size);
+        }
+    };
+
+    private static final int BOX_SIZE    = 64;
+    private static final int STRIPE_SIZE = 16;
+
+    public abstract void damage(@Nonnull WlSurfaceProxy wlSurfaceProxy,
+                                int frame,
+                                int width,
+                                int height);
+}
@@ -0,0 +1,183 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.loadgen;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.Locale;
+import java.util.Optional;
+
+@AutoValue
+public abstract class LoadConfig {
+
+    public static final String USAGE = "Usage: java -jar loadgen.jar [options]\n" +
+                                       "  --display <name>      wayland display to connect to, defaults to $WAYLAND_DISPLAY\n" +
+                                       "  --clients <n>         number of synthetic clients (default 10)\n" +
+                                       "  --subsurfaces <n>     subsurfaces per client surface (default 0)\n" +
+                                       "  --width <px>          surface width (default 256)\n" +
+                                       "  --height <px>         surface height (default 256)\n" +
+                                       "  --rate <hz>           commits per second per surface (default 60)\n" +
+                                       "  --throttle            only commit after the previous frame callback arrived\n" +
+                                       "  --damage <pattern>    full, box or stripe (default full)\n" +
+                                       "  --duration <seconds>  how long to generate load (default 30)\n";
+
+    public static Builder builder() {
+        return new AutoValue_LoadConfig.Builder().display(Optional.empty())
+                                                 .clients(10)
+                                                 .subsurfaces(0)
+                                                 .width(256)
+                                                 .height(256)
+                                                 .rate(60)
+                                                 .throttle(false)
+                                                 .damagePattern(DamagePattern.FULL)
+                                                 .durationSeconds(30);
+    }
+
+    /**
+     * Parse command line arguments.
+     *
+     * @param args the command line arguments.
+     *
+     * @return a new config.
+     *
+     * @throws IllegalArgumentException if an argument is unknown or invalid.
+     */
+    public static LoadConfig parse(@Nonnull final String[] args) {
+        final Builder builder = builder();
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            switch (arg) {
+                case "--display":
+                    builder.display(Optional.of(value(args,
+                                                      ++i)));
+                    break;
+                case "--clients":
+                    builder.clients(Integer.parseInt(value(args,
+                                                           ++i)));
+                    break;
+                case "--subsurfaces":
+                    builder.subsurfaces(Integer.parseInt(value(args,
+                                                               ++i)));
+                    break;
+                case "--width":
+                    builder.width(Integer.parseInt(value(args,
+                                                         ++i)));
+                    break;
+                case "--height":
+                    builder.height(Integer.parseInt(value(args,
+                                                          ++i)));
+                    break;
+                case "--rate":
+                    builder.rate(Integer.parseInt(value(args,
+                                                        ++i)));
+                    break;
+                case "--throttle":
+                    builder.throttle(true);
+                    break;
+                case "--damage":
+                    builder.damagePattern(DamagePattern.valueOf(value(args,
+                                                                      ++i).toUpperCase(Locale.ROOT)));
+                    break;
+                case "--duration":
+                    builder.durationSeconds(Integer.parseInt(value(args,
+                                                                   ++i)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        final LoadConfig loadConfig = builder.build();
+        if (loadConfig.getClients() <= 0 ||
+            loadConfig.getSubsurfaces() < 0 ||
+            loadConfig.getWidth() <= 0 ||
+            loadConfig.getHeight() <= 0 ||
+            loadConfig.getRate() <= 0 ||
+            loadConfig.getDurationSeconds() <= 0) {
+            throw new IllegalArgumentException("Invalid argument value.");
+        }
+        return loadConfig;
+    }
+
+    private static String value(final String[] args,
+                                final int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    /**
+     * @return the wayland display name, or empty to use the default display.
+     */
+    public abstract Optional<String> getDisplay();
+
+    @Nonnegative
+    public abstract int getClients();
+
+    @Nonnegative
+    public abstract int getSubsurfaces();
+
+    @Nonnegative
+    public abstract int getWidth();
+
+    @Nonnegative
+    public abstract int getHeight();
+
+    /**
+     * @return commits per second for each surface.
+     */
+    @Nonnegative
+    public abstract int getRate();
+
+    /**
+     * @return true if a surface only commits after its previous frame callback arrived, like a well behaved client.
+     */
+    public abstract boolean isThrottle();
+
+    @Nonnull
+    public abstract DamagePattern getDamagePattern();
+
+    @Nonnegative
+    public abstract int getDurationSeconds();
+
+    @AutoValue.Builder
+    public interface Builder {
+        Builder display(Optional<String> display);
+
+        Builder clients(@Nonnegative int clients);
+
+        Builder subsurfaces(@Nonnegative int subsurfaces);
+
+        Builder width(@Nonnegative int width);
+
+        Builder height(@Nonnegative int height);
+
+        Builder rate(@Nonnegative int rate);
+
+        Builder throttle(boolean throttle);
+
+        Builder damagePattern(@Nonnull DamagePattern damagePattern);
+
+        Builder durationSeconds(@Nonnegative int durationSeconds);
+
+        LoadConfig build();
+    }
+}
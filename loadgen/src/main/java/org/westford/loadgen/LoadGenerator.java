@@ -0,0 +1,70 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.loadgen;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Connects a number of synthetic clients to a running compositor and reports the achieved commit throughput and
+ * latencies.
+ */
+public class LoadGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    public static void main(final String[] args) throws InterruptedException {
+        final LoadConfig loadConfig;
+        try {
+            loadConfig = LoadConfig.parse(args);
+        }
+        catch (final IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadConfig.USAGE);
+            System.exit(1);
+            return;
+        }
+
+        final LoadGeneratorComponent component = DaggerLoadGeneratorComponent.create();
+        final LoadStats              loadStats = new LoadStats();
+        final List<Thread>           threads   = new LinkedList<>();
+
+        LOGGER.info(String.format("Starting %d synthetic clients for %d seconds.",
+                                  loadConfig.getClients(),
+                                  loadConfig.getDurationSeconds()));
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < loadConfig.getClients(); i++) {
+            final Thread thread = new Thread(new SyntheticClient(component.libc(),
+                                                                 component.nativeFileFactory(),
+                                                                 loadConfig,
+                                                                 loadStats,
+                                                                 i),
+                                             "Synthetic client " + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.print(loadStats.report(loadConfig,
+                                          System.nanoTime() - start));
+    }
+}
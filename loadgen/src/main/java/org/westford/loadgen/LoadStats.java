@@ -0,0 +1,95 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.loadgen;
+
+import org.westford.compositor.core.Histogram;
+
+import javax.annotation.Nonnegative;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+
+/**
+ * Statistics shared by all synthetic clients. All times are recorded in microseconds.
+ */
+public class LoadStats {
+
+    private final Histogram  frameCallbackLatency = new Histogram();
+    private final Histogram  commitToRelease      = new Histogram();
+    private final AtomicLong commits              = new AtomicLong();
+    private final AtomicLong starved              = new AtomicLong();
+    private final AtomicLong failedClients        = new AtomicLong();
+
+    public void commit() {
+        this.commits.incrementAndGet();
+    }
+
+    /**
+     * A commit was skipped because all buffers of a surface were still held by the compositor.
+     */
+    public void starved() {
+        this.starved.incrementAndGet();
+    }
+
+    public void frameCallback(@Nonnegative final long latencyNanos) {
+        this.frameCallbackLatency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    }
+
+    public void release(@Nonnegative final long latencyNanos) {
+        this.commitToRelease.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    }
+
+    public void clientFailed() {
+        this.failedClients.incrementAndGet();
+    }
+
+    public String report(final LoadConfig loadConfig,
+                         final long elapsedNanos) {
+        final double seconds  = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        final int    surfaces = loadConfig.getClients() * (1 + loadConfig.getSubsurfaces());
+
+        return format("clients: %d (%d failed), surfaces: %d, %dx%d, damage: %s, target rate: %d Hz%s%n",
+                      loadConfig.getClients(),
+                      this.failedClients.get(),
+                      surfaces,
+                      loadConfig.getWidth(),
+                      loadConfig.getHeight(),
+                      loadConfig.getDamagePattern(),
+                      loadConfig.getRate(),
+                      loadConfig.isThrottle() ? " (throttled)" : "") +
+               format("commits: %d in %.1f s, %.1f commits/s, %.1f commits/s per surface, %d starved%n",
+                      this.commits.get(),
+                      seconds,
+                      this.commits.get() / seconds,
+                      this.commits.get() / seconds / surfaces,
+                      this.starved.get()) +
+               format("frame callback latency: avg %d us, p50 %d us, p99 %d us, max %d us (%d samples)%n",
+                      this.frameCallbackLatency.getMean(),
+                      this.frameCallbackLatency.getPercentile(50),
+                      this.frameCallbackLatency.getPercentile(99),
+                      this.frameCallbackLatency.getMax(),
+                      this.frameCallbackLatency.getCount()) +
+               format("commit to release: avg %d us, p50 %d us, p99 %d us, max %d us (%d samples)%n",
+                      this.commitToRelease.getMean(),
+                      this.commitToRelease.getPercentile(50),
+                      this.commitToRelease.getPercentile(99),
+                      this.commitToRelease.getMax(),
+                      this.commitToRelease.getCount());
+    }
+}
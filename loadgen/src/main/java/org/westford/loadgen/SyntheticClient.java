@@ -0,0 +1,383 @@
+/*
+ * Westford Wayland Compositor.
+ * Copyright (C) 2016  Erik De Rijcke
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.westford.loadgen;
+
+import org.freedesktop.jaccall.Pointer;
+import org.freedesktop.wayland.client.WlBufferEvents;
+import org.freedesktop.wayland.client.WlBufferProxy;
+import org.freedesktop.wayland.client.WlCallbackEvents;
+import org.freedesktop.wayland.client.WlCallbackProxy;
+import org.freedesktop.wayland.client.WlCompositorEventsV4;
+import org.freedesktop.wayland.client.WlCompositorProxy;
+import org.freedesktop.wayland.client.WlDisplayProxy;
+import org.freedesktop.wayland.client.WlOutputProxy;
+import org.freedesktop.wayland.client.WlRegistryEvents;
+import org.freedesktop.wayland.client.WlRegistryProxy;
+import org.freedesktop.wayland.client.WlShellEvents;
+import org.freedesktop.wayland.client.WlShellProxy;
+import org.freedesktop.wayland.client.WlShellSurfaceEvents;
+import org.freedesktop.wayland.client.WlShellSurfaceProxy;
+import org.freedesktop.wayland.client.WlShmEvents;
+import org.freedesktop.wayland.client.WlShmFormat;
+import org.freedesktop.wayland.client.WlShmPoolEvents;
+import org.freedesktop.wayland.client.WlShmPoolProxy;
+import org.freedesktop.wayland.client.WlShmProxy;
+import org.freedesktop.wayland.client.WlSubcompositorEvents;
+import org.freedesktop.wayland.client.WlSubcompositorProxy;
+import org.freedesktop.wayland.client.WlSubsurfaceEvents;
+import org.freedesktop.wayland.client.WlSubsurfaceProxy;
+import org.freedesktop.wayland.client.WlSurfaceEventsV4;
+import org.freedesktop.wayland.client.WlSurfaceProxy;
+import org.westford.nativ.NativeFileFactory;
+import org.westford.nativ.glibc.Libc;
+import org.westford.nativ.glibc.pollfd;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.westford.nativ.glibc.Libc.POLLIN;
+
+/**
+ * A wayland client that commits shm buffers at a fixed rate. Each client owns its own connection and runs on its own
+ * thread.
+ */
+public class SyntheticClient implements Runnable, WlRegistryEvents {
+
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    private static final int BUFFERS_PER_SURFACE = 2;
+    private static final int BYTES_PER_PIXEL     = 4;
+
+    @Nonnull
+    private final Libc              libc;
+    @Nonnull
+    private final NativeFileFactory nativeFileFactory;
+    @Nonnull
+    private final LoadConfig        loadConfig;
+    @Nonnull
+    private final LoadStats         loadStats;
+    private final int               id;
+
+    private final List<SyntheticSurface> surfaces = new LinkedList<>();
+
+    private Optional<WlCompositorProxy>    wlCompositorProxy    = Optional.empty();
+    private Optional<WlShmProxy>           wlShmProxy           = Optional.empty();
+    private Optional<WlShellProxy>         wlShellProxy         = Optional.empty();
+    private Optional<WlSubcompositorProxy> wlSubcompositorProxy = Optional.empty();
+
+    public SyntheticClient(@Nonnull final Libc libc,
+                           @Nonnull final NativeFileFactory nativeFileFactory,
+                           @Nonnull final LoadConfig loadConfig,
+                           @Nonnull final LoadStats loadStats,
+                           final int id) {
+        this.libc = libc;
+        this.nativeFileFactory = nativeFileFactory;
+        this.loadConfig = loadConfig;
+        this.loadStats = loadStats;
+        this.id = id;
+    }
+
+    @Override
+    public void run() {
+        final WlDisplayProxy wlDisplayProxy = WlDisplayProxy.connect(this.loadConfig.getDisplay()
+                                                                                    .orElse(null));
+        try {
+            wlDisplayProxy.getRegistry(this);
+            wlDisplayProxy.roundtrip();
+
+            if (!this.wlCompositorProxy.isPresent() || !this.wlShmProxy.isPresent()) {
+                throw new IllegalStateException("Compositor does not advertise wl_compositor and wl_shm.");
+            }
+            if (this.loadConfig.getSubsurfaces() > 0 && !this.wlSubcompositorProxy.isPresent()) {
+                throw new IllegalStateException("Compositor does not advertise wl_subcompositor.");
+            }
+
+            createSurfaces();
+            loop(wlDisplayProxy);
+        }
+        catch (final RuntimeException e) {
+            LOGGER.severe(String.format("Synthetic client %d failed: %s",
+                                        this.id,
+                                        e.getMessage()));
+            this.loadStats.clientFailed();
+        }
+        finally {
+            wlDisplayProxy.disconnect();
+        }
+    }
+
+    private void createSurfaces() {
+        final int width      = this.loadConfig.getWidth();
+        final int height     = this.loadConfig.getHeight();
+        final int stride     = width * BYTES_PER_PIXEL;
+        final int bufferSize = stride * height;
+        final int nrBuffers  = (1 + this.loadConfig.getSubsurfaces()) * BUFFERS_PER_SURFACE;
+        final int poolSize   = nrBuffers * bufferSize;
+
+        //pixel contents are never touched, the compositor uploads whatever the anonymous file contains (zeroes).
+        final int fd = this.nativeFileFactory.createAnonymousFile(poolSize);
+        final WlShmPoolProxy wlShmPoolProxy = this.wlShmProxy.get()
+                                                             .createPool(new WlShmPoolEvents() {},
+                                                                         fd,
+                                                                         poolSize);
+        //the pool keeps its own reference to the file
+        this.libc.close(fd);
+
+        final WlSurfaceProxy mainSurface = createSurface(wlShmPoolProxy,
+                                                         0,
+                                                         bufferSize,
+                                                         stride);
+        this.wlShellProxy.ifPresent(wlShellProxy -> wlShellProxy.getShellSurface(new WlShellSurfaceEvents() {
+                                                                                     @Override
+                                                                                     public void ping(final WlShellSurfaceProxy emitter,
+                                                                                                      final int serial) {
+                                                                                         emitter.pong(serial);
+                                                                                     }
+
+                                                                                     @Override
+                                                                                     public void configure(final WlShellSurfaceProxy emitter,
+                                                                                                           final int edges,
+                                                                                                           final int width,
+                                                                                                           final int height) {
+                                                                                         //fixed size, ignore
+                                                                                     }
+
+                                                                                     @Override
+                                                                                     public void popupDone(final WlShellSurfaceProxy emitter) {
+                                                                                     }
+                                                                                 },
+                                                                                 mainSurface)
+                                                                .setToplevel());
+
+        for (int i = 1; i <= this.loadConfig.getSubsurfaces(); i++) {
+            final WlSurfaceProxy subSurface = createSurface(wlShmPoolProxy,
+                                                            i * BUFFERS_PER_SURFACE * bufferSize,
+                                                            bufferSize,
+                                                            stride);
+            final WlSubsurfaceProxy wlSubsurfaceProxy = this.wlSubcompositorProxy.get()
+                                                                                 .getSubsurface(new WlSubsurfaceEvents() {},
+                                                                                                subSurface,
+                                                                                                mainSurface);
+            //cascade the subsurfaces so they overlap partially
+            wlSubsurfaceProxy.setPosition(i * 8,
+                                          i * 8);
+            //commit independently of the main surface so every subsurface generates its own load
+            wlSubsurfaceProxy.setDesync();
+        }
+    }
+
+    private WlSurfaceProxy createSurface(final WlShmPoolProxy wlShmPoolProxy,
+                                         final int offset,
+                                         final int bufferSize,
+                                         final int stride) {
+        final WlSurfaceProxy wlSurfaceProxy = this.wlCompositorProxy.get()
+                                                                    .createSurface(new WlSurfaceEventsV4() {
+                                                                        @Override
+                                                                        public void enter(final WlSurfaceProxy emitter,
+                                                                                          final WlOutputProxy output) {
+                                                                        }
+
+                                                                        @Override
+                                                                        public void leave(final WlSurfaceProxy emitter,
+                                                                                          final WlOutputProxy output) {
+                                                                        }
+                                                                    });
+        final SyntheticSurface syntheticSurface = new SyntheticSurface(wlSurfaceProxy);
+        for (int i = 0; i < BUFFERS_PER_SURFACE; i++) {
+            syntheticSurface.addBuffer(wlShmPoolProxy,
+                                       offset + i * bufferSize,
+                                       stride);
+        }
+        this.surfaces.add(syntheticSurface);
+        return wlSurfaceProxy;
+    }
+
+    private void loop(final WlDisplayProxy wlDisplayProxy) {
+        final Pointer<pollfd> pollfds = Pointer.calloc(1,
+                                                       pollfd.SIZE,
+                                                       pollfd.class);
+        pollfds.dref()
+               .fd(wlDisplayProxy.getFD());
+        pollfds.dref()
+               .events((short) POLLIN);
+
+        final long interval   = TimeUnit.SECONDS.toNanos(1) / this.loadConfig.getRate();
+        final long deadline   = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.loadConfig.getDurationSeconds());
+        long       nextCommit = System.nanoTime();
+
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                if (now >= deadline) {
+                    break;
+                }
+                if (now >= nextCommit) {
+                    this.surfaces.forEach(SyntheticSurface::commit);
+                    nextCommit += interval;
+                    //don't try to catch up if we fell behind, that would only generate bursts.
+                    if (nextCommit < now) {
+                        nextCommit = now + interval;
+                    }
+                }
+
+                while (wlDisplayProxy.prepareRead() != 0) {
+                    wlDisplayProxy.dispatchPending();
+                }
+                wlDisplayProxy.flush();
+
+                now = System.nanoTime();
+                final int timeout = (int) Math.max(0,
+                                                   TimeUnit.NANOSECONDS.toMillis(Math.min(nextCommit,
+                                                                                          deadline) - now));
+                final int ready = this.libc.poll(pollfds.address,
+                                                 1,
+                                                 timeout);
+                if (ready > 0) {
+                    wlDisplayProxy.readEvents();
+                }
+                else {
+                    wlDisplayProxy.cancelRead();
+                    if (ready < 0 && this.libc.getErrno() != Libc.EINTR) {
+                        throw new IllegalStateException("poll() failed: " + this.libc.getStrError());
+                    }
+                }
+                wlDisplayProxy.dispatchPending();
+            }
+        }
+        finally {
+            pollfds.close();
+        }
+    }
+
+    @Override
+    public void global(final WlRegistryProxy emitter,
+                       final int name,
+                       @Nonnull final String interfaceName,
+                       final int version) {
+        switch (interfaceName) {
+            case "wl_compositor":
+                this.wlCompositorProxy = Optional.of(emitter.bind(name,
+                                                                  WlCompositorProxy.class,
+                                                                  WlCompositorEventsV4.VERSION,
+                                                                  new WlCompositorEventsV4() {}));
+                break;
+            case "wl_shm":
+                this.wlShmProxy = Optional.of(emitter.bind(name,
+                                                           WlShmProxy.class,
+                                                           WlShmEvents.VERSION,
+                                                           (WlShmEvents) (wlShmProxy, format) -> {
+                                                               //argb8888 & xrgb8888 are always supported
+                                                           }));
+                break;
+            case "wl_shell":
+                this.wlShellProxy = Optional.of(emitter.bind(name,
+                                                             WlShellProxy.class,
+                                                             WlShellEvents.VERSION,
+                                                             new WlShellEvents() {}));
+                break;
+            case "wl_subcompositor":
+                this.wlSubcompositorProxy = Optional.of(emitter.bind(name,
+                                                                     WlSubcompositorProxy.class,
+                                                                     WlSubcompositorEvents.VERSION,
+                                                                     new WlSubcompositorEvents() {}));
+                break;
+            default:
+                //not interested
+        }
+    }
+
+    @Override
+    public void globalRemove(final WlRegistryProxy emitter,
+                             final int name) {
+    }
+
+    private class SyntheticSurface {
+
+        private final WlSurfaceProxy           wlSurfaceProxy;
+        private final List<WlBufferProxy>      freeBuffers = new LinkedList<>();
+        private final Map<WlBufferProxy, Long> attached    = new HashMap<>();
+
+        private int     frame;
+        private long    frameRequested;
+        private boolean frameCallbackPending;
+
+        SyntheticSurface(final WlSurfaceProxy wlSurfaceProxy) {
+            this.wlSurfaceProxy = wlSurfaceProxy;
+        }
+
+        void addBuffer(final WlShmPoolProxy wlShmPoolProxy,
+                       final int offset,
+                       final int stride) {
+            this.freeBuffers.add(wlShmPoolProxy.createBuffer((WlBufferEvents) this::release,
+                                                             offset,
+                                                             SyntheticClient.this.loadConfig.getWidth(),
+                                                             SyntheticClient.this.loadConfig.getHeight(),
+                                                             stride,
+                                                             WlShmFormat.XRGB8888.value));
+        }
+
+        void commit() {
+            if (SyntheticClient.this.loadConfig.isThrottle() && this.frameCallbackPending) {
+                return;
+            }
+            if (this.freeBuffers.isEmpty()) {
+                SyntheticClient.this.loadStats.starved();
+                return;
+            }
+
+            final WlBufferProxy wlBufferProxy = this.freeBuffers.remove(0);
+            this.wlSurfaceProxy.attach(wlBufferProxy,
+                                       0,
+                                       0);
+            SyntheticClient.this.loadConfig.getDamagePattern()
+                                           .damage(this.wlSurfaceProxy,
+                                                   this.frame++,
+                                                   SyntheticClient.this.loadConfig.getWidth(),
+                                                   SyntheticClient.this.loadConfig.getHeight());
+            if (!this.frameCallbackPending) {
+                this.wlSurfaceProxy.frame((WlCallbackEvents) this::done);
+                this.frameCallbackPending = true;
+                this.frameRequested = System.nanoTime();
+            }
+            this.wlSurfaceProxy.commit();
+            this.attached.put(wlBufferProxy,
+                              System.nanoTime());
+            SyntheticClient.this.loadStats.commit();
+        }
+
+        private void release(final WlBufferProxy emitter) {
+            final Long attached = this.attached.remove(emitter);
+            if (attached != null) {
+                SyntheticClient.this.loadStats.release(System.nanoTime() - attached);
+            }
+            this.freeBuffers.add(emitter);
+        }
+
+        private void done(final WlCallbackProxy emitter,
+                          final int callbackData) {
+            SyntheticClient.this.loadStats.frameCallback(System.nanoTime() - this.frameRequested);
+            this.frameCallbackPending = false;
+        }
+    }
+}